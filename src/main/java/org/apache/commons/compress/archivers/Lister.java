@@ -25,6 +25,8 @@
 import java.nio.file.Files;
 import java.util.Enumeration;
 import org.apache.commons.compress.archivers.sevenz.SevenZFile;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 
@@ -54,6 +56,8 @@ public static void main(final String[] args) throws Exception {
             list7z(f);
         } else if ("zipfile".equals(format)) {
             listZipUsingZipFile(f);
+        } else if (ArchiveStreamFactory.TAR.equalsIgnoreCase(format)) {
+            listTar(f);
         } else {
             listStream(f, args);
         }
@@ -96,6 +100,17 @@ private static void list7z(File f) throws ArchiveException, IOException {
         }
     }
 
+    private static void listTar(File f) throws IOException {
+        try (final TarArchiveInputStream t = new TarArchiveInputStream(Files.newByteChannel(f.toPath()),
+                TarConstants.DEFAULT_BLKSIZE, TarConstants.DEFAULT_RCDSIZE, null, false)) {
+            System.out.println("Created " + t.toString());
+            ArchiveEntry ae;
+            while ((ae = t.getNextEntry()) != null) {
+                System.out.println(ae.getName());
+            }
+        }
+    }
+
     private static void listZipUsingZipFile(File f) throws ArchiveException, IOException {
         try (ZipFile z = new ZipFile(f)) {
             System.out.println("Created " + z.toString());
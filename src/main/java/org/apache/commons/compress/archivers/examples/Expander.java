@@ -22,13 +22,27 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveException;
@@ -305,6 +319,168 @@ public void writeEntryDataTo(ArchiveEntry entry, OutputStream out) throws IOExce
         }, targetDirectory);
     }
 
+    /**
+     * Expands {@code archive} into {@code targetDirectory} using the
+     * given number of threads.
+     *
+     * <p>See {@link #expand(ZipFile, File, ExecutorService)} for
+     * details. The threads are daemon threads, the pool is shut down
+     * before this method returns.</p>
+     *
+     * @param archive the file to expand
+     * @param targetDirectory the directory to write to
+     * @param parallelism the number of threads to use
+     * @return statistics about the expansion
+     * @throws IOException if an I/O error occurs
+     * @throws ArchiveException if the archive cannot be read for other reasons
+     * @throws IllegalArgumentException if parallelism is not positive
+     * @since 1.21
+     */
+    public ExpansionStatistics expand(final ZipFile archive, File targetDirectory, int parallelism)
+        throws IOException, ArchiveException {
+        final ExecutorService executorService = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger threadNum = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "commons-compress-expander-" + threadNum.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            return expand(archive, targetDirectory, executorService);
+        } finally {
+            // pending tasks have been cancelled, don't interrupt running ones as this would close the archive
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Expands {@code archive} into {@code targetDirectory} writing
+     * several entries in parallel.
+     *
+     * <p>All target paths are verified and all directories are
+     * created on the calling thread before any file is written. The
+     * files are then written by tasks submitted to {@code
+     * executorService} in the order their data appear inside of the
+     * archive. If the archive contains several entries for the same
+     * file only the last one inside of the central directory is
+     * expanded - just like {@link #expand(ZipFile, File)} would
+     * overwrite the file written for earlier entries.</p>
+     *
+     * <p>Concurrent reads are only efficient if the {@link ZipFile}
+     * has been opened for a {@link java.io.File} or {@link
+     * FileChannel}, other channels are read while holding a lock.
+     * The executor service is not shut down by this method.</p>
+     *
+     * @param archive the file to expand
+     * @param targetDirectory the directory to write to
+     * @param executorService the executor service to write the files
+     * with
+     * @return statistics about the expansion
+     * @throws IOException if an I/O error occurs, this includes
+     * {@link InterruptedIOException} if the calling thread is
+     * interrupted while waiting for the files to be written
+     * @throws ArchiveException if the archive cannot be read for other reasons
+     * @since 1.21
+     */
+    public ExpansionStatistics expand(final ZipFile archive, File targetDirectory,
+        ExecutorService executorService) throws IOException, ArchiveException {
+        final long start = System.currentTimeMillis();
+        final String targetDirPath = getTargetDirPath(targetDirectory);
+        int directories = 0;
+        final Map<File, ZipArchiveEntry> files = new LinkedHashMap<>();
+        final Enumeration<ZipArchiveEntry> entries = archive.getEntries();
+        while (entries.hasMoreElements()) {
+            final ZipArchiveEntry entry = entries.nextElement();
+            if (!archive.canReadEntryData(entry)) {
+                continue;
+            }
+            final File f = getTargetFile(targetDirectory, targetDirPath, entry);
+            if (entry.isDirectory()) {
+                mkdirs(f);
+                directories++;
+            } else {
+                mkdirs(f.getParentFile());
+                // later entries overwrite earlier ones
+                files.remove(f);
+                files.put(f, entry);
+            }
+        }
+
+        final List<Map.Entry<File, ZipArchiveEntry>> physicalOrder = new ArrayList<>(files.size());
+        final Enumeration<ZipArchiveEntry> entriesInPhysicalOrder = archive.getEntriesInPhysicalOrder();
+        while (entriesInPhysicalOrder.hasMoreElements()) {
+            final ZipArchiveEntry entry = entriesInPhysicalOrder.nextElement();
+            final File f = new File(targetDirectory, entry.getName());
+            if (isSameEntry(entry, files.get(f))) {
+                physicalOrder.add(new AbstractMap.SimpleImmutableEntry<>(f, files.remove(f)));
+            }
+        }
+
+        final AtomicLong bytesWritten = new AtomicLong();
+        final List<Future<Void>> futures = new ArrayList<>(physicalOrder.size());
+        try {
+            for (final Map.Entry<File, ZipArchiveEntry> file : physicalOrder) {
+                futures.add(executorService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        try (InputStream in = archive.getInputStream(file.getValue());
+                             OutputStream o = Files.newOutputStream(file.getKey().toPath())) {
+                            bytesWritten.addAndGet(IOUtils.copy(in, o));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException iioe = new InterruptedIOException("Interrupted while expanding "
+                + "archive");
+            iioe.initCause(ex);
+            throw iioe;
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            // don't interrupt running tasks, an interrupt would close a FileChannel backing the archive
+            for (final Future<Void> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return new ExpansionStatistics(directories, physicalOrder.size(), bytesWritten.get(),
+            System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Whether both entries would expand to the same file.
+     *
+     * <p>Compares the name and the central directory fields
+     * describing the entry's data rather than using {@link
+     * ZipArchiveEntry#equals} which compares all attributes including
+     * the extra fields and data offsets. Entries with equal names,
+     * methods, sizes and CRCs are interchangeable when expanding the
+     * archive even if they have been created from different central
+     * directory records.</p>
+     */
+    private static boolean isSameEntry(final ZipArchiveEntry entry, final ZipArchiveEntry other) {
+        return other != null && entry.getName().equals(other.getName())
+            && entry.getMethod() == other.getMethod()
+            && entry.getCrc() == other.getCrc()
+            && entry.getCompressedSize() == other.getCompressedSize()
+            && entry.getSize() == other.getSize();
+    }
+
     /**
      * Expands {@code archive} into {@code targetDirectory}.
      *
@@ -338,26 +514,14 @@ private boolean prefersSeekableByteChannel(String format) {
 
     private void expand(ArchiveEntrySupplier supplier, EntryWriter writer, File targetDirectory)
         throws IOException {
-        String targetDirPath = targetDirectory.getCanonicalPath();
-        if (!targetDirPath.endsWith(File.separator)) {
-            targetDirPath += File.separator;
-        }
+        String targetDirPath = getTargetDirPath(targetDirectory);
         ArchiveEntry nextEntry = supplier.getNextReadableEntry();
         while (nextEntry != null) {
-            File f = new File(targetDirectory, nextEntry.getName());
-            if (!f.getCanonicalPath().startsWith(targetDirPath)) {
-                throw new IOException("Expanding " + nextEntry.getName()
-                    + " would create file outside of " + targetDirectory);
-            }
+            File f = getTargetFile(targetDirectory, targetDirPath, nextEntry);
             if (nextEntry.isDirectory()) {
-                if (!f.isDirectory() && !f.mkdirs()) {
-                    throw new IOException("Failed to create directory " + f);
-                }
+                mkdirs(f);
             } else {
-                File parent = f.getParentFile();
-                if (!parent.isDirectory() && !parent.mkdirs()) {
-                    throw new IOException("Failed to create directory " + parent);
-                }
+                mkdirs(f.getParentFile());
                 try (OutputStream o = Files.newOutputStream(f.toPath())) {
                     writer.writeEntryDataTo(nextEntry, o);
                 }
@@ -366,4 +530,28 @@ private void expand(ArchiveEntrySupplier supplier, EntryWriter writer, File targ
         }
     }
 
+    private static String getTargetDirPath(File targetDirectory) throws IOException {
+        String targetDirPath = targetDirectory.getCanonicalPath();
+        if (!targetDirPath.endsWith(File.separator)) {
+            targetDirPath += File.separator;
+        }
+        return targetDirPath;
+    }
+
+    private static File getTargetFile(File targetDirectory, String targetDirPath, ArchiveEntry entry)
+        throws IOException {
+        File f = new File(targetDirectory, entry.getName());
+        if (!f.getCanonicalPath().startsWith(targetDirPath)) {
+            throw new IOException("Expanding " + entry.getName()
+                + " would create file outside of " + targetDirectory);
+        }
+        return f;
+    }
+
+    private static void mkdirs(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory " + dir);
+        }
+    }
+
 }
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.archivers.examples;
+
+/**
+ * Provides information about a parallel expansion run.
+ *
+ * @since 1.21
+ */
+public class ExpansionStatistics {
+    private final int directories;
+    private final int files;
+    private final long bytesWritten;
+    private final long elapsed;
+
+    ExpansionStatistics(final int directories, final int files, final long bytesWritten, final long elapsed) {
+        this.directories = directories;
+        this.files = files;
+        this.bytesWritten = bytesWritten;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * The number of directory entries that have been expanded.
+     * @return the number of directories
+     */
+    public int getDirectories() {
+        return directories;
+    }
+
+    /**
+     * The number of file entries that have been expanded.
+     * @return the number of files
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * The number of uncompressed bytes written to all files.
+     * @return the number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * The number of milliseconds elapsed expanding the archive.
+     * @return The number of milliseconds elapsed
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * The number of bytes written per second.
+     * @return the throughput in bytes per second
+     */
+    public double getBytesPerSecond() {
+        return elapsed == 0 ? bytesWritten * 1000d : bytesWritten * 1000d / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "directories=" + directories + ", files=" + files + ", bytesWritten=" + bytesWritten
+            + ", elapsed=" + elapsed + "ms";
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.sevenz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+
+/**
+ * Adapts a backing store to the stream a folder writes its compressed
+ * data to.
+ *
+ * <p>Closing the stream doesn't close the store, the owner of the
+ * store closes it for writing once all data has been written.</p>
+ */
+class BackingStoreOutputStream extends OutputStream {
+    private final ScatterGatherBackingStore store;
+    private final byte[] oneByte = new byte[1];
+
+    BackingStoreOutputStream(final ScatterGatherBackingStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        oneByte[0] = (byte) b;
+        store.writeOut(oneByte, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        store.writeOut(b, off, len);
+    }
+
+    @Override
+    public void close() {
+        // the store is closed for writing by its owner
+    }
+}
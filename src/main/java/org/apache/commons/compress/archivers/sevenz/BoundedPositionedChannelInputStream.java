@@ -0,0 +1,83 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.sevenz;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+import org.apache.commons.compress.utils.IOUtils;
+
+/**
+ * Reads a range of a channel without relying on - or modifying - the
+ * channel's position, so several instances may read from the same
+ * channel concurrently.
+ *
+ * <p>Channels that are neither a {@link java.nio.channels.FileChannel}
+ * nor a {@link org.apache.commons.compress.utils.PositionedReadableChannel}
+ * are read while holding their lock.</p>
+ */
+class BoundedPositionedChannelInputStream extends InputStream {
+    private final SeekableByteChannel channel;
+    private final long end;
+    private final byte[] oneByte = new byte[1];
+    private long position;
+
+    BoundedPositionedChannelInputStream(final SeekableByteChannel channel, final long start, final long size) {
+        this.channel = channel;
+        this.position = start;
+        this.end = start + size;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(oneByte, 0, 1) < 0 ? -1 : oneByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        final ByteBuffer buf = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+        final int read = IOUtils.read(channel, buf, position);
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        final long skipped = Math.min(n, end - position);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public void close() {
+        // the nested channel is controlled externally
+    }
+}
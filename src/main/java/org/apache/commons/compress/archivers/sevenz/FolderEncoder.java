@@ -0,0 +1,221 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.sevenz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.compress.utils.CountingOutputStream;
+
+/**
+ * Compresses the content of one or more entries into a single
+ * folder and keeps track of the sizes and checksums needed to
+ * describe the folder inside of the archive's header.
+ *
+ * @NotThreadSafe
+ */
+class FolderEncoder {
+    private final Iterable<? extends SevenZMethodConfiguration> methods;
+    private final List<SevenZArchiveEntry> entries = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private final CRC32 entryCrc = new CRC32();
+    private final CRC32 packedCrc = new CRC32();
+    private CountingOutputStream packed;
+    private CountingOutputStream[] additionalCountingStreams;
+    private OutputStream encoder;
+    private long unpackSize;
+    private long entryStart;
+    private long packedSize;
+    private long[] additionalSizes;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param out the stream to write the compressed data to, it will
+     * be closed when the folder is finished
+     * @param methods the methods to use in the order they are applied
+     * by the decoder
+     * @throws IOException if setting up an encoder fails
+     */
+    FolderEncoder(final OutputStream out, final Iterable<? extends SevenZMethodConfiguration> methods)
+        throws IOException {
+        this.methods = methods;
+        packed = new CountingOutputStream(out) {
+            @Override
+            public void write(final int b) throws IOException {
+                super.write(b);
+                packedCrc.update(b);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                super.write(b, off, len);
+                packedCrc.update(b, off, len);
+            }
+        };
+        OutputStream stack = packed;
+        final List<CountingOutputStream> moreStreams = new ArrayList<>();
+        boolean first = true;
+        for (final SevenZMethodConfiguration m : methods) {
+            if (!first) {
+                final CountingOutputStream cos = new CountingOutputStream(stack);
+                moreStreams.add(cos);
+                stack = cos;
+            }
+            stack = Coders.addEncoder(stack, m.getMethod(), m.getOptions());
+            first = false;
+        }
+        additionalCountingStreams = moreStreams.toArray(new CountingOutputStream[0]);
+        encoder = stack;
+    }
+
+    void write(final int b) throws IOException {
+        encoder.write(b);
+        crc.update(b);
+        entryCrc.update(b);
+        unpackSize++;
+    }
+
+    void write(final byte[] b, final int off, final int len) throws IOException {
+        encoder.write(b, off, len);
+        crc.update(b, off, len);
+        entryCrc.update(b, off, len);
+        unpackSize += len;
+    }
+
+    /**
+     * Assigns the content written since the previous entry to the
+     * given entry.
+     *
+     * @return false if no content has been written for the entry, it
+     * has not been added to the folder in this case
+     */
+    boolean closeEntry(final SevenZArchiveEntry entry) {
+        final long size = unpackSize - entryStart;
+        if (size == 0) {
+            return false;
+        }
+        entry.setHasStream(true);
+        entry.setSize(size);
+        entry.setCrcValue(entryCrc.getValue());
+        entry.setHasCrc(true);
+        entries.add(entry);
+        entryStart = unpackSize;
+        entryCrc.reset();
+        return true;
+    }
+
+    /**
+     * Completes the compressed data and releases the encoders.
+     *
+     * <p>If the folder only contains a single entry its compressed
+     * size and CRC are set as well.</p>
+     */
+    void finish() throws IOException {
+        if (encoder == null) {
+            return;
+        }
+        encoder.flush();
+        encoder.close();
+        packedSize = packed.getBytesWritten();
+        additionalSizes = new long[additionalCountingStreams.length];
+        for (int i = 0; i < additionalCountingStreams.length; i++) {
+            additionalSizes[i] = additionalCountingStreams[i].getBytesWritten();
+        }
+        encoder = null;
+        packed = null;
+        additionalCountingStreams = null;
+        if (entries.size() == 1) {
+            final SevenZArchiveEntry entry = entries.get(0);
+            entry.setCompressedSize(packedSize);
+            entry.setCompressedCrcValue(packedCrc.getValue());
+        }
+    }
+
+    /**
+     * Whether the folder has been created with the given methods.
+     */
+    boolean usesMethods(final Iterable<? extends SevenZMethodConfiguration> other) {
+        return sameMethods(methods, other);
+    }
+
+    Iterable<? extends SevenZMethodConfiguration> getMethods() {
+        return methods;
+    }
+
+    /**
+     * The entries stored inside of this folder, entries without
+     * content are not part of any folder.
+     */
+    List<SevenZArchiveEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    long getUnpackSize() {
+        return unpackSize;
+    }
+
+    long getCrcValue() {
+        return crc.getValue();
+    }
+
+    long getPackedSize() {
+        return packedSize;
+    }
+
+    long getPackedCrcValue() {
+        return packedCrc.getValue();
+    }
+
+    /**
+     * The output sizes of all coders but the last one, only valid
+     * after the folder has been finished.
+     */
+    long[] getAdditionalSizes() {
+        return additionalSizes;
+    }
+
+    /**
+     * Whether both sequences contain equal methods in the same order.
+     */
+    static boolean sameMethods(final Iterable<? extends SevenZMethodConfiguration> first,
+        final Iterable<? extends SevenZMethodConfiguration> second) {
+        final Iterator<? extends SevenZMethodConfiguration> it = second.iterator();
+        for (final SevenZMethodConfiguration m : first) {
+            if (!it.hasNext() || !m.equals(it.next())) {
+                return false;
+            }
+        }
+        return !it.hasNext();
+    }
+
+    /**
+     * Marks an entry as not having any content.
+     */
+    static void setEmpty(final SevenZArchiveEntry entry) {
+        entry.setHasStream(false);
+        entry.setSize(0);
+        entry.setCompressedSize(0);
+        entry.setHasCrc(false);
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.sevenz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStoreSupplier;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+
+/**
+ * Creates a 7z archive compressing the content of entries in parallel.
+ *
+ * <p>Entries are grouped into solid blocks - consecutive entries
+ * using the same content methods whose combined size reaches the
+ * configured solid block size. Each block is compressed into a folder
+ * of its own on the threads of an {@link ExecutorService}, the
+ * compressed data is kept in a {@link ScatterGatherBackingStore} -
+ * temporary files by default - until it gets appended to the target
+ * {@link SevenZOutputFile} in the order the entries have been
+ * added. A solid block size of 0 compresses each entry into a folder
+ * of its own.</p>
+ *
+ * <p>The size of an entry is only used to decide which block the
+ * entry belongs to, it is recalculated from the content actually
+ * provided by the {@link InputStreamSupplier}. The content methods
+ * are determined by {@link SevenZOutputFile#getContentMethods}, i.e.
+ * the entry's own methods or the methods configured for the target
+ * file.</p>
+ *
+ * <p>All writes to the target file happen on the client thread
+ * calling {@link #addArchiveEntry addArchiveEntry} and {@link
+ * #finish}. Adding an entry blocks - while appending blocks that have
+ * been compressed - as long as the number of blocks that have been
+ * submitted but not yet appended reaches {@code
+ * maxPendingBlocks}.</p>
+ *
+ * <p>The {@link ExecutorService} is not shut down by this class.</p>
+ *
+ * <p>This class is expected to be used from a single client thread.
+ * The target file must not be written to by other means until
+ * {@link #finish} has returned.</p>
+ *
+ * @since 1.21
+ * @NotThreadSafe
+ */
+public class ParallelSevenZCreator {
+
+    /**
+     * Default size of solid blocks, 16MB.
+     */
+    public static final long DEFAULT_SOLID_BLOCK_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * Default limit for the number of blocks that have been submitted
+     * but not yet appended.
+     */
+    public static final int DEFAULT_MAX_PENDING_BLOCKS = 64;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final SevenZOutputFile target;
+    private final ExecutorService es;
+    private final ScatterGatherBackingStoreSupplier backingStoreSupplier;
+    private final long solidBlockSize;
+    private final int maxPendingBlocks;
+
+    /** Blocks that have been submitted but not appended, in the order they have been added. */
+    private final Deque<Future<CompressedBlock>> pending = new ArrayDeque<>();
+
+    /**
+     * Blocks that have been compressed but not yet picked up for
+     * appending, closed by {@link #abort}. Guards {@link #aborted}.
+     */
+    private final Set<CompressedBlock> compressedBlocks = new HashSet<>();
+    private boolean aborted;
+
+    private List<SevenZArchiveEntry> blockEntries = new ArrayList<>();
+    private List<InputStreamSupplier> blockSources = new ArrayList<>();
+    private Iterable<? extends SevenZMethodConfiguration> blockMethods;
+    private long blockSize;
+
+    /**
+     * Creates a creator using temporary files, {@link
+     * #DEFAULT_SOLID_BLOCK_SIZE} and {@link #DEFAULT_MAX_PENDING_BLOCKS}.
+     *
+     * @param target the file to write the archive to
+     * @param executorService the executorService compressing the blocks, it is not shut down by this class
+     */
+    public ParallelSevenZCreator(final SevenZOutputFile target, final ExecutorService executorService) {
+        this(target, executorService, new FileBasedScatterGatherBackingStoreSupplier(), DEFAULT_SOLID_BLOCK_SIZE,
+            DEFAULT_MAX_PENDING_BLOCKS);
+    }
+
+    /**
+     * Creates a creator.
+     *
+     * @param target               the file to write the archive to
+     * @param executorService      the executorService compressing the blocks, it is not shut down by this
+     *                             class
+     * @param backingStoreSupplier supplies the stores holding the compressed blocks until they are appended
+     * @param solidBlockSize       the uncompressed size of a solid block in bytes, 0 to compress each entry
+     *                             separately
+     * @param maxPendingBlocks     the maximum number of blocks that have been submitted but not appended
+     * @throws IllegalArgumentException if solidBlockSize is negative or maxPendingBlocks is not positive
+     */
+    public ParallelSevenZCreator(final SevenZOutputFile target, final ExecutorService executorService,
+                                 final ScatterGatherBackingStoreSupplier backingStoreSupplier,
+                                 final long solidBlockSize, final int maxPendingBlocks) {
+        if (solidBlockSize < 0) {
+            throw new IllegalArgumentException("solidBlockSize must not be negative but is " + solidBlockSize);
+        }
+        if (maxPendingBlocks <= 0) {
+            throw new IllegalArgumentException("maxPendingBlocks must be positive but is " + maxPendingBlocks);
+        }
+        this.target = target;
+        this.es = executorService;
+        this.backingStoreSupplier = backingStoreSupplier;
+        this.solidBlockSize = solidBlockSize;
+        this.maxPendingBlocks = maxPendingBlocks;
+    }
+
+    /**
+     * Adds an archive entry to this archive.
+     *
+     * <p>May append blocks that have been compressed to the target
+     * file and blocks if too many blocks are pending.</p>
+     *
+     * @param entry  The entry to add.
+     * @param source The source of the entry's content, may be null
+     *               for entries without content like directories.
+     * @throws IOException          If writing fails
+     * @throws InterruptedException If we get interrupted
+     * @throws ExecutionException   If something happens in the parallel execution
+     */
+    public void addArchiveEntry(final SevenZArchiveEntry entry, final InputStreamSupplier source)
+        throws IOException, InterruptedException, ExecutionException {
+        boolean success = false;
+        try {
+            final Iterable<? extends SevenZMethodConfiguration> methods = target.getContentMethods(entry);
+            if (!blockEntries.isEmpty() && !FolderEncoder.sameMethods(blockMethods, methods)) {
+                submitBlock();
+            }
+            blockEntries.add(entry);
+            blockSources.add(entry.isDirectory() ? null : source);
+            blockMethods = methods;
+            if (source != null && !entry.isDirectory()) {
+                blockSize += Math.max(entry.getSize(), 0);
+            }
+            if (blockSize >= solidBlockSize) {
+                submitBlock();
+            }
+            appendCompressedBlocks(false);
+            success = true;
+        } finally {
+            if (!success) {
+                abort();
+            }
+        }
+    }
+
+    /**
+     * Waits for all blocks to be compressed and appends them to the
+     * target file.
+     *
+     * <p>The target file is neither finished nor closed, the {@link ExecutorService} is not shut
+     * down.</p>
+     *
+     * @throws IOException          If writing fails
+     * @throws InterruptedException If we get interrupted
+     * @throws ExecutionException   If something happens in the parallel execution
+     */
+    public void finish() throws IOException, InterruptedException, ExecutionException {
+        boolean success = false;
+        try {
+            if (!blockEntries.isEmpty()) {
+                submitBlock();
+            }
+            while (!pending.isEmpty()) {
+                appendCompressedBlocks(true);
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                abort();
+            }
+        }
+    }
+
+    private void submitBlock() throws IOException, InterruptedException, ExecutionException {
+        while (pending.size() >= maxPendingBlocks) {
+            appendCompressedBlocks(true);
+        }
+        pending.add(es.submit(createCallable(blockEntries, blockSources, blockMethods)));
+        blockEntries = new ArrayList<>();
+        blockSources = new ArrayList<>();
+        blockSize = 0;
+    }
+
+    private Callable<CompressedBlock> createCallable(final List<SevenZArchiveEntry> entries,
+        final List<InputStreamSupplier> sources, final Iterable<? extends SevenZMethodConfiguration> methods) {
+        return new Callable<CompressedBlock>() {
+            @Override
+            public CompressedBlock call() throws Exception {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                ScatterGatherBackingStore store = null;
+                FolderEncoder folder = null;
+                boolean success = false;
+                try {
+                    for (int i = 0; i < entries.size(); i++) {
+                        final SevenZArchiveEntry entry = entries.get(i);
+                        final InputStreamSupplier source = sources.get(i);
+                        if (source != null) {
+                            try (InputStream in = source.get()) {
+                                int n;
+                                while ((n = in.read(buffer)) != -1) {
+                                    if (n > 0 && folder == null) {
+                                        store = backingStoreSupplier.get();
+                                        folder = new FolderEncoder(new BackingStoreOutputStream(store), methods);
+                                    }
+                                    if (n > 0) {
+                                        folder.write(buffer, 0, n);
+                                    }
+                                }
+                            }
+                        }
+                        if (folder == null || !folder.closeEntry(entry)) {
+                            FolderEncoder.setEmpty(entry);
+                        }
+                    }
+                    if (folder != null) {
+                        folder.finish();
+                        store.closeForWriting();
+                        if (folder.getEntries().isEmpty()) {
+                            folder = null;
+                        }
+                    }
+                    final CompressedBlock compressed = new CompressedBlock(entries, folder, store);
+                    synchronized (compressedBlocks) {
+                        if (aborted) {
+                            // nobody is going to append the block, release it right away
+                            return null;
+                        }
+                        compressedBlocks.add(compressed);
+                    }
+                    success = true;
+                    return compressed;
+                } finally {
+                    if (!success && store != null) {
+                        store.close();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Appends blocks that have been compressed to the target file.
+     *
+     * @param block whether to wait for a block to be compressed if
+     * none is ready
+     */
+    private void appendCompressedBlocks(final boolean block)
+        throws IOException, InterruptedException, ExecutionException {
+        boolean mayBlock = block;
+        while (!pending.isEmpty()) {
+            if (!mayBlock && !pending.peek().isDone()) {
+                return;
+            }
+            final CompressedBlock next = pending.poll().get();
+            synchronized (compressedBlocks) {
+                compressedBlocks.remove(next);
+            }
+            try (CompressedBlock compressed = next) {
+                compressed.appendTo(target);
+            }
+            mayBlock = false;
+        }
+    }
+
+    /**
+     * Cancels all pending blocks and releases the resources they hold.
+     *
+     * <p>Blocks that are being compressed are not interrupted - an
+     * interrupt might close channels used by the backing store or the
+     * sources - but release their backing stores once they
+     * complete.</p>
+     */
+    private void abort() {
+        for (final Future<CompressedBlock> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        synchronized (compressedBlocks) {
+            aborted = true;
+            for (final CompressedBlock compressed : compressedBlocks) {
+                try {
+                    compressed.close();
+                } catch (IOException ex) { //NOSONAR
+                    // no way to properly log this
+                }
+            }
+            compressedBlocks.clear();
+        }
+        blockEntries = new ArrayList<>();
+        blockSources = new ArrayList<>();
+        blockSize = 0;
+    }
+
+    /**
+     * A block of entries whose content has been compressed into a
+     * single folder.
+     */
+    private static class CompressedBlock implements Closeable {
+        private final List<SevenZArchiveEntry> entries;
+        private final FolderEncoder folder;
+        private final ScatterGatherBackingStore store;
+
+        CompressedBlock(final List<SevenZArchiveEntry> entries, final FolderEncoder folder,
+            final ScatterGatherBackingStore store) {
+            this.entries = entries;
+            this.folder = folder;
+            this.store = store;
+        }
+
+        void appendTo(final SevenZOutputFile out) throws IOException {
+            if (folder == null) {
+                out.addCompressedFolder(entries, null, null);
+                return;
+            }
+            try (InputStream in = store.getInputStream()) {
+                out.addCompressedFolder(entries, folder, in);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (store != null) {
+                store.close();
+            }
+        }
+    }
+}
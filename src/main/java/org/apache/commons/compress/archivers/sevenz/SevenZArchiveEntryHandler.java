@@ -0,0 +1,46 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.sevenz;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives the entries of an archive read by {@link
+ * SevenZFile#extractInParallel}.
+ *
+ * <p>Implementations must be thread-safe as entries of different
+ * folders are passed to the handler concurrently.</p>
+ *
+ * @since 1.21
+ */
+public interface SevenZArchiveEntryHandler {
+
+    /**
+     * Handles a single entry.
+     *
+     * @param entry the entry
+     * @param content the content of the entry. It doesn't need to be
+     * read completely and must not be used after this method
+     * returns, closing it has no effect.
+     * @throws IOException if handling the entry fails, the exception
+     * is propagated to the caller of {@link
+     * SevenZFile#extractInParallel}
+     */
+    void handle(SevenZArchiveEntry entry, InputStream content) throws IOException;
+}
@@ -25,6 +25,7 @@
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
@@ -37,11 +38,21 @@
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.CRC32;
 
 import org.apache.commons.compress.utils.BoundedInputStream;
 import org.apache.commons.compress.utils.CRC32VerifyingInputStream;
+import org.apache.commons.compress.utils.CloseShieldFilterInputStream;
 import org.apache.commons.compress.utils.IOUtils;
 import org.apache.commons.compress.utils.InputStreamStatistics;
 
@@ -98,6 +109,10 @@ public class SevenZFile implements Closeable {
 
     private final ArrayList<InputStream> deferredBlockStreams = new ArrayList<>();
 
+    /** Decoded content of solid folders by folder index, in access order. */
+    private final Map<Integer, byte[]> folderCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long folderCacheSize;
+
     // shared with SevenZOutputFile and tests, neither mutates it
     static final byte[] sevenZSignature = { //NOSONAR
         (byte)'7', (byte)'z', (byte)0xBC, (byte)0xAF, (byte)0x27, (byte)0x1C
@@ -384,6 +399,8 @@ public void close() throws IOException {
                     Arrays.fill(password, (byte) 0);
                 }
                 password = null;
+                folderCache.clear();
+                folderCacheSize = 0;
             }
         }
     }
@@ -426,6 +443,44 @@ public Iterable<SevenZArchiveEntry> getEntries() {
         return Arrays.asList(archive.files);
     }
 
+    /**
+     * Returns meta-data of all archive entries that have content,
+     * grouped by the folder - the solid block - holding their
+     * content.
+     *
+     * <p>Reading all entries of a folder in the given order via
+     * {@link #getInputStream} decodes the folder only once. Callers
+     * that need to read many entries in arbitrary order can use the
+     * grouping to batch the reads folder by folder.</p>
+     *
+     * <p>Entries without content are not part of any folder and are
+     * not returned by this method.</p>
+     *
+     * @return one list per folder, in the order the folders appear
+     * inside of the archive, each holding the entries of the folder
+     * in the order they have been compressed.
+     * @since 1.21
+     */
+    public List<List<SevenZArchiveEntry>> getEntriesByFolder() {
+        final List<List<SevenZArchiveEntry>> result = new ArrayList<>();
+        if (archive.streamMap == null) {
+            return result;
+        }
+        for (int folderIndex = 0; folderIndex < archive.folders.length; folderIndex++) {
+            final List<SevenZArchiveEntry> entries = new ArrayList<>();
+            for (int i = archive.streamMap.folderFirstFileIndex[folderIndex]; i < archive.files.length
+                     && archive.streamMap.fileFolderIndex[i] == folderIndex; i++) {
+                if (archive.files[i].hasStream()) {
+                    entries.add(archive.files[i]);
+                }
+            }
+            if (!entries.isEmpty()) {
+                result.add(entries);
+            }
+        }
+        return result;
+    }
+
     private Archive readHeaders(final byte[] password) throws IOException {
         ByteBuffer buf = ByteBuffer.allocate(12 /* signature + 2 bytes version + 4 bytes CRC */)
             .order(ByteOrder.LITTLE_ENDIAN);
@@ -1362,18 +1417,80 @@ private void count(int c) {
                 compressedBytesReadFromCurrentEntry += c;
             }
         };
-        final LinkedList<SevenZMethodConfiguration> methods = new LinkedList<>();
+        final InputStream decoded = addDecoders(folder, inputStreamStack);
+        entry.setContentMethods(getContentMethods(folder));
+        return decoded;
+    }
+
+    /**
+     * Provides a stream for the entry from the folder cache, decoding
+     * and caching the entry's folder if necessary.
+     *
+     * @return the stream or null if the entry's folder can't be cached
+     */
+    private InputStream getCachedInputStream(final int entryIndex) throws IOException {
+        final long maxCacheSize = 1024L * options.getFolderCacheSizeInKb();
+        final SevenZArchiveEntry entry = archive.files[entryIndex];
+        if (maxCacheSize <= 0 || archive.streamMap == null || !entry.hasStream()) {
+            return null;
+        }
+        final int folderIndex = archive.streamMap.fileFolderIndex[entryIndex];
+        final Folder folder = archive.folders[folderIndex];
+        final long unpackSize = folder.getUnpackSize();
+        if (folder.numUnpackSubStreams < 2 || unpackSize > maxCacheSize || unpackSize > Integer.MAX_VALUE - 8) {
+            // single entry folders don't need to skip anything
+            return null;
+        }
+        final int firstFileIndex = archive.streamMap.folderFirstFileIndex[folderIndex];
+        byte[] content = folderCache.get(folderIndex);
+        if (content == null) {
+            content = new byte[(int) unpackSize];
+            try (InputStream folderStream = openFolderForPositionedReads(folderIndex)) {
+                if (IOUtils.readFully(folderStream, content) != content.length) {
+                    throw new IOException("Truncated 7z folder " + folderIndex);
+                }
+            }
+            setContentMethods(folderIndex);
+            folderCacheSize += content.length;
+            final Iterator<byte[]> eldest = folderCache.values().iterator();
+            while (folderCacheSize > maxCacheSize && eldest.hasNext()) {
+                folderCacheSize -= eldest.next().length;
+                eldest.remove();
+            }
+            folderCache.put(folderIndex, content);
+        }
+        long offset = 0;
+        for (int i = firstFileIndex; i < entryIndex; i++) {
+            offset += archive.files[i].getSize();
+        }
+        final InputStream fileStream = new ByteArrayInputStream(content, (int) offset, (int) entry.getSize());
+        if (entry.getHasCrc()) {
+            return new CRC32VerifyingInputStream(fileStream, entry.getSize(), entry.getCrcValue());
+        }
+        return fileStream;
+    }
+
+    /**
+     * Opens a folder using a decoder stack of its own that doesn't
+     * rely on - or modify - the position of the channel.
+     */
+    private InputStream openFolderForPositionedReads(final int folderIndex) throws IOException {
+        final int firstPackStreamIndex = archive.streamMap.folderFirstPackStreamIndex[folderIndex];
+        final long folderOffset = SIGNATURE_HEADER_SIZE + archive.packPos
+            + archive.streamMap.packStreamOffsets[firstPackStreamIndex];
+        return addDecoders(archive.folders[folderIndex], new BufferedInputStream(
+            new BoundedPositionedChannelInputStream(channel, folderOffset,
+                archive.packSizes[firstPackStreamIndex])));
+    }
+
+    private InputStream addDecoders(final Folder folder, InputStream inputStreamStack) throws IOException {
         for (final Coder coder : folder.getOrderedCoders()) {
             if (coder.numInStreams != 1 || coder.numOutStreams != 1) {
                 throw new IOException("Multi input/output stream coders are not yet supported");
             }
-            final SevenZMethod method = SevenZMethod.byId(coder.decompressionMethodId);
             inputStreamStack = Coders.addDecoder(fileName, inputStreamStack,
                     folder.getUnpackSizeForCoder(coder), coder, password, options.getMaxMemoryLimitInKb());
-            methods.addFirst(new SevenZMethodConfiguration(method,
-                     Coders.findByMethod(method).getOptionsFromCoder(coder, inputStreamStack)));
         }
-        entry.setContentMethods(methods);
         if (folder.hasCrc) {
             return new CRC32VerifyingInputStream(inputStreamStack,
                     folder.getUnpackSize(), folder.crc);
@@ -1381,6 +1498,36 @@ private void count(int c) {
         return inputStreamStack;
     }
 
+    /**
+     * Provides the methods used to compress the content of a folder,
+     * the method applied last comes first.
+     */
+    private Iterable<SevenZMethodConfiguration> getContentMethods(final Folder folder) throws IOException {
+        final LinkedList<SevenZMethodConfiguration> methods = new LinkedList<>();
+        for (final Coder coder : folder.getOrderedCoders()) {
+            final SevenZMethod method = SevenZMethod.byId(coder.decompressionMethodId);
+            final CoderBase cb = Coders.findByMethod(method);
+            if (cb == null) {
+                throw new IOException("Unsupported compression method "
+                    + Arrays.toString(coder.decompressionMethodId) + " used in " + fileName);
+            }
+            // none of the decoders needs the stream to determine its options
+            methods.addFirst(new SevenZMethodConfiguration(method, cb.getOptionsFromCoder(coder, null)));
+        }
+        return methods;
+    }
+
+    /**
+     * Sets the content methods of all entries of a folder.
+     */
+    private void setContentMethods(final int folderIndex) throws IOException {
+        final Iterable<SevenZMethodConfiguration> methods = getContentMethods(archive.folders[folderIndex]);
+        for (int i = archive.streamMap.folderFirstFileIndex[folderIndex]; i < archive.files.length
+                 && archive.streamMap.fileFolderIndex[i] == folderIndex; i++) {
+            archive.files[i].setContentMethods(methods);
+        }
+    }
+
     /**
      * Reads a byte of data.
      *
@@ -1404,12 +1551,21 @@ private InputStream getCurrentStream() throws IOException {
             throw new IllegalStateException("No current 7z entry (call getNextEntry() first).");
         }
 
+        byte[] skipBuffer = null;
         while (deferredBlockStreams.size() > 1) {
             // In solid compression mode we need to decompress all leading folder'
             // streams to get access to an entry. We defer this until really needed
             // so that entire blocks can be skipped without wasting time for decompression.
+            if (skipBuffer == null) {
+                skipBuffer = new byte[8192];
+            }
             try (final InputStream stream = deferredBlockStreams.remove(0)) {
-                IOUtils.skip(stream, Long.MAX_VALUE);
+                // read rather than skip, the folder stream may verify a checksum and
+                // has to decode everything anyway
+                int n;
+                do {
+                    n = stream.read(skipBuffer);
+                } while (n >= 0);
             }
             compressedBytesReadFromCurrentEntry = 0;
         }
@@ -1422,7 +1578,10 @@ private InputStream getCurrentStream() throws IOException {
      *
      * <p>For archives using solid compression randomly accessing
      * entries will be significantly slower than reading the archive
-     * sequentially.</p>
+     * sequentially unless a folder cache has been configured via
+     * {@link SevenZFileOptions.Builder#withFolderCacheSizeInKb}. Streams
+     * served from the cache don't affect the position of {@link
+     * #getNextEntry} and remain valid when other entries are read.</p>
      *
      * @param entry the entry to get the stream for.
      * @return a stream to read the entry from.
@@ -1442,12 +1601,136 @@ public InputStream getInputStream(SevenZArchiveEntry entry) throws IOException {
             throw new IllegalArgumentException("Can not find " + entry.getName() + " in " + this.fileName);
         }
 
+        final InputStream cached = getCachedInputStream(entryIndex);
+        if (cached != null) {
+            return cached;
+        }
+
         buildDecodingStream(entryIndex, true);
         currentEntryIndex = entryIndex;
         currentFolderIndex = archive.streamMap.fileFolderIndex[entryIndex];
         return getCurrentStream();
     }
 
+    /**
+     * Passes all entries of the archive and their content to a
+     * handler, decoding several folders in parallel.
+     *
+     * <p>Each folder - the entries compressed together as a single
+     * solid block - is decoded by a task submitted to {@code
+     * executorService} that uses a decoder stack of its own and reads
+     * the folder's packed data without relying on the position of the
+     * underlying channel. The entries of a folder are passed to the
+     * handler in order by the thread decoding the folder, entries of
+     * different folders are passed concurrently. Entries without any
+     * content outside of folders are passed to the handler by the
+     * calling thread.</p>
+     *
+     * <p>Concurrent reads are only efficient if the archive has been
+     * opened for a {@link File} or a {@link
+     * java.nio.channels.FileChannel}, other channels are read while
+     * holding their lock. The memory limit of {@link
+     * SevenZFileOptions} applies to each folder separately. This
+     * method must not be used while entries are read via {@link
+     * #getNextEntry} or {@link #getInputStream}, it doesn't change the
+     * state used by those methods. The executor service is not shut
+     * down by this method.</p>
+     *
+     * @param executorService the executor service to decode folders with
+     * @param handler receives the entries
+     * @throws IOException if reading the archive fails or the handler
+     * throws an exception, this includes {@link
+     * InterruptedIOException} if the calling thread is interrupted
+     * while waiting for the folders to be decoded
+     * @since 1.21
+     */
+    public void extractInParallel(final ExecutorService executorService,
+        final SevenZArchiveEntryHandler handler) throws IOException {
+        if (archive.streamMap == null) {
+            throw new IOException("Archive doesn't contain stream information to read entries");
+        }
+        if (options.getUseDefaultNameForUnnamedEntries()) {
+            for (final SevenZArchiveEntry entry : archive.files) {
+                if (entry.getName() == null) {
+                    entry.setName(getDefaultName());
+                }
+            }
+        }
+        // entries are shared with the decoding threads, modify them before the threads are started
+        for (int i = 0; i < archive.folders.length; i++) {
+            if (archive.folders[i].numUnpackSubStreams > 0) {
+                setContentMethods(i);
+            }
+        }
+        final AtomicBoolean aborted = new AtomicBoolean();
+        final List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < archive.streamMap.folderFirstFileIndex.length; i++) {
+                if (archive.folders[i].numUnpackSubStreams > 0) {
+                    futures.add(executorService.submit(createFolderExtraction(i, handler, aborted)));
+                }
+            }
+            for (int i = 0; i < archive.files.length; i++) {
+                if (archive.streamMap.fileFolderIndex[i] < 0) {
+                    handler.handle(archive.files[i], new ByteArrayInputStream(new byte[0]));
+                }
+            }
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException iioe = new InterruptedIOException("Interrupted while extracting "
+                + "archive");
+            iioe.initCause(ex);
+            throw iioe;
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            aborted.set(true);
+            for (final Future<Void> future : futures) {
+                // interrupting a thread reading from a FileChannel would close the channel
+                future.cancel(false);
+            }
+        }
+    }
+
+    private Callable<Void> createFolderExtraction(final int folderIndex, final SevenZArchiveEntryHandler handler,
+        final AtomicBoolean aborted) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                final int firstFileIndex = archive.streamMap.folderFirstFileIndex[folderIndex];
+                final byte[] skipBuffer = new byte[8192];
+                try (InputStream folderStream = openFolderForPositionedReads(folderIndex)) {
+                    for (int i = firstFileIndex; i < archive.files.length
+                             && archive.streamMap.fileFolderIndex[i] == folderIndex && !aborted.get(); i++) {
+                        final SevenZArchiveEntry file = archive.files[i];
+                        InputStream fileStream = new BoundedInputStream(folderStream, file.getSize());
+                        if (file.getHasCrc()) {
+                            fileStream = new CRC32VerifyingInputStream(fileStream, file.getSize(),
+                                file.getCrcValue());
+                        }
+                        handler.handle(file, new CloseShieldFilterInputStream(fileStream));
+                        // verifies the CRC and moves to the start of the next entry
+                        int n;
+                        do {
+                            n = fileStream.read(skipBuffer);
+                        } while (n >= 0);
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
     /**
      * Reads data into an array of bytes.
      *
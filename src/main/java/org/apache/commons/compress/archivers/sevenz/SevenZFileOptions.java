@@ -26,13 +26,17 @@
 public class SevenZFileOptions {
     private static final int DEFAUL_MEMORY_LIMIT_IN_KB = Integer.MAX_VALUE;
     private static final boolean DEFAULT_USE_DEFAULTNAME_FOR_UNNAMED_ENTRIES= false;
+    private static final int DEFAULT_FOLDER_CACHE_SIZE_IN_KB = 0;
 
     private final int maxMemoryLimitInKb;
     private final boolean useDefaultNameForUnnamedEntries;
+    private final int folderCacheSizeInKb;
 
-    private SevenZFileOptions(int maxMemoryLimitInKb, boolean useDefaultNameForUnnamedEntries) {
+    private SevenZFileOptions(int maxMemoryLimitInKb, boolean useDefaultNameForUnnamedEntries,
+        int folderCacheSizeInKb) {
         this.maxMemoryLimitInKb = maxMemoryLimitInKb;
         this.useDefaultNameForUnnamedEntries = useDefaultNameForUnnamedEntries;
+        this.folderCacheSizeInKb = folderCacheSizeInKb;
     }
 
     /**
@@ -41,10 +45,11 @@ private SevenZFileOptions(int maxMemoryLimitInKb, boolean useDefaultNameForUnnam
      * <ul>
      *   <li>no memory limit</li>
      *   <li>don't modify the name of unnamed entries</li>
+     *   <li>don't cache decoded folders</li>
      * </ul>
      */
     public static final SevenZFileOptions DEFAULT = new SevenZFileOptions(DEFAUL_MEMORY_LIMIT_IN_KB,
-        DEFAULT_USE_DEFAULTNAME_FOR_UNNAMED_ENTRIES);
+        DEFAULT_USE_DEFAULTNAME_FOR_UNNAMED_ENTRIES, DEFAULT_FOLDER_CACHE_SIZE_IN_KB);
 
     /**
      * Obtains a builder for SevenZFileOptions.
@@ -74,6 +79,16 @@ public boolean getUseDefaultNameForUnnamedEntries() {
         return useDefaultNameForUnnamedEntries;
     }
 
+    /**
+     * Gets the maximum amount of memory used to cache the decoded
+     * content of solid folders for {@link SevenZFile#getInputStream}.
+     * @return the size of the folder cache, 0 if no folders are cached
+     * @since 1.21
+     */
+    public int getFolderCacheSizeInKb() {
+        return folderCacheSizeInKb;
+    }
+
     /**
      * Mutable builder for the immutable {@link SevenZFileOptions}.
      *
@@ -82,6 +97,7 @@ public boolean getUseDefaultNameForUnnamedEntries() {
     public static class Builder {
         private int maxMemoryLimitInKb = DEFAUL_MEMORY_LIMIT_IN_KB;
         private boolean useDefaultNameForUnnamedEntries = DEFAULT_USE_DEFAULTNAME_FOR_UNNAMED_ENTRIES;
+        private int folderCacheSizeInKb = DEFAULT_FOLDER_CACHE_SIZE_IN_KB;
         /**
          * Sets the maximum amount of memory to use for
          * extraction. Not all codecs will honor this
@@ -108,13 +124,35 @@ public Builder withUseDefaultNameForUnnamedEntries(boolean useDefaultNameForUnna
             return this;
         }
 
+        /**
+         * Sets the maximum amount of memory used to cache the
+         * decoded content of solid folders.
+         *
+         * <p>Without a cache {@link SevenZFile#getInputStream}
+         * decodes all entries preceding the requested entry inside of
+         * its folder and has to start over at the beginning of the
+         * folder if an earlier entry is requested. With a cache the
+         * complete folder is decoded once and kept in memory, the
+         * least recently used folders are evicted once the cache is
+         * full. Folders bigger than the cache are never cached.</p>
+         *
+         * @param folderCacheSizeInKb size of the cache, 0 disables the cache
+         * @return the reconfigured builder
+         * @since 1.21
+         */
+        public Builder withFolderCacheSizeInKb(int folderCacheSizeInKb) {
+            this.folderCacheSizeInKb = folderCacheSizeInKb;
+            return this;
+        }
+
         /**
          * Create the {@link SevenZFileOptions}.
          *
          * @return configured {@link SevenZFileOptions}.
          */
         public SevenZFileOptions build() {
-            return new SevenZFileOptions(maxMemoryLimitInKb, useDefaultNameForUnnamedEntries);
+            return new SevenZFileOptions(maxMemoryLimitInKb, useDefaultNameForUnnamedEntries,
+                folderCacheSizeInKb);
         }
     }
 }
@@ -23,6 +23,7 @@
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -35,32 +36,57 @@
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.List;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.zip.CRC32;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
-import org.apache.commons.compress.utils.CountingOutputStream;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.TieredScatterGatherBackingStoreSupplier;
+import org.apache.commons.compress.utils.IOUtils;
 
 /**
  * Writes a 7z file.
+ *
+ * <p>By default the content of each entry is compressed separately
+ * into a folder of its own. When a solid block size has been set the
+ * contents of consecutive entries are compressed together into a
+ * single folder - a solid block - which usually improves the
+ * compression ratio for many small files at the cost of slower
+ * random access when reading the archive.</p>
+ *
+ * <p>The archive's start header at the very beginning of the file
+ * points to the archive's header that is written at the end, so
+ * writing a 7z archive requires a seekable target. When writing to a
+ * plain {@link OutputStream} the compressed data is held in a {@link
+ * ScatterGatherBackingStore} until {@link #finish} is called and
+ * copied to the stream after the start header.</p>
+ *
  * @since 1.6
  */
 public class SevenZOutputFile implements Closeable {
+    /**
+     * Default number of bytes of compressed data held in memory when
+     * writing to an {@link OutputStream} before the data is moved to
+     * a temporary file, 16MB.
+     * @since 1.21
+     */
+    public static final long DEFAULT_STREAMING_MEMORY_BUDGET = 16L * 1024 * 1024;
+
     private final SeekableByteChannel channel;
+    /** The target if writing to a non-seekable stream. */
+    private final OutputStream out;
+    /** Holds the compressed data if writing to a non-seekable stream. */
+    private final ScatterGatherBackingStore packedStore;
     private final List<SevenZArchiveEntry> files = new ArrayList<>();
-    private int numNonEmptyStreams = 0;
-    private final CRC32 crc32 = new CRC32();
-    private final CRC32 compressedCrc32 = new CRC32();
-    private long fileBytesWritten = 0;
+    /** Folders that have been written, in the order they appear inside of the archive. */
+    private final List<FolderEncoder> folders = new ArrayList<>();
     private boolean finished = false;
-    private CountingOutputStream currentOutputStream;
-    private CountingOutputStream[] additionalCountingStreams;
+    /** The folder currently being written to, if any. */
+    private FolderEncoder currentFolder;
+    private long solidBlockSize = 0;
     private Iterable<? extends SevenZMethodConfiguration> contentMethods =
             Collections.singletonList(new SevenZMethodConfiguration(SevenZMethod.LZMA2));
-    private final Map<SevenZArchiveEntry, long[]> additionalSizes = new HashMap<>();
 
     /**
      * Opens file to write a 7z archive to.
@@ -87,9 +113,44 @@ public SevenZOutputFile(final File fileName) throws IOException {
      */
     public SevenZOutputFile(final SeekableByteChannel channel) throws IOException {
         this.channel = channel;
+        this.out = null;
+        this.packedStore = null;
         channel.position(SevenZFile.SIGNATURE_HEADER_SIZE);
     }
 
+    /**
+     * Prepares a non-seekable stream to write a 7z archive to.
+     *
+     * <p>Compressed data is kept in memory up to {@link
+     * #DEFAULT_STREAMING_MEMORY_BUDGET} and moved to a temporary file
+     * once it gets bigger. Nothing is written to the stream before
+     * {@link #finish} is called.</p>
+     *
+     * @param out the stream to write to
+     * @throws IOException if the backing store cannot be created
+     * @since 1.21
+     */
+    public SevenZOutputFile(final OutputStream out) throws IOException {
+        this(out, new TieredScatterGatherBackingStoreSupplier(DEFAULT_STREAMING_MEMORY_BUDGET).get());
+    }
+
+    /**
+     * Prepares a non-seekable stream to write a 7z archive to.
+     *
+     * <p>Nothing is written to the stream before {@link #finish} is
+     * called.</p>
+     *
+     * @param out the stream to write to
+     * @param packedStore holds the compressed data until the archive
+     * is finished, will be closed when this archive is closed
+     * @since 1.21
+     */
+    public SevenZOutputFile(final OutputStream out, final ScatterGatherBackingStore packedStore) {
+        this.channel = null;
+        this.out = out;
+        this.packedStore = packedStore;
+    }
+
     /**
      * Sets the default compression method to use for entry contents - the
      * default is LZMA2.
@@ -124,6 +185,38 @@ public void setContentMethods(final Iterable<? extends SevenZMethodConfiguration
         this.contentMethods = reverse(methods);
     }
 
+    /**
+     * Sets the size of solid blocks - the default is 0.
+     *
+     * <p>If the size is positive the contents of consecutive entries
+     * are compressed into the same folder until the uncompressed size
+     * of the folder reaches the given size. A new folder is started
+     * for an entry that uses different content methods than the
+     * previous one. If the size is 0 each entry is compressed into a
+     * folder of its own.</p>
+     *
+     * @param solidBlockSize the uncompressed size of a solid block in bytes
+     * @throws IllegalArgumentException if solidBlockSize is negative
+     * @since 1.21
+     */
+    public void setSolidBlockSize(final long solidBlockSize) {
+        if (solidBlockSize < 0) {
+            throw new IllegalArgumentException("solidBlockSize must not be negative but is " + solidBlockSize);
+        }
+        this.solidBlockSize = solidBlockSize;
+    }
+
+    /**
+     * Gets the size of solid blocks.
+     *
+     * @return the uncompressed size of a solid block in bytes, 0 if
+     * each entry is compressed into a folder of its own
+     * @since 1.21
+     */
+    public long getSolidBlockSize() {
+        return solidBlockSize;
+    }
+
     /**
      * Closes the archive, calling {@link #finish} if necessary.
      *
@@ -136,7 +229,15 @@ public void close() throws IOException {
                 finish();
             }
         } finally {
-            channel.close();
+            if (channel != null) {
+                channel.close();
+            } else {
+                try {
+                    packedStore.close();
+                } finally {
+                    out.close();
+                }
+            }
         }
     }
 
@@ -169,6 +270,9 @@ public SevenZArchiveEntry createArchiveEntry(final File inputFile,
      */
     public void putArchiveEntry(final ArchiveEntry archiveEntry) throws IOException {
         final SevenZArchiveEntry entry = (SevenZArchiveEntry) archiveEntry;
+        if (currentFolder != null && !currentFolder.usesMethods(getContentMethods(entry))) {
+            closeFolder();
+        }
         files.add(entry);
     }
 
@@ -177,38 +281,13 @@ public void putArchiveEntry(final ArchiveEntry archiveEntry) throws IOException
      * @throws IOException on error
      */
     public void closeArchiveEntry() throws IOException {
-        if (currentOutputStream != null) {
-            currentOutputStream.flush();
-            currentOutputStream.close();
-        }
-
         final SevenZArchiveEntry entry = files.get(files.size() - 1);
-        if (fileBytesWritten > 0) { // this implies currentOutputStream != null
-            entry.setHasStream(true);
-            ++numNonEmptyStreams;
-            entry.setSize(currentOutputStream.getBytesWritten()); //NOSONAR
-            entry.setCompressedSize(fileBytesWritten);
-            entry.setCrcValue(crc32.getValue());
-            entry.setCompressedCrcValue(compressedCrc32.getValue());
-            entry.setHasCrc(true);
-            if (additionalCountingStreams != null) {
-                final long[] sizes = new long[additionalCountingStreams.length];
-                for (int i = 0; i < additionalCountingStreams.length; i++) {
-                    sizes[i] = additionalCountingStreams[i].getBytesWritten();
-                }
-                additionalSizes.put(entry, sizes);
-            }
-        } else {
-            entry.setHasStream(false);
-            entry.setSize(0);
-            entry.setCompressedSize(0);
-            entry.setHasCrc(false);
+        if (currentFolder == null || !currentFolder.closeEntry(entry)) {
+            FolderEncoder.setEmpty(entry);
+        }
+        if (currentFolder != null && currentFolder.getUnpackSize() >= solidBlockSize) {
+            closeFolder();
         }
-        currentOutputStream = null;
-        additionalCountingStreams = null;
-        crc32.reset();
-        compressedCrc32.reset();
-        fileBytesWritten = 0;
     }
 
     /**
@@ -217,7 +296,7 @@ public void closeArchiveEntry() throws IOException {
      * @throws IOException on error
      */
     public void write(final int b) throws IOException {
-        getCurrentOutputStream().write(b);
+        getCurrentFolder().write(b);
     }
 
     /**
@@ -238,7 +317,7 @@ public void write(final byte[] b) throws IOException {
      */
     public void write(final byte[] b, final int off, final int len) throws IOException {
         if (len > 0) {
-            getCurrentOutputStream().write(b, off, len);
+            getCurrentFolder().write(b, off, len);
         }
     }
 
@@ -252,8 +331,12 @@ public void finish() throws IOException {
             throw new IOException("This archive has already been finished");
         }
         finished = true;
+        closeFolder();
 
-        final long headerPosition = channel.position();
+        long headerPosition = SevenZFile.SIGNATURE_HEADER_SIZE;
+        for (final FolderEncoder folder : folders) {
+            headerPosition += folder.getPackedSize();
+        }
 
         final ByteArrayOutputStream headerBaos = new ByteArrayOutputStream();
         final DataOutputStream header = new DataOutputStream(headerBaos);
@@ -261,8 +344,24 @@ public void finish() throws IOException {
         writeHeader(header);
         header.flush();
         final byte[] headerBytes = headerBaos.toByteArray();
-        channel.write(ByteBuffer.wrap(headerBytes));
+        final ByteBuffer startHeader = createStartHeader(headerPosition, headerBytes);
+
+        if (channel != null) {
+            channel.write(ByteBuffer.wrap(headerBytes));
+            channel.position(0);
+            channel.write(startHeader);
+        } else {
+            packedStore.closeForWriting();
+            out.write(startHeader.array(), 0, startHeader.limit());
+            try (InputStream packed = packedStore.getInputStream()) {
+                IOUtils.copy(packed, out);
+            }
+            out.write(headerBytes);
+            out.flush();
+        }
+    }
 
+    private static ByteBuffer createStartHeader(final long headerPosition, final byte[] headerBytes) {
         final CRC32 crc32 = new CRC32();
         crc32.update(headerBytes);
 
@@ -274,7 +373,6 @@ public void finish() throws IOException {
                                             + 4 /* next header CRC */)
             .order(ByteOrder.LITTLE_ENDIAN);
         // signature header
-        channel.position(0);
         bb.put(SevenZFile.sevenZSignature);
         // version
         bb.put((byte) 0).put((byte) 2);
@@ -290,65 +388,66 @@ public void finish() throws IOException {
         crc32.update(bb.array(), SevenZFile.sevenZSignature.length + 6, 20);
         bb.putInt(SevenZFile.sevenZSignature.length + 2, (int) crc32.getValue());
         bb.flip();
-        channel.write(bb);
+        return bb;
     }
 
-    /*
-     * Creation of output stream is deferred until data is actually
-     * written as some codecs might write header information even for
-     * empty streams and directories otherwise.
+    /**
+     * Appends a folder that has been compressed elsewhere.
+     *
+     * @param entries all entries that are part of the folder - in the
+     * order they have been compressed - including entries without
+     * content that should be added to the archive at the same
+     * position
+     * @param folder the finished folder, may be null if none of the
+     * entries has any content
+     * @param compressedData the compressed data of the folder, only
+     * read if folder is not null
+     * @throws IOException if writing fails
      */
-    private OutputStream getCurrentOutputStream() throws IOException {
-        if (currentOutputStream == null) {
-            currentOutputStream = setupFileOutputStream();
+    void addCompressedFolder(final List<SevenZArchiveEntry> entries, final FolderEncoder folder,
+        final InputStream compressedData) throws IOException {
+        closeFolder();
+        if (folder != null) {
+            // doesn't need to be closed, just wraps the instance field channel or store
+            IOUtils.copy(compressedData, newPackedOutputStream()); // NOSONAR
+            folders.add(folder);
         }
-        return currentOutputStream;
+        files.addAll(entries);
     }
 
-    private CountingOutputStream setupFileOutputStream() throws IOException {
+    /*
+     * Creation of the folder is deferred until data is actually
+     * written as some codecs might write header information even for
+     * empty streams and directories otherwise.
+     */
+    private FolderEncoder getCurrentFolder() throws IOException {
         if (files.isEmpty()) {
             throw new IllegalStateException("No current 7z entry");
         }
-
-        // doesn't need to be closed, just wraps the instance field channel
-        OutputStream out = new OutputStreamWrapper(); // NOSONAR
-        final ArrayList<CountingOutputStream> moreStreams = new ArrayList<>();
-        boolean first = true;
-        for (final SevenZMethodConfiguration m : getContentMethods(files.get(files.size() - 1))) {
-            if (!first) {
-                final CountingOutputStream cos = new CountingOutputStream(out);
-                moreStreams.add(cos);
-                out = cos;
-            }
-            out = Coders.addEncoder(out, m.getMethod(), m.getOptions());
-            first = false;
-        }
-        if (!moreStreams.isEmpty()) {
-            additionalCountingStreams = moreStreams.toArray(new CountingOutputStream[0]);
+        if (currentFolder == null) {
+            // doesn't need to be closed, just wraps the instance field channel or store
+            currentFolder = new FolderEncoder(newPackedOutputStream(), // NOSONAR
+                getContentMethods(files.get(files.size() - 1)));
         }
-        return new CountingOutputStream(out) {
-            @Override
-            public void write(final int b) throws IOException {
-                super.write(b);
-                crc32.update(b);
-            }
+        return currentFolder;
+    }
 
-            @Override
-            public void write(final byte[] b) throws IOException {
-                super.write(b);
-                crc32.update(b);
-            }
+    private OutputStream newPackedOutputStream() {
+        return channel != null ? new OutputStreamWrapper() : new BackingStoreOutputStream(packedStore);
+    }
 
-            @Override
-            public void write(final byte[] b, final int off, final int len)
-                throws IOException {
-                super.write(b, off, len);
-                crc32.update(b, off, len);
+    private void closeFolder() throws IOException {
+        if (currentFolder != null) {
+            final FolderEncoder folder = currentFolder;
+            currentFolder = null;
+            folder.finish();
+            if (!folder.getEntries().isEmpty()) {
+                folders.add(folder);
             }
-        };
+        }
     }
 
-    private Iterable<? extends SevenZMethodConfiguration> getContentMethods(final SevenZArchiveEntry entry) {
+    Iterable<? extends SevenZMethodConfiguration> getContentMethods(final SevenZArchiveEntry entry) {
         final Iterable<? extends SevenZMethodConfiguration> ms = entry.getContentMethods();
         return ms == null ? contentMethods : ms;
     }
@@ -363,7 +462,7 @@ private void writeHeader(final DataOutput header) throws IOException {
     }
 
     private void writeStreamsInfo(final DataOutput header) throws IOException {
-        if (numNonEmptyStreams > 0) {
+        if (!folders.isEmpty()) {
             writePackInfo(header);
             writeUnpackInfo(header);
         }
@@ -377,21 +476,17 @@ private void writePackInfo(final DataOutput header) throws IOException {
         header.write(NID.kPackInfo);
 
         writeUint64(header, 0);
-        writeUint64(header, 0xffffFFFFL & numNonEmptyStreams);
+        writeUint64(header, 0xffffFFFFL & folders.size());
 
         header.write(NID.kSize);
-        for (final SevenZArchiveEntry entry : files) {
-            if (entry.hasStream()) {
-                writeUint64(header, entry.getCompressedSize());
-            }
+        for (final FolderEncoder folder : folders) {
+            writeUint64(header, folder.getPackedSize());
         }
 
         header.write(NID.kCRC);
         header.write(1); // "allAreDefined" == true
-        for (final SevenZArchiveEntry entry : files) {
-            if (entry.hasStream()) {
-                header.writeInt(Integer.reverseBytes((int) entry.getCompressedCrcValue()));
-            }
+        for (final FolderEncoder folder : folders) {
+            header.writeInt(Integer.reverseBytes((int) folder.getPackedCrcValue()));
         }
 
         header.write(NID.kEnd);
@@ -401,42 +496,34 @@ private void writeUnpackInfo(final DataOutput header) throws IOException {
         header.write(NID.kUnpackInfo);
 
         header.write(NID.kFolder);
-        writeUint64(header, numNonEmptyStreams);
+        writeUint64(header, folders.size());
         header.write(0);
-        for (final SevenZArchiveEntry entry : files) {
-            if (entry.hasStream()) {
-                writeFolder(header, entry);
-            }
+        for (final FolderEncoder folder : folders) {
+            writeFolder(header, folder.getMethods());
         }
 
         header.write(NID.kCodersUnpackSize);
-        for (final SevenZArchiveEntry entry : files) {
-            if (entry.hasStream()) {
-                final long[] moreSizes = additionalSizes.get(entry);
-                if (moreSizes != null) {
-                    for (final long s : moreSizes) {
-                        writeUint64(header, s);
-                    }
-                }
-                writeUint64(header, entry.getSize());
+        for (final FolderEncoder folder : folders) {
+            for (final long s : folder.getAdditionalSizes()) {
+                writeUint64(header, s);
             }
+            writeUint64(header, folder.getUnpackSize());
         }
 
         header.write(NID.kCRC);
         header.write(1); // "allAreDefined" == true
-        for (final SevenZArchiveEntry entry : files) {
-            if (entry.hasStream()) {
-                header.writeInt(Integer.reverseBytes((int) entry.getCrcValue()));
-            }
+        for (final FolderEncoder folder : folders) {
+            header.writeInt(Integer.reverseBytes((int) folder.getCrcValue()));
         }
 
         header.write(NID.kEnd);
     }
 
-    private void writeFolder(final DataOutput header, final SevenZArchiveEntry entry) throws IOException {
+    private void writeFolder(final DataOutput header, final Iterable<? extends SevenZMethodConfiguration> methods)
+        throws IOException {
         final ByteArrayOutputStream bos = new ByteArrayOutputStream();
         int numCoders = 0;
-        for (final SevenZMethodConfiguration m : getContentMethods(entry)) {
+        for (final SevenZMethodConfiguration m : methods) {
             numCoders++;
             writeSingleCodec(m, bos);
         }
@@ -469,15 +556,41 @@ private void writeSingleCodec(final SevenZMethodConfiguration m, final OutputStr
 
     private void writeSubStreamsInfo(final DataOutput header) throws IOException {
         header.write(NID.kSubStreamsInfo);
-//
-//        header.write(NID.kCRC);
-//        header.write(1);
-//        for (final SevenZArchiveEntry entry : files) {
-//            if (entry.getHasCrc()) {
-//                header.writeInt(Integer.reverseBytes(entry.getCrc()));
-//            }
-//        }
-//
+
+        boolean hasSolidFolders = false;
+        for (final FolderEncoder folder : folders) {
+            if (folder.getEntries().size() > 1) {
+                hasSolidFolders = true;
+                break;
+            }
+        }
+        if (hasSolidFolders) {
+            header.write(NID.kNumUnpackStream);
+            for (final FolderEncoder folder : folders) {
+                writeUint64(header, folder.getEntries().size());
+            }
+
+            header.write(NID.kSize);
+            for (final FolderEncoder folder : folders) {
+                final List<SevenZArchiveEntry> entries = folder.getEntries();
+                // the size of the last entry is implied by the folder's unpack size
+                for (int i = 0; i < entries.size() - 1; i++) {
+                    writeUint64(header, entries.get(i).getSize());
+                }
+            }
+
+            // the CRC of folders with a single entry is the folder's CRC
+            header.write(NID.kCRC);
+            header.write(1); // "allAreDefined" == true
+            for (final FolderEncoder folder : folders) {
+                if (folder.getEntries().size() > 1) {
+                    for (final SevenZArchiveEntry entry : folder.getEntries()) {
+                        header.writeInt(Integer.reverseBytes((int) entry.getCrcValue()));
+                    }
+                }
+            }
+        }
+
         header.write(NID.kEnd);
     }
 
@@ -777,8 +890,6 @@ public void write(final int b) throws IOException {
             buffer.clear();
             buffer.put((byte) b).flip();
             channel.write(buffer);
-            compressedCrc32.update(b);
-            fileBytesWritten++;
         }
 
         @Override
@@ -796,8 +907,6 @@ public void write(final byte[] b, final int off, final int len)
                 buffer.put(b, off, len).flip();
                 channel.write(buffer);
             }
-            compressedCrc32.update(b, off, len);
-            fileBytesWritten += len;
         }
 
         @Override
@@ -0,0 +1,349 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.tar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.utils.IOUtils;
+
+/**
+ * Creates a tar archive reading the content of entries in parallel.
+ *
+ * <p>When archiving many small files the time needed to open and
+ * read each file usually dominates the time needed to write the
+ * archive. This class reads the content of entries on the threads
+ * of an {@link ExecutorService} into memory while a single thread
+ * writes the entries - headers and data - to the target {@link
+ * TarArchiveOutputStream} in the order they have been added. The
+ * target stream may write to a compressor stream like {@link
+ * org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream}.</p>
+ *
+ * <p>As tar headers contain the size of an entry, the size must be
+ * set on each entry that is added and the content provided by the
+ * {@link InputStreamSupplier} must match it. Entries whose content is
+ * bigger than {@code maxBufferedBytes} are not read into memory: the
+ * stream is opened in the background but read synchronously by the
+ * writing thread while it copies the content to the target stream,
+ * so these entries don't benefit from parallel reading.</p>
+ *
+ * <p>All writes to the target stream happen on the client thread
+ * calling {@link #addArchiveEntry addArchiveEntry} and {@link
+ * #finish}. Adding an entry blocks - while writing entries that have
+ * been read - as long as the number of entries that have been added
+ * but not yet written reaches {@code maxPendingEntries} or the size
+ * of the content held in memory reaches {@code
+ * maxBufferedBytes}. As entries that are being read while the limit
+ * is reached still complete, the amount of buffered data may exceed
+ * {@code maxBufferedBytes} by the size of at most {@code
+ * maxPendingEntries} entries.</p>
+ *
+ * <p>{@link #finish} shuts down the {@link ExecutorService}, it
+ * can't be used for another creator afterwards.</p>
+ *
+ * <p>This class is expected to be used from a single client thread.</p>
+ *
+ * @since 1.21
+ * @NotThreadSafe
+ */
+public class ParallelTarCreator {
+
+    /**
+     * Default limit for the number of entries that have been added
+     * but not yet written.
+     */
+    public static final int DEFAULT_MAX_PENDING_ENTRIES = 256;
+
+    /**
+     * Default limit for the size of the content held in memory, 64MB.
+     */
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final TarArchiveOutputStream target;
+    private final ExecutorService es;
+    private final int maxPendingEntries;
+    private final long maxBufferedBytes;
+
+    /** Entries that have been submitted but not written, in the order they have been added. */
+    private final Deque<Future<EntryContent>> pending = new ArrayDeque<>();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    /**
+     * Entries that have been read but not yet picked up for writing,
+     * closed by {@link #abort}. Guards {@link #aborted}.
+     */
+    private final Set<EntryContent> readEntries = new HashSet<>();
+    private boolean aborted;
+
+    /**
+     * Creates a creator using default limits.
+     *
+     * @param target the stream to write the archive to
+     * @param executorService the executorService reading the content of entries, it is shut down by
+     *                        {@link #finish}
+     */
+    public ParallelTarCreator(final TarArchiveOutputStream target, final ExecutorService executorService) {
+        this(target, executorService, DEFAULT_MAX_PENDING_ENTRIES, DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    /**
+     * Creates a creator.
+     *
+     * @param target            the stream to write the archive to
+     * @param executorService   the executorService reading the content of entries, it is shut down by
+     *                          {@link #finish}
+     * @param maxPendingEntries the maximum number of entries that have been added but not written
+     * @param maxBufferedBytes  the size of the content held in memory that causes {@link
+     *                          #addArchiveEntry addArchiveEntry} to block, entries bigger than this
+     *                          are not read into memory but read by the writing thread
+     * @throws IllegalArgumentException if maxPendingEntries is not positive
+     */
+    public ParallelTarCreator(final TarArchiveOutputStream target, final ExecutorService executorService,
+                              final int maxPendingEntries, final long maxBufferedBytes) {
+        if (maxPendingEntries <= 0) {
+            throw new IllegalArgumentException("maxPendingEntries must be positive but is " + maxPendingEntries);
+        }
+        this.target = target;
+        this.es = executorService;
+        this.maxPendingEntries = maxPendingEntries;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Adds an archive entry to this archive.
+     *
+     * <p>May write entries that have been read to the target stream
+     * and blocks if too many entries are pending.</p>
+     *
+     * @param entry  The entry to add, its size must have been set.
+     * @param source The source of the entry's content, may be null
+     *               for entries without content like directories or
+     *               links.
+     * @throws IOException          If writing fails
+     * @throws InterruptedException If we get interrupted
+     * @throws ExecutionException   If something happens in the parallel execution
+     * @throws IllegalArgumentException if the entry has content but no source
+     * @throws IllegalStateException if an earlier failure has aborted the creator
+     */
+    public void addArchiveEntry(final TarArchiveEntry entry, final InputStreamSupplier source)
+        throws IOException, InterruptedException, ExecutionException {
+        ensureNotAborted();
+        final boolean hasContent = !entry.isDirectory() && entry.getSize() > 0;
+        if (hasContent && source == null) {
+            throw new IllegalArgumentException("No source provided for " + entry.getName());
+        }
+        boolean success = false;
+        try {
+            while (!pending.isEmpty()
+                   && (pending.size() >= maxPendingEntries || bufferedBytes.get() >= maxBufferedBytes)) {
+                writeReadEntries(true);
+            }
+            pending.add(es.submit(createCallable(entry, hasContent ? source : null)));
+            writeReadEntries(false);
+            success = true;
+        } finally {
+            if (!success) {
+                abort();
+            }
+        }
+    }
+
+    /**
+     * Waits for all entries to be read and writes them to the target
+     * stream.
+     *
+     * <p>Calling this method will shut down the {@link ExecutorService} used by this class. The target stream
+     * is neither finished nor closed.</p>
+     *
+     * @throws IOException          If writing fails
+     * @throws InterruptedException If we get interrupted
+     * @throws ExecutionException   If something happens in the parallel execution
+     * @throws IllegalStateException if an earlier failure has aborted the creator
+     */
+    public void finish() throws IOException, InterruptedException, ExecutionException {
+        boolean success = false;
+        try {
+            ensureNotAborted();
+            while (!pending.isEmpty()) {
+                writeReadEntries(true);
+            }
+            success = true;
+        } finally {
+            es.shutdown();
+            if (!success) {
+                abort();
+            }
+        }
+    }
+
+    /**
+     * The size of the content held in memory waiting to be written.
+     * @return the number of bytes held in memory
+     */
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    private Callable<EntryContent> createCallable(final TarArchiveEntry entry, final InputStreamSupplier source) {
+        return new Callable<EntryContent>() {
+            @Override
+            public EntryContent call() throws Exception {
+                final EntryContent content = source == null ? new EntryContent(entry, null, null)
+                    : read(entry, source);
+                synchronized (readEntries) {
+                    if (aborted) {
+                        // nobody is going to write the entry, release it right away
+                        content.close();
+                        return null;
+                    }
+                    readEntries.add(content);
+                }
+                return content;
+            }
+        };
+    }
+
+    private EntryContent read(final TarArchiveEntry entry, final InputStreamSupplier source) throws IOException {
+        final long size = entry.getSize();
+        final InputStream in = source.get();
+        if (size > maxBufferedBytes || size > MAX_ARRAY_SIZE) {
+            return new EntryContent(entry, null, in);
+        }
+        try {
+            final byte[] content = new byte[(int) size];
+            if (IOUtils.readFully(in, content) != content.length) {
+                throw new IOException("Content of " + entry.getName() + " is shorter than its size " + size);
+            }
+            if (in.read() != -1) {
+                throw new IOException("Content of " + entry.getName() + " is longer than its size " + size);
+            }
+            bufferedBytes.addAndGet(size);
+            return new EntryContent(entry, content, null);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes entries that have been read to the target stream.
+     *
+     * @param block whether to wait for an entry to be read if none is
+     * ready
+     */
+    private void writeReadEntries(final boolean block)
+        throws IOException, InterruptedException, ExecutionException {
+        boolean mayBlock = block;
+        while (!pending.isEmpty()) {
+            if (!mayBlock && !pending.peek().isDone()) {
+                return;
+            }
+            final EntryContent content = pending.poll().get();
+            synchronized (readEntries) {
+                readEntries.remove(content);
+            }
+            try {
+                content.writeTo(target);
+            } finally {
+                content.close();
+            }
+            mayBlock = false;
+        }
+    }
+
+    private void ensureNotAborted() {
+        synchronized (readEntries) {
+            if (aborted) {
+                throw new IllegalStateException("creator has been aborted");
+            }
+        }
+    }
+
+    /**
+     * Cancels all pending entries and releases the resources they hold.
+     *
+     * <p>Entries that are being read are not interrupted - an
+     * interrupt might close channels used by the source - but release
+     * their content once they complete.</p>
+     */
+    private void abort() {
+        for (final Future<EntryContent> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        synchronized (readEntries) {
+            aborted = true;
+            for (final EntryContent content : readEntries) {
+                try {
+                    content.close();
+                } catch (IOException ex) { //NOSONAR
+                    // no way to properly log this
+                }
+            }
+            readEntries.clear();
+        }
+    }
+
+    /**
+     * The content of a single entry, either held in memory or as a
+     * stream that has been opened but not read.
+     */
+    private class EntryContent implements Closeable {
+        private final TarArchiveEntry entry;
+        private final byte[] content;
+        private final InputStream stream;
+
+        EntryContent(final TarArchiveEntry entry, final byte[] content, final InputStream stream) {
+            this.entry = entry;
+            this.content = content;
+            this.stream = stream;
+        }
+
+        void writeTo(final TarArchiveOutputStream out) throws IOException {
+            out.putArchiveEntry(entry);
+            if (content != null) {
+                out.write(content);
+            } else if (stream != null) {
+                IOUtils.copy(stream, out);
+            }
+            out.closeArchiveEntry();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (content != null) {
+                bufferedBytes.addAndGet(-content.length);
+            }
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+}
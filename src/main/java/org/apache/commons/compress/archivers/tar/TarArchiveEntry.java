@@ -39,6 +39,7 @@
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.EntryStreamOffsets;
 import org.apache.commons.compress.archivers.zip.ZipEncoding;
 import org.apache.commons.compress.utils.ArchiveUtils;
 
@@ -156,7 +157,7 @@
  * @NotThreadSafe
  */
 
-public class TarArchiveEntry implements ArchiveEntry, TarConstants {
+public class TarArchiveEntry implements ArchiveEntry, TarConstants, EntryStreamOffsets {
     private static final TarArchiveEntry[] EMPTY_TAR_ARCHIVE_ENTRIES = new TarArchiveEntry[0];
 
     /**
@@ -235,9 +236,22 @@ public class TarArchiveEntry implements ArchiveEntry, TarConstants {
     /** The entry's file reference */
     private final Path file;
 
+    /** Position of the entry's data inside of the archive, if read by {@link TarFile}. */
+    private long dataOffset = OFFSET_UNKNOWN;
+
     /** Extra, user supplied pax headers     */
     private final Map<String,String> extraPaxHeaders = new HashMap<>();
 
+    /**
+     * Header the link, user and group names still need to be decoded
+     * from, if the entry has been read by {@link
+     * TarArchiveInputStream#forEachEntry}.
+     */
+    private byte[] undecodedNamesHeader;
+
+    /** Encoding to use for {@link #undecodedNamesHeader}. */
+    private ZipEncoding undecodedNamesEncoding;
+
     /** Maximum length of a user's name in the tar file */
     public static final int MAX_NAMELEN = 31;
 
@@ -506,7 +520,8 @@ private void readFileMode(Path file, String normalizedName) throws IOException {
      * @throws IllegalArgumentException if any of the numeric fields have an invalid format
      */
     public TarArchiveEntry(final byte[] headerBuf) {
-        this(false);
+        this.file = null;
+        this.preserveAbsolutePath = false;
         parseTarHeader(headerBuf);
     }
 
@@ -539,8 +554,9 @@ public TarArchiveEntry(final byte[] headerBuf, final ZipEncoding encoding)
      */
     public TarArchiveEntry(final byte[] headerBuf, final ZipEncoding encoding, boolean lenient)
         throws IOException {
-        this(false);
-        parseTarHeader(headerBuf, encoding, false, lenient);
+        this.file = null;
+        this.preserveAbsolutePath = false;
+        parseTarHeader(headerBuf, encoding, false, lenient, false);
     }
 
     /**
@@ -627,6 +643,7 @@ public void setMode(final int mode) {
      * @return This entry's link name.
      */
     public String getLinkName() {
+        decodeNames();
         return linkName;
     }
 
@@ -638,6 +655,7 @@ public String getLinkName() {
      * @since 1.1
      */
     public void setLinkName(final String link) {
+        decodeNames();
         this.linkName = link;
     }
 
@@ -729,6 +747,7 @@ public void setGroupId(final long groupId) {
      * @return This entry's user name.
      */
     public String getUserName() {
+        decodeNames();
         return userName;
     }
 
@@ -738,6 +757,7 @@ public String getUserName() {
      * @param userName This entry's new user name.
      */
     public void setUserName(final String userName) {
+        decodeNames();
         this.userName = userName;
     }
 
@@ -747,6 +767,7 @@ public void setUserName(final String userName) {
      * @return This entry's group name.
      */
     public String getGroupName() {
+        decodeNames();
         return groupName;
     }
 
@@ -756,6 +777,7 @@ public String getGroupName() {
      * @param groupName This entry's new group name.
      */
     public void setGroupName(final String groupName) {
+        decodeNames();
         this.groupName = groupName;
     }
 
@@ -882,6 +904,41 @@ public long getSize() {
         return size;
     }
 
+    /**
+     * Get the offset of this entry's data inside of the archive.
+     *
+     * <p>Only known for entries read by {@link TarFile}. For sparse
+     * entries this is the offset of the first chunk of stored
+     * data.</p>
+     *
+     * @return the offset of the entry's data or {@link #OFFSET_UNKNOWN}
+     * @since 1.21
+     */
+    @Override
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * Sets the offset of this entry's data inside of the archive.
+     *
+     * @param dataOffset new value of data offset.
+     */
+    void setDataOffset(final long dataOffset) {
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * The data of a tar entry is always stored in one piece.
+     *
+     * @return true
+     * @since 1.21
+     */
+    @Override
+    public boolean isStreamContiguous() {
+        return true;
+    }
+
     /**
      * Set this entry's sparse headers
      * @param sparseHeaders The new sparse headers
@@ -1376,6 +1433,7 @@ public void writeEntryHeader(final byte[] outbuf) {
      */
     public void writeEntryHeader(final byte[] outbuf, final ZipEncoding encoding,
                                  final boolean starMode) throws IOException {
+        decodeNames();
         int offset = 0;
 
         offset = TarUtils.formatNameBytes(name, outbuf, offset, NAMELEN,
@@ -1442,7 +1500,7 @@ public void parseTarHeader(final byte[] header) {
             parseTarHeader(header, TarUtils.DEFAULT_ENCODING);
         } catch (final IOException ex) { // NOSONAR
             try {
-                parseTarHeader(header, TarUtils.DEFAULT_ENCODING, true, false);
+                parseTarHeader(header, TarUtils.DEFAULT_ENCODING, true, false, false);
             } catch (final IOException ex2) {
                 // not really possible
                 throw new RuntimeException(ex2); //NOSONAR
@@ -1462,13 +1520,46 @@ public void parseTarHeader(final byte[] header) {
      */
     public void parseTarHeader(final byte[] header, final ZipEncoding encoding)
         throws IOException {
-        parseTarHeader(header, encoding, false, false);
+        parseTarHeader(header, encoding, false, false, false);
+    }
+
+    /**
+     * Replaces the state of this entry with the information parsed
+     * from an archive's header.
+     *
+     * <p>Link, user and group names are only decoded when they are
+     * requested, so the header must not be modified as long as they
+     * may be requested. Names that cannot be decoded using the given
+     * encoding are decoded like {@link TarUtils#parseName(byte[], int,
+     * int)} does.</p>
+     *
+     * @param header The tar entry header buffer to get information from.
+     * @param encoding encoding to use for file names
+     * @param lenient whether to ignore illegal values of numeric fields
+     * @throws IOException on error
+     */
+    void reuseForHeader(final byte[] header, final ZipEncoding encoding, final boolean lenient)
+        throws IOException {
+        devMajor = 0;
+        devMinor = 0;
+        sparseHeaders = null;
+        isExtended = false;
+        realSize = 0;
+        paxGNUSparse = false;
+        paxGNU1XSparse = false;
+        starSparse = false;
+        dataOffset = OFFSET_UNKNOWN;
+        extraPaxHeaders.clear();
+        parseTarHeader(header, encoding, false, lenient, true);
     }
 
     private void parseTarHeader(final byte[] header, final ZipEncoding encoding,
-                                final boolean oldStyle, final boolean lenient)
+                                final boolean oldStyle, final boolean lenient,
+                                final boolean lazyNames)
         throws IOException {
         int offset = 0;
+        undecodedNamesHeader = lazyNames ? header : null;
+        undecodedNamesEncoding = lazyNames ? encoding : null;
 
         name = oldStyle ? TarUtils.parseName(header, offset, NAMELEN)
             : TarUtils.parseName(header, offset, NAMELEN, encoding);
@@ -1486,18 +1577,24 @@ private void parseTarHeader(final byte[] header, final ZipEncoding encoding,
         checkSumOK = TarUtils.verifyCheckSum(header);
         offset += CHKSUMLEN;
         linkFlag = header[offset++];
-        linkName = oldStyle ? TarUtils.parseName(header, offset, NAMELEN)
-            : TarUtils.parseName(header, offset, NAMELEN, encoding);
+        if (!lazyNames) {
+            linkName = oldStyle ? TarUtils.parseName(header, offset, NAMELEN)
+                : TarUtils.parseName(header, offset, NAMELEN, encoding);
+        }
         offset += NAMELEN;
         magic = TarUtils.parseName(header, offset, MAGICLEN);
         offset += MAGICLEN;
         version = TarUtils.parseName(header, offset, VERSIONLEN);
         offset += VERSIONLEN;
-        userName = oldStyle ? TarUtils.parseName(header, offset, UNAMELEN)
-            : TarUtils.parseName(header, offset, UNAMELEN, encoding);
+        if (!lazyNames) {
+            userName = oldStyle ? TarUtils.parseName(header, offset, UNAMELEN)
+                : TarUtils.parseName(header, offset, UNAMELEN, encoding);
+        }
         offset += UNAMELEN;
-        groupName = oldStyle ? TarUtils.parseName(header, offset, GNAMELEN)
-            : TarUtils.parseName(header, offset, GNAMELEN, encoding);
+        if (!lazyNames) {
+            groupName = oldStyle ? TarUtils.parseName(header, offset, GNAMELEN)
+                : TarUtils.parseName(header, offset, GNAMELEN, encoding);
+        }
         offset += GNAMELEN;
         if (linkFlag == LF_CHR || linkFlag == LF_BLK) {
             devMajor = (int) parseOctalOrBinary(header, offset, DEVLEN, lenient);
@@ -1559,6 +1656,33 @@ private void parseTarHeader(final byte[] header, final ZipEncoding encoding,
         }
     }
 
+    /**
+     * Decodes the link, user and group names if their decoding has
+     * been deferred by {@link #reuseForHeader}.
+     */
+    private void decodeNames() {
+        final byte[] header = undecodedNamesHeader;
+        if (header == null) {
+            return;
+        }
+        undecodedNamesHeader = null;
+        final int linkNameOffset = CHKSUM_OFFSET + CHKSUMLEN + 1;
+        final int userNameOffset = linkNameOffset + NAMELEN + MAGICLEN + VERSIONLEN;
+        linkName = parseName(header, linkNameOffset, NAMELEN, undecodedNamesEncoding);
+        userName = parseName(header, userNameOffset, UNAMELEN, undecodedNamesEncoding);
+        groupName = parseName(header, userNameOffset + UNAMELEN, GNAMELEN, undecodedNamesEncoding);
+        undecodedNamesEncoding = null;
+    }
+
+    private static String parseName(final byte[] header, final int offset, final int length,
+                                    final ZipEncoding encoding) {
+        try {
+            return TarUtils.parseName(header, offset, length, encoding);
+        } catch (final IOException ex) { // NOSONAR
+            return TarUtils.parseName(header, offset, length);
+        }
+    }
+
     private long parseOctalOrBinary(byte[] header, int offset, int length, boolean lenient) {
         if (lenient) {
             try {
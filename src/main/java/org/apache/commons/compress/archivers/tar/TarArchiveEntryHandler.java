@@ -0,0 +1,46 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.tar;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives the entries of an archive read by {@link
+ * TarArchiveInputStream#forEachEntry}.
+ *
+ * @since 1.21
+ */
+public interface TarArchiveEntryHandler {
+
+    /**
+     * Handles a single entry.
+     *
+     * @param entry the entry. The instance may be reused for
+     * subsequent entries and must not be used after this method
+     * returns.
+     * @param content the content of the entry. It doesn't need to be
+     * read completely and must not be used after this method
+     * returns, closing it has no effect.
+     * @return whether to continue with the next entry
+     * @throws IOException if handling the entry fails, the exception
+     * is propagated to the caller of {@link
+     * TarArchiveInputStream#forEachEntry}
+     */
+    boolean handle(TarArchiveEntry entry, InputStream content) throws IOException;
+}
@@ -24,9 +24,12 @@
 package org.apache.commons.compress.archivers.tar;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -40,7 +43,7 @@
 import org.apache.commons.compress.archivers.zip.ZipEncodingHelper;
 import org.apache.commons.compress.utils.ArchiveUtils;
 import org.apache.commons.compress.utils.BoundedInputStream;
-import org.apache.commons.compress.utils.CharsetNames;
+import org.apache.commons.compress.utils.CloseShieldFilterInputStream;
 import org.apache.commons.compress.utils.IOUtils;
 
 /**
@@ -54,6 +57,8 @@ public class TarArchiveInputStream extends ArchiveInputStream {
 
     private static final int SMALL_BUFFER_SIZE = 256;
 
+    private static final int LINK_FLAG_OFFSET = TarConstants.CHKSUM_OFFSET + TarConstants.CHKSUMLEN;
+
     private final byte[] smallBuf = new byte[SMALL_BUFFER_SIZE];
 
     /** The size the TAR header */
@@ -77,6 +82,9 @@ public class TarArchiveInputStream extends ArchiveInputStream {
     /** An input stream to read from */
     private final InputStream inputStream;
 
+    /** The channel behind inputStream if it is seekable, used to skip without reading */
+    private final SeekableByteChannel seekableChannel;
+
     /** Input streams for reading sparse entries **/
     private List<InputStream> sparseInputStreams;
 
@@ -100,6 +108,9 @@ public class TarArchiveInputStream extends ArchiveInputStream {
 
     private final boolean lenient;
 
+    // the entry reused by forEachEntry
+    private TarArchiveEntry reusableEntry;
+
     /**
      * Constructor for TarInputStream.
      * @param is the input stream to use
@@ -188,7 +199,34 @@ public TarArchiveInputStream(final InputStream is, final int blockSize, final in
      */
     public TarArchiveInputStream(final InputStream is, final int blockSize, final int recordSize,
                                  final String encoding, boolean lenient) {
+        this(is, seekableChannelOf(is), blockSize, recordSize, encoding, lenient);
+    }
+
+    /**
+     * Constructor for TarInputStream reading from a channel.
+     *
+     * <p>Data of entries that is not read is skipped by changing the
+     * position of the channel rather than by reading it.</p>
+     *
+     * @param channel the channel to read from
+     * @param blockSize the block size to use
+     * @param recordSize the record size to use
+     * @param encoding name of the encoding to use for file names
+     * @param lenient when set to true illegal values for group/userid, mode, device numbers and timestamp will be
+     * ignored and the fields set to {@link TarArchiveEntry#UNKNOWN}. When set to false such illegal fields cause an
+     * exception instead.
+     * @since 1.21
+     */
+    public TarArchiveInputStream(final SeekableByteChannel channel, final int blockSize, final int recordSize,
+                                 final String encoding, boolean lenient) {
+        this(Channels.newInputStream(channel), channel, blockSize, recordSize, encoding, lenient);
+    }
+
+    private TarArchiveInputStream(final InputStream is, final SeekableByteChannel seekableChannel,
+                                  final int blockSize, final int recordSize, final String encoding,
+                                  final boolean lenient) {
         this.inputStream = is;
+        this.seekableChannel = seekableChannel;
         this.hasHitEOF = false;
         this.encoding = encoding;
         this.zipEncoding = ZipEncodingHelper.getZipEncoding(encoding);
@@ -273,7 +311,7 @@ public long skip(final long n) throws IOException {
         final long available = currEntry.getRealSize() - entryOffset;
         final long skipped;
         if (!currEntry.isSparse()) {
-            skipped = IOUtils.skip(inputStream, Math.min(n, available));
+            skipped = skipInput(Math.min(n, available));
         } else {
             skipped = skipSparse(Math.min(n, available));
         }
@@ -350,6 +388,42 @@ public synchronized void reset() {
      * @throws IOException on error
      */
     public TarArchiveEntry getNextTarEntry() throws IOException {
+        return getNextTarEntry(false);
+    }
+
+    /**
+     * Passes all remaining entries of the archive to a handler,
+     * allocating as little memory per entry as possible.
+     *
+     * <p>Unlike {@link #getNextTarEntry} this method reuses a single
+     * {@link TarArchiveEntry} instance for all entries that consist of
+     * a single header - i.e. entries without PAX headers, GNU long
+     * names or sparse headers - and only decodes the link, user and
+     * group names of those entries if they are requested. Names that
+     * cannot be decoded using the archive's encoding are decoded like
+     * {@link TarUtils#parseName(byte[], int, int)} does rather than
+     * causing an exception. Handlers must copy whatever information
+     * they need to retain before they return.</p>
+     *
+     * <p>The content that has not been read by the handler is skipped
+     * before the next entry is read.</p>
+     *
+     * @param handler receives the entries
+     * @throws IOException if reading the archive fails or the handler
+     * throws an exception
+     * @since 1.21
+     */
+    public void forEachEntry(final TarArchiveEntryHandler handler) throws IOException {
+        final InputStream content = new CloseShieldFilterInputStream(this);
+        TarArchiveEntry entry;
+        while ((entry = getNextTarEntry(true)) != null) {
+            if (!handler.handle(entry, content)) {
+                return;
+            }
+        }
+    }
+
+    private TarArchiveEntry getNextTarEntry(final boolean reuseEntry) throws IOException {
         if (isAtEOF()) {
             return null;
         }
@@ -371,7 +445,15 @@ public TarArchiveEntry getNextTarEntry() throws IOException {
         }
 
         try {
-            currEntry = new TarArchiveEntry(headerBuf, zipEncoding, lenient);
+            if (reuseEntry && isSingleHeader(headerBuf)) {
+                if (reusableEntry == null) {
+                    reusableEntry = new TarArchiveEntry("");
+                }
+                reusableEntry.reuseForHeader(headerBuf, zipEncoding, lenient);
+                currEntry = reusableEntry;
+            } else {
+                currEntry = new TarArchiveEntry(headerBuf, zipEncoding, lenient);
+            }
         } catch (final IllegalArgumentException e) {
             throw new IOException("Error detected parsing the header", e);
         }
@@ -434,6 +516,24 @@ public TarArchiveEntry getNextTarEntry() throws IOException {
         return currEntry;
     }
 
+    /**
+     * Whether the header describes an entry completely, i.e. no other
+     * headers have to be read and the header record will not be
+     * overwritten before the next entry is read.
+     */
+    private boolean isSingleHeader(final byte[] header) {
+        if (!globalPaxHeaders.isEmpty()) {
+            return false;
+        }
+        final byte linkFlag = header[LINK_FLAG_OFFSET];
+        return linkFlag != TarConstants.LF_GNUTYPE_LONGLINK
+            && linkFlag != TarConstants.LF_GNUTYPE_LONGNAME
+            && linkFlag != TarConstants.LF_GNUTYPE_SPARSE
+            && linkFlag != TarConstants.LF_PAX_EXTENDED_HEADER_LC
+            && linkFlag != TarConstants.LF_PAX_EXTENDED_HEADER_UC
+            && linkFlag != TarConstants.LF_PAX_GLOBAL_EXTENDED_HEADER;
+    }
+
     /**
      * The last record block should be written at the full size, so skip any
      * additional space used to fill a record after an entry
@@ -442,11 +542,51 @@ private void skipRecordPadding() throws IOException {
         if (!isDirectory() && this.entrySize > 0 && this.entrySize % this.recordSize != 0) {
             final long numRecords = (this.entrySize / this.recordSize) + 1;
             final long padding = (numRecords * this.recordSize) - this.entrySize;
-            final long skipped = IOUtils.skip(inputStream, padding);
+            final long skipped = skipInput(padding);
             count(skipped);
         }
     }
 
+    /**
+     * Skips bytes of the underlying stream, repositioning the channel
+     * behind it rather than reading if possible.
+     */
+    private long skipInput(final long n) throws IOException {
+        if (seekableChannel != null) {
+            final long position = seekableChannel.position();
+            final long size = seekableChannel.size();
+            if (position <= size) {
+                final long skipped = Math.min(n, size - position);
+                seekableChannel.position(position + skipped);
+                return skipped;
+            }
+        }
+        return IOUtils.skip(inputStream, n);
+    }
+
+    /**
+     * Finds the channel of a stream reading from a regular file.
+     *
+     * @return the channel or null if the stream is not backed by a
+     * seekable channel
+     */
+    private static SeekableByteChannel seekableChannelOf(final InputStream is) {
+        if (is instanceof FileInputStream) {
+            final FileChannel channel = ((FileInputStream) is).getChannel();
+            try {
+                // pipes and character devices either fail to tell their
+                // position or don't have a size
+                channel.position();
+                if (channel.size() > 0) {
+                    return channel;
+                }
+            } catch (final IOException ex) { // NOPMD
+                // not seekable, skip by reading
+            }
+        }
+        return null;
+    }
+
     /**
      * Get the next entry in this tar archive as longname data.
      *
@@ -568,7 +708,7 @@ private void paxHeaders() throws IOException{
 
         // for 0.1 PAX Headers
         if (headers.containsKey("GNU.sparse.map")) {
-            sparseHeaders = parsePAX01SparseHeaders(headers.get("GNU.sparse.map"));
+            sparseHeaders = TarUtils.parsePAX01SparseHeaders(headers.get("GNU.sparse.map"));
         }
         getNextEntry(); // Get the actual file entry
         if (currEntry == null) {
@@ -578,7 +718,7 @@ private void paxHeaders() throws IOException{
 
         // for 1.0 PAX Format, the sparse map is stored in the file data block
         if (currEntry.isPaxGNU1XSparse()) {
-            sparseHeaders = parsePAX1XSparseHeaders();
+            sparseHeaders = TarUtils.parsePAX1XSparseHeaders(inputStream, recordSize);
             currEntry.setSparseHeaders(sparseHeaders);
         }
 
@@ -588,190 +728,13 @@ private void paxHeaders() throws IOException{
     }
 
     /**
-     * For PAX Format 0.1, the sparse headers are stored in a single variable : GNU.sparse.map
-     * GNU.sparse.map
-     *    Map of non-null data chunks. It is a string consisting of comma-separated values "offset,size[,offset-1,size-1...]"
-     *
-     * @param sparseMap the sparse map string consisting of comma-separated values "offset,size[,offset-1,size-1...]"
-     * @return sparse headers parsed from sparse map
-     * @throws IOException
-     */
-    private List<TarArchiveStructSparse> parsePAX01SparseHeaders(String sparseMap) throws IOException {
-        List<TarArchiveStructSparse> sparseHeaders = new ArrayList<>();
-        String[] sparseHeaderStrings = sparseMap.split(",");
-
-        for (int i = 0; i < sparseHeaderStrings.length;i += 2) {
-            long sparseOffset = Long.parseLong(sparseHeaderStrings[i]);
-            long sparseNumbytes = Long.parseLong(sparseHeaderStrings[i + 1]);
-            sparseHeaders.add(new TarArchiveStructSparse(sparseOffset, sparseNumbytes));
-        }
-
-        return sparseHeaders;
-    }
-
-    /**
-     * For PAX Format 1.X:
-     * The sparse map itself is stored in the file data block, preceding the actual file data.
-     * It consists of a series of decimal numbers delimited by newlines. The map is padded with nulls to the nearest block boundary.
-     * The first number gives the number of entries in the map. Following are map entries, each one consisting of two numbers
-     * giving the offset and size of the data block it describes.
-     * @return sparse headers
-     * @throws IOException
-     */
-    private List<TarArchiveStructSparse> parsePAX1XSparseHeaders() throws IOException {
-        // for 1.X PAX Headers
-        List<TarArchiveStructSparse> sparseHeaders = new ArrayList<>();
-        long bytesRead = 0;
-
-        long[] readResult = readLineOfNumberForPax1X(inputStream);
-        long sparseHeadersCount = readResult[0];
-        bytesRead += readResult[1];
-        while (sparseHeadersCount-- > 0) {
-            readResult = readLineOfNumberForPax1X(inputStream);
-            long sparseOffset = readResult[0];
-            bytesRead += readResult[1];
-
-            readResult = readLineOfNumberForPax1X(inputStream);
-            long sparseNumbytes = readResult[0];
-            bytesRead += readResult[1];
-            sparseHeaders.add(new TarArchiveStructSparse(sparseOffset, sparseNumbytes));
-        }
-
-        // skip the rest of this record data
-        long bytesToSkip = recordSize - bytesRead % recordSize;
-        IOUtils.skip(inputStream, bytesToSkip);
-        return sparseHeaders;
-    }
-
-    /**
-     * For 1.X PAX Format, the sparse headers are stored in the file data block, preceding the actual file data.
-     * It consists of a series of decimal numbers delimited by newlines.
+     * Parses the PAX headers of the current (local or global) PAX headers tar entry.
      *
-     * @param inputStream the input stream of the tar file
-     * @return the decimal number delimited by '\n', and the bytes read from input stream
-     * @throws IOException
+     * @see TarUtils#parsePaxHeaders
      */
-    private long[] readLineOfNumberForPax1X(InputStream inputStream) throws IOException {
-        int number;
-        long result = 0;
-        long bytesRead = 0;
-
-        while((number = inputStream.read()) != '\n') {
-            bytesRead += 1;
-            if(number == -1) {
-                throw new IOException("Unexpected EOF when reading parse information of 1.X PAX format");
-            }
-            result = result * 10 + (number - '0');
-        }
-        bytesRead += 1;
-
-        return new long[] {result, bytesRead};
-    }
-
-    /**
-     * For PAX Format 0.0, the sparse headers(GNU.sparse.offset and GNU.sparse.numbytes)
-     * may appear multi times, and they look like:
-     *
-     * GNU.sparse.size=size
-     * GNU.sparse.numblocks=numblocks
-     * repeat numblocks times
-     *   GNU.sparse.offset=offset
-     *   GNU.sparse.numbytes=numbytes
-     * end repeat
-     *
-     * For PAX Format 0.1, the sparse headers are stored in a single variable : GNU.sparse.map
-     *
-     * GNU.sparse.map
-     *    Map of non-null data chunks. It is a string consisting of comma-separated values "offset,size[,offset-1,size-1...]"
-     *
-     * @param inputStream inputStream to read keys and values
-     * @param sparseHeaders used in PAX Format 0.0 &amp; 0.1, as it may appear multi times,
-     *                      the sparse headers need to be stored in an array, not a map
-     * @return map of PAX headers values found inside of the current (local or global) PAX headers tar entry.
-     * @throws IOException
-     */
-    Map<String, String> parsePaxHeaders(final InputStream inputStream, List<TarArchiveStructSparse> sparseHeaders)
+    Map<String, String> parsePaxHeaders(final InputStream inputStream, final List<TarArchiveStructSparse> sparseHeaders)
         throws IOException {
-        final Map<String, String> headers = new HashMap<>(globalPaxHeaders);
-        Long offset = null;
-        // Format is "length keyword=value\n";
-        while(true) { // get length
-            int ch;
-            int len = 0;
-            int read = 0;
-            while((ch = inputStream.read()) != -1) {
-                read++;
-                if (ch == '\n') { // blank line in header
-                    break;
-                } else if (ch == ' '){ // End of length string
-                    // Get keyword
-                    final ByteArrayOutputStream coll = new ByteArrayOutputStream();
-                    while((ch = inputStream.read()) != -1) {
-                        read++;
-                        if (ch == '='){ // end of keyword
-                            final String keyword = coll.toString(CharsetNames.UTF_8);
-                            // Get rest of entry
-                            final int restLen = len - read;
-                            if (restLen == 1) { // only NL
-                                headers.remove(keyword);
-                            } else {
-                                final byte[] rest = new byte[restLen];
-                                final int got = IOUtils.readFully(inputStream, rest);
-                                if (got != restLen) {
-                                    throw new IOException("Failed to read "
-                                                          + "Paxheader. Expected "
-                                                          + restLen
-                                                          + " bytes, read "
-                                                          + got);
-                                }
-                                // Drop trailing NL
-                                final String value = new String(rest, 0,
-                                                          restLen - 1, StandardCharsets.UTF_8);
-                                headers.put(keyword, value);
-
-                                // for 0.0 PAX Headers
-                                if (keyword.equals("GNU.sparse.offset")) {
-                                    if (offset != null) {
-                                        // previous GNU.sparse.offset header but but no numBytes
-                                        sparseHeaders.add(new TarArchiveStructSparse(offset, 0));
-                                    }
-                                    offset = Long.valueOf(value);
-                                }
-
-                                // for 0.0 PAX Headers
-                                if (keyword.equals("GNU.sparse.numbytes")) {
-                                    if (offset == null) {
-                                        throw new IOException("Failed to read Paxheader." +
-                                                "GNU.sparse.offset is expected before GNU.sparse.numbytes shows up.");
-                                    }
-                                    sparseHeaders.add(new TarArchiveStructSparse(offset, Long.parseLong(value)));
-                                    offset = null;
-                                }
-                            }
-                            break;
-                        }
-                        coll.write((byte) ch);
-                    }
-                    break; // Processed single header
-                }
-
-                // COMPRESS-530 : throw if we encounter a non-number while reading length
-                if (ch < '0' || ch > '9') {
-                    throw new IOException("Failed to read Paxheader. Encountered a non-number while reading length");
-                }
-
-                len *= 10;
-                len += ch - '0';
-            }
-            if (ch == -1){ // EOF
-                break;
-            }
-        }
-        if (offset != null) {
-            // offset but no numBytes
-            sparseHeaders.add(new TarArchiveStructSparse(offset, 0));
-        }
-        return headers;
+        return TarUtils.parsePaxHeaders(inputStream, sparseHeaders, globalPaxHeaders);
     }
 
     private void applyPaxHeadersToCurrentEntry(final Map<String, String> headers, final List<TarArchiveStructSparse> sparseHeaders) {
@@ -1005,7 +968,7 @@ protected final void setAtEOF(final boolean b) {
     private void consumeRemainderOfLastBlock() throws IOException {
         final long bytesReadOfLastBlock = getBytesRead() % blockSize;
         if (bytesReadOfLastBlock > 0) {
-            final long skipped = IOUtils.skip(inputStream, blockSize - bytesReadOfLastBlock);
+            final long skipped = skipInput(blockSize - bytesReadOfLastBlock);
             count(skipped);
         }
     }
@@ -0,0 +1,584 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.archivers.tar;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.zip.ZipEncoding;
+import org.apache.commons.compress.archivers.zip.ZipEncodingHelper;
+import org.apache.commons.compress.utils.ArchiveUtils;
+import org.apache.commons.compress.utils.BoundedInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.PositionedReadableChannel;
+
+/**
+ * Provides random access to UNIX tar archives.
+ *
+ * <p>Unlike {@link TarArchiveInputStream}, which has to read the
+ * data of all preceding entries in order to reach a given entry,
+ * this class scans the headers of the archive once when it is opened
+ * - moving the position of the underlying {@link SeekableByteChannel}
+ * past the data of each entry rather than reading it - and records
+ * the offset of each entry's data. GNU long names and links, local
+ * and global PAX headers as well as the old GNU and PAX sparse
+ * formats are handled the same way {@link TarArchiveInputStream}
+ * handles them.</p>
+ *
+ * <p>Streams returned by {@link #getInputStream} read directly from
+ * the recorded offsets and may be used concurrently by several
+ * threads. If the channel is a {@link FileChannel} or a {@link
+ * PositionedReadableChannel} reads don't need to synchronize on the
+ * channel.</p>
+ *
+ * <p>The tar format doesn't contain any index, so opening an archive
+ * still requires reading one record per entry.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+public class TarFile implements Closeable {
+
+    private static final int SMALL_BUFFER_SIZE = 256;
+
+    private final SeekableByteChannel archive;
+
+    /** The encoding of the file names */
+    private final ZipEncoding zipEncoding;
+
+    /** The size of a record */
+    private final int recordSize;
+
+    private final ByteBuffer recordBuffer;
+
+    private final boolean lenient;
+
+    private final List<TarArchiveEntry> entries = new ArrayList<>();
+
+    /** Maps names to the first entry of that name. */
+    private final Map<String, TarArchiveEntry> nameMap = new HashMap<>();
+
+    // state used while scanning the archive
+
+    private boolean hasHitEOF;
+
+    /** The entry whose header has been read last */
+    private TarArchiveEntry currEntry;
+
+    /** Position of the end of the current entry's data */
+    private long currEntryDataEnd;
+
+    // the global PAX header
+    private Map<String, String> globalPaxHeaders = new HashMap<>();
+
+    // the global sparse headers, this is only used in PAX Format 0.X
+    private final List<TarArchiveStructSparse> globalSparseHeaders = new ArrayList<>();
+
+    /**
+     * Opens a tar archive using the platform's default encoding for
+     * file names.
+     *
+     * @param archive the archive to read
+     * @throws IOException when reading the archive fails
+     */
+    public TarFile(final File archive) throws IOException {
+        this(archive, null);
+    }
+
+    /**
+     * Opens a tar archive.
+     *
+     * @param archive the archive to read
+     * @param encoding name of the encoding to use for file names
+     * @throws IOException when reading the archive fails
+     */
+    public TarFile(final File archive, final String encoding) throws IOException {
+        this(Files.newByteChannel(archive.toPath(), EnumSet.of(StandardOpenOption.READ)),
+            TarConstants.DEFAULT_RCDSIZE, encoding, false);
+    }
+
+    /**
+     * Opens a tar archive using the platform's default encoding for
+     * file names.
+     *
+     * @param archive the archive to read
+     * @param lenient when set to true illegal values for group/userid, mode, device numbers and timestamp will be
+     * ignored and the fields set to {@link TarArchiveEntry#UNKNOWN}. When set to false such illegal fields cause an
+     * exception instead.
+     * @throws IOException when reading the archive fails
+     */
+    public TarFile(final File archive, final boolean lenient) throws IOException {
+        this(Files.newByteChannel(archive.toPath(), EnumSet.of(StandardOpenOption.READ)),
+            TarConstants.DEFAULT_RCDSIZE, null, lenient);
+    }
+
+    /**
+     * Reads a tar archive from a channel using the platform's default
+     * encoding for file names.
+     *
+     * <p>The channel will be closed when this instance is closed.</p>
+     *
+     * @param archive the archive to read
+     * @throws IOException when reading the archive fails
+     */
+    public TarFile(final SeekableByteChannel archive) throws IOException {
+        this(archive, TarConstants.DEFAULT_RCDSIZE, null, false);
+    }
+
+    /**
+     * Reads a tar archive from a channel.
+     *
+     * <p>The channel will be closed when this instance is closed.</p>
+     *
+     * @param archive the archive to read
+     * @param recordSize the record size to use
+     * @param encoding name of the encoding to use for file names
+     * @param lenient when set to true illegal values for group/userid, mode, device numbers and timestamp will be
+     * ignored and the fields set to {@link TarArchiveEntry#UNKNOWN}. When set to false such illegal fields cause an
+     * exception instead.
+     * @throws IOException when reading the archive fails
+     */
+    public TarFile(final SeekableByteChannel archive, final int recordSize, final String encoding,
+        final boolean lenient) throws IOException {
+        this.archive = archive;
+        this.zipEncoding = ZipEncodingHelper.getZipEncoding(encoding);
+        this.recordSize = recordSize;
+        this.recordBuffer = ByteBuffer.allocate(recordSize);
+        this.lenient = lenient;
+        boolean success = false;
+        try {
+            TarArchiveEntry entry;
+            while ((entry = getNextTarEntry()) != null) {
+                entries.add(entry);
+                if (!nameMap.containsKey(entry.getName())) {
+                    nameMap.put(entry.getName(), entry);
+                }
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                archive.close();
+            }
+        }
+    }
+
+    /**
+     * Provides all entries of the archive in the order they appear
+     * inside of the archive.
+     *
+     * @return an unmodifiable list of all entries
+     */
+    public List<TarArchiveEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns the first entry with the given name.
+     *
+     * @param name name of the entry
+     * @return the entry or null if no entry has the given name
+     */
+    public TarArchiveEntry getEntry(final String name) {
+        return nameMap.get(name);
+    }
+
+    /**
+     * Returns an input stream providing the content of the given
+     * entry.
+     *
+     * <p>Sparse entries are expanded, i.e. the stream provides {@link
+     * TarArchiveEntry#getRealSize} bytes with the holes filled by
+     * zeros. Several streams may be used concurrently.</p>
+     *
+     * @param entry an entry of this archive
+     * @return a stream providing the entry's content
+     * @throws IOException if the sparse map of the entry is corrupt
+     * @throws IllegalArgumentException if the entry has not been
+     * read by a TarFile
+     */
+    public InputStream getInputStream(final TarArchiveEntry entry) throws IOException {
+        final long dataOffset = entry.getDataOffset();
+        if (dataOffset == TarArchiveEntry.OFFSET_UNKNOWN) {
+            throw new IllegalArgumentException("Entry " + entry.getName() + " has not been read by a TarFile");
+        }
+        if (entry.isDirectory()) {
+            return new BoundedTarEntryInputStream(dataOffset, 0);
+        }
+        if (!entry.isSparse() || entry.getSparseHeaders() == null || entry.getSparseHeaders().isEmpty()) {
+            return new BoundedInputStream(new BoundedTarEntryInputStream(dataOffset, entry.getSize()),
+                entry.getRealSize());
+        }
+        return new BoundedInputStream(new SequenceInputStream(Collections.enumeration(
+            createSparseInputStreams(entry))), entry.getRealSize());
+    }
+
+    /**
+     * Closes the archive.
+     *
+     * @throws IOException if closing the channel fails
+     */
+    @Override
+    public void close() throws IOException {
+        archive.close();
+    }
+
+    /**
+     * Creates the streams consisting of all-zero streams for the holes
+     * and streams reading the stored chunks of a sparse entry, as
+     * {@link TarArchiveInputStream} does.
+     */
+    private List<InputStream> createSparseInputStreams(final TarArchiveEntry entry) throws IOException {
+        final List<TarArchiveStructSparse> sparseHeaders = new ArrayList<>(entry.getSparseHeaders());
+        // sort the sparse headers in case they are written in wrong order
+        Collections.sort(sparseHeaders, new Comparator<TarArchiveStructSparse>() {
+            @Override
+            public int compare(final TarArchiveStructSparse p, final TarArchiveStructSparse q) {
+                return Long.valueOf(p.getOffset()).compareTo(q.getOffset());
+            }
+        });
+        final List<InputStream> streams = new ArrayList<>();
+        long offset = 0;
+        long dataPosition = entry.getDataOffset();
+        for (final TarArchiveStructSparse sparseHeader : sparseHeaders) {
+            if (sparseHeader.getOffset() == 0 && sparseHeader.getNumbytes() == 0) {
+                break;
+            }
+            if (sparseHeader.getOffset() - offset < 0) {
+                throw new IOException("Corrupted struct sparse detected");
+            }
+            if (sparseHeader.getOffset() - offset > 0) {
+                streams.add(new BoundedInputStream(new ZeroInputStream(), sparseHeader.getOffset() - offset));
+            }
+            if (sparseHeader.getNumbytes() > 0) {
+                streams.add(new BoundedTarEntryInputStream(dataPosition, sparseHeader.getNumbytes()));
+                dataPosition += sparseHeader.getNumbytes();
+            }
+            offset = sparseHeader.getOffset() + sparseHeader.getNumbytes();
+        }
+        return streams;
+    }
+
+    /**
+     * Reads the next header(s) of the archive and positions the
+     * channel after them.
+     *
+     * @return The next entry in the archive, or null.
+     */
+    private TarArchiveEntry getNextTarEntry() throws IOException {
+        if (hasHitEOF) {
+            return null;
+        }
+
+        if (currEntry != null) {
+            // skip the data of the current entry and the padding of its last record
+            final long padding = (recordSize - currEntryDataEnd % recordSize) % recordSize;
+            final long next = currEntryDataEnd + padding;
+            if (currEntryDataEnd > archive.size()) {
+                throw new IOException("Truncated TAR archive");
+            }
+            archive.position(next);
+        }
+
+        final byte[] headerBuf = getRecord();
+        if (headerBuf == null) {
+            // hit EOF
+            currEntry = null;
+            return null;
+        }
+
+        try {
+            currEntry = new TarArchiveEntry(headerBuf, zipEncoding, lenient);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("Error detected parsing the header", e);
+        }
+        setDataOffset(archive.position());
+
+        if (currEntry.isGNULongLinkEntry()) {
+            final byte[] longLinkData = getLongNameData();
+            if (longLinkData == null) {
+                // Malformed tar file - long link entry name not followed by entry
+                return null;
+            }
+            currEntry.setLinkName(zipEncoding.decode(longLinkData));
+        }
+
+        if (currEntry.isGNULongNameEntry()) {
+            final byte[] longNameData = getLongNameData();
+            if (longNameData == null) {
+                // Malformed tar file - long entry name not followed by entry
+                return null;
+            }
+
+            // COMPRESS-509 : the name of directories should end with '/'
+            String name = zipEncoding.decode(longNameData);
+            if (currEntry.isDirectory() && !name.endsWith("/")) {
+                name += "/";
+            }
+            currEntry.setName(name);
+        }
+
+        if (currEntry.isGlobalPaxHeader()) { // Process Global Pax headers
+            readGlobalPaxHeaders();
+        }
+
+        try {
+            if (currEntry.isPaxHeader()) { // Process Pax headers
+                paxHeaders();
+            } else if (!globalPaxHeaders.isEmpty()) {
+                applyPaxHeadersToCurrentEntry(globalPaxHeaders, globalSparseHeaders);
+            }
+        } catch (final NumberFormatException e) {
+            throw new IOException("Error detected parsing the pax header", e);
+        }
+
+        if (currEntry.isOldGNUSparse()) { // Process sparse files
+            readOldGNUSparse();
+        }
+
+        return currEntry;
+    }
+
+    /**
+     * Records the position of the current entry's data, directories
+     * never have any data.
+     */
+    private void setDataOffset(final long dataOffset) {
+        currEntry.setDataOffset(dataOffset);
+        currEntryDataEnd = currEntry.isDirectory() ? dataOffset : dataOffset + currEntry.getSize();
+    }
+
+    /**
+     * Reads the data of the current entry as long name and moves to
+     * the next entry.
+     *
+     * @return The long name data, or null if no entry follows.
+     */
+    private byte[] getLongNameData() throws IOException {
+        final ByteArrayOutputStream longName = new ByteArrayOutputStream();
+        try (InputStream in = new BoundedTarEntryInputStream(currEntry.getDataOffset(), currEntry.getSize())) {
+            IOUtils.copy(in, longName, SMALL_BUFFER_SIZE);
+        }
+        getNextTarEntry();
+        if (currEntry == null) {
+            // Malformed tar file - long entry name not followed by entry
+            return null;
+        }
+        byte[] longNameData = longName.toByteArray();
+        // remove trailing null terminator(s)
+        int length = longNameData.length;
+        while (length > 0 && longNameData[length - 1] == 0) {
+            --length;
+        }
+        if (length != longNameData.length) {
+            longNameData = Arrays.copyOf(longNameData, length);
+        }
+        return longNameData;
+    }
+
+    /**
+     * Reads the next record, returns null and remembers the end of
+     * the archive has been reached if the record is missing or an EOF
+     * record.
+     */
+    private byte[] getRecord() throws IOException {
+        recordBuffer.rewind();
+        try {
+            IOUtils.readFully(archive, recordBuffer);
+        } catch (final EOFException ex) { //NOSONAR
+            hasHitEOF = true;
+            return null;
+        }
+        if (ArchiveUtils.isArrayZero(recordBuffer.array(), recordSize)) {
+            hasHitEOF = true;
+            return null;
+        }
+        return recordBuffer.array();
+    }
+
+    private void readGlobalPaxHeaders() throws IOException {
+        try (InputStream in = createPaxHeaderInputStream()) {
+            globalPaxHeaders = TarUtils.parsePaxHeaders(in, globalSparseHeaders, globalPaxHeaders);
+        }
+        getNextTarEntry(); // Get the actual file entry
+        if (currEntry == null) {
+            throw new IOException("premature end of tar archive. Didn't find any entry after PAX header.");
+        }
+    }
+
+    private void paxHeaders() throws IOException {
+        List<TarArchiveStructSparse> sparseHeaders = new ArrayList<>();
+        final Map<String, String> headers;
+        try (InputStream in = createPaxHeaderInputStream()) {
+            headers = TarUtils.parsePaxHeaders(in, sparseHeaders, globalPaxHeaders);
+        }
+
+        // for 0.1 PAX Headers
+        if (headers.containsKey("GNU.sparse.map")) {
+            sparseHeaders = TarUtils.parsePAX01SparseHeaders(headers.get("GNU.sparse.map"));
+        }
+        getNextTarEntry(); // Get the actual file entry
+        if (currEntry == null) {
+            throw new IOException("premature end of tar archive. Didn't find any entry after PAX header.");
+        }
+        applyPaxHeadersToCurrentEntry(headers, sparseHeaders);
+
+        // for 1.0 PAX Format, the sparse map is stored in the file data block
+        if (currEntry.isPaxGNU1XSparse()) {
+            final long mapOffset = currEntry.getDataOffset();
+            final BoundedTarEntryInputStream in = new BoundedTarEntryInputStream(mapOffset, currEntry.getSize());
+            sparseHeaders = TarUtils.parsePAX1XSparseHeaders(in, recordSize);
+            currEntry.setSparseHeaders(sparseHeaders);
+            // the stored data follows the map, the end of the entry doesn't change
+            currEntry.setDataOffset(mapOffset + in.getBytesRead());
+        }
+    }
+
+    private InputStream createPaxHeaderInputStream() {
+        return new BufferedInputStream(new BoundedTarEntryInputStream(currEntry.getDataOffset(),
+            currEntry.getSize()));
+    }
+
+    private void applyPaxHeadersToCurrentEntry(final Map<String, String> headers,
+        final List<TarArchiveStructSparse> sparseHeaders) {
+        currEntry.updateEntryFromPaxHeaders(headers);
+        currEntry.setSparseHeaders(sparseHeaders);
+        // the size may have been overridden
+        setDataOffset(currEntry.getDataOffset());
+    }
+
+    /**
+     * Adds the sparse chunks from the current entry to the sparse
+     * chunks, including any additional sparse entries following the
+     * current entry.
+     */
+    private void readOldGNUSparse() throws IOException {
+        if (currEntry.isExtended()) {
+            TarArchiveSparseEntry entry;
+            do {
+                final byte[] headerBuf = getRecord();
+                if (headerBuf == null) {
+                    throw new IOException("premature end of tar archive. Didn't find extended sparse header.");
+                }
+                entry = new TarArchiveSparseEntry(headerBuf);
+                currEntry.getSparseHeaders().addAll(entry.getSparseHeaders());
+            } while (entry.isExtended());
+            // the data follows the extended sparse headers
+            setDataOffset(archive.position());
+        }
+    }
+
+    /**
+     * InputStream that reads a range of the archive.
+     */
+    private class BoundedTarEntryInputStream extends InputStream {
+        private final long start;
+        private final long end;
+        private final byte[] oneByte = new byte[1];
+        private long loc;
+
+        BoundedTarEntryInputStream(final long start, final long remaining) {
+            this.start = start;
+            this.end = start + remaining;
+            if (this.end < start) {
+                // check for potential vulnerability due to overflow
+                throw new IllegalArgumentException("Invalid length of stream at offset=" + start + ", length="
+                    + remaining);
+            }
+            loc = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = read(oneByte, 0, 1);
+            return read < 0 ? read : oneByte[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (loc >= end) {
+                return -1;
+            }
+            final ByteBuffer buf = ByteBuffer.wrap(b, off, (int) Math.min(len, end - loc));
+            final int read = IOUtils.read(archive, buf, loc);
+            if (read < 0) {
+                throw new IOException("Truncated TAR archive");
+            }
+            loc += read;
+            return read;
+        }
+
+        @Override
+        public synchronized long skip(final long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            final long skipped = Math.min(n, end - loc);
+            loc += skipped;
+            return skipped;
+        }
+
+        long getBytesRead() {
+            return loc - start;
+        }
+    }
+
+    /**
+     * InputStream that always returns zeros, used when reading the
+     * holes of a sparse entry.
+     */
+    private static class ZeroInputStream extends InputStream {
+        @Override
+        public int read() {
+            return 0;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            Arrays.fill(b, off, off + len, (byte) 0);
+            return len;
+        }
+
+        @Override
+        public long skip(final long n) {
+            return n;
+        }
+    }
+}
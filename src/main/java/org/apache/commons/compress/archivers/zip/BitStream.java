@@ -33,7 +33,7 @@
 class BitStream extends BitInputStream {
 
     BitStream(final InputStream in) {
-        super(in, ByteOrder.LITTLE_ENDIAN);
+        super(in, ByteOrder.LITTLE_ENDIAN, true);
     }
 
     /**
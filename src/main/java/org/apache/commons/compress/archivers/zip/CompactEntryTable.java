@@ -0,0 +1,289 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.compress.archivers.EntryStreamOffsets;
+
+/**
+ * Packed representation of a zip archive's central directory used by
+ * {@link ZipFile} instead of a list of {@link ZipArchiveEntry}
+ * instances.
+ *
+ * <p>The raw bytes of the central directory are kept together with
+ * primitive arrays holding the position of each record inside of the
+ * raw bytes, the compression method, CRC and sizes of each entry and
+ * the fields needed to sort the entries by their physical order. Names
+ * are indexed by an open-addressing hash table holding the indices of
+ * the records.</p>
+ *
+ * <p>The offset of an entry's data is only known once its local file
+ * header has been read, it is remembered by the table so the local
+ * file header doesn't need to be read again.</p>
+ *
+ * <p>Records are added while the archive is opened, {@link
+ * #complete} must be called once all records have been added. After
+ * that instances are effectively immutable - except for the data
+ * offsets which are safe to record concurrently - and may be used by
+ * several threads concurrently.</p>
+ *
+ * @since 1.21
+ */
+final class CompactEntryTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int[] NO_ENTRIES = new int[0];
+
+    private final byte[] centralDirectory;
+
+    private int size;
+    private int[] recordOffsets = new int[INITIAL_CAPACITY];
+    private int[] nameHashes = new int[INITIAL_CAPACITY];
+    private long[] diskNumbers = new long[INITIAL_CAPACITY];
+    private long[] localHeaderOffsets = new long[INITIAL_CAPACITY];
+    private int[] methods = new int[INITIAL_CAPACITY];
+    private int[] crcs = new int[INITIAL_CAPACITY];
+    private long[] compressedSizes = new long[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+
+    /**
+     * Data offsets of the records, {@link
+     * EntryStreamOffsets#OFFSET_UNKNOWN} until recorded.
+     */
+    private AtomicLongArray dataOffsets;
+
+    /**
+     * Index + 1 of the record whose name hashes to the slot, 0 marks
+     * an empty slot.
+     */
+    private int[] nameIndex;
+
+    /**
+     * @param centralDirectory the raw central directory, will be
+     * kept by the table and must not be modified
+     */
+    CompactEntryTable(final byte[] centralDirectory) {
+        this.centralDirectory = centralDirectory;
+    }
+
+    /**
+     * Adds a record of the central directory.
+     *
+     * @param recordOffset offset of the fixed size part of the record
+     * (without signature) inside of the central directory
+     * @param entry the entry parsed from the record, only used to
+     * obtain the fields stored in the table
+     */
+    void add(final int recordOffset, final ZipArchiveEntry entry) {
+        if (size == recordOffsets.length) {
+            grow(size * 2);
+        }
+        recordOffsets[size] = recordOffset;
+        nameHashes[size] = entry.getName().hashCode();
+        diskNumbers[size] = entry.getDiskNumberStart();
+        localHeaderOffsets[size] = entry.getLocalHeaderOffset();
+        methods[size] = entry.getMethod();
+        crcs[size] = (int) entry.getCrc();
+        compressedSizes[size] = entry.getCompressedSize();
+        sizes[size] = entry.getSize();
+        size++;
+    }
+
+    /**
+     * Releases the unused capacity and builds the name index.
+     */
+    void complete() {
+        grow(size);
+        final AtomicLongArray offsets = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            offsets.set(i, EntryStreamOffsets.OFFSET_UNKNOWN);
+        }
+        dataOffsets = offsets;
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        final int[] index = new int[capacity];
+        final int mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = spread(nameHashes[i]) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = i + 1;
+        }
+        nameIndex = index;
+    }
+
+    /**
+     * The number of records.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * The raw central directory.
+     */
+    byte[] getCentralDirectory() {
+        return centralDirectory;
+    }
+
+    /**
+     * The offset of the fixed size part of the given record inside of
+     * the raw central directory.
+     */
+    int getRecordOffset(final int index) {
+        return recordOffsets[index];
+    }
+
+    /**
+     * The number of the disk holding the local file header of the
+     * given record.
+     */
+    long getDiskNumber(final int index) {
+        return diskNumbers[index];
+    }
+
+    /**
+     * The offset of the local file header of the given record.
+     */
+    long getLocalHeaderOffset(final int index) {
+        return localHeaderOffsets[index];
+    }
+
+    /**
+     * The compression method of the given record.
+     */
+    int getMethod(final int index) {
+        return methods[index];
+    }
+
+    /**
+     * The CRC of the given record.
+     */
+    long getCrc(final int index) {
+        return crcs[index] & 0xffffffffL;
+    }
+
+    /**
+     * The compressed size of the given record, taking Zip64 extra
+     * fields into account.
+     */
+    long getCompressedSize(final int index) {
+        return compressedSizes[index];
+    }
+
+    /**
+     * The uncompressed size of the given record, taking Zip64 extra
+     * fields into account.
+     */
+    long getSize(final int index) {
+        return sizes[index];
+    }
+
+    /**
+     * The offset of the given record's data inside of the archive or
+     * {@link EntryStreamOffsets#OFFSET_UNKNOWN} if it hasn't been
+     * recorded, yet.
+     */
+    long getDataOffset(final int index) {
+        return dataOffsets.get(index);
+    }
+
+    /**
+     * Records the offset of the given record's data once its local
+     * file header has been read.
+     */
+    void setDataOffset(final int index, final long dataOffset) {
+        dataOffsets.set(index, dataOffset);
+    }
+
+    /**
+     * Finds all records whose name has the given hash code.
+     *
+     * <p>As the name index uses linear probing and records are never
+     * removed, candidates are returned in the order they appear
+     * inside of the central directory. Candidates may have a name
+     * different from the one the hash code has been computed for.</p>
+     *
+     * @param nameHash the {@link String#hashCode} of the name
+     * @return indices of the candidate records
+     */
+    int[] findCandidates(final int nameHash) {
+        final int mask = nameIndex.length - 1;
+        int[] result = NO_ENTRIES;
+        int count = 0;
+        for (int slot = spread(nameHash) & mask; nameIndex[slot] != 0; slot = (slot + 1) & mask) {
+            final int index = nameIndex[slot] - 1;
+            if (nameHashes[index] == nameHash) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count + 1);
+                }
+                result[count++] = index;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Provides the indices of all records sorted by the position of
+     * their local file header.
+     */
+    int[] getPhysicalOrder() {
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer i1, final Integer i2) {
+                // disk number is prior to relative offset
+                final int byDisk = compareLongs(diskNumbers[i1], diskNumbers[i2]);
+                return byDisk != 0 ? byDisk : compareLongs(localHeaderOffsets[i1], localHeaderOffsets[i2]);
+            }
+        });
+        final int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    private void grow(final int capacity) {
+        recordOffsets = Arrays.copyOf(recordOffsets, capacity);
+        nameHashes = Arrays.copyOf(nameHashes, capacity);
+        diskNumbers = Arrays.copyOf(diskNumbers, capacity);
+        localHeaderOffsets = Arrays.copyOf(localHeaderOffsets, capacity);
+        methods = Arrays.copyOf(methods, capacity);
+        crcs = Arrays.copyOf(crcs, capacity);
+        compressedSizes = Arrays.copyOf(compressedSizes, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int compareLongs(final long l1, final long l2) {
+        return l1 < l2 ? -1 : l1 == l2 ? 0 : 1;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only view of a file that has been mapped into memory.
+ *
+ * <p>As a single {@link MappedByteBuffer} can not exceed 2GB the
+ * file is mapped as a sequence of windows of equal size (only the
+ * last one may be smaller).  All windows are mapped when the
+ * instance is created, which only reserves address space, so all
+ * methods may be used concurrently.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+final class MemoryMappedArchive {
+
+    /** Size of the windows used unless specified otherwise, 1GB. */
+    static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private final MappedByteBuffer[] windows;
+
+    MemoryMappedArchive(final FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+
+    MemoryMappedArchive(final FileChannel channel, final int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive but is " + windowSize);
+        }
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        final long count = (size + windowSize - 1) / windowSize;
+        if (count > Integer.MAX_VALUE) {
+            throw new IOException("Archive is too big to be mapped using windows of " + windowSize + " bytes");
+        }
+        windows = new MappedByteBuffer[(int) count];
+        for (int i = 0; i < windows.length; i++) {
+            final long start = (long) i * windowSize;
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+        }
+    }
+
+    /**
+     * The size of the mapped file.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Reads the byte at the given position.
+     *
+     * @return the byte as unsigned value or -1 if pos is not inside of the file
+     */
+    int read(final long pos) {
+        if (pos < 0 || pos >= size) {
+            return -1;
+        }
+        return windows[(int) (pos / windowSize)].get((int) (pos % windowSize)) & 0xff;
+    }
+
+    /**
+     * Copies as many bytes starting at the given position into dst
+     * as possible without crossing a window boundary.
+     *
+     * @return number of bytes copied or -1 if pos is not inside of the file
+     */
+    int read(final long pos, final ByteBuffer dst) {
+        if (pos < 0 || pos >= size) {
+            return -1;
+        }
+        final ByteBuffer window = windows[(int) (pos / windowSize)].duplicate();
+        final int inWindow = (int) (pos % windowSize);
+        final int count = Math.min(dst.remaining(), window.limit() - inWindow);
+        window.position(inWindow);
+        window.limit(inWindow + count);
+        dst.put(window);
+        return count;
+    }
+
+    /**
+     * Provides a read-only buffer for the given region without copying
+     * any data.
+     *
+     * <p>Regions inside of a single window share the window's
+     * mapping, regions crossing a window boundary are mapped
+     * separately.</p>
+     */
+    ByteBuffer slice(final long pos, final int length) throws IOException {
+        if (pos < 0 || length < 0 || pos + length > size) {
+            throw new IllegalArgumentException("Region at offset=" + pos + ", length=" + length
+                + " is outside of the mapped archive");
+        }
+        final int index = (int) (pos / windowSize);
+        final int inWindow = (int) (pos % windowSize);
+        if (index < windows.length && (long) inWindow + length <= windows[index].limit()) {
+            final ByteBuffer window = windows[index].duplicate();
+            window.position(inWindow);
+            window.limit(inWindow + length);
+            return window.slice().asReadOnlyBuffer();
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, pos, length).asReadOnlyBuffer();
+    }
+}
@@ -17,12 +17,11 @@
  */
 package org.apache.commons.compress.archivers.zip;
 
-import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStoreSupplier;
 import org.apache.commons.compress.parallel.InputStreamSupplier;
 import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.Deque;
 import java.util.concurrent.Callable;
@@ -32,7 +31,6 @@
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.Deflater;
 
 import static org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest.createZipArchiveEntryRequest;
@@ -60,22 +58,13 @@ public class ParallelScatterZipCreator {
     private long compressionDoneAt = 0;
     private long scatterDoneAt;
     private final int compressionLevel;
-
-    private static class DefaultBackingStoreSupplier implements ScatterGatherBackingStoreSupplier {
-        final AtomicInteger storeNum = new AtomicInteger(0);
-
-        @Override
-        public ScatterGatherBackingStore get() throws IOException {
-            final File tempFile = File.createTempFile("parallelscatter", "n" + storeNum.incrementAndGet());
-            return new FileBasedScatterGatherBackingStore(tempFile);
-        }
-    }
+    private final ZipCodecPool codecPool;
 
     private ScatterZipOutputStream createDeferred(final ScatterGatherBackingStoreSupplier scatterGatherBackingStoreSupplier)
             throws IOException {
         final ScatterGatherBackingStore bs = scatterGatherBackingStoreSupplier.get();
         // lifecycle is bound to the ScatterZipOutputStream returned
-        final StreamCompressor sc = StreamCompressor.create(compressionLevel, bs); //NOSONAR
+        final StreamCompressor sc = StreamCompressor.create(compressionLevel, bs, codecPool); //NOSONAR
         return new ScatterZipOutputStream(bs, sc);
     }
 
@@ -107,7 +96,7 @@ public ParallelScatterZipCreator() {
      *                        this will be shut down by this class.
      */
     public ParallelScatterZipCreator(final ExecutorService executorService) {
-        this(executorService, new DefaultBackingStoreSupplier());
+        this(executorService, new FileBasedScatterGatherBackingStoreSupplier());
     }
 
     /**
@@ -136,6 +125,26 @@ public ParallelScatterZipCreator(final ExecutorService executorService,
     public ParallelScatterZipCreator(final ExecutorService executorService,
                                      final ScatterGatherBackingStoreSupplier backingStoreSupplier,
                                      final int compressionLevel) throws IllegalArgumentException {
+        this(executorService, backingStoreSupplier, compressionLevel, null);
+    }
+
+    /**
+     * Create a ParallelScatterZipCreator
+     *
+     * @param executorService      The executorService to use. For technical reasons, this will be shut down
+     *                             by this class.
+     * @param backingStoreSupplier The supplier of backing store which shall be used
+     * @param compressionLevel     The compression level used in compression, this value should be
+     *                             -1(default level) or between 0~9.
+     * @param codecPool            The pool deflaters of the scatter streams are taken from and returned to
+     *                             once the archive has been written, may be null.
+     * @throws IllegalArgumentException if the compression level is illegal
+     * @since 1.21
+     */
+    public ParallelScatterZipCreator(final ExecutorService executorService,
+                                     final ScatterGatherBackingStoreSupplier backingStoreSupplier,
+                                     final int compressionLevel,
+                                     final ZipCodecPool codecPool) throws IllegalArgumentException {
         if ((compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)
                 && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
             throw new IllegalArgumentException("Compression level is expected between -1~9");
@@ -144,6 +153,7 @@ public ParallelScatterZipCreator(final ExecutorService executorService,
         this.backingStoreSupplier = backingStoreSupplier;
         es = executorService;
         this.compressionLevel = compressionLevel;
+        this.codecPool = codecPool;
     }
 
     /**
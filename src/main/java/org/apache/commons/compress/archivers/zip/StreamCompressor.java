@@ -17,6 +17,7 @@
  */
 package org.apache.commons.compress.archivers.zip;
 
+import org.apache.commons.compress.compressors.deflate.ParallelDeflater;
 import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 
 import java.io.Closeable;
@@ -26,6 +27,7 @@
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
@@ -50,8 +52,20 @@ public abstract class StreamCompressor implements Closeable {
 
     private final Deflater def;
 
+    /** Pool the deflater has been taken from, may be null. */
+    private final ZipCodecPool codecPool;
+    private boolean returnedToPool;
+
     private final CRC32 crc = new CRC32();
 
+    /** Deflates blocks of an entry in parallel, may be null. */
+    private ParallelDeflater parallelDeflater;
+    private ExecutorService parallelDeflaterExecutor;
+    private int parallelDeflaterLevel;
+    private int parallelDeflaterBlockSize;
+    private int parallelDeflaterMaxPendingBlocks;
+    private boolean useParallelDeflater;
+
     private long writtenToOutputStreamForLastEntry = 0;
     private long sourcePayloadLength = 0;
     private long totalWrittenToOutputStream = 0;
@@ -61,7 +75,12 @@ public abstract class StreamCompressor implements Closeable {
     private final byte[] readerBuf = new byte[BUFFER_SIZE];
 
     StreamCompressor(final Deflater deflater) {
+        this(deflater, null);
+    }
+
+    StreamCompressor(final Deflater deflater, final ZipCodecPool codecPool) {
         this.def = deflater;
+        this.codecPool = codecPool;
     }
 
     /**
@@ -116,8 +135,28 @@ static StreamCompressor create(final SeekableByteChannel os, final Deflater defl
      * @return A stream compressor
      */
     public static StreamCompressor create(final int compressionLevel, final ScatterGatherBackingStore bs) {
-        final Deflater deflater = new Deflater(compressionLevel, true);
-        return new ScatterGatherBackingStoreCompressor(deflater, bs);
+        return create(compressionLevel, bs, null);
+    }
+
+    /**
+     * Create a stream compressor with the given compression level
+     * using a deflater taken from a pool.
+     *
+     * <p>The deflater is returned to the pool when the compressor is
+     * closed.</p>
+     *
+     * @param compressionLevel The {@link Deflater}  compression level
+     * @param bs               The ScatterGatherBackingStore to receive output
+     * @param codecPool        The pool to take the deflater from, a new
+     *                         deflater is created if this is null
+     * @return A stream compressor
+     * @since 1.21
+     */
+    public static StreamCompressor create(final int compressionLevel, final ScatterGatherBackingStore bs,
+                                          final ZipCodecPool codecPool) {
+        final Deflater deflater = codecPool != null ? codecPool.borrowDeflater(compressionLevel)
+            : new Deflater(compressionLevel, true);
+        return new ScatterGatherBackingStoreCompressor(deflater, bs, codecPool);
     }
 
     /**
@@ -137,7 +176,7 @@ public static StreamCompressor create(final ScatterGatherBackingStore bs) {
      */
 
     public long getCrc32() {
-        return crc.getValue();
+        return useParallelDeflater ? parallelDeflater.getCrc32() : crc.getValue();
     }
 
     /**
@@ -200,10 +239,14 @@ public void deflate(final InputStream source, final int method) throws IOExcepti
      */
     long write(final byte[] b, final int offset, final int length, final int method) throws IOException {
         final long current = writtenToOutputStreamForLastEntry;
-        crc.update(b, offset, length);
-        if (method == ZipEntry.DEFLATED) {
+        if (method == ZipEntry.DEFLATED && useParallelDeflater) {
+            // the parallel deflater computes the crc itself
+            parallelDeflater.write(b, offset, length);
+        } else if (method == ZipEntry.DEFLATED) {
+            crc.update(b, offset, length);
             writeDeflated(b, offset, length);
         } else {
+            crc.update(b, offset, length);
             writeCounted(b, offset, length);
         }
         sourcePayloadLength += length;
@@ -211,19 +254,77 @@ long write(final byte[] b, final int offset, final int length, final int method)
     }
 
 
+    /**
+     * Deflates subsequent entries by compressing blocks of their
+     * content in parallel.
+     *
+     * @param executorService the executor service that compresses
+     * the blocks, null to use the deflater of this compressor
+     * @param compressionLevel the compression level used by the
+     * parallel deflater
+     * @param blockSize the size of the blocks the content is split into
+     * @param maxPendingBlocks the maximum number of blocks that have
+     * been submitted but not written
+     */
+    void setParallelDeflater(final ExecutorService executorService, final int compressionLevel,
+        final int blockSize, final int maxPendingBlocks) {
+        useParallelDeflater = executorService != null;
+        if (executorService == null
+            || (parallelDeflater != null && parallelDeflaterExecutor == executorService
+                && parallelDeflaterLevel == compressionLevel && parallelDeflaterBlockSize == blockSize
+                && parallelDeflaterMaxPendingBlocks == maxPendingBlocks)) {
+            return;
+        }
+        if (parallelDeflater != null) {
+            parallelDeflater.close();
+        }
+        parallelDeflater = new ParallelDeflater(new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                writeCounted(b, off, len);
+            }
+        }, executorService, compressionLevel, blockSize, maxPendingBlocks);
+        parallelDeflaterExecutor = executorService;
+        parallelDeflaterLevel = compressionLevel;
+        parallelDeflaterBlockSize = blockSize;
+        parallelDeflaterMaxPendingBlocks = maxPendingBlocks;
+    }
+
     void reset() {
         crc.reset();
         def.reset();
+        if (parallelDeflater != null) {
+            parallelDeflater.reset();
+        }
         sourcePayloadLength = 0;
         writtenToOutputStreamForLastEntry = 0;
     }
 
     @Override
     public void close() throws IOException {
-        def.end();
+        if (parallelDeflater != null) {
+            parallelDeflater.close();
+        }
+        if (codecPool != null) {
+            if (!returnedToPool) {
+                returnedToPool = true;
+                codecPool.returnDeflater(def);
+            }
+        } else {
+            def.end();
+        }
     }
 
     void flushDeflater() throws IOException {
+        if (useParallelDeflater) {
+            parallelDeflater.finish();
+            return;
+        }
         def.finish();
         while (!def.finished()) {
             deflate();
@@ -280,8 +381,9 @@ public void writeCounted(final byte[] data, final int offset, final int length)
     private static final class ScatterGatherBackingStoreCompressor extends StreamCompressor {
         private final ScatterGatherBackingStore bs;
 
-        public ScatterGatherBackingStoreCompressor(final Deflater deflater, final ScatterGatherBackingStore bs) {
-            super(deflater);
+        public ScatterGatherBackingStoreCompressor(final Deflater deflater, final ScatterGatherBackingStore bs,
+                                                   final ZipCodecPool codecPool) {
+            super(deflater, codecPool);
             this.bs = bs;
         }
 
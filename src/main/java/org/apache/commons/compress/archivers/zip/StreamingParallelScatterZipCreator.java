@@ -0,0 +1,408 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStoreSupplier;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+import static org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest.createZipArchiveEntryRequest;
+
+/**
+ * Creates a zip in parallel and appends each compressed entry to the
+ * target stream as soon as it is ready.
+ *
+ * <p>Unlike {@link ParallelScatterZipCreator}, which keeps the
+ * compressed content of all entries in backing stores until {@link
+ * ParallelScatterZipCreator#writeTo} is called, this class compresses
+ * each entry into a backing store of its own and writes it to the
+ * target {@link ZipArchiveOutputStream} - and releases the backing
+ * store - once it (and all entries added before it if the order of
+ * entries shall be preserved) has been compressed. This overlaps
+ * compression with writing the archive and bounds the amount of
+ * data held in backing stores.</p>
+ *
+ * <p>All writes to the target stream happen on the client thread
+ * calling {@link #addArchiveEntry addArchiveEntry} and {@link
+ * #finish}. Adding an entry blocks - while writing entries that have
+ * been compressed - as long as the number of entries that have been
+ * added but not yet written reaches {@code maxPendingEntries} or the
+ * compressed size of entries waiting to be written reaches {@code
+ * maxBufferedBytes}. As entries that are being compressed while the
+ * limit is reached still complete, the amount of buffered data may
+ * exceed {@code maxBufferedBytes} by the compressed size of at most
+ * {@code maxPendingEntries} entries.</p>
+ *
+ * <p>This class is expected to be used from a single client thread.</p>
+ *
+ * @since 1.21
+ * @NotThreadSafe
+ */
+public class StreamingParallelScatterZipCreator {
+
+    /**
+     * Default limit for the number of entries that have been added
+     * but not yet written.
+     */
+    public static final int DEFAULT_MAX_PENDING_ENTRIES = 256;
+
+    /**
+     * Default limit for the compressed size of the entries waiting
+     * to be written, 64MB.
+     */
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+
+    private final ZipArchiveOutputStream target;
+    private final ExecutorService es;
+    private final CompletionService<CompressedEntry> completionService;
+    private final ScatterGatherBackingStoreSupplier backingStoreSupplier;
+    private final int compressionLevel;
+    private final ZipCodecPool codecPool;
+    private final boolean preserveOrder;
+    private final int maxPendingEntries;
+    private final long maxBufferedBytes;
+
+    /** Entries that have been submitted but not written, in the order they have been added. */
+    private final Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    /**
+     * Entries that have been compressed but not yet picked up for
+     * writing, closed by {@link #abort}. Guards {@link #aborted}.
+     */
+    private final Set<CompressedEntry> compressed = new HashSet<>();
+    private boolean aborted;
+
+    private final long startedAt = System.currentTimeMillis();
+    private long writingElapsed;
+    private long finishedAt;
+
+    /**
+     * Creates a creator that preserves the order of entries and uses
+     * temporary files as backing stores.
+     *
+     * @param target the stream to write the archive to
+     * @param executorService The executorService to use. For technical reasons, this will be shut down
+     *                        by this class.
+     */
+    public StreamingParallelScatterZipCreator(final ZipArchiveOutputStream target,
+                                              final ExecutorService executorService) {
+        this(target, executorService, new FileBasedScatterGatherBackingStoreSupplier(),
+            Deflater.DEFAULT_COMPRESSION, new ZipCodecPool(), true, DEFAULT_MAX_PENDING_ENTRIES,
+            DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    /**
+     * Creates a creator.
+     *
+     * @param target               the stream to write the archive to
+     * @param executorService      The executorService to use. For technical reasons, this will be shut down
+     *                             by this class.
+     * @param backingStoreSupplier The supplier of backing store which shall be used, one store is used per
+     *                             entry
+     * @param compressionLevel     The compression level used in compression, this value should be
+     *                             -1(default level) or between 0~9.
+     * @param codecPool            The pool deflaters are taken from, may be null.
+     * @param preserveOrder        whether entries must be written in the order they have been added. If
+     *                             false entries are written in the order their compression completes.
+     * @param maxPendingEntries    the maximum number of entries that have been added but not written
+     * @param maxBufferedBytes     the compressed size of entries waiting to be written that causes
+     *                             {@link #addArchiveEntry addArchiveEntry} to block
+     * @throws IllegalArgumentException if the compression level is illegal or maxPendingEntries is not
+     *                             positive
+     */
+    public StreamingParallelScatterZipCreator(final ZipArchiveOutputStream target,
+                                              final ExecutorService executorService,
+                                              final ScatterGatherBackingStoreSupplier backingStoreSupplier,
+                                              final int compressionLevel,
+                                              final ZipCodecPool codecPool,
+                                              final boolean preserveOrder,
+                                              final int maxPendingEntries,
+                                              final long maxBufferedBytes) {
+        if ((compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)
+                && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level is expected between -1~9");
+        }
+        if (maxPendingEntries <= 0) {
+            throw new IllegalArgumentException("maxPendingEntries must be positive but is " + maxPendingEntries);
+        }
+        this.target = target;
+        this.es = executorService;
+        this.completionService = preserveOrder ? null : new ExecutorCompletionService<CompressedEntry>(es);
+        this.backingStoreSupplier = backingStoreSupplier;
+        this.compressionLevel = compressionLevel;
+        this.codecPool = codecPool;
+        this.preserveOrder = preserveOrder;
+        this.maxPendingEntries = maxPendingEntries;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Adds an archive entry to this archive.
+     *
+     * <p>May write entries that have been compressed to the target
+     * stream and blocks if too many entries are pending.</p>
+     *
+     * @param zipArchiveEntry The entry to add.
+     * @param source          The source input stream supplier
+     * @throws IOException          If writing fails
+     * @throws InterruptedException If we get interrupted
+     * @throws ExecutionException   If something happens in the parallel execution
+     * @throws IllegalStateException if an earlier failure has aborted the creator
+     */
+    public void addArchiveEntry(final ZipArchiveEntry zipArchiveEntry, final InputStreamSupplier source)
+        throws IOException, InterruptedException, ExecutionException {
+        final int method = zipArchiveEntry.getMethod();
+        if (method == ZipMethod.UNKNOWN_CODE) {
+            throw new IllegalArgumentException("Method must be set on zipArchiveEntry: " + zipArchiveEntry);
+        }
+        final ZipArchiveEntryRequest zipArchiveEntryRequest = createZipArchiveEntryRequest(zipArchiveEntry, source);
+        addArchiveEntry(new ZipArchiveEntryRequestSupplier() {
+            @Override
+            public ZipArchiveEntryRequest get() {
+                return zipArchiveEntryRequest;
+            }
+        });
+    }
+
+    /**
+     * Adds an archive entry to this archive.
+     *
+     * <p>May write entries that have been compressed to the target
+     * stream and blocks if too many entries are pending.</p>
+     *
+     * @param zipArchiveEntryRequestSupplier Should supply the entry to be added.
+     * @throws IOException          If writing fails
+     * @throws InterruptedException If we get interrupted
+     * @throws ExecutionException   If something happens in the parallel execution
+     * @throws IllegalStateException if an earlier failure has aborted the creator
+     */
+    public void addArchiveEntry(final ZipArchiveEntryRequestSupplier zipArchiveEntryRequestSupplier)
+        throws IOException, InterruptedException, ExecutionException {
+        ensureNotAborted();
+        boolean success = false;
+        try {
+            while (!pending.isEmpty()
+                   && (pending.size() >= maxPendingEntries || bufferedBytes.get() >= maxBufferedBytes)) {
+                writeCompressedEntries(true);
+            }
+            final Callable<CompressedEntry> callable = createCallable(zipArchiveEntryRequestSupplier);
+            pending.add(preserveOrder ? es.submit(callable) : completionService.submit(callable));
+            writeCompressedEntries(false);
+            success = true;
+        } finally {
+            if (!success) {
+                abort();
+            }
+        }
+    }
+
+    /**
+     * Waits for all entries to be compressed and writes them to the
+     * target stream.
+     *
+     * <p>Calling this method will shut down the {@link ExecutorService} used by this class. The target stream
+     * is neither finished nor closed.</p>
+     *
+     * @throws IOException          If writing fails
+     * @throws InterruptedException If we get interrupted
+     * @throws ExecutionException   If something happens in the parallel execution
+     * @throws IllegalStateException if an earlier failure has aborted the creator
+     */
+    public void finish() throws IOException, InterruptedException, ExecutionException {
+        boolean success = false;
+        try {
+            ensureNotAborted();
+            while (!pending.isEmpty()) {
+                writeCompressedEntries(true);
+            }
+            success = true;
+        } finally {
+            es.shutdown();
+            if (!success) {
+                abort();
+            }
+            finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Returns a message describing the overall statistics of the compression run.
+     *
+     * <p>As compression and writing overlap the compression time is
+     * the time elapsed between creating this instance and the end of
+     * {@link #finish} while the merging time is the time spent writing
+     * compressed entries to the target stream.</p>
+     *
+     * @return the statistics of the compression run
+     */
+    public ScatterStatistics getStatisticsMessage() {
+        return new ScatterStatistics(finishedAt - startedAt, writingElapsed);
+    }
+
+    /**
+     * The compressed size of the entries waiting to be written.
+     * @return the number of bytes held in backing stores
+     */
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    private Callable<CompressedEntry> createCallable(
+        final ZipArchiveEntryRequestSupplier zipArchiveEntryRequestSupplier) {
+        return new Callable<CompressedEntry>() {
+            @Override
+            public CompressedEntry call() throws Exception {
+                final ScatterGatherBackingStore bs = backingStoreSupplier.get();
+                final StreamCompressor sc = StreamCompressor.create(compressionLevel, bs, codecPool);
+                final ScatterZipOutputStream scatterStream = new ScatterZipOutputStream(bs, sc);
+                boolean success = false;
+                try {
+                    scatterStream.addArchiveEntry(zipArchiveEntryRequestSupplier.get());
+                    // the deflater is no longer needed, make it available for other entries
+                    sc.close();
+                    final CompressedEntry entry = new CompressedEntry(scatterStream, sc.getBytesWrittenForLastEntry());
+                    synchronized (compressed) {
+                        if (aborted) {
+                            // nobody is going to write the entry, release it right away
+                            return null;
+                        }
+                        bufferedBytes.addAndGet(entry.compressedSize);
+                        compressed.add(entry);
+                    }
+                    success = true;
+                    return entry;
+                } finally {
+                    if (!success) {
+                        scatterStream.close();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes entries that have been compressed to the target stream.
+     *
+     * @param block whether to wait for an entry to be compressed if
+     * none is ready
+     */
+    private void writeCompressedEntries(final boolean block)
+        throws IOException, InterruptedException, ExecutionException {
+        boolean mayBlock = block;
+        while (!pending.isEmpty()) {
+            final Future<CompressedEntry> next;
+            if (preserveOrder) {
+                if (!mayBlock && !pending.peek().isDone()) {
+                    return;
+                }
+                next = pending.poll();
+            } else {
+                next = mayBlock ? completionService.take() : completionService.poll();
+                if (next == null) {
+                    return;
+                }
+                pending.remove(next);
+            }
+            write(next.get());
+            mayBlock = false;
+        }
+    }
+
+    private void write(final CompressedEntry entry) throws IOException {
+        synchronized (compressed) {
+            compressed.remove(entry);
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            entry.scatterStream.zipEntryWriter().writeNextZipEntry(target);
+        } finally {
+            entry.close();
+            writingElapsed += System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * Cancels all pending entries and releases their backing stores.
+     *
+     * <p>Entries that are being compressed are not interrupted - an
+     * interrupt might close channels used by the backing store or the
+     * source - but release their backing stores once they
+     * complete.</p>
+     */
+    private void ensureNotAborted() {
+        synchronized (compressed) {
+            if (aborted) {
+                throw new IllegalStateException("creator has been aborted");
+            }
+        }
+    }
+
+    private void abort() {
+        for (final Future<CompressedEntry> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        synchronized (compressed) {
+            aborted = true;
+            for (final CompressedEntry entry : compressed) {
+                try {
+                    entry.close();
+                } catch (IOException ex) { //NOSONAR
+                    // no way to properly log this
+                }
+            }
+            compressed.clear();
+        }
+    }
+
+    /**
+     * A single compressed entry held in its own backing store.
+     */
+    private class CompressedEntry implements Closeable {
+        private final ScatterZipOutputStream scatterStream;
+        private final long compressedSize;
+
+        CompressedEntry(final ScatterZipOutputStream scatterStream, final long compressedSize) {
+            this.scatterStream = scatterStream;
+            this.compressedSize = compressedSize;
+        }
+
+        @Override
+        public void close() throws IOException {
+            bufferedBytes.addAndGet(-compressedSize);
+            scatterStream.close();
+        }
+    }
+}
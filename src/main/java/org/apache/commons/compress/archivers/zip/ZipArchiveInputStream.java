@@ -93,7 +93,10 @@ public class ZipArchiveInputStream extends ArchiveInputStream implements InputSt
     private final InputStream in;
 
     /** Inflater used for all deflated entries. */
-    private final Inflater inf = new Inflater(true);
+    private final Inflater inf;
+
+    /** Pool the inflater has been taken from, may be null. */
+    private final ZipCodecPool codecPool;
 
     /** Buffer used to read from the wrapped stream. */
     private final ByteBuffer buf = ByteBuffer.allocate(ZipArchiveOutputStream.BUFFER_SIZE);
@@ -238,6 +241,35 @@ public ZipArchiveInputStream(final InputStream inputStream,
                                  final boolean useUnicodeExtraFields,
                                  final boolean allowStoredEntriesWithDataDescriptor,
                                  final boolean skipSplitSig) {
+        this(inputStream, encoding, useUnicodeExtraFields, allowStoredEntriesWithDataDescriptor, skipSplitSig,
+             null);
+    }
+
+    /**
+     * Create an instance using the specified encoding
+     * @param inputStream the stream to wrap
+     * @param encoding the encoding to use for file names, use null
+     * for the platform's default encoding
+     * @param useUnicodeExtraFields whether to use InfoZIP Unicode
+     * Extra Fields (if present) to set the file names.
+     * @param allowStoredEntriesWithDataDescriptor whether the stream
+     * will try to read STORED entries that use a data descriptor
+     * @param skipSplitSig Whether the stream will try to skip the zip
+     * split signature(08074B50) at the beginning. You will need to
+     * set this to true if you want to read a split archive.
+     * @param codecPool pool to obtain the inflater from, it is
+     * returned to the pool when this stream is closed. Use null to
+     * create a new inflater.
+     * @since 1.21
+     */
+    public ZipArchiveInputStream(final InputStream inputStream,
+                                 final String encoding,
+                                 final boolean useUnicodeExtraFields,
+                                 final boolean allowStoredEntriesWithDataDescriptor,
+                                 final boolean skipSplitSig,
+                                 final ZipCodecPool codecPool) {
+        this.codecPool = codecPool;
+        inf = codecPool != null ? codecPool.borrowInflater() : new Inflater(true);
         this.encoding = encoding;
         zipEncoding = ZipEncodingHelper.getZipEncoding(encoding);
         this.useUnicodeExtraFields = useUnicodeExtraFields;
@@ -634,7 +666,11 @@ public void close() throws IOException {
             try {
                 in.close();
             } finally {
-                inf.end();
+                if (codecPool != null) {
+                    codecPool.returnInflater(inf);
+                } else {
+                    inf.end();
+                }
             }
         }
     }
@@ -33,11 +33,13 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.Deflater;
 import java.util.zip.ZipException;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.compressors.deflate.ParallelDeflater;
 import org.apache.commons.compress.utils.IOUtils;
 
 import static org.apache.commons.compress.archivers.zip.ZipConstants.DATA_DESCRIPTOR_MIN_VERSION;
@@ -167,6 +169,13 @@ public class ZipArchiveOutputStream extends ArchiveOutputStream {
      */
     private boolean hasCompressionLevelChanged = false;
 
+    /**
+     * Executor deflating blocks of entries in parallel, may be null.
+     */
+    private ExecutorService parallelDeflateExecutor;
+    private int parallelDeflateBlockSize;
+    private int maxPendingParallelDeflateBlocks;
+
     /**
      * Default compression method for next entry.
      */
@@ -864,6 +873,8 @@ private void putArchiveEntry(final ArchiveEntry archiveEntry, final boolean phas
             def.setLevel(level);
             hasCompressionLevelChanged = false;
         }
+        streamCompressor.setParallelDeflater(entry.entry.getMethod() == DEFLATED ? parallelDeflateExecutor : null,
+            level, parallelDeflateBlockSize, maxPendingParallelDeflateBlocks);
         writeLocalFileHeader((ZipArchiveEntry) archiveEntry, phased);
     }
 
@@ -962,6 +973,61 @@ public void setLevel(final int level) {
         this.level = level;
     }
 
+    /**
+     * Sets the executor service used to deflate the content of
+     * subsequent entries in parallel.
+     *
+     * <p>If set, the data of each {@link #DEFLATED} entry written via
+     * the {@code write} methods is split into blocks that are
+     * compressed concurrently using a {@link
+     * org.apache.commons.compress.compressors.deflate.ParallelDeflater}.
+     * This speeds up writing large entries at the cost of a slightly
+     * bigger archive. Entries added via {@link #addRawArchiveEntry}
+     * are not affected.</p>
+     *
+     * <p>The executor service is not shut down by this class.</p>
+     *
+     * @param executorService the executor service to use, null
+     * (the default) deflates entries on the calling thread
+     * @see #setParallelDeflateExecutor(ExecutorService, int, int)
+     * @since 1.21
+     */
+    public void setParallelDeflateExecutor(final ExecutorService executorService) {
+        setParallelDeflateExecutor(executorService, ParallelDeflater.DEFAULT_BLOCK_SIZE,
+            ParallelDeflater.defaultMaxPendingBlocks());
+    }
+
+    /**
+     * Sets the executor service used to deflate the content of
+     * subsequent entries in parallel and the size of the blocks.
+     *
+     * <p>The executor service is not shut down by this class.</p>
+     *
+     * @param executorService the executor service to use, null
+     * (the default) deflates entries on the calling thread
+     * @param blockSize the size of the blocks the content of an
+     * entry is split into, must be at least 32k
+     * @param maxPendingBlocks the maximum number of blocks that have
+     * been submitted but not written, must be positive
+     * @throws IllegalArgumentException if blockSize or
+     * maxPendingBlocks are outside of their valid range
+     * @see ParallelDeflater
+     * @since 1.21
+     */
+    public void setParallelDeflateExecutor(final ExecutorService executorService, final int blockSize,
+        final int maxPendingBlocks) {
+        if (blockSize < ParallelDeflater.MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException("blockSize must be at least " + ParallelDeflater.MIN_BLOCK_SIZE
+                + " but is " + blockSize);
+        }
+        if (maxPendingBlocks <= 0) {
+            throw new IllegalArgumentException("maxPendingBlocks must be positive but is " + maxPendingBlocks);
+        }
+        this.parallelDeflateExecutor = executorService;
+        this.parallelDeflateBlockSize = blockSize;
+        this.maxPendingParallelDeflateBlocks = maxPendingBlocks;
+    }
+
     /**
      * Sets the default compression method for subsequent entries.
      *
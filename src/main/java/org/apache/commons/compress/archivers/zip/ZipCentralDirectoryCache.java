@@ -0,0 +1,217 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process cache for the parsed central directories of zip
+ * archives that are opened repeatedly.
+ *
+ * <p>A cache can be shared by many {@link ZipFile} instances (see
+ * {@link ZipFileOptions.Builder#withCentralDirectoryCache}). When a
+ * {@link ZipFile} is opened for a file whose central directory is
+ * already cached it only reads the end of central directory record
+ * and reuses the compact entry table created by an earlier
+ * instance rather than reading and parsing the central directory
+ * again. The offsets of the entries' data are determined before a
+ * central directory is added to the cache, so archives opened from
+ * the cache don't read any local file header before an entry's data
+ * is read.</p>
+ *
+ * <p>Archives are identified by their absolute path, size, last
+ * modification time and a checksum of the end of central directory
+ * record as well as the encoding used for file names. The cache
+ * holds at most a fixed number of archives and evicts the least
+ * recently used archive once the limit has been reached.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+public class ZipCentralDirectoryCache {
+
+    /**
+     * Default number of archives kept by the cache.
+     */
+    public static final int DEFAULT_MAX_ARCHIVES = 16;
+
+    private final Map<Key, CompactEntryTable> tables;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache holding at most {@link #DEFAULT_MAX_ARCHIVES}
+     * archives.
+     */
+    public ZipCentralDirectoryCache() {
+        this(DEFAULT_MAX_ARCHIVES);
+    }
+
+    /**
+     * Creates a cache holding at most the given number of archives.
+     *
+     * @param maxArchives maximum number of archives to keep, must be
+     * positive
+     * @throws IllegalArgumentException if maxArchives is not positive
+     */
+    public ZipCentralDirectoryCache(final int maxArchives) {
+        if (maxArchives <= 0) {
+            throw new IllegalArgumentException("maxArchives must be positive but is " + maxArchives);
+        }
+        tables = new LinkedHashMap<Key, CompactEntryTable>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, CompactEntryTable> eldest) {
+                if (size() > maxArchives) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks up the central directory of an archive.
+     *
+     * @return the cached table or null
+     */
+    CompactEntryTable get(final Key key) {
+        final CompactEntryTable table;
+        synchronized (tables) {
+            table = tables.get(key);
+        }
+        if (table != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return table;
+    }
+
+    /**
+     * Stores the central directory of an archive.
+     */
+    void put(final Key key, final CompactEntryTable table) {
+        synchronized (tables) {
+            tables.put(key, table);
+        }
+    }
+
+    /**
+     * Removes all archives from the cache.
+     */
+    public void clear() {
+        synchronized (tables) {
+            tables.clear();
+        }
+    }
+
+    /**
+     * The number of archives currently held by the cache.
+     * @return the number of cached archives
+     */
+    public int size() {
+        synchronized (tables) {
+            return tables.size();
+        }
+    }
+
+    /**
+     * The number of times a central directory could be taken from the cache.
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * The number of times a central directory had to be read from the archive.
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The number of archives that have been removed from the cache
+     * in order to make room for other archives.
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+            + ", size=" + size();
+    }
+
+    /**
+     * Identifies an archive and the way its central directory has
+     * been parsed.
+     */
+    static final class Key {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final long endOfCentralDirectoryCrc;
+        private final String encoding;
+        private final boolean useUnicodeExtraFields;
+
+        Key(final String path, final long size, final long lastModified, final long endOfCentralDirectoryCrc,
+            final String encoding, final boolean useUnicodeExtraFields) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.endOfCentralDirectoryCrc = endOfCentralDirectoryCrc;
+            this.encoding = encoding;
+            this.useUnicodeExtraFields = useUnicodeExtraFields;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return size == other.size
+                && lastModified == other.lastModified
+                && endOfCentralDirectoryCrc == other.endOfCentralDirectoryCrc
+                && useUnicodeExtraFields == other.useUnicodeExtraFields
+                && path.equals(other.path)
+                && Objects.equals(encoding, other.encoding);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified, endOfCentralDirectoryCrc, encoding,
+                useUnicodeExtraFields);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A bounded, thread-safe pool of raw ({@code nowrap}) {@link Inflater}
+ * and {@link Deflater} instances.
+ *
+ * <p>Every {@link Inflater} and {@link Deflater} holds native zlib
+ * state that is only released when {@code end()} is called.  When
+ * many small entries are read or written the allocation and release
+ * of this state can dominate the cost of (de)compression.  A pool
+ * can be shared by {@link ZipFile} (see {@link ZipFileOptions}),
+ * {@link ZipArchiveInputStream}, {@link StreamCompressor} and {@link
+ * ParallelScatterZipCreator} so that codecs are reset and reused
+ * rather than recreated.</p>
+ *
+ * <p>Codecs handed out by this pool must be returned using {@link
+ * #returnInflater} or {@link #returnDeflater} exactly once and must
+ * not be ended by the caller.  At most {@code maxIdle} instances of
+ * each kind are kept, surplus codecs are ended when returned.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+public class ZipCodecPool {
+
+    /**
+     * Default number of idle codecs of each kind kept by the pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = 32;
+
+    private final BlockingQueue<Inflater> inflaters;
+    private final BlockingQueue<Deflater> deflaters;
+
+    private final AtomicLong inflaterHits = new AtomicLong();
+    private final AtomicLong inflaterMisses = new AtomicLong();
+    private final AtomicLong deflaterHits = new AtomicLong();
+    private final AtomicLong deflaterMisses = new AtomicLong();
+
+    /**
+     * Creates a pool keeping at most {@link #DEFAULT_MAX_IDLE} idle
+     * codecs of each kind.
+     */
+    public ZipCodecPool() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Creates a pool keeping at most the given number of idle codecs
+     * of each kind.
+     *
+     * @param maxIdle maximum number of idle inflaters and - separately -
+     * idle deflaters to keep, must be positive
+     * @throws IllegalArgumentException if maxIdle is not positive
+     */
+    public ZipCodecPool(final int maxIdle) {
+        if (maxIdle <= 0) {
+            throw new IllegalArgumentException("maxIdle must be positive but is " + maxIdle);
+        }
+        inflaters = new ArrayBlockingQueue<>(maxIdle);
+        deflaters = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * Obtains an {@link Inflater} in {@code nowrap} mode, either from
+     * the pool or a newly created one.
+     *
+     * @return an inflater ready to receive input
+     */
+    public Inflater borrowInflater() {
+        final Inflater inflater = inflaters.poll();
+        if (inflater != null) {
+            inflaterHits.incrementAndGet();
+            return inflater;
+        }
+        inflaterMisses.incrementAndGet();
+        return new Inflater(true);
+    }
+
+    /**
+     * Returns an inflater obtained via {@link #borrowInflater} to the
+     * pool.
+     *
+     * <p>The inflater is reset, or ended if the pool is full.</p>
+     *
+     * @param inflater the inflater to return, may be null
+     */
+    public void returnInflater(final Inflater inflater) {
+        if (inflater == null) {
+            return;
+        }
+        inflater.reset();
+        if (!inflaters.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Obtains a {@link Deflater} in {@code nowrap} mode using the
+     * given compression level, either from the pool or a newly
+     * created one.
+     *
+     * @param level the compression level
+     * @return a deflater ready to receive input
+     */
+    public Deflater borrowDeflater(final int level) {
+        final Deflater deflater = deflaters.poll();
+        if (deflater != null) {
+            deflaterHits.incrementAndGet();
+            deflater.setLevel(level);
+            return deflater;
+        }
+        deflaterMisses.incrementAndGet();
+        return new Deflater(level, true);
+    }
+
+    /**
+     * Returns a deflater obtained via {@link #borrowDeflater} to the
+     * pool.
+     *
+     * <p>The deflater is reset, or ended if the pool is full.</p>
+     *
+     * @param deflater the deflater to return, may be null
+     */
+    public void returnDeflater(final Deflater deflater) {
+        if (deflater == null) {
+            return;
+        }
+        deflater.reset();
+        deflater.setStrategy(Deflater.DEFAULT_STRATEGY);
+        if (!deflaters.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Ends all idle codecs currently held by the pool.
+     *
+     * <p>Codecs currently borrowed are not affected and may still be
+     * returned later.</p>
+     */
+    public void clear() {
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) {
+            inflater.end();
+        }
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * The number of inflaters currently idle inside the pool.
+     * @return the number of idle inflaters
+     */
+    public int getIdleInflaters() {
+        return inflaters.size();
+    }
+
+    /**
+     * The number of deflaters currently idle inside the pool.
+     * @return the number of idle deflaters
+     */
+    public int getIdleDeflaters() {
+        return deflaters.size();
+    }
+
+    /**
+     * The number of times {@link #borrowInflater} could reuse a pooled inflater.
+     * @return the number of inflater hits
+     */
+    public long getInflaterHits() {
+        return inflaterHits.get();
+    }
+
+    /**
+     * The number of times {@link #borrowInflater} had to create a new inflater.
+     * @return the number of inflater misses
+     */
+    public long getInflaterMisses() {
+        return inflaterMisses.get();
+    }
+
+    /**
+     * The number of times {@link #borrowDeflater} could reuse a pooled deflater.
+     * @return the number of deflater hits
+     */
+    public long getDeflaterHits() {
+        return deflaterHits.get();
+    }
+
+    /**
+     * The number of times {@link #borrowDeflater} had to create a new deflater.
+     * @return the number of deflater misses
+     */
+    public long getDeflaterMisses() {
+        return deflaterMisses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "inflaterHits=" + getInflaterHits() + ", inflaterMisses=" + getInflaterMisses()
+            + ", deflaterHits=" + getDeflaterHits() + ", deflaterMisses=" + getDeflaterMisses();
+    }
+}
@@ -30,6 +30,7 @@
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -39,7 +40,11 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
 import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 
 import org.apache.commons.compress.archivers.EntryStreamOffsets;
@@ -148,6 +153,36 @@ public class ZipFile implements Closeable {
      */
     private final boolean isSplitZipArchive;
 
+    /**
+     * Pool inflaters are taken from, may be null.
+     */
+    private final ZipCodecPool codecPool;
+
+    /**
+     * Memory mapping of the archive, may be null.
+     */
+    private final MemoryMappedArchive mappedArchive;
+
+    /**
+     * Compact form of the central directory, may be null. If set
+     * {@link #entries} and {@link #nameMap} remain empty and entries
+     * are created on demand.
+     */
+    private final CompactEntryTable compactEntryTable;
+
+    /**
+     * Entries recently created from the compact entry table, indexed
+     * by their position inside of the table modulo the array's
+     * length.
+     */
+    private final AtomicReferenceArray<Entry> recentCompactEntries =
+        new AtomicReferenceArray<>(RECENT_COMPACT_ENTRIES);
+
+    /**
+     * Whether local file headers are ignored completely.
+     */
+    private final boolean ignoreLocalFileHeader;
+
     // cached buffers - must only be used locally in the class (COMPRESS-172 - reduce garbage collection)
     private final byte[] dwordBuf = new byte[DWORD];
     private final byte[] wordBuf = new byte[WORD];
@@ -253,8 +288,47 @@ public ZipFile(final File f, final String encoding, final boolean useUnicodeExtr
     public ZipFile(final File f, final String encoding, final boolean useUnicodeExtraFields,
                    final boolean ignoreLocalFileHeader)
         throws IOException {
+        this(f, encoding, useUnicodeExtraFields, ignoreLocalFileHeader, ZipFileOptions.DEFAULT);
+    }
+
+    /**
+     * Opens the given file for reading, assuming "UTF8" for file names
+     * and scanning for unicode extra fields.
+     *
+     * @param f the archive.
+     * @param options the options to apply
+     *
+     * @throws IOException if an error occurs while reading the file.
+     * @since 1.21
+     */
+    public ZipFile(final File f, final ZipFileOptions options) throws IOException {
+        this(f, ZipEncodingHelper.UTF8, true, false, options);
+    }
+
+    /**
+     * Opens the given file for reading, assuming the specified
+     * encoding for file names.
+     *
+     * <p>See {@link #ZipFile(File, String, boolean, boolean)} for the
+     * meaning of {@code ignoreLocalFileHeader}.</p>
+     *
+     * @param f the archive.
+     * @param encoding the encoding to use for file names, use null
+     * for the platform's default encoding
+     * @param useUnicodeExtraFields whether to use InfoZIP Unicode
+     * Extra Fields (if present) to set the file names.
+     * @param ignoreLocalFileHeader whether to ignore information
+     * stored inside the local file header
+     * @param options the options to apply
+     *
+     * @throws IOException if an error occurs while reading the file.
+     * @since 1.21
+     */
+    public ZipFile(final File f, final String encoding, final boolean useUnicodeExtraFields,
+                   final boolean ignoreLocalFileHeader, final ZipFileOptions options)
+        throws IOException {
         this(Files.newByteChannel(f.toPath(), EnumSet.of(StandardOpenOption.READ)),
-             f.getAbsolutePath(), encoding, useUnicodeExtraFields, true, ignoreLocalFileHeader);
+             f.getAbsolutePath(), encoding, useUnicodeExtraFields, true, ignoreLocalFileHeader, options, f);
     }
 
     /**
@@ -354,23 +428,95 @@ public ZipFile(final SeekableByteChannel channel, final String archiveName,
         this(channel, archiveName, encoding, useUnicodeExtraFields, false, ignoreLocalFileHeader);
     }
 
+    /**
+     * Opens the given channel for reading, assuming the specified
+     * encoding for file names.
+     *
+     * <p>See {@link #ZipFile(SeekableByteChannel, String, String,
+     * boolean, boolean)} for the meaning of {@code
+     * ignoreLocalFileHeader}.</p>
+     *
+     * @param channel the archive.
+     * @param archiveName name of the archive, used for error messages only.
+     * @param encoding the encoding to use for file names, use null
+     * for the platform's default encoding
+     * @param useUnicodeExtraFields whether to use InfoZIP Unicode
+     * Extra Fields (if present) to set the file names.
+     * @param ignoreLocalFileHeader whether to ignore information
+     * stored inside the local file header
+     * @param options the options to apply
+     *
+     * @throws IOException if an error occurs while reading the file.
+     * @since 1.21
+     */
+    public ZipFile(final SeekableByteChannel channel, final String archiveName,
+                   final String encoding, final boolean useUnicodeExtraFields,
+                   final boolean ignoreLocalFileHeader, final ZipFileOptions options)
+        throws IOException {
+        this(channel, archiveName, encoding, useUnicodeExtraFields, false, ignoreLocalFileHeader, options,
+             null);
+    }
+
     private ZipFile(final SeekableByteChannel channel, final String archiveName,
                     final String encoding, final boolean useUnicodeExtraFields,
                     final boolean closeOnError, final boolean ignoreLocalFileHeader)
         throws IOException {
+        this(channel, archiveName, encoding, useUnicodeExtraFields, closeOnError, ignoreLocalFileHeader,
+             ZipFileOptions.DEFAULT, null);
+    }
+
+    /**
+     * @param file the file the channel has been opened for or null if
+     * the channel has been provided by the user.
+     */
+    private ZipFile(final SeekableByteChannel channel, final String archiveName,
+                    final String encoding, final boolean useUnicodeExtraFields,
+                    final boolean closeOnError, final boolean ignoreLocalFileHeader,
+                    final ZipFileOptions options, final File file)
+        throws IOException {
         isSplitZipArchive = (channel instanceof ZipSplitReadOnlySeekableByteChannel);
+        codecPool = options.getCodecPool();
 
         this.archiveName = archiveName;
         this.encoding = encoding;
         this.zipEncoding = ZipEncodingHelper.getZipEncoding(encoding);
         this.useUnicodeExtraFields = useUnicodeExtraFields;
+        this.ignoreLocalFileHeader = ignoreLocalFileHeader;
         archive = channel;
         boolean success = false;
         try {
+            mappedArchive = options.getUseMemoryMapping() && channel instanceof FileChannel
+                ? new MemoryMappedArchive((FileChannel) channel) : null;
             final Map<ZipArchiveEntry, NameAndComment> entriesWithoutUTF8Flag =
-                populateFromCentralDirectory();
+                new HashMap<>();
+            final ZipCentralDirectoryCache cache = file != null ? options.getCentralDirectoryCache() : null;
+            final boolean compact = options.getCompactEntryTable() || cache != null;
+            if (cache != null) {
+                final ZipCentralDirectoryCache.Key key = createCacheKey(file);
+                CompactEntryTable table = cache.get(key);
+                if (table == null) {
+                    table = populateFromCentralDirectory(true, entriesWithoutUTF8Flag);
+                    if (table != null) {
+                        recordDataOffsets(table);
+                        cache.put(key, table);
+                    }
+                }
+                compactEntryTable = table;
+            } else {
+                compactEntryTable = populateFromCentralDirectory(compact, entriesWithoutUTF8Flag);
+            }
             if (!ignoreLocalFileHeader) {
-                resolveLocalFileHeaderData(entriesWithoutUTF8Flag);
+                if (options.getLazyLocalFileHeaders() || compact) {
+                    for (final Map.Entry<ZipArchiveEntry, NameAndComment> e : entriesWithoutUTF8Flag.entrySet()) {
+                        ZipUtil.setNameAndCommentFromExtraFields(e.getKey(), e.getValue().name,
+                                                                 e.getValue().comment);
+                    }
+                    for (final ZipArchiveEntry ze : entries) {
+                        ((Entry) ze).localFileHeaderPending = true;
+                    }
+                } else {
+                    resolveLocalFileHeaderData(entriesWithoutUTF8Flag);
+                }
             }
             fillNameMap();
             success = true;
@@ -425,6 +571,9 @@ public static void closeQuietly(final ZipFile zipfile) {
      * @return all entries as {@link ZipArchiveEntry} instances
      */
     public Enumeration<ZipArchiveEntry> getEntries() {
+        if (compactEntryTable != null) {
+            return enumerateCompactEntries(null);
+        }
         return Collections.enumeration(entries);
     }
 
@@ -439,6 +588,9 @@ public Enumeration<ZipArchiveEntry> getEntries() {
      * @since 1.1
      */
     public Enumeration<ZipArchiveEntry> getEntriesInPhysicalOrder() {
+        if (compactEntryTable != null) {
+            return enumerateCompactEntries(compactEntryTable.getPhysicalOrder());
+        }
         final ZipArchiveEntry[] allEntries = entries.toArray(new ZipArchiveEntry[entries.size()]);
         Arrays.sort(allEntries, offsetComparator);
         return Collections.enumeration(Arrays.asList(allEntries));
@@ -457,6 +609,10 @@ public Enumeration<ZipArchiveEntry> getEntriesInPhysicalOrder() {
      * {@code null} if not present.
      */
     public ZipArchiveEntry getEntry(final String name) {
+        if (compactEntryTable != null) {
+            final List<ZipArchiveEntry> entriesOfThatName = getCompactEntries(name, true);
+            return entriesOfThatName.isEmpty() ? null : entriesOfThatName.get(0);
+        }
         final LinkedList<ZipArchiveEntry> entriesOfThatName = nameMap.get(name);
         return entriesOfThatName != null ? entriesOfThatName.getFirst() : null;
     }
@@ -471,6 +627,9 @@ public ZipArchiveEntry getEntry(final String name) {
      * @since 1.6
      */
     public Iterable<ZipArchiveEntry> getEntries(final String name) {
+        if (compactEntryTable != null) {
+            return getCompactEntries(name, false);
+        }
         final List<ZipArchiveEntry> entriesOfThatName = nameMap.get(name);
         return entriesOfThatName != null ? entriesOfThatName
             : Collections.<ZipArchiveEntry>emptyList();
@@ -487,13 +646,115 @@ public Iterable<ZipArchiveEntry> getEntries(final String name) {
      */
     public Iterable<ZipArchiveEntry> getEntriesInPhysicalOrder(final String name) {
         ZipArchiveEntry[] entriesOfThatName = new ZipArchiveEntry[0];
-        if (nameMap.containsKey(name)) {
+        if (compactEntryTable != null) {
+            entriesOfThatName = getCompactEntries(name, false).toArray(entriesOfThatName);
+            Arrays.sort(entriesOfThatName, offsetComparator);
+        } else if (nameMap.containsKey(name)) {
             entriesOfThatName = nameMap.get(name).toArray(entriesOfThatName);
             Arrays.sort(entriesOfThatName, offsetComparator);
         }
         return Arrays.asList(entriesOfThatName);
     }
 
+    /**
+     * Creates the entries stored inside of the compact entry table
+     * in the given order as they are requested.
+     *
+     * @param order indices of the entries or null to return them in
+     * the same order they appear within the central directory
+     */
+    private Enumeration<ZipArchiveEntry> enumerateCompactEntries(final int[] order) {
+        final int count = compactEntryTable.size();
+        return new Enumeration<ZipArchiveEntry>() {
+            private int next;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < count;
+            }
+
+            @Override
+            public ZipArchiveEntry nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+                final int index = next++;
+                return getCompactEntry(order != null ? order[index] : index);
+            }
+        };
+    }
+
+    /**
+     * Creates all entries of the compact entry table with the given
+     * name in the same order they appear within the central
+     * directory.
+     */
+    private List<ZipArchiveEntry> getCompactEntries(final String name, final boolean firstOnly) {
+        final List<ZipArchiveEntry> entriesOfThatName = new ArrayList<>();
+        if (name == null) {
+            return entriesOfThatName;
+        }
+        for (final int index : compactEntryTable.findCandidates(name.hashCode())) {
+            final ZipArchiveEntry ze = getCompactEntry(index);
+            if (name.equals(ze.getName())) {
+                entriesOfThatName.add(ze);
+                if (firstOnly) {
+                    break;
+                }
+            }
+        }
+        return entriesOfThatName;
+    }
+
+    /**
+     * Decodes the name of the entry at the given index of the compact
+     * entry table for error messages.
+     */
+    private String getCompactEntryName(final int index) {
+        final byte[] cd = compactEntryTable.getCentralDirectory();
+        final int cfhOff = compactEntryTable.getRecordOffset(index);
+        final int nameOff = cfhOff + CFH_LEN;
+        final byte[] fileName = Arrays.copyOfRange(cd, nameOff,
+            nameOff + ZipShort.getValue(cd, cfhOff + CFH_FILENAME_LENGTH_OFFSET));
+        final ZipEncoding entryEncoding = GeneralPurposeBit.parse(cd, cfhOff + SHORT + SHORT).usesUTF8ForNames()
+            ? ZipEncodingHelper.UTF8_ZIP_ENCODING : zipEncoding;
+        try {
+            return "entry " + entryEncoding.decode(fileName);
+        } catch (IOException ex) { //NOSONAR
+            return "entry " + index;
+        }
+    }
+
+    /**
+     * Provides the entry at the given index of the compact entry
+     * table, creating it unless it has been requested recently.
+     */
+    private ZipArchiveEntry getCompactEntry(final int index) {
+        final int slot = index & (RECENT_COMPACT_ENTRIES - 1);
+        final Entry recent = recentCompactEntries.get(slot);
+        if (recent != null && recent.compactIndex == index) {
+            return recent;
+        }
+        final Entry ze;
+        try {
+            ze = createEntry(compactEntryTable.getCentralDirectory(), compactEntryTable.getRecordOffset(index));
+        } catch (IOException ex) {
+            // the same record has already been parsed successfully when
+            // the archive has been opened, this is a bug rather than an
+            // I/O error and the enumerations using this method cannot
+            // throw IOException
+            throw new IllegalStateException("Failed to parse central directory record of "
+                + getCompactEntryName(index) + " in " + archiveName, ex);
+        }
+        ze.compactIndex = index;
+        ze.setDataOffset(compactEntryTable.getDataOffset(index));
+        if (!ignoreLocalFileHeader) {
+            ze.localFileHeaderPending = true;
+        }
+        recentCompactEntries.set(slot, ze);
+        return ze;
+    }
+
     /**
      * Whether this class is able to read the given entry.
      *
@@ -513,14 +774,29 @@ public boolean canReadEntryData(final ZipArchiveEntry ze) {
      * <p>This method does not relate to how/if we understand the payload in the
      * stream, since we really only intend to move it on to somewhere else.</p>
      *
+     * <p>If local file headers are read lazily this method reads the
+     * entry's local file header unless it has already been read. This
+     * doesn't apply to entries of a compact entry table which only
+     * determine their data offset, see {@link
+     * ZipFileOptions.Builder#withCompactEntryTable}.</p>
+     *
      * @param ze The entry to get the stream for
-     * @return The raw input stream containing (possibly) compressed data.
+     * @return The raw input stream containing (possibly) compressed
+     * data or null if the entry doesn't belong to this archive or its
+     * data offset cannot be determined.
      * @since 1.11
      */
     public InputStream getRawInputStream(final ZipArchiveEntry ze) {
         if (!(ze instanceof Entry)) {
             return null;
         }
+        if (!ignoreLocalFileHeader) {
+            try {
+                resolveDataOffset(ze);
+            } catch (IOException ex) {
+                return null;
+            }
+        }
         final long start = ze.getDataOffset();
         if (start == EntryStreamOffsets.OFFSET_UNKNOWN) {
             return null;
@@ -549,6 +825,39 @@ public void copyRawEntries(final ZipArchiveOutputStream target, final ZipArchive
         }
     }
 
+    /**
+     * Reads the local file header of the given entry if local file
+     * headers are read lazily and the entry's local file header has
+     * not been read, yet.
+     *
+     * <p>Until this method has been called, or the entry's data has
+     * been accessed via {@link #getInputStream}, {@link
+     * #getRawInputStream} or {@link #getEntryBuffer}, the data offset
+     * of a lazily read entry may be {@link
+     * EntryStreamOffsets#OFFSET_UNKNOWN} and its extra fields only
+     * contain the data of the central directory. Does nothing if the
+     * local file header has already been read, if local file headers
+     * are read eagerly or ignored completely.</p>
+     *
+     * @param ze the entry to read the local file header of
+     * @throws IOException if the local file header cannot be read,
+     * for example because this ZipFile has been closed
+     * @see ZipFileOptions.Builder#withLazyLocalFileHeaders
+     * @since 1.21
+     */
+    public void resolveLocalFileHeader(final ZipArchiveEntry ze) throws IOException {
+        if (!(ze instanceof Entry) || !((Entry) ze).localFileHeaderPending) {
+            return;
+        }
+        final Entry entry = (Entry) ze;
+        synchronized (archive) {
+            if (entry.localFileHeaderPending) {
+                readLocalFileHeader(entry);
+                entry.localFileHeaderPending = false;
+            }
+        }
+    }
+
     /**
      * Returns an InputStream for reading the contents of the given entry.
      *
@@ -564,13 +873,14 @@ public InputStream getInputStream(final ZipArchiveEntry ze)
         }
         // cast validity is checked just above
         ZipUtil.checkRequestedFeatures(ze);
-        final long start = getDataOffset(ze);
+        final long start = resolveDataOffset(ze);
 
         // doesn't get closed if the method is not supported - which
         // should never happen because of the checkRequestedFeatures
         // call above
-        final InputStream is =
-            new BufferedInputStream(createBoundedInputStream(start, ze.getCompressedSize())); //NOSONAR
+        // reads from a memory mapped archive don't need to be buffered
+        final InputStream is = mappedArchive != null ? createBoundedInputStream(start, ze.getCompressedSize())
+            : new BufferedInputStream(createBoundedInputStream(start, ze.getCompressedSize())); //NOSONAR
         switch (ZipMethod.getMethodByCode(ze.getMethod())) {
             case STORED:
                 return new StoredStatisticsStream(is);
@@ -584,7 +894,7 @@ public InputStream getInputStream(final ZipArchiveEntry ze)
                     throw new IOException("bad IMPLODE data", ex);
                 }
             case DEFLATED:
-                final Inflater inflater = new Inflater(true);
+                final Inflater inflater = codecPool != null ? codecPool.borrowInflater() : new Inflater(true);
                 // Inflater with nowrap=true has this odd contract for a zero padding
                 // byte following the data stream; this used to be zlib's requirement
                 // and has been fixed a long time ago, but the contract persists so
@@ -592,12 +902,21 @@ public InputStream getInputStream(final ZipArchiveEntry ze)
                 // https://docs.oracle.com/javase/7/docs/api/java/util/zip/Inflater.html#Inflater(boolean)
                 return new InflaterInputStreamWithStatistics(new SequenceInputStream(is, new ByteArrayInputStream(ONE_ZERO_BYTE)),
                     inflater) {
+                    private boolean released;
+
                     @Override
                     public void close() throws IOException {
                         try {
                             super.close();
                         } finally {
-                            inflater.end();
+                            if (!released) {
+                                released = true;
+                                if (codecPool != null) {
+                                    codecPool.returnInflater(inflater);
+                                } else {
+                                    inflater.end();
+                                }
+                            }
                         }
                     }
                 };
@@ -623,6 +942,32 @@ public void close() throws IOException {
         }
     }
 
+    /**
+     * Provides the contents of a STORED entry as a read-only buffer
+     * without copying it.
+     *
+     * <p>This only works if the archive has been mapped into memory,
+     * see {@link ZipFileOptions.Builder#withUseMemoryMapping}. The
+     * buffer remains valid after this ZipFile has been closed.</p>
+     *
+     * @param ze the entry to get the buffer for.
+     * @return a read-only buffer holding the entry's data or {@code
+     * null} if the archive isn't mapped, the entry doesn't belong to
+     * this archive, isn't STORED or is bigger than 2GB.
+     * @throws IOException if the data offset of the entry cannot be
+     * determined or the entry uses unsupported features like
+     * encryption
+     * @since 1.21
+     */
+    public ByteBuffer getEntryBuffer(final ZipArchiveEntry ze) throws IOException {
+        if (mappedArchive == null || !(ze instanceof Entry) || ze.getMethod() != ZipEntry.STORED
+            || ze.getCompressedSize() > Integer.MAX_VALUE) {
+            return null;
+        }
+        ZipUtil.checkRequestedFeatures(ze);
+        return mappedArchive.slice(resolveDataOffset(ze), (int) ze.getCompressedSize());
+    }
+
     /**
      * <p>
      * Convenience method to return the entry's content as a String if isUnixSymlink()
@@ -686,9 +1031,59 @@ protected void finalize() throws Throwable {
         /* external file attributes        */ + WORD
         /* relative offset of local header */ + WORD;
 
+    /**
+     * Offset of the "file name length" field inside of the "central
+     * directory" entry structure (without signature). It is directly
+     * followed by the extra field and file comment lengths.
+     */
+    private static final int CFH_FILENAME_LENGTH_OFFSET =
+        /* version made by                 */ SHORT
+        /* version needed to extract       */ + SHORT
+        /* general purpose bit flag        */ + SHORT
+        /* compression method              */ + SHORT
+        /* last mod file time              */ + SHORT
+        /* last mod file date              */ + SHORT
+        /* crc-32                          */ + WORD
+        /* compressed size                 */ + WORD
+        /* uncompressed size               */ + WORD;
+
+    /**
+     * Central directories bigger than this are parsed record by
+     * record rather than being read into a single buffer.
+     */
+    private static final long MAX_BULK_CENTRAL_DIRECTORY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Number of entries created from a compact entry table that are
+     * kept so repeated lookups of the same entry return the same
+     * instance.
+     */
+    private static final int RECENT_COMPACT_ENTRIES = 64;
+
     private static final long CFH_SIG =
         ZipLong.getValue(ZipArchiveOutputStream.CFH_SIG);
 
+    /**
+     * Creates the key used to look up the archive inside of a central
+     * directory cache.
+     *
+     * <p>Reads the end of central directory record (and the Zip64
+     * end of central directory locator that may precede it) in order
+     * to detect archives that have been modified without changing
+     * their size or modification time.</p>
+     */
+    private ZipCentralDirectoryCache.Key createCacheKey(final File file) throws IOException {
+        positionAtEndOfCentralDirectoryRecord();
+        final long start = Math.max(0, archive.position() - ZIP64_EOCDL_LENGTH);
+        final byte[] endOfCentralDirectory = new byte[(int) (archive.size() - start)];
+        archive.position(start);
+        IOUtils.readFully(archive, ByteBuffer.wrap(endOfCentralDirectory));
+        final CRC32 crc = new CRC32();
+        crc.update(endOfCentralDirectory);
+        return new ZipCentralDirectoryCache.Key(file.getAbsolutePath(), archive.size(), file.lastModified(),
+            crc.getValue(), encoding, useUnicodeExtraFields);
+    }
+
     /**
      * Reads the central directory of the given archive and populates
      * the internal tables with ZipArchiveEntry instances.
@@ -697,32 +1092,107 @@ protected void finalize() throws Throwable {
      * the central directory alone, but not the data that requires the
      * local file header or additional data to be read.</p>
      *
-     * @return a map of zipentries that didn't have the language
-     * encoding flag set when read.
+     * @param compact whether to keep the central directory in a
+     * compact entry table rather than the internal tables
+     * @param noUTF8Flag map used to collect the entries that didn't
+     * have the language encoding flag set when read.
+     * @return the compact entry table or null if the internal tables
+     * have been populated.
      */
-    private Map<ZipArchiveEntry, NameAndComment> populateFromCentralDirectory()
+    private CompactEntryTable populateFromCentralDirectory(final boolean compact,
+        final Map<ZipArchiveEntry, NameAndComment> noUTF8Flag)
         throws IOException {
-        final HashMap<ZipArchiveEntry, NameAndComment> noUTF8Flag =
-            new HashMap<>();
-
-        positionAtCentralDirectory();
+        final long centralDirectorySize = positionAtCentralDirectory();
+        final long centralDirectoryStart = archive.position();
+
+        CompactEntryTable table = null;
+        int bulkParsed = 0;
+        if (centralDirectorySize > 0 && centralDirectorySize <= MAX_BULK_CENTRAL_DIRECTORY_SIZE
+            && centralDirectoryStart + centralDirectorySize <= archive.size()) {
+            final byte[] cd = new byte[(int) centralDirectorySize];
+            IOUtils.readFully(archive, ByteBuffer.wrap(cd));
+            if (compact) {
+                table = new CompactEntryTable(cd);
+            }
+            bulkParsed = parseCentralDirectory(cd, table, noUTF8Flag);
+            // continue reading record by record in case the recorded
+            // size of the central directory has been too small
+            archive.position(centralDirectoryStart + bulkParsed);
+        }
 
         wordBbuf.rewind();
         IOUtils.readFully(archive, wordBbuf);
         long sig = ZipLong.getValue(wordBuf);
 
-        if (sig != CFH_SIG && startsWithLocalFileHeader()) {
+        if (bulkParsed == 0 && sig != CFH_SIG && startsWithLocalFileHeader()) {
             throw new IOException("Central directory is empty, can't expand"
                                   + " corrupt archive.");
         }
 
+        if (table != null && sig == CFH_SIG) {
+            // the central directory doesn't fit into the table, use
+            // the internal tables for all entries instead
+            for (int i = 0; i < table.size(); i++) {
+                entries.add(createEntry(table.getCentralDirectory(), table.getRecordOffset(i)));
+            }
+            table = null;
+        }
+
         while (sig == CFH_SIG) {
             readCentralDirectoryEntry(noUTF8Flag);
             wordBbuf.rewind();
             IOUtils.readFully(archive, wordBbuf);
             sig = ZipLong.getValue(wordBuf);
         }
-        return noUTF8Flag;
+
+        if (table != null) {
+            table.complete();
+        }
+        return table;
+    }
+
+    /**
+     * Parses all entries contained in a central directory that has
+     * been read into a single array.
+     *
+     * @param cd the central directory as recorded by the end of
+     * central directory record.
+     * @param table the compact entry table to add the records to or
+     * null if the entries should be added to the internal tables.
+     * @param noUTF8Flag see {@link #readCentralDirectoryEntry(Map)}
+     * @return the number of bytes that have been parsed, starting at
+     * the beginning of the central directory. This is smaller than
+     * the array's length if the central directory is followed by
+     * something that is not a central directory record or a record
+     * extends beyond the array.
+     */
+    private int parseCentralDirectory(final byte[] cd, final CompactEntryTable table,
+                                      final Map<ZipArchiveEntry, NameAndComment> noUTF8Flag)
+        throws IOException {
+        final int size = cd.length;
+        int off = 0;
+        while (off + WORD + CFH_LEN <= size && ZipLong.getValue(cd, off) == CFH_SIG) {
+            final int cfhOff = off + WORD;
+            final int fileNameLen = ZipShort.getValue(cd, cfhOff + CFH_FILENAME_LENGTH_OFFSET);
+            final int extraLen = ZipShort.getValue(cd, cfhOff + CFH_FILENAME_LENGTH_OFFSET + SHORT);
+            final int commentLen = ZipShort.getValue(cd, cfhOff + CFH_FILENAME_LENGTH_OFFSET + SHORT + SHORT);
+            final int nameOff = cfhOff + CFH_LEN;
+            final int extraOff = nameOff + fileNameLen;
+            final int commentOff = extraOff + extraLen;
+            final int end = commentOff + commentLen;
+            if (end > size) {
+                break;
+            }
+            if (table != null) {
+                table.add(cfhOff, createEntry(cd, cfhOff));
+            } else {
+                addCentralDirectoryEntry(cd, cfhOff, Arrays.copyOfRange(cd, nameOff, extraOff),
+                    Arrays.copyOfRange(cd, extraOff, commentOff), Arrays.copyOfRange(cd, commentOff, end),
+                    noUTF8Flag);
+            }
+            off = end;
+        }
+        return off;
     }
 
     /**
@@ -739,18 +1209,88 @@ private Map<ZipArchiveEntry, NameAndComment> populateFromCentralDirectory()
         throws IOException {
         cfhBbuf.rewind();
         IOUtils.readFully(archive, cfhBbuf);
-        int off = 0;
+
+        final byte[] fileName = new byte[ZipShort.getValue(cfhBuf, CFH_FILENAME_LENGTH_OFFSET)];
+        final byte[] cdExtraData = new byte[ZipShort.getValue(cfhBuf, CFH_FILENAME_LENGTH_OFFSET + SHORT)];
+        final byte[] comment = new byte[ZipShort.getValue(cfhBuf, CFH_FILENAME_LENGTH_OFFSET + SHORT + SHORT)];
+        IOUtils.readFully(archive, ByteBuffer.wrap(fileName));
+        IOUtils.readFully(archive, ByteBuffer.wrap(cdExtraData));
+        IOUtils.readFully(archive, ByteBuffer.wrap(comment));
+        addCentralDirectoryEntry(cfhBuf, 0, fileName, cdExtraData, comment, noUTF8Flag);
+    }
+
+    /**
+     * Creates an ZipArchiveEntry from the fixed size part of a
+     * central directory entry and its variable length fields and adds
+     * it to the global maps.
+     *
+     * @param cfh buffer holding the fixed size part of the entry
+     * (without signature)
+     * @param cfhOff offset of the fixed size part inside of cfh
+     * @param noUTF8Flag see {@link #readCentralDirectoryEntry(Map)}
+     */
+    private void addCentralDirectoryEntry(final byte[] cfh, final int cfhOff, final byte[] fileName,
+                                          final byte[] cdExtraData, final byte[] comment,
+                                          final Map<ZipArchiveEntry, NameAndComment> noUTF8Flag)
+        throws IOException {
+        final Entry ze = createEntry(cfh, cfhOff, fileName, cdExtraData, comment);
+        entries.add(ze);
+        if (!ze.getGeneralPurposeBit().usesUTF8ForNames() && useUnicodeExtraFields) {
+            noUTF8Flag.put(ze, new NameAndComment(fileName, comment));
+        }
+    }
+
+    /**
+     * Creates an ZipArchiveEntry from a record of a central directory
+     * that has been read into a single array.
+     *
+     * <p>Unlike {@link #addCentralDirectoryEntry} this uses Unicode
+     * extra fields of the central directory to set the entry's name
+     * and comment right away.</p>
+     *
+     * @param cd buffer holding the central directory
+     * @param cfhOff offset of the fixed size part of the record
+     * (without signature) inside of cd
+     */
+    private Entry createEntry(final byte[] cd, final int cfhOff) throws IOException {
+        final int fileNameLen = ZipShort.getValue(cd, cfhOff + CFH_FILENAME_LENGTH_OFFSET);
+        final int extraLen = ZipShort.getValue(cd, cfhOff + CFH_FILENAME_LENGTH_OFFSET + SHORT);
+        final int commentLen = ZipShort.getValue(cd, cfhOff + CFH_FILENAME_LENGTH_OFFSET + SHORT + SHORT);
+        final int nameOff = cfhOff + CFH_LEN;
+        final int extraOff = nameOff + fileNameLen;
+        final int commentOff = extraOff + extraLen;
+        final byte[] fileName = Arrays.copyOfRange(cd, nameOff, extraOff);
+        final byte[] comment = Arrays.copyOfRange(cd, commentOff, commentOff + commentLen);
+        final Entry ze = createEntry(cd, cfhOff, fileName, Arrays.copyOfRange(cd, extraOff, commentOff), comment);
+        if (!ze.getGeneralPurposeBit().usesUTF8ForNames() && useUnicodeExtraFields) {
+            ZipUtil.setNameAndCommentFromExtraFields(ze, fileName, comment);
+        }
+        return ze;
+    }
+
+    /**
+     * Creates an ZipArchiveEntry from the fixed size part of a
+     * central directory entry and its variable length fields.
+     *
+     * @param cfh buffer holding the fixed size part of the entry
+     * (without signature)
+     * @param cfhOff offset of the fixed size part inside of cfh
+     */
+    private Entry createEntry(final byte[] cfh, final int cfhOff, final byte[] fileName,
+                              final byte[] cdExtraData, final byte[] comment)
+        throws IOException {
+        int off = cfhOff;
         final Entry ze = new Entry();
 
-        final int versionMadeBy = ZipShort.getValue(cfhBuf, off);
+        final int versionMadeBy = ZipShort.getValue(cfh, off);
         off += SHORT;
         ze.setVersionMadeBy(versionMadeBy);
         ze.setPlatform((versionMadeBy >> BYTE_SHIFT) & NIBLET_MASK);
 
-        ze.setVersionRequired(ZipShort.getValue(cfhBuf, off));
+        ze.setVersionRequired(ZipShort.getValue(cfh, off));
         off += SHORT; // version required
 
-        final GeneralPurposeBit gpFlag = GeneralPurposeBit.parse(cfhBuf, off);
+        final GeneralPurposeBit gpFlag = GeneralPurposeBit.parse(cfh, off);
         final boolean hasUTF8Flag = gpFlag.usesUTF8ForNames();
         final ZipEncoding entryEncoding =
             hasUTF8Flag ? ZipEncodingHelper.UTF8_ZIP_ENCODING : zipEncoding;
@@ -758,69 +1298,53 @@ private Map<ZipArchiveEntry, NameAndComment> populateFromCentralDirectory()
             ze.setNameSource(ZipArchiveEntry.NameSource.NAME_WITH_EFS_FLAG);
         }
         ze.setGeneralPurposeBit(gpFlag);
-        ze.setRawFlag(ZipShort.getValue(cfhBuf, off));
+        ze.setRawFlag(ZipShort.getValue(cfh, off));
 
         off += SHORT;
 
         //noinspection MagicConstant
-        ze.setMethod(ZipShort.getValue(cfhBuf, off));
+        ze.setMethod(ZipShort.getValue(cfh, off));
         off += SHORT;
 
-        final long time = ZipUtil.dosToJavaTime(ZipLong.getValue(cfhBuf, off));
+        final long time = ZipUtil.dosToJavaTime(ZipLong.getValue(cfh, off));
         ze.setTime(time);
         off += WORD;
 
-        ze.setCrc(ZipLong.getValue(cfhBuf, off));
+        ze.setCrc(ZipLong.getValue(cfh, off));
         off += WORD;
 
-        ze.setCompressedSize(ZipLong.getValue(cfhBuf, off));
+        ze.setCompressedSize(ZipLong.getValue(cfh, off));
         off += WORD;
 
-        ze.setSize(ZipLong.getValue(cfhBuf, off));
+        ze.setSize(ZipLong.getValue(cfh, off));
         off += WORD;
 
-        final int fileNameLen = ZipShort.getValue(cfhBuf, off);
-        off += SHORT;
-
-        final int extraLen = ZipShort.getValue(cfhBuf, off);
-        off += SHORT;
+        // file name, extra field and comment length have already been read by the caller
+        off += SHORT + SHORT + SHORT;
 
-        final int commentLen = ZipShort.getValue(cfhBuf, off);
+        ze.setDiskNumberStart(ZipShort.getValue(cfh, off));
         off += SHORT;
 
-        ze.setDiskNumberStart(ZipShort.getValue(cfhBuf, off));
+        ze.setInternalAttributes(ZipShort.getValue(cfh, off));
         off += SHORT;
 
-        ze.setInternalAttributes(ZipShort.getValue(cfhBuf, off));
-        off += SHORT;
-
-        ze.setExternalAttributes(ZipLong.getValue(cfhBuf, off));
+        ze.setExternalAttributes(ZipLong.getValue(cfh, off));
         off += WORD;
 
-        final byte[] fileName = new byte[fileNameLen];
-        IOUtils.readFully(archive, ByteBuffer.wrap(fileName));
         ze.setName(entryEncoding.decode(fileName), fileName);
 
         // LFH offset,
-        ze.setLocalHeaderOffset(ZipLong.getValue(cfhBuf, off));
+        ze.setLocalHeaderOffset(ZipLong.getValue(cfh, off));
         // data offset will be filled later
-        entries.add(ze);
 
-        final byte[] cdExtraData = new byte[extraLen];
-        IOUtils.readFully(archive, ByteBuffer.wrap(cdExtraData));
         ze.setCentralDirectoryExtra(cdExtraData);
 
         setSizesAndOffsetFromZip64Extra(ze);
 
-        final byte[] comment = new byte[commentLen];
-        IOUtils.readFully(archive, ByteBuffer.wrap(comment));
         ze.setComment(entryEncoding.decode(comment));
 
-        if (!hasUTF8Flag && useUnicodeExtraFields) {
-            noUTF8Flag.put(ze, new NameAndComment(fileName, comment));
-        }
-
         ze.setStreamContiguous(true);
+        return ze;
     }
 
     /**
@@ -1025,8 +1549,11 @@ private void setSizesAndOffsetFromZip64Extra(final ZipArchiveEntry ze)
      * locator&quot; or the &quot;End of central dir record&quot;, parses
      * it and positions the stream at the first central directory
      * record.
+     *
+     * @return the size of the central directory as recorded in the
+     * end of central directory record
      */
-    private void positionAtCentralDirectory()
+    private long positionAtCentralDirectory()
         throws IOException {
         positionAtEndOfCentralDirectoryRecord();
         boolean found = false;
@@ -1044,10 +1571,9 @@ private void positionAtCentralDirectory()
             if (searchedForZip64EOCD) {
                 skipBytes(ZIP64_EOCDL_LENGTH - WORD);
             }
-            positionAtCentralDirectory32();
-        } else {
-            positionAtCentralDirectory64();
+            return positionAtCentralDirectory32();
         }
+        return positionAtCentralDirectory64();
     }
 
     /**
@@ -1058,8 +1584,10 @@ private void positionAtCentralDirectory()
      *
      * Expects stream to be positioned right behind the &quot;Zip64
      * end of central directory locator&quot;'s signature.
+     *
+     * @return the size of the central directory
      */
-    private void positionAtCentralDirectory64()
+    private long positionAtCentralDirectory64()
         throws IOException {
         if (isSplitZipArchive) {
             wordBbuf.rewind();
@@ -1093,20 +1621,28 @@ private void positionAtCentralDirectory64()
             IOUtils.readFully(archive, wordBbuf);
             final long diskNumberOfCFD = ZipLong.getValue(wordBuf);
 
-            skipBytes(ZIP64_EOCD_CFD_LOCATOR_RELATIVE_OFFSET);
+            skipBytes(ZIP64_EOCD_CFD_LOCATOR_RELATIVE_OFFSET - DWORD);
+            dwordBbuf.rewind();
+            IOUtils.readFully(archive, dwordBbuf);
+            final long sizeOfCFD = ZipEightByteInteger.getLongValue(dwordBuf);
 
             dwordBbuf.rewind();
             IOUtils.readFully(archive, dwordBbuf);
             final long relativeOffsetOfCFD = ZipEightByteInteger.getLongValue(dwordBuf);
             ((ZipSplitReadOnlySeekableByteChannel) archive)
                 .position(diskNumberOfCFD, relativeOffsetOfCFD);
-        } else {
-            skipBytes(ZIP64_EOCD_CFD_LOCATOR_OFFSET
-                    - WORD /* signature has already been read */);
-            dwordBbuf.rewind();
-            IOUtils.readFully(archive, dwordBbuf);
-            archive.position(ZipEightByteInteger.getLongValue(dwordBuf));
+            return sizeOfCFD;
         }
+        skipBytes(ZIP64_EOCD_CFD_LOCATOR_OFFSET - DWORD
+                - WORD /* signature has already been read */);
+        dwordBbuf.rewind();
+        IOUtils.readFully(archive, dwordBbuf);
+        final long sizeOfCFD = ZipEightByteInteger.getLongValue(dwordBuf);
+
+        dwordBbuf.rewind();
+        IOUtils.readFully(archive, dwordBbuf);
+        archive.position(ZipEightByteInteger.getLongValue(dwordBuf));
+        return sizeOfCFD;
     }
 
     /**
@@ -1115,8 +1651,10 @@ private void positionAtCentralDirectory64()
      *
      * Expects stream to be positioned at the beginning of the
      * &quot;End of central dir record&quot;.
+     *
+     * @return the size of the central directory
      */
-    private void positionAtCentralDirectory32()
+    private long positionAtCentralDirectory32()
         throws IOException {
         if (isSplitZipArchive) {
             skipBytes(CFD_DISK_OFFSET);
@@ -1124,19 +1662,27 @@ private void positionAtCentralDirectory32()
             IOUtils.readFully(archive, shortBbuf);
             final int diskNumberOfCFD = ZipShort.getValue(shortBuf);
 
-            skipBytes(CFD_LOCATOR_RELATIVE_OFFSET);
+            skipBytes(CFD_LOCATOR_RELATIVE_OFFSET - WORD);
+            wordBbuf.rewind();
+            IOUtils.readFully(archive, wordBbuf);
+            final long sizeOfCFD = ZipLong.getValue(wordBuf);
 
             wordBbuf.rewind();
             IOUtils.readFully(archive, wordBbuf);
             final long relativeOffsetOfCFD = ZipLong.getValue(wordBuf);
             ((ZipSplitReadOnlySeekableByteChannel) archive)
                 .position(diskNumberOfCFD, relativeOffsetOfCFD);
-        } else {
-            skipBytes(CFD_LOCATOR_OFFSET);
-            wordBbuf.rewind();
-            IOUtils.readFully(archive, wordBbuf);
-            archive.position(ZipLong.getValue(wordBuf));
+            return sizeOfCFD;
         }
+        skipBytes(CFD_LOCATOR_OFFSET - WORD);
+        wordBbuf.rewind();
+        IOUtils.readFully(archive, wordBbuf);
+        final long sizeOfCFD = ZipLong.getValue(wordBuf);
+
+        wordBbuf.rewind();
+        IOUtils.readFully(archive, wordBbuf);
+        archive.position(ZipLong.getValue(wordBuf));
+        return sizeOfCFD;
     }
 
     /**
@@ -1238,13 +1784,7 @@ private void resolveLocalFileHeaderData(final Map<ZipArchiveEntry, NameAndCommen
             // entries is filled in populateFromCentralDirectory and
             // never modified
             final Entry ze = (Entry) zipArchiveEntry;
-            int[] lens = setDataOffset(ze);
-            final int fileNameLen = lens[0];
-            final int extraFieldLen = lens[1];
-            skipBytes(fileNameLen);
-            final byte[] localExtraData = new byte[extraFieldLen];
-            IOUtils.readFully(archive, ByteBuffer.wrap(localExtraData));
-            ze.setExtra(localExtraData);
+            readLocalFileHeader(ze);
 
             if (entriesWithoutUTF8Flag.containsKey(ze)) {
                 final NameAndComment nc = entriesWithoutUTF8Flag.get(ze);
@@ -1254,6 +1794,21 @@ private void resolveLocalFileHeaderData(final Map<ZipArchiveEntry, NameAndCommen
         }
     }
 
+    /**
+     * Reads the local file header of the given entry, records the
+     * offset of the entry's data and merges the local extra fields
+     * into the entry.
+     */
+    private void readLocalFileHeader(final ZipArchiveEntry ze) throws IOException {
+        int[] lens = setDataOffset(ze);
+        final int fileNameLen = lens[0];
+        final int extraFieldLen = lens[1];
+        skipBytes(fileNameLen);
+        final byte[] localExtraData = new byte[extraFieldLen];
+        IOUtils.readFully(archive, ByteBuffer.wrap(localExtraData));
+        ze.setExtra(localExtraData);
+    }
+
     private void fillNameMap() {
         for (final ZipArchiveEntry ze : entries) {
             // entries is filled in populateFromCentralDirectory and
@@ -1269,10 +1824,27 @@ private void fillNameMap() {
     }
 
     private int[] setDataOffset(ZipArchiveEntry ze) throws IOException {
-        long offset = ze.getLocalHeaderOffset();
+        final int[] lens = new int[2];
+        ze.setDataOffset(readDataOffset(ze.getDiskNumberStart(), ze.getLocalHeaderOffset(), lens));
+        if (ze instanceof Entry && ((Entry) ze).compactIndex >= 0) {
+            compactEntryTable.setDataOffset(((Entry) ze).compactIndex, ze.getDataOffset());
+        }
+        return lens;
+    }
+
+    /**
+     * Reads the length fields of a local file header and calculates
+     * the offset of the entry's data from them.
+     *
+     * @param lens receives the length of the file name and the
+     * length of the extra field
+     */
+    private long readDataOffset(final long diskNumberStart, final long localHeaderOffset, final int[] lens)
+        throws IOException {
+        long offset = localHeaderOffset;
         if (isSplitZipArchive) {
             ((ZipSplitReadOnlySeekableByteChannel) archive)
-                .position(ze.getDiskNumberStart(), offset + LFH_OFFSET_FOR_FILENAME_LENGTH);
+                .position(diskNumberStart, offset + LFH_OFFSET_FOR_FILENAME_LENGTH);
             // the offset should be updated to the global offset
             offset = archive.position() - LFH_OFFSET_FOR_FILENAME_LENGTH;
         } else {
@@ -1282,18 +1854,46 @@ private int[] setDataOffset(ZipArchiveEntry ze) throws IOException {
         IOUtils.readFully(archive, wordBbuf);
         wordBbuf.flip();
         wordBbuf.get(shortBuf);
-        final int fileNameLen = ZipShort.getValue(shortBuf);
+        lens[0] = ZipShort.getValue(shortBuf);
         wordBbuf.get(shortBuf);
-        final int extraFieldLen = ZipShort.getValue(shortBuf);
-        ze.setDataOffset(offset + LFH_OFFSET_FOR_FILENAME_LENGTH
-                         + SHORT + SHORT + fileNameLen + extraFieldLen);
-        return new int[] { fileNameLen, extraFieldLen };
+        lens[1] = ZipShort.getValue(shortBuf);
+        return offset + LFH_OFFSET_FOR_FILENAME_LENGTH + SHORT + SHORT + lens[0] + lens[1];
+    }
+
+    /**
+     * Records the data offsets of all entries inside of a compact
+     * entry table that is going to be cached, so archives opened from
+     * the cache don't need to read any local file header in order to
+     * locate an entry's data.
+     */
+    private void recordDataOffsets(final CompactEntryTable table) throws IOException {
+        final int[] lens = new int[2];
+        for (int i = 0; i < table.size(); i++) {
+            table.setDataOffset(i, readDataOffset(table.getDiskNumber(i), table.getLocalHeaderOffset(i), lens));
+        }
+    }
+
+    /**
+     * Determines the offset of the entry's data before it is read.
+     *
+     * <p>Reads the local file header of entries whose local file
+     * header is read lazily, entries of a compact entry table only
+     * read the length fields of the local file header unless the
+     * table already knows the data offset.</p>
+     */
+    private long resolveDataOffset(final ZipArchiveEntry ze) throws IOException {
+        if (((Entry) ze).compactIndex < 0) {
+            resolveLocalFileHeader(ze);
+        }
+        return getDataOffset(ze);
     }
 
     private long getDataOffset(ZipArchiveEntry ze) throws IOException {
         long s = ze.getDataOffset();
         if (s == EntryStreamOffsets.OFFSET_UNKNOWN) {
-            setDataOffset(ze);
+            synchronized (archive) {
+                setDataOffset(ze);
+            }
             return ze.getDataOffset();
         }
         return s;
@@ -1315,20 +1915,24 @@ private boolean startsWithLocalFileHeader() throws IOException {
      * underlying archive channel.
      */
     private BoundedInputStream createBoundedInputStream(long start, long remaining) {
-        return archive instanceof FileChannel ?
-            new BoundedFileChannelInputStream(start, remaining) :
-            new BoundedInputStream(start, remaining);
+        if (mappedArchive != null) {
+            return new BoundedMappedInputStream(start, remaining);
+        }
+        return new BoundedInputStream(start, remaining);
     }
 
     /**
      * InputStream that delegates requests to the underlying
      * SeekableByteChannel, making sure that only bytes from a certain
      * range can be read.
+     *
+     * <p>Channels that support positioned reads are read without
+     * locking, see {@link IOUtils#read(SeekableByteChannel, ByteBuffer, long)}.</p>
      */
     private class BoundedInputStream extends InputStream {
         private ByteBuffer singleByteBuffer;
-        private final long end;
-        private long loc;
+        final long end;
+        long loc;
 
         BoundedInputStream(final long start, final long remaining) {
             this.end = start+remaining;
@@ -1382,33 +1986,36 @@ public synchronized int read(final byte[] b, final int off, int len) throws IOEx
         }
 
         protected int read(long pos, ByteBuffer buf) throws IOException {
-            int read;
-            synchronized (archive) {
-                archive.position(pos);
-                read = archive.read(buf);
-            }
+            int read = IOUtils.read(archive, buf, pos);
             buf.flip();
             return read;
         }
     }
 
     /**
-     * Lock-free implementation of BoundedInputStream. The
-     * implementation uses positioned reads on the underlying archive
-     * file channel and therefore performs significantly faster in
-     * concurrent environment.
+     * Implementation of BoundedInputStream that copies directly from
+     * the memory mapped archive.
      */
-    private class BoundedFileChannelInputStream extends BoundedInputStream {
-        private final FileChannel archive;
-
-        BoundedFileChannelInputStream(final long start, final long remaining) {
+    private class BoundedMappedInputStream extends BoundedInputStream {
+        BoundedMappedInputStream(final long start, final long remaining) {
             super(start, remaining);
-            archive = (FileChannel)ZipFile.this.archive;
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            if (loc >= end) {
+                return -1;
+            }
+            final int b = mappedArchive.read(loc);
+            if (b >= 0) {
+                loc++;
+            }
+            return b;
         }
 
         @Override
         protected int read(long pos, ByteBuffer buf) throws IOException {
-            int read = archive.read(buf, pos);
+            int read = mappedArchive.read(pos, buf);
             buf.flip();
             return read;
         }
@@ -1464,6 +2071,18 @@ public int compare(final ZipArchiveEntry e1, final ZipArchiveEntry e2) {
      */
     private static class Entry extends ZipArchiveEntry {
 
+        /**
+         * Whether the local file header has been skipped when opening
+         * the archive and not been read, yet.
+         */
+        private volatile boolean localFileHeaderPending;
+
+        /**
+         * Index inside of the compact entry table or -1 if the entry
+         * is not backed by a compact entry table.
+         */
+        private int compactIndex = -1;
+
         Entry() {
         }
 
@@ -0,0 +1,259 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+/**
+ * Collects options for reading zip archives via {@link ZipFile}.
+ *
+ * @since 1.21
+ * @Immutable
+ */
+public class ZipFileOptions {
+
+    private final ZipCodecPool codecPool;
+    private final boolean useMemoryMapping;
+    private final boolean lazyLocalFileHeaders;
+    private final boolean compactEntryTable;
+    private final ZipCentralDirectoryCache centralDirectoryCache;
+
+    private ZipFileOptions(final ZipCodecPool codecPool, final boolean useMemoryMapping,
+                           final boolean lazyLocalFileHeaders, final boolean compactEntryTable,
+                           final ZipCentralDirectoryCache centralDirectoryCache) {
+        this.codecPool = codecPool;
+        this.useMemoryMapping = useMemoryMapping;
+        this.lazyLocalFileHeaders = lazyLocalFileHeaders;
+        this.compactEntryTable = compactEntryTable;
+        this.centralDirectoryCache = centralDirectoryCache;
+    }
+
+    /**
+     * The default options.
+     *
+     * <ul>
+     *   <li>no codec pool, each stream uses its own inflater</li>
+     *   <li>don't map the archive into memory</li>
+     *   <li>read all local file headers when opening the archive</li>
+     *   <li>create a {@link ZipArchiveEntry} for each entry when
+     *   opening the archive</li>
+     *   <li>no central directory cache</li>
+     * </ul>
+     */
+    public static final ZipFileOptions DEFAULT = new ZipFileOptions(null, false, false, false, null);
+
+    /**
+     * Obtains a builder for ZipFileOptions.
+     * @return a builder for ZipFileOptions.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the pool inflaters for DEFLATED entries are obtained from.
+     * @return the codec pool or null if each stream creates its own
+     * inflater
+     */
+    public ZipCodecPool getCodecPool() {
+        return codecPool;
+    }
+
+    /**
+     * Gets whether the archive should be mapped into memory.
+     *
+     * <p>This is only honored for archives backed by a {@link
+     * java.nio.channels.FileChannel}.</p>
+     *
+     * @return whether the archive should be mapped into memory
+     */
+    public boolean getUseMemoryMapping() {
+        return useMemoryMapping;
+    }
+
+    /**
+     * Gets whether local file headers are only read once the data
+     * they provide is needed.
+     *
+     * @return whether local file headers are read lazily
+     */
+    public boolean getLazyLocalFileHeaders() {
+        return lazyLocalFileHeaders;
+    }
+
+    /**
+     * Gets whether the central directory is kept in a compact form
+     * and entries are only created when they are requested.
+     *
+     * @return whether to use a compact entry table
+     */
+    public boolean getCompactEntryTable() {
+        return compactEntryTable;
+    }
+
+    /**
+     * Gets the cache parsed central directories are taken from.
+     *
+     * @return the cache or null if the central directory is always
+     * read from the archive
+     */
+    public ZipCentralDirectoryCache getCentralDirectoryCache() {
+        return centralDirectoryCache;
+    }
+
+    /**
+     * Mutable builder for the immutable {@link ZipFileOptions}.
+     *
+     * @since 1.21
+     */
+    public static class Builder {
+        private ZipCodecPool codecPool;
+        private boolean useMemoryMapping;
+        private boolean lazyLocalFileHeaders;
+        private boolean compactEntryTable;
+        private ZipCentralDirectoryCache centralDirectoryCache;
+
+        /**
+         * Sets the pool inflaters for DEFLATED entries are obtained
+         * from.
+         *
+         * @param codecPool the pool to use, may be shared between
+         * several archives. Use null to create a new inflater for each
+         * stream.
+         * @return the reconfigured builder
+         */
+        public Builder withCodecPool(final ZipCodecPool codecPool) {
+            this.codecPool = codecPool;
+            return this;
+        }
+
+        /**
+         * Sets whether the archive should be mapped into memory using
+         * {@link java.nio.channels.FileChannel#map}.
+         *
+         * <p>Mapping the archive avoids a system call for each read
+         * and allows {@link ZipFile#getEntryBuffer} to return the
+         * contents of STORED entries without copying them. It is
+         * only honored for archives backed by a {@link
+         * java.nio.channels.FileChannel}. Note that the mapping is
+         * only released when it gets garbage collected, which may
+         * keep the file locked on some platforms even after the
+         * {@link ZipFile} has been closed.</p>
+         *
+         * @param useMemoryMapping whether to map the archive
+         * @return the reconfigured builder
+         */
+        public Builder withUseMemoryMapping(final boolean useMemoryMapping) {
+            this.useMemoryMapping = useMemoryMapping;
+            return this;
+        }
+
+        /**
+         * Sets whether the local file header of an entry should only
+         * be read once its data offset or extra fields are needed.
+         *
+         * <p>By default {@link ZipFile} reads all local file headers
+         * when the archive is opened, which requires a seek for each
+         * entry. If this option is set only the central directory is
+         * read when the archive is opened and the local file header
+         * is read the first time an entry's data is accessed or
+         * {@link ZipFile#resolveLocalFileHeader} is called. Until
+         * then the entry's data offset is unknown and its extra
+         * fields only contain the data of the central directory, the
+         * getters of {@link ZipArchiveEntry} never read from the
+         * archive.</p>
+         *
+         * <p>Only Unicode extra fields inside of the central
+         * directory are used to set the entries' names, Unicode extra
+         * fields inside of the local file header are ignored. This
+         * option has no effect if the local file headers are ignored
+         * completely.</p>
+         *
+         * @param lazyLocalFileHeaders whether to read local file
+         * headers lazily
+         * @return the reconfigured builder
+         */
+        public Builder withLazyLocalFileHeaders(final boolean lazyLocalFileHeaders) {
+            this.lazyLocalFileHeaders = lazyLocalFileHeaders;
+            return this;
+        }
+
+        /**
+         * Sets whether the central directory should be kept in a
+         * compact form rather than as a list of {@link
+         * ZipArchiveEntry} instances.
+         *
+         * <p>By default {@link ZipFile} creates a {@link
+         * ZipArchiveEntry} for each entry and a map from names to
+         * entries when the archive is opened, which may require
+         * several hundred bytes of heap per entry. If this option is
+         * set the raw central directory is kept in memory together
+         * with the offsets, sizes, CRC and compression method of each
+         * entry and {@link ZipArchiveEntry} instances are created
+         * whenever they are requested. This reduces the memory needed
+         * for archives with millions of entries at the cost of
+         * creating new instances when methods like {@link
+         * ZipFile#getEntry} are called for entries that haven't been
+         * requested recently.</p>
+         *
+         * <p>Entries obtained this way read their local file headers
+         * lazily, see {@link #withLazyLocalFileHeaders}. Unlike other
+         * lazily read entries reading their data only determines the
+         * data offset which is remembered for the entry, the extra
+         * fields of the local file header are only read by {@link
+         * ZipFile#resolveLocalFileHeader}. Archives whose central
+         * directory cannot be read into a single array are read as if
+         * this option was not set.</p>
+         *
+         * @param compactEntryTable whether to use a compact entry
+         * table
+         * @return the reconfigured builder
+         */
+        public Builder withCompactEntryTable(final boolean compactEntryTable) {
+            this.compactEntryTable = compactEntryTable;
+            return this;
+        }
+
+        /**
+         * Sets the cache parsed central directories are taken from
+         * and stored to.
+         *
+         * <p>The cache is only used for archives opened via one of
+         * the {@link java.io.File} based constructors of {@link
+         * ZipFile}. Archives using the cache are read as if {@link
+         * #withCompactEntryTable} had been set.</p>
+         *
+         * @param centralDirectoryCache the cache to use, may be
+         * shared between several archives. Use null to always read
+         * the central directory from the archive.
+         * @return the reconfigured builder
+         */
+        public Builder withCentralDirectoryCache(final ZipCentralDirectoryCache centralDirectoryCache) {
+            this.centralDirectoryCache = centralDirectoryCache;
+            return this;
+        }
+
+        /**
+         * Create the {@link ZipFileOptions}.
+         *
+         * @return configured {@link ZipFileOptions}.
+         */
+        public ZipFileOptions build() {
+            return new ZipFileOptions(codecPool, useMemoryMapping, lazyLocalFileHeaders, compactEntryTable,
+                centralDirectoryCache);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.compress.utils.CloseShieldFilterInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.PositionedReadableChannel;
+
+/**
+ * Random access to the uncompressed content of a compressed file
+ * using decoder checkpoints.
+ *
+ * <p>An index holds a list of checkpoints, each of which maps an
+ * offset inside of the uncompressed data to the information needed
+ * to resume decompression at that point without decoding the data in
+ * front of it. In order to read from an arbitrary offset, decoding
+ * starts at the nearest checkpoint in front of the offset and skips
+ * the remaining bytes. The distance between checkpoints - the span -
+ * limits the amount of data that has to be decoded and discarded.</p>
+ *
+ * <p>Subclasses exist for the different compression formats, they
+ * provide the methods to build an index by decoding a compressed
+ * file once and to read an index written by {@link #writeTo}, so
+ * that later opens of the same file don't need to decode it
+ * again.</p>
+ *
+ * <p>Together with {@link #newChannel} an index can be used to read
+ * compressed tar archives via {@link
+ * org.apache.commons.compress.archivers.tar.TarFile} or to jump to an
+ * entry whose offset has been recorded earlier.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+public abstract class DecompressionIndex {
+
+    /**
+     * Default distance between two checkpoints, 1 MB.
+     */
+    public static final long DEFAULT_SPAN = 1024 * 1024;
+
+    private static final int MAGIC = 0x43434458; // CCDX
+    private static final int VERSION = 1;
+
+    private final String format;
+    private final long uncompressedSize;
+    private final long[] checkpointOffsets;
+
+    /**
+     * Creates an index.
+     *
+     * @param format name of the compression format, used to identify
+     * the format when reading a serialized index
+     * @param uncompressedSize the size of the uncompressed data
+     * @param checkpointOffsets the uncompressed offsets of all
+     * checkpoints in ascending order
+     * @throws IllegalArgumentException if the offsets are not in
+     * ascending order, outside of the uncompressed data or if there is
+     * no checkpoint at offset 0 for non-empty data
+     */
+    protected DecompressionIndex(final String format, final long uncompressedSize,
+        final long[] checkpointOffsets) {
+        if (uncompressedSize > 0 && (checkpointOffsets.length == 0 || checkpointOffsets[0] != 0)) {
+            throw new IllegalArgumentException("The first checkpoint must be at offset 0");
+        }
+        for (int i = 0; i < checkpointOffsets.length; i++) {
+            if (checkpointOffsets[i] < 0 || checkpointOffsets[i] > uncompressedSize
+                || (i > 0 && checkpointOffsets[i] < checkpointOffsets[i - 1])) {
+                throw new IllegalArgumentException("Invalid checkpoint offset " + checkpointOffsets[i]);
+            }
+        }
+        this.format = format;
+        this.uncompressedSize = uncompressedSize;
+        this.checkpointOffsets = checkpointOffsets.clone();
+    }
+
+    /**
+     * The size of the uncompressed data.
+     * @return the size of the uncompressed data
+     */
+    public long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    /**
+     * The number of checkpoints.
+     * @return the number of checkpoints
+     */
+    public int getCheckpointCount() {
+        return checkpointOffsets.length;
+    }
+
+    /**
+     * The offset inside of the uncompressed data a checkpoint refers to.
+     * @param checkpoint the index of the checkpoint
+     * @return the uncompressed offset of the checkpoint
+     */
+    public long getCheckpointOffset(final int checkpoint) {
+        return checkpointOffsets[checkpoint];
+    }
+
+    /**
+     * Opens a stream that provides the uncompressed data starting at
+     * the given offset.
+     *
+     * <p>The returned stream reads from the channel using absolute
+     * positions and does not close the channel when it is closed. If
+     * the channel is neither a {@link FileChannel} nor a {@link
+     * PositionedReadableChannel} streams that are used concurrently
+     * synchronize on the channel.</p>
+     *
+     * @param channel the compressed file this index has been built for
+     * @param uncompressedOffset the offset inside of the uncompressed data
+     * @return a stream positioned at the given offset
+     * @throws IOException if the compressed file cannot be read or
+     * doesn't match this index
+     * @throws IllegalArgumentException if the offset is negative or
+     * bigger than the size of the uncompressed data
+     */
+    public InputStream openAt(final SeekableByteChannel channel, final long uncompressedOffset) throws IOException {
+        if (uncompressedOffset < 0 || uncompressedOffset > uncompressedSize) {
+            throw new IllegalArgumentException("Offset " + uncompressedOffset + " is outside of the uncompressed data");
+        }
+        final int checkpoint = findCheckpoint(uncompressedOffset);
+        if (checkpoint < 0) {
+            return new ChannelInputStream(channel, 0, 0);
+        }
+        final InputStream in = openAtCheckpoint(channel, checkpoint);
+        final long toSkip = uncompressedOffset - checkpointOffsets[checkpoint];
+        if (IOUtils.skip(in, toSkip) != toSkip) {
+            in.close();
+            throw new EOFException("Compressed data ends before offset " + uncompressedOffset);
+        }
+        return in;
+    }
+
+    /**
+     * Provides the uncompressed data as a read-only channel.
+     *
+     * <p>Reading sequentially decodes the data once, changing the
+     * position restarts decoding at the nearest checkpoint unless the
+     * new position can be reached by skipping forward. Closing the
+     * returned channel closes the compressed channel as well.</p>
+     *
+     * @param compressed the compressed file this index has been built for
+     * @return a channel of the uncompressed data
+     */
+    public SeekableByteChannel newChannel(final SeekableByteChannel compressed) {
+        return new IndexedChannel(compressed);
+    }
+
+    /**
+     * Writes this index so it can be restored later by the {@code
+     * readFrom} method of the subclass.
+     *
+     * <p>The stream is not closed.</p>
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public final void writeTo(final OutputStream out) throws IOException {
+        final DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeUTF(format);
+        header.writeInt(VERSION);
+        header.flush();
+        final DeflaterOutputStream deflated = new DeflaterOutputStream(out);
+        final DataOutputStream data = new DataOutputStream(deflated);
+        data.writeLong(uncompressedSize);
+        data.writeInt(checkpointOffsets.length);
+        for (int i = 0; i < checkpointOffsets.length; i++) {
+            data.writeLong(checkpointOffsets[i]);
+            writeCheckpoint(data, i);
+        }
+        data.flush();
+        deflated.finish();
+        out.flush();
+    }
+
+    /**
+     * Opens a stream that provides the uncompressed data starting at
+     * the given checkpoint.
+     *
+     * @param channel the compressed file
+     * @param checkpoint the index of the checkpoint
+     * @return the stream
+     * @throws IOException if the compressed file cannot be read
+     */
+    protected abstract InputStream openAtCheckpoint(SeekableByteChannel channel, int checkpoint) throws IOException;
+
+    /**
+     * Writes the format specific data of a checkpoint.
+     *
+     * @param out the output to write to
+     * @param checkpoint the index of the checkpoint
+     * @throws IOException if writing fails
+     */
+    protected abstract void writeCheckpoint(DataOutput out, int checkpoint) throws IOException;
+
+    /**
+     * Creates a stream reading a part of the compressed file.
+     *
+     * @param channel the compressed file
+     * @param start the offset to start reading at
+     * @return a buffered stream that reads from the given offset up to
+     * the end of the channel
+     * @throws IOException if the size of the channel cannot be determined
+     */
+    protected static InputStream newInputStream(final SeekableByteChannel channel, final long start)
+        throws IOException {
+        return new BufferedInputStream(new ChannelInputStream(channel, start, channel.size()));
+    }
+
+    /**
+     * Reads the part of a serialized index written by {@link
+     * #writeTo} in front of the uncompressed size.
+     *
+     * @param in the stream to read from
+     * @param format expected name of the compression format
+     * @return a stream providing the uncompressed size, the number of
+     * checkpoints and the checkpoints themselves, each consisting of
+     * the uncompressed offset followed by the format specific data.
+     * @throws IOException if the stream doesn't contain an index of
+     * the expected format
+     */
+    protected static DataInputStream readHeader(final InputStream in, final String format) throws IOException {
+        final DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != MAGIC) {
+            throw new IOException("Not a decompression index");
+        }
+        final String actualFormat = header.readUTF();
+        if (!format.equals(actualFormat)) {
+            throw new IOException("Expected an index for " + format + " but found one for " + actualFormat);
+        }
+        final int version = header.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported index version " + version);
+        }
+        return new DataInputStream(new InflaterInputStream(new CloseShieldFilterInputStream(in)));
+    }
+
+    /**
+     * Finds the last checkpoint at or in front of the given offset.
+     *
+     * @return index of the checkpoint or -1 if there are no checkpoints
+     */
+    private int findCheckpoint(final long uncompressedOffset) {
+        int i = Arrays.binarySearch(checkpointOffsets, uncompressedOffset);
+        if (i >= 0) {
+            // several checkpoints may share an offset, use the last one
+            while (i + 1 < checkpointOffsets.length && checkpointOffsets[i + 1] == uncompressedOffset) {
+                i++;
+            }
+            return i;
+        }
+        return -(i + 1) - 1;
+    }
+
+    private class IndexedChannel implements SeekableByteChannel {
+        private final SeekableByteChannel compressed;
+        private boolean open = true;
+        private long position;
+        private InputStream current;
+        private long currentPosition;
+
+        IndexedChannel(final SeekableByteChannel compressed) {
+            this.compressed = compressed;
+        }
+
+        @Override
+        public synchronized int read(final ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+            if (position >= uncompressedSize) {
+                return -1;
+            }
+            seekCurrentStream();
+            final int len = (int) Math.min(dst.remaining(), uncompressedSize - position);
+            final int read;
+            if (dst.hasArray()) {
+                read = current.read(dst.array(), dst.arrayOffset() + dst.position(), len);
+                if (read > 0) {
+                    dst.position(dst.position() + read);
+                }
+            } else {
+                final byte[] buf = new byte[Math.min(len, 8192)];
+                read = current.read(buf);
+                if (read > 0) {
+                    dst.put(buf, 0, read);
+                }
+            }
+            if (read < 0) {
+                throw new EOFException("Compressed data ends before offset " + position);
+            }
+            position += read;
+            currentPosition += read;
+            return read;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public synchronized SeekableByteChannel position(final long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Position must not be negative");
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return uncompressedSize;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(final long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (open) {
+                open = false;
+                try {
+                    if (current != null) {
+                        current.close();
+                        current = null;
+                    }
+                } finally {
+                    compressed.close();
+                }
+            }
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+
+        private void seekCurrentStream() throws IOException {
+            if (current != null && position >= currentPosition
+                && checkpointOffsets[findCheckpoint(position)] <= currentPosition) {
+                // no checkpoint in between, decoding forward is cheapest
+                final long toSkip = position - currentPosition;
+                if (IOUtils.skip(current, toSkip) != toSkip) {
+                    throw new EOFException("Compressed data ends before offset " + position);
+                }
+            } else {
+                if (current != null) {
+                    current.close();
+                }
+                current = null;
+                current = openAt(compressed, position);
+            }
+            currentPosition = position;
+        }
+    }
+
+    private static class ChannelInputStream extends InputStream {
+        private final SeekableByteChannel channel;
+        private final long end;
+        private final byte[] oneByte = new byte[1];
+        private long position;
+
+        ChannelInputStream(final SeekableByteChannel channel, final long start, final long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(oneByte, 0, 1) < 0 ? -1 : oneByte[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            final ByteBuffer buf = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+            final int read = IOUtils.read(channel, buf, position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+    }
+}
@@ -66,6 +66,8 @@ public class BZip2CompressorInputStream extends CompressorInputStream
 
     private BitInputStream bin;
     private final boolean decompressConcatenated;
+    private final BlockListener blockListener;
+    private boolean verifyCombinedCRC = true;
 
     private static final int EOF = 0;
     private static final int START_BLOCK_STATE = 1;
@@ -103,6 +105,12 @@ public class BZip2CompressorInputStream extends CompressorInputStream
      * read from the specified stream. This doesn't support decompressing
      * concatenated .bz2 files.
      *
+     * <p>If the input supports {@link InputStream#mark mark} the stream
+     * reads ahead from it in chunks of up to 8 KiB and uses {@code mark}
+     * and {@code reset} to position the input right after the .bz2
+     * stream once its end has been reached. Any mark set on the input
+     * before is lost.</p>
+     *
      * @param in the InputStream from which this object should be created
      * @throws IOException
      *             if the stream content is malformed or an I/O error occurs.
@@ -117,6 +125,13 @@ public BZip2CompressorInputStream(final InputStream in) throws IOException {
      * Constructs a new BZip2CompressorInputStream which decompresses bytes
      * read from the specified stream.
      *
+     * <p>If {@code decompressConcatenated} is true or the input
+     * supports {@link InputStream#mark mark} the stream reads ahead from
+     * the input in chunks of up to 8 KiB. In the latter case it uses
+     * {@code mark} and {@code reset} to position the input right after
+     * the .bz2 stream once its end has been reached. Any mark set on
+     * the input before is lost.</p>
+     *
      * @param in the InputStream from which this object should be created
      * @param decompressConcatenated
      *                     if true, decompress until the end of the input;
@@ -128,14 +143,59 @@ public BZip2CompressorInputStream(final InputStream in) throws IOException {
      *             if {@code in == null}, the stream content is malformed, or an I/O error occurs.
      */
     public BZip2CompressorInputStream(final InputStream in, final boolean decompressConcatenated) throws IOException {
+        this(in, decompressConcatenated, null);
+    }
+
+    /**
+     * Constructs a stream that notifies a listener whenever a new
+     * block is started.
+     *
+     * @param listener notified before a block is decoded, may be null
+     */
+    BZip2CompressorInputStream(final InputStream in, final boolean decompressConcatenated,
+        final BlockListener listener) throws IOException {
+        // only read ahead if nobody is going to read from in after this stream or we can push back what we've read
         this.bin = new BitInputStream(in == System.in ? new CloseShieldFilterInputStream(in) : in,
-            ByteOrder.BIG_ENDIAN);
+            ByteOrder.BIG_ENDIAN, decompressConcatenated || in.markSupported());
         this.decompressConcatenated = decompressConcatenated;
+        this.blockListener = listener;
 
         init(true);
         initBlock();
     }
 
+    /**
+     * Constructs a stream that starts decoding at a block in the middle
+     * of a .bz2 stream.
+     *
+     * <p>The combined CRC of the stream containing the block is not
+     * verified as the blocks in front of it are not known.</p>
+     *
+     * @param in the compressed data starting with the byte that
+     * contains the first bit of the block header
+     * @param decompressConcatenated whether to decompress the .bz2
+     * streams following the current one
+     * @param blockSize100k the block size of the stream containing
+     * the block
+     * @param bitOffset the number of bits of the first byte that
+     * precede the block header
+     */
+    BZip2CompressorInputStream(final InputStream in, final boolean decompressConcatenated,
+        final int blockSize100k, final int bitOffset) throws IOException {
+        this.bin = new BitInputStream(in, ByteOrder.BIG_ENDIAN, decompressConcatenated || in.markSupported());
+        this.decompressConcatenated = decompressConcatenated;
+        this.blockListener = null;
+        if (blockSize100k < 1 || blockSize100k > 9) {
+            throw new IOException("BZip2 block size is invalid");
+        }
+        this.blockSize100k = blockSize100k;
+        this.verifyCombinedCRC = false;
+        if (bitOffset > 0) {
+            bsR(bin, bitOffset);
+        }
+        initBlock();
+    }
+
     @Override
     public int read() throws IOException {
         if (this.bin != null) {
@@ -247,7 +307,7 @@ private boolean init(final boolean isFirstStream) throws IOException {
         }
 
         if (!isFirstStream) {
-            bin.clearBitCache();
+            bin.alignWithByteBoundary();
         }
 
         final int magic0 = readNextByte(this.bin);
@@ -271,6 +331,7 @@ private boolean init(final boolean isFirstStream) throws IOException {
         this.blockSize100k = blockSize - '0';
 
         this.computedCombinedCRC = 0;
+        this.verifyCombinedCRC = true;
 
         return true;
     }
@@ -283,8 +344,10 @@ private void initBlock() throws IOException {
         char magic3;
         char magic4;
         char magic5;
+        long blockStart;
 
         while (true) {
+            blockStart = bin.getBytesRead() * Byte.SIZE - bin.bitsCached();
             // Get the block magic bytes.
             magic0 = bsGetUByte(bin);
             magic1 = bsGetUByte(bin);
@@ -317,6 +380,9 @@ private void initBlock() throws IOException {
             this.currentState = EOF;
             throw new IOException("Bad block header");
         }
+        if (blockListener != null) {
+            blockListener.blockStarted(blockStart, getBytesRead(), blockSize100k);
+        }
         this.storedBlockCRC = bsGetInt(bin);
         this.blockRandomised = bsR(bin, 1) == 1;
 
@@ -359,13 +425,17 @@ private boolean complete() throws IOException {
         this.currentState = EOF;
         this.data = null;
 
-        if (this.storedCombinedCRC != this.computedCombinedCRC) {
+        if (verifyCombinedCRC && this.storedCombinedCRC != this.computedCombinedCRC) {
             throw new IOException("BZip2 CRC error");
         }
 
         // Look for the next .bz2 stream if decompressing
         // concatenated files.
-        return !decompressConcatenated || !init(false);
+        if (!decompressConcatenated) {
+            bin.releaseReadAhead();
+            return true;
+        }
+        return !init(false);
     }
 
     @Override
@@ -648,16 +718,7 @@ private void getAndMoveToFrontDecode() throws IOException {
                         groupPos--;
                     }
 
-                    int zn = minLens_zt;
-                    checkBounds(zn, MAX_ALPHA_SIZE, "zn");
-                    int zvec = bsR(bin, zn);
-                    while(zvec > limit_zt[zn]) {
-                        checkBounds(++zn, MAX_ALPHA_SIZE, "zn");
-                        zvec = (zvec << 1) | bsR(bin, 1);
-                    }
-                    final int tmp = zvec - base_zt[zn];
-                    checkBounds(tmp, MAX_ALPHA_SIZE, "zvec");
-                    nextSym = perm_zt[tmp];
+                    nextSym = decodeSymbol(bin, limit_zt, base_zt, perm_zt, minLens_zt);
                 }
                 checkBounds(s, this.data.ll8.length, "s");
 
@@ -715,16 +776,7 @@ private void getAndMoveToFrontDecode() throws IOException {
                     groupPos--;
                 }
 
-                int zn = minLens_zt;
-                checkBounds(zn, MAX_ALPHA_SIZE, "zn");
-                int zvec = bsR(bin, zn);
-                while(zvec > limit_zt[zn]) {
-                    checkBounds(++zn, MAX_ALPHA_SIZE, "zn");
-                    zvec = (zvec << 1) | bsR(bin, 1);
-                }
-                final int idx = zvec - base_zt[zn];
-                checkBounds(idx, MAX_ALPHA_SIZE, "zvec");
-                nextSym = perm_zt[idx];
+                nextSym = decodeSymbol(bin, limit_zt, base_zt, perm_zt, minLens_zt);
             }
         }
 
@@ -735,18 +787,41 @@ private int getAndMoveToFrontDecode0() throws IOException {
         final Data dataShadow = this.data;
         final int zt = dataShadow.selector[0] & 0xff;
         checkBounds(zt, N_GROUPS, "zt");
-        final int[] limit_zt = dataShadow.limit[zt];
-        int zn = dataShadow.minLens[zt];
+        return decodeSymbol(bin, dataShadow.limit[zt], dataShadow.base[zt], dataShadow.perm[zt],
+            dataShadow.minLens[zt]);
+    }
+
+    /**
+     * Decodes the next Huffman coded symbol.
+     *
+     * <p>Looks at the next MAX_CODE_LEN bits without consuming them
+     * and only reads the bits of the code once its length is known,
+     * rather than reading the code bit by bit.</p>
+     */
+    private static int decodeSymbol(final BitInputStream bin, final int[] limit_zt, final int[] base_zt,
+        final int[] perm_zt, final int minLens_zt) throws IOException {
+        int zn = minLens_zt;
         checkBounds(zn, MAX_ALPHA_SIZE, "zn");
-        int zvec = bsR(bin, zn);
+        int zvec;
+        if (zn <= MAX_CODE_LEN) {
+            final long peeked = bin.peekBits(MAX_CODE_LEN);
+            zvec = (int) (peeked >>> (MAX_CODE_LEN - zn));
+            while (zvec > limit_zt[zn] && zn < MAX_CODE_LEN) {
+                zn++;
+                zvec = (int) (peeked >>> (MAX_CODE_LEN - zn));
+            }
+            bsR(bin, zn);
+        } else {
+            zvec = bsR(bin, zn);
+        }
+        // only reached for codes longer than any valid one
         while (zvec > limit_zt[zn]) {
             checkBounds(++zn, MAX_ALPHA_SIZE, "zn");
             zvec = (zvec << 1) | bsR(bin, 1);
         }
-        final int tmp = zvec - dataShadow.base[zt][zn];
+        final int tmp = zvec - base_zt[zn];
         checkBounds(tmp, MAX_ALPHA_SIZE, "zvec");
-
-        return dataShadow.perm[zt][tmp];
+        return perm_zt[tmp];
     }
 
     private int setupBlock() throws IOException {
@@ -901,6 +976,20 @@ private int setupNoRandPartC() throws IOException {
         return setupNoRandPartA();
     }
 
+    /**
+     * Notified before a block is decoded.
+     */
+    interface BlockListener {
+        /**
+         * @param bitPosition position of the block header inside of
+         * the compressed data in bits
+         * @param uncompressedOffset number of bytes decompressed so far
+         * @param blockSize100k block size of the .bz2 stream containing
+         * the block
+         */
+        void blockStarted(long bitPosition, long uncompressedOffset, int blockSize100k) throws IOException;
+    }
+
     private static final class Data {
 
         // (with blockSize 900k)
@@ -18,8 +18,18 @@
  */
 package org.apache.commons.compress.compressors.bzip2;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.compress.compressors.CompressorOutputStream;
 
@@ -118,6 +128,15 @@
  * Instances of this class are not threadsafe.
  * </p>
  *
+ * <p>As bzip2 blocks are compressed independently of each other the
+ * stream can compress several blocks in parallel, see {@link
+ * #BZip2CompressorOutputStream(OutputStream, int, ExecutorService,
+ * int)}. The stream still splits the data into blocks and writes the
+ * compressed blocks in order on the thread writing to it, so the
+ * output is identical to the output created in sequential mode. Each
+ * block that is being compressed needs the compression memory listed
+ * below.</p>
+ *
  * <p>
  * TODO: Update to BZip2 1.0.1
  * </p>
@@ -325,6 +344,15 @@ private static void hbMakeCodeLengths(final byte[] len, final int[] freq,
     private OutputStream out;
     private volatile boolean closed;
 
+    /** Compresses blocks in parallel mode, null in sequential mode. */
+    private ExecutorService executorService;
+    private boolean shutdownExecutorService;
+    private int maxBlocksInFlight;
+    /** Blocks that are being compressed, in the order they appear in the stream. */
+    private final Deque<Future<CompressedBlock>> blocksInFlight = new ArrayDeque<>();
+    /** Buffers of blocks that have been written, ready for reuse. */
+    private final Deque<CompressedBlock> freeBuffers = new ArrayDeque<>();
+
     /**
      * Chooses a blocksize based on the given length of the data to compress.
      *
@@ -392,6 +420,102 @@ public BZip2CompressorOutputStream(final OutputStream out, final int blockSize)
         init();
     }
 
+    /**
+     * Constructs a new {@code BZip2CompressorOutputStream} with specified
+     * blocksize that compresses blocks on the given number of threads.
+     *
+     * <p>At most twice as many blocks as threads are compressed or
+     * waiting to be written at any time. The threads are daemon
+     * threads and are stopped when the stream is finished or
+     * closed.</p>
+     *
+     * @param out
+     *            the destination stream.
+     * @param blockSize
+     *            the blockSize as 100k units.
+     * @param threadCount
+     *            the number of threads compressing blocks.
+     *
+     * @throws IOException
+     *             if an I/O error occurs in the specified stream.
+     * @throws IllegalArgumentException
+     *             if <code>(blockSize &lt; 1) || (blockSize &gt; 9)</code>
+     *             or threadCount is not positive.
+     * @throws NullPointerException
+     *             if <code>out == null</code>.
+     * @since 1.21
+     */
+    public BZip2CompressorOutputStream(final OutputStream out, final int blockSize, final int threadCount)
+        throws IOException {
+        this(out, blockSize, null, 2 * checkThreadCount(threadCount));
+        // created only once the header has been written successfully, so it can't leak
+        this.executorService = Executors.newFixedThreadPool(threadCount,
+            new DaemonThreadFactory("commons-compress-bzip2-compressor-"));
+        this.shutdownExecutorService = true;
+    }
+
+    /**
+     * Constructs a new {@code BZip2CompressorOutputStream} with specified
+     * blocksize that compresses blocks using the given executor service.
+     *
+     * <p>Writing to the stream blocks while {@code maxBlocksInFlight}
+     * blocks are being compressed or waiting to be written. The
+     * executor service is not shut down by this stream.</p>
+     *
+     * @param out
+     *            the destination stream.
+     * @param blockSize
+     *            the blockSize as 100k units.
+     * @param executorService
+     *            compresses the blocks, null to compress on the
+     *            calling thread.
+     * @param maxBlocksInFlight
+     *            the maximum number of blocks that are compressed or
+     *            wait to be written at the same time.
+     *
+     * @throws IOException
+     *             if an I/O error occurs in the specified stream.
+     * @throws IllegalArgumentException
+     *             if <code>(blockSize &lt; 1) || (blockSize &gt; 9)</code>
+     *             or maxBlocksInFlight is not positive.
+     * @throws NullPointerException
+     *             if <code>out == null</code>.
+     * @since 1.21
+     */
+    public BZip2CompressorOutputStream(final OutputStream out, final int blockSize,
+        final ExecutorService executorService, final int maxBlocksInFlight) throws IOException {
+        this(out, blockSize);
+        if (maxBlocksInFlight < 1) {
+            throw new IllegalArgumentException("maxBlocksInFlight(" + maxBlocksInFlight + ") < 1");
+        }
+        this.executorService = executorService;
+        this.maxBlocksInFlight = maxBlocksInFlight;
+    }
+
+    /**
+     * Creates a stream that compresses a single block in parallel
+     * mode, writing it to a buffer rather than the target stream.
+     */
+    private BZip2CompressorOutputStream(final OutputStream out, final int blockSize100k, final Data data,
+        final BlockSort blockSorter, final int last, final int blockCRC) {
+        this.blockSize100k = blockSize100k;
+        this.allowableBlockSize = (this.blockSize100k * BZip2Constants.BASEBLOCKSIZE) - 20;
+        this.out = out;
+        this.data = data;
+        this.blockSorter = blockSorter;
+        this.last = last;
+        this.blockCRC = blockCRC;
+        // not a stream a user will ever see
+        this.closed = true;
+    }
+
+    private static int checkThreadCount(final int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount(" + threadCount + ") < 1");
+        }
+        return threadCount;
+    }
+
     @Override
     public void write(final int b) throws IOException {
         if (!closed) {
@@ -489,11 +613,18 @@ public void finish() throws IOException {
                 }
                 this.currentChar = -1;
                 endBlock();
+                while (!blocksInFlight.isEmpty()) {
+                    writeCompressedBlocks(true);
+                }
                 endCompression();
             } finally {
                 this.out = null;
                 this.blockSorter = null;
                 this.data = null;
+                if (executorService != null) {
+                    releaseBlocksInFlight();
+                    executorService = null;
+                }
             }
         }
     }
@@ -510,6 +641,14 @@ public void close() throws IOException {
         }
     }
 
+    /**
+     * Flushes the target stream.
+     *
+     * <p>In parallel mode this doesn't wait for blocks that are still
+     * being compressed.</p>
+     *
+     * @throws IOException if flushing the target stream fails
+     */
     @Override
     public void flush() throws IOException {
         final OutputStream outShadow = this.out;
@@ -562,6 +701,25 @@ private void endBlock() throws IOException {
             return;
         }
 
+        if (executorService != null) {
+            boolean success = false;
+            try {
+                submitBlock();
+                success = true;
+            } finally {
+                if (!success) {
+                    releaseBlocksInFlight();
+                }
+            }
+            return;
+        }
+        writeBlock();
+    }
+
+    /**
+     * Compresses the current block and writes it.
+     */
+    private void writeBlock() throws IOException {
         /* sort the block and establish posn of original string */
         blockSort();
 
@@ -593,6 +751,132 @@ private void endBlock() throws IOException {
         moveToFrontCodeAndSend();
     }
 
+    /**
+     * Hands the current block to the executor service and continues
+     * with a fresh buffer, writing blocks that have been compressed
+     * and waiting for blocks to complete while too many blocks are in
+     * flight.
+     */
+    private void submitBlock() throws IOException {
+        final Data blockData = this.data;
+        final BlockSort blockDataSorter = this.blockSorter;
+        final int blockLast = this.last;
+        final int crcOfBlock = this.blockCRC;
+        final Future<CompressedBlock> future;
+        try {
+            future = executorService.submit(new Callable<CompressedBlock>() {
+                @Override
+                public CompressedBlock call() throws IOException {
+                    final ByteArrayOutputStream bits = new ByteArrayOutputStream(blockLast / 2 + 64);
+                    final BZip2CompressorOutputStream blockOut = new BZip2CompressorOutputStream(bits,
+                        blockSize100k, blockData, blockDataSorter, blockLast, crcOfBlock);
+                    blockOut.writeBlock();
+                    final long bitCount = 8L * bits.size() + blockOut.bsLive;
+                    blockOut.bsFinishedWithStream();
+                    return new CompressedBlock(blockData, blockDataSorter, bits.toByteArray(), bitCount);
+                }
+            });
+        } catch (final RejectedExecutionException ex) {
+            throw new IOException("Can't compress block, the executor service has been shut down", ex);
+        }
+        blocksInFlight.add(future);
+        writeCompressedBlocks(false);
+        while (blocksInFlight.size() >= maxBlocksInFlight) {
+            writeCompressedBlocks(true);
+        }
+        final CompressedBlock reusable = freeBuffers.poll();
+        if (reusable != null) {
+            this.data = reusable.data;
+            this.blockSorter = reusable.blockSorter;
+        } else {
+            this.data = new Data(this.blockSize100k);
+            this.blockSorter = new BlockSort(this.data);
+        }
+    }
+
+    /**
+     * Appends the bits of blocks that have been compressed to the
+     * stream, in order.
+     *
+     * @param block whether to wait for the next block if it hasn't
+     * been compressed, yet
+     */
+    private void writeCompressedBlocks(final boolean block) throws IOException {
+        boolean mayBlock = block;
+        while (!blocksInFlight.isEmpty()) {
+            if (!mayBlock && !blocksInFlight.peek().isDone()) {
+                return;
+            }
+            final CompressedBlock compressed;
+            try {
+                compressed = blocksInFlight.poll().get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                final InterruptedIOException iox = new InterruptedIOException("Interrupted while compressing");
+                iox.initCause(ex);
+                throw iox;
+            } catch (final ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+            final byte[] bits = compressed.bits;
+            final int fullBytes = (int) (compressed.bitCount >>> 3);
+            appendBytes(bits, fullBytes);
+            final int remainingBits = (int) (compressed.bitCount & 7);
+            if (remainingBits > 0) {
+                bsW(remainingBits, (bits[fullBytes] & 0xff) >> (8 - remainingBits));
+            }
+            compressed.bits = null;
+            freeBuffers.add(compressed);
+            mayBlock = false;
+        }
+    }
+
+    /**
+     * Appends whole bytes to the bit stream, shifting them in place
+     * if the bit buffer isn't byte aligned.
+     *
+     * @param bytes the bytes to append, modified by this method
+     * @param length the number of bytes to append
+     */
+    private void appendBytes(final byte[] bytes, final int length) throws IOException {
+        // flush the complete bytes of the bit buffer, leaving less than 8 bits
+        bsW(0, 0);
+        final int live = this.bsLive;
+        if (live > 0) {
+            // bits below the live ones are always zero
+            int carry = this.bsBuff >>> 24;
+            for (int i = 0; i < length; i++) {
+                final int b = bytes[i] & 0xff;
+                bytes[i] = (byte) (carry | (b >>> live));
+                carry = (b << (8 - live)) & 0xff;
+            }
+            this.bsBuff = carry << 24;
+        }
+        this.out.write(bytes, 0, length);
+    }
+
+    /**
+     * Cancels the blocks that haven't been written and stops the
+     * executor service if it has been created by this stream.
+     */
+    private void releaseBlocksInFlight() {
+        for (final Future<CompressedBlock> block : blocksInFlight) {
+            block.cancel(false);
+        }
+        blocksInFlight.clear();
+        freeBuffers.clear();
+        if (shutdownExecutorService) {
+            executorService.shutdown();
+        }
+    }
+
     private void endCompression() throws IOException {
         /*
          * Now another magic 48-bit number, 0x177245385090, to indicate the end
@@ -1278,6 +1562,24 @@ private void generateMTFValues() {
         this.nMTF = wr + 1;
     }
 
+    /**
+     * A block that has been compressed in parallel mode, holding on
+     * to the buffers used so they can be reused for another block.
+     */
+    private static final class CompressedBlock {
+        private final Data data;
+        private final BlockSort blockSorter;
+        private byte[] bits;
+        private final long bitCount;
+
+        CompressedBlock(final Data data, final BlockSort blockSorter, final byte[] bits, final long bitCount) {
+            this.data = data;
+            this.blockSorter = blockSorter;
+            this.bits = bits;
+            this.bitCount = bitCount;
+        }
+    }
+
     static final class Data {
 
         // with blockSize 900k
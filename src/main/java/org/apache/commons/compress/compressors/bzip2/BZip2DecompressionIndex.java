@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.bzip2;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.compress.compressors.DecompressionIndex;
+import org.apache.commons.compress.utils.CloseShieldFilterInputStream;
+
+/**
+ * Decoder checkpoints for .bz2 files.
+ *
+ * <p>Each bzip2 block can be decoded independently of all other
+ * blocks, so a checkpoint only needs to record the position of the
+ * block in bits and the block size of the stream containing it. The
+ * distance between checkpoints can't be smaller than the size of a
+ * block, which holds up to 900k of uncompressed data.</p>
+ *
+ * <p>Concatenated .bz2 streams are supported. The combined CRC of a
+ * stream is only verified if decoding starts with the first block of
+ * the stream.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+public class BZip2DecompressionIndex extends DecompressionIndex {
+
+    private static final String FORMAT = "bzip2";
+
+    private final long[] bitPositions;
+    private final byte[] blockSizes;
+
+    private BZip2DecompressionIndex(final long uncompressedSize, final long[] offsets, final long[] bitPositions,
+        final byte[] blockSizes) {
+        super(FORMAT, uncompressedSize, offsets);
+        this.bitPositions = bitPositions;
+        this.blockSizes = blockSizes;
+    }
+
+    /**
+     * Builds an index with checkpoints {@link #DEFAULT_SPAN} bytes apart.
+     *
+     * @param in the complete .bz2 file, will be read completely but
+     * not closed
+     * @return the index
+     * @throws IOException if the stream cannot be read or is not a
+     * valid .bz2 file
+     */
+    public static BZip2DecompressionIndex build(final InputStream in) throws IOException {
+        return build(in, DEFAULT_SPAN);
+    }
+
+    /**
+     * Builds an index.
+     *
+     * @param in the complete .bz2 file, will be read completely but
+     * not closed
+     * @param span the minimum distance between two checkpoints in
+     * bytes of uncompressed data, must be positive
+     * @return the index
+     * @throws IOException if the stream cannot be read or is not a
+     * valid .bz2 file
+     * @throws IllegalArgumentException if span is not positive
+     */
+    public static BZip2DecompressionIndex build(final InputStream in, final long span) throws IOException {
+        if (span <= 0) {
+            throw new IllegalArgumentException("span must be positive but is " + span);
+        }
+        final List<long[]> checkpoints = new ArrayList<>();
+        final BZip2CompressorInputStream.BlockListener listener = new BZip2CompressorInputStream.BlockListener() {
+            @Override
+            public void blockStarted(final long bitPosition, final long uncompressedOffset,
+                final int blockSize100k) {
+                if (checkpoints.isEmpty()
+                    || uncompressedOffset - checkpoints.get(checkpoints.size() - 1)[0] >= span) {
+                    checkpoints.add(new long[] { uncompressedOffset, bitPosition, blockSize100k });
+                }
+            }
+        };
+        long uncompressedSize = 0;
+        try (BZip2CompressorInputStream bz = new BZip2CompressorInputStream(new CloseShieldFilterInputStream(in),
+                true, listener)) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = bz.read(buffer)) >= 0) {
+                uncompressedSize += read;
+            }
+        }
+        final int count = checkpoints.size();
+        final long[] offsets = new long[count];
+        final long[] bitPositions = new long[count];
+        final byte[] blockSizes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            final long[] checkpoint = checkpoints.get(i);
+            offsets[i] = checkpoint[0];
+            bitPositions[i] = checkpoint[1];
+            blockSizes[i] = (byte) checkpoint[2];
+        }
+        return new BZip2DecompressionIndex(uncompressedSize, offsets, bitPositions, blockSizes);
+    }
+
+    /**
+     * Reads an index that has been written using {@link #writeTo}.
+     *
+     * @param in the stream to read from, the stream is not closed but
+     * may have been read beyond the end of the index
+     * @return the index
+     * @throws IOException if the stream cannot be read or doesn't
+     * contain an index for a .bz2 file
+     */
+    public static BZip2DecompressionIndex readFrom(final InputStream in) throws IOException {
+        final DataInputStream data = readHeader(in, FORMAT);
+        final long uncompressedSize = data.readLong();
+        final int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of checkpoints " + count);
+        }
+        final long[] offsets = new long[count];
+        final long[] bitPositions = new long[count];
+        final byte[] blockSizes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = data.readLong();
+            bitPositions[i] = data.readLong();
+            blockSizes[i] = data.readByte();
+        }
+        try {
+            return new BZip2DecompressionIndex(uncompressedSize, offsets, bitPositions, blockSizes);
+        } catch (final IllegalArgumentException ex) {
+            throw new IOException("Invalid index: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    protected InputStream openAtCheckpoint(final SeekableByteChannel channel, final int checkpoint)
+        throws IOException {
+        final long bitPosition = bitPositions[checkpoint];
+        return new BZip2CompressorInputStream(newInputStream(channel, bitPosition >>> 3), true,
+            blockSizes[checkpoint], (int) (bitPosition & 7));
+    }
+
+    @Override
+    protected void writeCheckpoint(final DataOutput out, final int checkpoint) throws IOException {
+        out.writeLong(bitPositions[checkpoint]);
+        out.writeByte(blockSizes[checkpoint]);
+    }
+}
@@ -0,0 +1,643 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.bzip2;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.compressors.CompressorInputStream;
+import org.apache.commons.compress.utils.CloseShieldFilterInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.InputStreamStatistics;
+
+/**
+ * An input stream that decompresses from the BZip2 format decoding
+ * several blocks in parallel.
+ *
+ * <p>The blocks of a .bz2 stream are not byte aligned and their
+ * compressed size isn't stored anywhere. This stream scans the
+ * compressed data for the 48 bit magic numbers that start blocks
+ * and end streams at any bit offset and decodes the bits between
+ * two magic numbers on the threads of an {@link ExecutorService}
+ * while the thread reading from this stream consumes the decoded
+ * blocks in order.</p>
+ *
+ * <p>As the magic numbers may also appear inside of the compressed
+ * data of a block, the result of decoding is speculative. The CRC of
+ * each block is verified against the CRC stored in the stream and a
+ * block that fails to decode is retried with the bits up to the next
+ * magic number appended. The combined CRC of each stream is verified
+ * as well, so the data returned is the same as the data returned by
+ * {@link BZip2CompressorInputStream}. This includes concatenated
+ * streams as created by tools like pbzip2 or lbzip2 if {@code
+ * decompressConcatenated} is true.</p>
+ *
+ * <p>Each block that is being decoded needs the decompression
+ * memory listed in {@link BZip2CompressorOutputStream} plus the size
+ * of its compressed and decompressed data. Unlike {@link
+ * BZip2CompressorInputStream} this stream reads the compressed data
+ * in chunks and may read beyond the end of the first .bz2 stream
+ * even if {@code decompressConcatenated} is false.</p>
+ *
+ * @since 1.21
+ * @NotThreadSafe
+ */
+public class ParallelBZip2CompressorInputStream extends CompressorInputStream
+    implements InputStreamStatistics {
+
+    private static final long BLOCK_MAGIC = 0x314159265359L;
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+    private static final long MAGIC_MASK = 0xffffffffffffL;
+    private static final int MAGIC_BITS = 48;
+    private static final int CRC_BITS = 32;
+    private static final int HEADER_BITS = 32;
+
+    /**
+     * Upper bound for the compressed size of a block: every symbol of
+     * the biggest possible block coded with the longest possible code
+     * plus generous room for the coding tables.
+     */
+    private static final int MAX_BLOCK_BYTES =
+        9 * BZip2Constants.BASEBLOCKSIZE / 8 * BZip2Constants.MAX_CODE_LEN + 64 * 1024;
+
+    private static final int READ_SIZE = 64 * 1024;
+
+    /** Types of segments, named after the magic number a segment starts with. */
+    private static final int NO_MAGIC = 0;
+    private static final int BLOCK = 1;
+    private static final int END_OF_STREAM = 2;
+
+    private final InputStream in;
+    private final boolean decompressConcatenated;
+    private final ExecutorService executorService;
+    private final boolean shutdownExecutorService;
+    private final int maxBlocksInFlight;
+
+    // state of the scanner, all positions are bit positions within
+    // the compressed input
+
+    /** Compressed data from the start of the current segment on. */
+    private byte[] buf = new byte[2 * READ_SIZE];
+    /** Offset of the first byte inside of buf within the compressed input. */
+    private long bufStart;
+    private int bufLength;
+    private int scanPos;
+    /** The last 64 bits that have been scanned. */
+    private long window;
+    /** The offset of the next magic to check relative to the end of window. */
+    private int nextShift = -1;
+    private long compressedCount;
+    private boolean scannerDone;
+    /** The block size in 100k units of the stream that is being scanned. */
+    private int blockSize100k;
+    private long segmentStart;
+    private int segmentType = NO_MAGIC;
+    private int segmentBlockSize100k;
+
+    // state of the consumer
+
+    /** Segments that have been found but not consumed, in the order they appear in the input. */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private int computedCombinedCRC;
+    private byte[] block;
+    private int blockPos;
+    private boolean endReached;
+    private boolean closed;
+
+    /**
+     * Constructs a new stream decoding blocks on the given number of
+     * threads.
+     *
+     * <p>At most twice as many blocks as threads are decoded or
+     * waiting to be read at any time. The threads are daemon threads
+     * and are stopped when the end of the stream has been reached or
+     * the stream is closed.</p>
+     *
+     * @param in the InputStream from which this object should be created
+     * @param decompressConcatenated
+     *                     if true, decompress until the end of the input;
+     *                     if false, stop after the first .bz2 stream
+     * @param threadCount the number of threads decoding blocks
+     *
+     * @throws IOException
+     *             if the stream content is malformed or an I/O error occurs.
+     * @throws IllegalArgumentException
+     *             if threadCount is not positive
+     */
+    public ParallelBZip2CompressorInputStream(final InputStream in, final boolean decompressConcatenated,
+        final int threadCount) throws IOException {
+        this(in, decompressConcatenated, createExecutorService(threadCount), 2 * threadCount, true);
+    }
+
+    /**
+     * Constructs a new stream decoding blocks using the given
+     * executor service.
+     *
+     * <p>Reading from the stream scans for new blocks while less than
+     * {@code maxBlocksInFlight} blocks are being decoded or waiting to
+     * be read. The executor service is not shut down by this
+     * stream.</p>
+     *
+     * @param in the InputStream from which this object should be created
+     * @param decompressConcatenated
+     *                     if true, decompress until the end of the input;
+     *                     if false, stop after the first .bz2 stream
+     * @param executorService decodes the blocks
+     * @param maxBlocksInFlight the maximum number of blocks that are
+     * decoded or wait to be read at the same time
+     *
+     * @throws IOException
+     *             if the stream content is malformed or an I/O error occurs.
+     * @throws IllegalArgumentException
+     *             if maxBlocksInFlight is not positive
+     */
+    public ParallelBZip2CompressorInputStream(final InputStream in, final boolean decompressConcatenated,
+        final ExecutorService executorService, final int maxBlocksInFlight) throws IOException {
+        this(in, decompressConcatenated, executorService, maxBlocksInFlight, false);
+    }
+
+    private ParallelBZip2CompressorInputStream(final InputStream in, final boolean decompressConcatenated,
+        final ExecutorService executorService, final int maxBlocksInFlight, final boolean shutdownExecutorService)
+        throws IOException {
+        this.in = in == System.in ? new CloseShieldFilterInputStream(in) : in;
+        this.decompressConcatenated = decompressConcatenated;
+        this.executorService = executorService;
+        this.maxBlocksInFlight = maxBlocksInFlight;
+        this.shutdownExecutorService = shutdownExecutorService;
+        boolean success = false;
+        try {
+            if (maxBlocksInFlight < 1) {
+                throw new IllegalArgumentException("maxBlocksInFlight(" + maxBlocksInFlight + ") < 1");
+            }
+            readStreamHeader();
+            success = true;
+        } finally {
+            if (!success && shutdownExecutorService) {
+                executorService.shutdown();
+            }
+        }
+    }
+
+    private static ExecutorService createExecutorService(final int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount(" + threadCount + ") < 1");
+        }
+        return Executors.newFixedThreadPool(threadCount,
+            new DaemonThreadFactory("commons-compress-bzip2-decompressor-"));
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillBlock()) {
+            count(-1);
+            return -1;
+        }
+        count(1);
+        return block[blockPos++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] dest, final int offs, final int len) throws IOException {
+        if (offs < 0) {
+            throw new IndexOutOfBoundsException("offs(" + offs + ") < 0.");
+        }
+        if (len < 0) {
+            throw new IndexOutOfBoundsException("len(" + len + ") < 0.");
+        }
+        if (offs + len > dest.length) {
+            throw new IndexOutOfBoundsException("offs(" + offs + ") + len("
+                                                + len + ") > dest.length(" + dest.length + ").");
+        }
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillBlock()) {
+            return -1;
+        }
+        final int n = Math.min(len, block.length - blockPos);
+        System.arraycopy(block, blockPos, dest, offs, n);
+        blockPos += n;
+        count(n);
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        return block == null ? 0 : block.length - blockPos;
+    }
+
+    @Override
+    public long getCompressedCount() {
+        return compressedCount;
+    }
+
+    /**
+     * Closes the wrapped stream and cancels all blocks that are being
+     * decoded.
+     *
+     * @throws IOException if closing the wrapped stream fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            in.close();
+        } finally {
+            for (final Segment segment : segments) {
+                if (segment.decoded != null) {
+                    segment.decoded.cancel(false);
+                }
+            }
+            segments.clear();
+            block = null;
+            buf = null;
+            if (shutdownExecutorService) {
+                executorService.shutdown();
+            }
+        }
+    }
+
+    private void readStreamHeader() throws IOException {
+        while (bufLength < HEADER_BITS / 8 && readInput()) {
+            // keep reading
+        }
+        if (bufLength < 3 || buf[0] != 'B' || buf[1] != 'Z' || buf[2] != 'h') {
+            throw new IOException("Stream is not in the BZip2 format");
+        }
+        if (bufLength < 4 || buf[3] < '1' || buf[3] > '9') {
+            throw new IOException("BZip2 block size is invalid");
+        }
+        blockSize100k = buf[3] - '0';
+        segmentBlockSize100k = blockSize100k;
+        for (; scanPos < HEADER_BITS / 8; scanPos++) {
+            window = (window << 8) | (buf[scanPos] & 0xff);
+        }
+        segmentStart = HEADER_BITS;
+    }
+
+    /**
+     * Makes sure there is decoded data that hasn't been read.
+     *
+     * @return false if the end of the stream has been reached
+     */
+    private boolean fillBlock() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (block == null || blockPos == block.length) {
+            block = null;
+            if (endReached) {
+                return false;
+            }
+            fillPipeline();
+            final Segment segment = segments.poll();
+            if (segment == null) {
+                throw new IOException("Unexpected end of stream");
+            }
+            if (segment.type == BLOCK) {
+                readBlock(segment);
+            } else if (segment.type == END_OF_STREAM) {
+                endStream(segment);
+            } else {
+                throw new IOException("Bad block header");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scans for new segments and submits the blocks among them
+     * until enough blocks are in flight.
+     */
+    private void fillPipeline() throws IOException {
+        while (!scannerDone && segments.size() < maxBlocksInFlight
+               && (decompressConcatenated || segments.isEmpty()
+                   || segments.peekLast().type != END_OF_STREAM)) {
+            final Segment segment = nextSegment();
+            if (segment == null) {
+                return;
+            }
+            if (segment.type == BLOCK) {
+                segment.decoded = executorService.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return decode(segment);
+                    }
+                });
+            }
+            segments.add(segment);
+        }
+    }
+
+    /**
+     * Provides the next segment, from the ones in flight if there are
+     * any, without decoding it.
+     */
+    private Segment pollSegment() throws IOException {
+        final Segment segment = segments.poll();
+        if (segment != null) {
+            if (segment.decoded != null) {
+                segment.decoded.cancel(false);
+            }
+            return segment;
+        }
+        return scannerDone ? null : nextSegment();
+    }
+
+    /**
+     * Waits for a block to be decoded, retrying with the following
+     * segments appended if the end of the segment has been a false
+     * match of a magic number.
+     */
+    private void readBlock(final Segment segment) throws IOException {
+        IOException failure;
+        try {
+            block = segment.decoded.get();
+            blockPos = 0;
+            updateCombinedCRC(segment);
+            return;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException iox = new InterruptedIOException("Interrupted while decoding");
+            iox.initCause(ex);
+            throw iox;
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (!(cause instanceof IOException)) {
+                throw new IOException(cause);
+            }
+            failure = (IOException) cause;
+        }
+        Segment merged = segment;
+        Segment next;
+        while (merged.bytes.length <= MAX_BLOCK_BYTES && (next = pollSegment()) != null) {
+            merged = merge(merged, next);
+            try {
+                block = decode(merged);
+                blockPos = 0;
+                updateCombinedCRC(merged);
+                return;
+            } catch (final IOException ex) { // NOSONAR
+                // need more bits or the block is broken
+            }
+        }
+        throw failure;
+    }
+
+    private void updateCombinedCRC(final Segment segment) {
+        final int storedBlockCRC = segment.bits(segment.start + MAGIC_BITS, CRC_BITS);
+        computedCombinedCRC = (computedCombinedCRC << 1) | (computedCombinedCRC >>> 31);
+        computedCombinedCRC ^= storedBlockCRC;
+    }
+
+    /**
+     * Marks the end of the data, no more blocks are decoded after
+     * this.
+     */
+    private void reachEnd() {
+        endReached = true;
+        if (shutdownExecutorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Verifies the combined CRC and moves on to the next .bz2 stream
+     * if decompressing concatenated streams.
+     */
+    private void endStream(final Segment segment) throws IOException {
+        if (segment.end - segment.start < MAGIC_BITS + CRC_BITS) {
+            throw new IOException("Unexpected end of stream");
+        }
+        if (segment.bits(segment.start + MAGIC_BITS, CRC_BITS) != computedCombinedCRC) {
+            throw new IOException("BZip2 CRC error");
+        }
+        computedCombinedCRC = 0;
+        if (!decompressConcatenated) {
+            reachEnd();
+            return;
+        }
+        final long headerStart = (segment.start + MAGIC_BITS + CRC_BITS + 7) & ~7L;
+        if (segment.end == headerStart) {
+            fillPipeline();
+            if (segments.isEmpty()) {
+                reachEnd();
+                return;
+            }
+        }
+        if (segment.end < headerStart + HEADER_BITS
+            || segment.bits(headerStart, 8) != 'B'
+            || segment.bits(headerStart + 8, 8) != 'Z'
+            || segment.bits(headerStart + 16, 8) != 'h') {
+            throw new IOException("Garbage after a valid BZip2 stream");
+        }
+        final int blockSize = segment.bits(headerStart + 24, 8);
+        if (blockSize < '1' || blockSize > '9') {
+            throw new IOException("BZip2 block size is invalid");
+        }
+        if (segment.end != headerStart + HEADER_BITS) {
+            throw new IOException("Bad block header");
+        }
+    }
+
+    /**
+     * Scans the input for the next magic number.
+     *
+     * @return the bits from the start of the current segment up to the
+     * next magic number or the end of the input, null if the end of
+     * the input has been reached before
+     */
+    private Segment nextSegment() throws IOException {
+        while (true) {
+            while (nextShift >= 0) {
+                final int shift = nextShift--;
+                final long magic = (window >>> shift) & MAGIC_MASK;
+                if (magic != BLOCK_MAGIC && magic != END_OF_STREAM_MAGIC) {
+                    continue;
+                }
+                final long magicStart = 8 * (bufStart + scanPos) - shift - MAGIC_BITS;
+                if (magicStart < segmentStart) {
+                    // overlaps the end of a segment that has been cut at the size limit
+                    continue;
+                }
+                final int type = magic == BLOCK_MAGIC ? BLOCK : END_OF_STREAM;
+                if (magicStart == segmentStart) {
+                    segmentType = type;
+                    continue;
+                }
+                updateBlockSize(magicStart);
+                final Segment segment = cutSegment(magicStart);
+                segmentType = type;
+                segmentBlockSize100k = blockSize100k;
+                return segment;
+            }
+            if (8 * (bufStart + scanPos) - segmentStart >= 8L * MAX_BLOCK_BYTES) {
+                // no valid block is that big, let the consumer report an error
+                final Segment segment = cutSegment(8 * (bufStart + scanPos));
+                segmentType = NO_MAGIC;
+                return segment;
+            }
+            if (scanPos == bufLength && !readInput()) {
+                break;
+            }
+            window = (window << 8) | (buf[scanPos++] & 0xff);
+            nextShift = 7;
+        }
+        scannerDone = true;
+        final long end = 8 * (bufStart + bufLength);
+        return end > segmentStart ? cutSegment(end) : null;
+    }
+
+    /**
+     * Picks up the block size of a new .bz2 stream if the magic number
+     * is preceded by a stream header.
+     */
+    private void updateBlockSize(final long magicStart) {
+        if ((magicStart & 7) != 0) {
+            return;
+        }
+        final int i = (int) ((magicStart >>> 3) - bufStart) - HEADER_BITS / 8;
+        if (i >= 0 && buf[i] == 'B' && buf[i + 1] == 'Z' && buf[i + 2] == 'h'
+            && buf[i + 3] >= '1' && buf[i + 3] <= '9') {
+            blockSize100k = buf[i + 3] - '0';
+        }
+    }
+
+    /**
+     * Creates a segment from the start of the current segment up to
+     * the given position and discards the buffered data that is no
+     * longer needed.
+     */
+    private Segment cutSegment(final long end) {
+        final int from = (int) ((segmentStart >>> 3) - bufStart);
+        final int to = (int) (((end + 7) >>> 3) - bufStart);
+        final Segment segment = new Segment(segmentType, segmentBlockSize100k, segmentStart, end,
+            Arrays.copyOfRange(buf, from, to));
+        final int discard = (int) ((end >>> 3) - bufStart);
+        System.arraycopy(buf, discard, buf, 0, bufLength - discard);
+        bufStart += discard;
+        bufLength -= discard;
+        scanPos -= discard;
+        segmentStart = end;
+        return segment;
+    }
+
+    private boolean readInput() throws IOException {
+        if (buf.length - bufLength < READ_SIZE) {
+            buf = Arrays.copyOf(buf, Math.max(2 * buf.length, bufLength + READ_SIZE));
+        }
+        final int read = in.read(buf, bufLength, READ_SIZE);
+        if (read < 0) {
+            return false;
+        }
+        bufLength += read;
+        compressedCount += read;
+        return true;
+    }
+
+    /**
+     * Decodes a segment that is supposed to contain exactly one block.
+     */
+    private static byte[] decode(final Segment segment) throws IOException {
+        // terminate the block with an end of stream magic, the combined CRC isn't verified
+        final long end = segment.end - 8 * (segment.start >>> 3);
+        final byte[] data = Arrays.copyOf(segment.bytes, (int) ((end + MAGIC_BITS + CRC_BITS + 7) >>> 3));
+        for (int i = 0; i < MAGIC_BITS; i++) {
+            final long pos = end + i;
+            final int mask = 0x80 >>> (pos & 7);
+            if (((END_OF_STREAM_MAGIC >>> (MAGIC_BITS - 1 - i)) & 1) != 0) {
+                data[(int) (pos >>> 3)] |= mask;
+            } else {
+                data[(int) (pos >>> 3)] &= ~mask;
+            }
+        }
+        try (InputStream blockIn = new BZip2CompressorInputStream(new ByteArrayInputStream(data), false,
+                 segment.blockSize100k, (int) (segment.start & 7))) {
+            return IOUtils.toByteArray(blockIn);
+        }
+    }
+
+    private static Segment merge(final Segment first, final Segment second) {
+        final int firstBytes = (int) ((second.start >>> 3) - (first.start >>> 3));
+        final byte[] bytes = new byte[firstBytes + second.bytes.length];
+        System.arraycopy(first.bytes, 0, bytes, 0, firstBytes);
+        System.arraycopy(second.bytes, 0, bytes, firstBytes, second.bytes.length);
+        return new Segment(first.type, first.blockSize100k, first.start, second.end, bytes);
+    }
+
+    /**
+     * The bits between two magic numbers, usually a block or the end
+     * of a .bz2 stream.
+     */
+    private static final class Segment {
+        private final int type;
+        private final int blockSize100k;
+        /** Position of the first bit within the compressed input. */
+        private final long start;
+        /** Position of the first bit after the segment within the compressed input. */
+        private final long end;
+        /** The bytes containing the segment, the first byte contains the first bit. */
+        private final byte[] bytes;
+        private Future<byte[]> decoded;
+
+        Segment(final int type, final int blockSize100k, final long start, final long end, final byte[] bytes) {
+            this.type = type;
+            this.blockSize100k = blockSize100k;
+            this.start = start;
+            this.end = end;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Reads up to 32 bits starting at the given position within
+         * the compressed input.
+         */
+        int bits(final long pos, final int count) {
+            final long offset = pos - 8 * (start >>> 3);
+            int result = 0;
+            for (int i = 0; i < count; i++) {
+                final long p = offset + i;
+                result = (result << 1) | ((bytes[(int) (p >>> 3)] >>> (7 - (p & 7))) & 1);
+            }
+            return result;
+        }
+    }
+}
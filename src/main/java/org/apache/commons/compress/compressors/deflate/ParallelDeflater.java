@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.deflate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Creates a single raw DEFLATE stream by compressing blocks of the
+ * input in parallel.
+ *
+ * <p>The input is split into blocks of a fixed size. Each block is
+ * deflated by a task of the given {@link ExecutorService} using the
+ * last 32k of the previous block as preset dictionary so the
+ * compression ratio is close to the one of deflating the whole
+ * input at once. All but the last block are terminated by a sync
+ * flush which aligns them to a byte boundary, so the compressed
+ * blocks can simply be concatenated. This is the approach taken by
+ * <a href="https://zlib.net/pigz/">pigz</a>.</p>
+ *
+ * <p>The CRC32 of the uncompressed data is computed per block by the
+ * tasks and combined when the compressed blocks are written to the
+ * target stream. All writes to the target stream happen on the
+ * thread calling {@link #write} and {@link #finish}, blocks are
+ * written in order and the number of blocks that have been
+ * submitted but not yet written is bounded.</p>
+ *
+ * <p>The executor service is not shut down by this class.</p>
+ *
+ * @since 1.21
+ * @NotThreadSafe
+ */
+public class ParallelDeflater implements Closeable {
+
+    /**
+     * Size of the blocks the input is split into unless specified
+     * otherwise, 128k.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * Smallest supported block size, 32k - the size of the DEFLATE
+     * window.
+     */
+    public static final int MIN_BLOCK_SIZE = 32 * 1024;
+
+    /**
+     * Size of the DEFLATE window and thus of the preset dictionary.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final OutputStream out;
+    private final ExecutorService executorService;
+    private final int compressionLevel;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+
+    /** Blocks that have been submitted but not written, in order. */
+    private final Deque<Future<CompressedBlock>> pending = new ArrayDeque<>();
+    /** Deflaters that are not used by any task. */
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+    private byte[] block;
+    private int blockLength;
+    /** The last block that has been submitted, provides the dictionary for the next one. */
+    private byte[] previousBlock;
+
+    private long crc;
+    private long bytesRead;
+    private long bytesWritten;
+    private boolean finished;
+    private volatile boolean closed;
+
+    /**
+     * The default limit for the number of blocks that have been
+     * submitted but not written, twice the number of available
+     * processors.
+     * @return the default limit for pending blocks
+     */
+    public static int defaultMaxPendingBlocks() {
+        return 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Creates a deflater using the default compression level, block
+     * size and limit for pending blocks.
+     *
+     * @param out the stream to write the raw DEFLATE stream to
+     * @param executorService the executor service that compresses
+     * the blocks
+     */
+    public ParallelDeflater(final OutputStream out, final ExecutorService executorService) {
+        this(out, executorService, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE, defaultMaxPendingBlocks());
+    }
+
+    /**
+     * Creates a deflater.
+     *
+     * @param out the stream to write the raw DEFLATE stream to
+     * @param executorService the executor service that compresses
+     * the blocks
+     * @param compressionLevel the {@link Deflater} compression level
+     * @param blockSize the size of the blocks the input is split
+     * into, must be at least 32k
+     * @param maxPendingBlocks the maximum number of blocks that have
+     * been submitted but not written, must be positive
+     * @throws IllegalArgumentException if any of the arguments is
+     * outside of its valid range
+     */
+    public ParallelDeflater(final OutputStream out, final ExecutorService executorService,
+        final int compressionLevel, final int blockSize, final int maxPendingBlocks) {
+        if ((compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)
+                && compressionLevel != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level is expected between -1~9");
+        }
+        if (blockSize < MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException("blockSize must be at least " + MIN_BLOCK_SIZE + " but is "
+                + blockSize);
+        }
+        if (maxPendingBlocks <= 0) {
+            throw new IllegalArgumentException("maxPendingBlocks must be positive but is " + maxPendingBlocks);
+        }
+        this.out = out;
+        this.executorService = executorService;
+        this.compressionLevel = compressionLevel;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = maxPendingBlocks;
+    }
+
+    /**
+     * Adds data to the stream.
+     *
+     * <p>May write compressed blocks to the target stream and blocks
+     * if too many blocks are pending.</p>
+     *
+     * @param b the data to compress
+     * @param offset the start of the data
+     * @param length the number of bytes to compress
+     * @throws IOException if the stream has been finished, writing
+     * fails or compressing any block failed
+     */
+    public void write(final byte[] b, final int offset, final int length) throws IOException {
+        if (finished) {
+            throw new IOException("Cannot write more data, the end of the compressed data stream has been reached");
+        }
+        int off = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            if (block == null) {
+                block = new byte[blockSize];
+            } else if (blockLength == blockSize) {
+                submit(false);
+            }
+            final int n = Math.min(remaining, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            remaining -= n;
+        }
+        bytesRead += length;
+    }
+
+    /**
+     * Compresses the remaining data, terminates the DEFLATE stream
+     * and waits for all blocks to be written.
+     *
+     * <p>Does nothing if the stream has already been finished.</p>
+     *
+     * @throws IOException if writing or compressing any block failed
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        submit(true);
+        while (!pending.isEmpty()) {
+            writeBlock();
+        }
+        finished = true;
+    }
+
+    /**
+     * Prepares this instance for a new DEFLATE stream, discarding
+     * all data of the current stream that has not been written yet.
+     */
+    public void reset() {
+        cancelPendingBlocks();
+        finished = false;
+        previousBlock = null;
+        crc = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+    }
+
+    /**
+     * Whether {@link #finish} has been called for the current stream.
+     * @return true if the current stream has been finished
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * The CRC32 of the uncompressed data of the current stream, only
+     * complete once the stream has been finished.
+     * @return the CRC32 of all data written so far
+     */
+    public long getCrc32() {
+        return crc;
+    }
+
+    /**
+     * The number of uncompressed bytes of the current stream.
+     * @return the number of bytes passed to {@link #write}
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * The number of compressed bytes of the current stream that have
+     * been written to the target stream.
+     * @return the number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Cancels all pending blocks and releases the deflaters held by
+     * this instance. Neither closes the target stream nor shuts down
+     * the executor service.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        cancelPendingBlocks();
+        endDeflaters();
+    }
+
+    private void endDeflaters() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    private void cancelPendingBlocks() {
+        for (final Future<CompressedBlock> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        blockLength = 0;
+    }
+
+    private void submit(final boolean last) throws IOException {
+        while (pending.size() >= maxPendingBlocks) {
+            writeBlock();
+        }
+        final byte[] input = block == null ? new byte[0] : block;
+        final int length = blockLength;
+        final byte[] dictionary = previousBlock;
+        pending.add(executorService.submit(new Callable<CompressedBlock>() {
+            @Override
+            public CompressedBlock call() {
+                return compress(input, length, dictionary, last);
+            }
+        }));
+        previousBlock = last ? null : input;
+        block = last ? null : new byte[blockSize];
+        blockLength = 0;
+        while (!pending.isEmpty() && pending.peek().isDone()) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        final CompressedBlock compressed;
+        try {
+            compressed = pending.peek().get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException iioe = new InterruptedIOException("Interrupted while deflating");
+            iioe.initCause(ex);
+            throw iioe;
+        } catch (final ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+        pending.poll();
+        out.write(compressed.data, 0, compressed.length);
+        crc = combineCrc32(crc, compressed.crc, compressed.uncompressedLength);
+        bytesWritten += compressed.length;
+    }
+
+    private CompressedBlock compress(final byte[] input, final int length, final byte[] dictionary,
+        final boolean last) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(compressionLevel, true);
+        }
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(input, 0, length);
+            // incompressible data grows by a few bytes per stored block
+            byte[] data = new byte[length + (length >> 6) + 64];
+            int written = 0;
+            if (last) {
+                deflater.finish();
+            }
+            while (true) {
+                if (written == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                written += deflater.deflate(data, written, data.length - written,
+                    last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                // a flush is complete once the deflater leaves part of the output buffer unused
+                if (last ? deflater.finished() : written < data.length) {
+                    break;
+                }
+            }
+            final CRC32 blockCrc = new CRC32();
+            blockCrc.update(input, 0, length);
+            return new CompressedBlock(data, written, blockCrc.getValue(), length);
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+            if (closed) {
+                // close may have released the pool before the deflater has been returned
+                endDeflaters();
+            }
+        }
+    }
+
+    /**
+     * Computes the CRC32 of the concatenation of two byte sequences
+     * from their individual CRC32s and the length of the second one.
+     *
+     * <p>Port of zlib's {@code crc32_combine}.</p>
+     *
+     * @param crc1 CRC32 of the first sequence
+     * @param crc2 CRC32 of the second sequence
+     * @param length2 length of the second sequence
+     * @return the CRC32 of both sequences
+     */
+    static long combineCrc32(final long crc1, final long crc2, final long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        final long[] even = new long[32];
+        final long[] odd = new long[32];
+
+        // operator for a single zero bit
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // operators for two and four zero bits
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        // apply length2 zero bytes to crc1
+        long result = crc1;
+        long len = length2;
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len & 1) != 0) {
+                result = gf2MatrixTimes(even, result);
+            }
+            len >>= 1;
+            if (len == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((len & 1) != 0) {
+                result = gf2MatrixTimes(odd, result);
+            }
+            len >>= 1;
+        } while (len != 0);
+        return result ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(final long[] mat, final long vec) {
+        long sum = 0;
+        long v = vec;
+        for (int i = 0; v != 0; i++, v >>>= 1) {
+            if ((v & 1) != 0) {
+                sum ^= mat[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(final long[] square, final long[] mat) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+        }
+    }
+
+    private static final class CompressedBlock {
+        private final byte[] data;
+        private final int length;
+        private final long crc;
+        private final int uncompressedLength;
+
+        CompressedBlock(final byte[] data, final int length, final long crc, final int uncompressedLength) {
+            this.data = data;
+            this.length = length;
+            this.crc = crc;
+            this.uncompressedLength = uncompressedLength;
+        }
+    }
+}
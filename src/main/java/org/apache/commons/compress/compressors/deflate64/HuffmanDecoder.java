@@ -17,13 +17,10 @@
  */
 package org.apache.commons.compress.compressors.deflate64;
 
-import org.apache.commons.compress.utils.BitInputStream;
-
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import static org.apache.commons.compress.compressors.deflate64.HuffmanState.*;
@@ -89,32 +86,55 @@ class HuffmanDecoder implements Closeable {
     private static final int[] CODE_LENGTHS_ORDER =
             {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
 
+    /**
+     * Number of bits used to index the primary decoding tables of
+     * literal/length and distance codes, longer codes are decoded
+     * using sub-tables.
+     */
+    private static final int LITERAL_TABLE_BITS = 9;
+    private static final int DISTANCE_TABLE_BITS = 7;
+    private static final int CODE_LENGTH_TABLE_BITS = 7;
+
     /**
      * Huffman Fixed Literal / Distance tables for mode 1
      */
-    private static final int[] FIXED_LITERALS;
-    private static final int[] FIXED_DISTANCE;
+    private static final DecodingTable FIXED_LITERALS;
+    private static final DecodingTable FIXED_DISTANCE;
 
     static {
-        FIXED_LITERALS = new int[288];
-        Arrays.fill(FIXED_LITERALS, 0, 144, 8);
-        Arrays.fill(FIXED_LITERALS, 144, 256, 9);
-        Arrays.fill(FIXED_LITERALS, 256, 280, 7);
-        Arrays.fill(FIXED_LITERALS, 280, 288, 8);
-
-        FIXED_DISTANCE = new int[32];
-        Arrays.fill(FIXED_DISTANCE, 5);
+        final int[] literals = new int[288];
+        Arrays.fill(literals, 0, 144, 8);
+        Arrays.fill(literals, 144, 256, 9);
+        Arrays.fill(literals, 256, 280, 7);
+        Arrays.fill(literals, 280, 288, 8);
+        FIXED_LITERALS = new DecodingTable(literals, LITERAL_TABLE_BITS);
+
+        final int[] distance = new int[32];
+        Arrays.fill(distance, 5);
+        FIXED_DISTANCE = new DecodingTable(distance, DISTANCE_TABLE_BITS);
     }
 
     private boolean finalBlock = false;
     private DecoderState state;
-    private BitInputStream reader;
     private final InputStream in;
 
+    /**
+     * Bits that have been read from the stream but not been consumed,
+     * the next bit is the least significant one. Bits above {@link
+     * #bitsCached} are always zero.
+     */
+    private long bitCache;
+    private int bitsCached;
+
+    /**
+     * Number of bytes read into the bit cache, bytes of stored blocks
+     * are not counted.
+     */
+    private long bytesRead;
+
     private final DecodingMemory memory = new DecodingMemory();
 
     HuffmanDecoder(InputStream in) {
-        this.reader = new BitInputStream(in, ByteOrder.LITTLE_ENDIAN);
         this.in = in;
         state = new InitialState();
     }
@@ -122,7 +142,8 @@ class HuffmanDecoder implements Closeable {
     @Override
     public void close() {
         state = new InitialState();
-        reader = null;
+        bitCache = 0;
+        bitsCached = 0;
     }
 
     public int decode(byte[] b) throws IOException {
@@ -143,7 +164,9 @@ public int decode(byte[] b, int off, int len) throws IOException {
                     break;
                 case 2:
                     int[][] tables = readDynamicTables();
-                    state = new HuffmanCodes(DYNAMIC_CODES, tables[0], tables[1]);
+                    state = new HuffmanCodes(DYNAMIC_CODES,
+                        new DecodingTable(tables[0], LITERAL_TABLE_BITS),
+                        new DecodingTable(tables[1], DISTANCE_TABLE_BITS));
                     break;
                 default:
                     throw new IllegalStateException("Unsupported compression: " + mode);
@@ -162,11 +185,12 @@ public int decode(byte[] b, int off, int len) throws IOException {
      * @since 1.17
      */
     long getBytesRead() {
-        return reader.getBytesRead();
+        return bytesRead;
     }
 
     private void switchToUncompressedState() throws IOException {
-        reader.alignWithByteBoundary();
+        // drop the bits up to the next byte boundary
+        readBits(bitsCached % Byte.SIZE);
         long bLen = readBits(16);
         long bNLen = readBits(16);
         if (((bLen ^ 0xFFFF) & 0xFFFF) != bNLen) {
@@ -184,7 +208,7 @@ private int[][] readDynamicTables() throws IOException {
         int distances = (int) (readBits(5) + 1);
         result[1] = new int[distances];
 
-        populateDynamicTables(reader, result[0], result[1]);
+        populateDynamicTables(result[0], result[1]);
         return result;
     }
 
@@ -225,7 +249,7 @@ int read(byte[] b, int off, int len) throws IOException {
             int readSoFar = 0;
             while (readSoFar < max) {
                 int readNow;
-                if (reader.bitsCached() > 0) {
+                if (bitsCached > 0) {
                     byte next = (byte) readBits(Byte.SIZE);
                     b[off + readSoFar] = memory.add(next);
                     readNow = 1;
@@ -249,7 +273,7 @@ boolean hasData() {
 
         @Override
         int available() throws IOException {
-            return (int) Math.min(blockLength - read, reader.bitsAvailable() / Byte.SIZE);
+            return (int) Math.min(blockLength - read, (bitsCached + ((long) Byte.SIZE) * in.available()) / Byte.SIZE);
         }
     }
 
@@ -281,17 +305,17 @@ int available() {
     private class HuffmanCodes extends DecoderState {
         private boolean endOfBlock = false;
         private final HuffmanState state;
-        private final BinaryTreeNode lengthTree;
-        private final BinaryTreeNode distanceTree;
+        private final DecodingTable lengthTable;
+        private final DecodingTable distanceTable;
 
         private int runBufferPos = 0;
         private byte[] runBuffer = new byte[0];
         private int runBufferLength = 0;
 
-        HuffmanCodes(HuffmanState state, int[] lengths, int[] distance) {
+        HuffmanCodes(HuffmanState state, DecodingTable lengths, DecodingTable distance) {
             this.state = state;
-            lengthTree = buildTree(lengths);
-            distanceTree = buildTree(distance);
+            lengthTable = lengths;
+            distanceTable = distance;
         }
 
         @Override
@@ -314,7 +338,7 @@ private int decodeNext(byte[] b, int off, int len) throws IOException {
             int result = copyFromRunBuffer(b, off, len);
 
             while (result < len) {
-                int symbol = nextSymbol(reader, lengthTree);
+                int symbol = nextSymbol(lengthTable);
                 if (symbol < 256) {
                     b[off + result++] = memory.add((byte) symbol);
                 } else if (symbol > 256) {
@@ -323,7 +347,7 @@ private int decodeNext(byte[] b, int off, int len) throws IOException {
                     int runXtra = runMask & 0x1F;
                     run += readBits(runXtra);
 
-                    int distSym = nextSymbol(reader, distanceTree);
+                    int distSym = nextSymbol(distanceTable);
 
                     int distMask = DISTANCE_TABLE[distSym];
                     int dist = distMask >>> 4;
@@ -369,24 +393,36 @@ int available() {
         }
     }
 
-    private static int nextSymbol(BitInputStream reader, BinaryTreeNode tree) throws IOException {
-        BinaryTreeNode node = tree;
-        while (node != null && node.literal == -1) {
-            long bit = readBits(reader, 1);
-            node = bit == 0 ? node.leftNode : node.rightNode;
+    /**
+     * Decodes the next symbol using the bits that have been cached,
+     * reading another byte only if the code turns out to be longer
+     * than the bits cached.
+     */
+    private int nextSymbol(DecodingTable table) throws IOException {
+        while (true) {
+            final int entry = table.lookup((int) bitCache);
+            final int length = entry & DecodingTable.LENGTH_MASK;
+            if (length != 0 && length <= bitsCached) {
+                bitCache >>>= length;
+                bitsCached -= length;
+                return entry >>> DecodingTable.SYMBOL_SHIFT;
+            }
+            if (length == 0 && bitsCached >= table.maxLength) {
+                throw new IOException("Invalid Huffman code");
+            }
+            fillBitCache();
         }
-        return node != null ? node.literal : -1;
     }
 
-    private static void populateDynamicTables(BitInputStream reader, int[] literals, int[] distances) throws IOException {
-        int codeLengths = (int) (readBits(reader, 4) + 4);
+    private void populateDynamicTables(int[] literals, int[] distances) throws IOException {
+        int codeLengths = (int) (readBits(4) + 4);
 
         int[] codeLengthValues = new int[19];
         for (int cLen = 0; cLen < codeLengths; cLen++) {
-            codeLengthValues[CODE_LENGTHS_ORDER[cLen]] = (int) readBits(reader, 3);
+            codeLengthValues[CODE_LENGTHS_ORDER[cLen]] = (int) readBits(3);
         }
 
-        BinaryTreeNode codeLengthTree = buildTree(codeLengthValues);
+        DecodingTable codeLengthTable = new DecodingTable(codeLengthValues, CODE_LENGTH_TABLE_BITS);
 
         final int[] auxBuffer = new int[literals.length + distances.length];
 
@@ -398,18 +434,18 @@ private static void populateDynamicTables(BitInputStream reader, int[] literals,
                 auxBuffer[off++] = value;
                 length--;
             } else {
-                int symbol = nextSymbol(reader, codeLengthTree);
+                int symbol = nextSymbol(codeLengthTable);
                 if (symbol < 16) {
                     value = symbol;
                     auxBuffer[off++] = value;
                 } else if (symbol == 16) {
-                    length = (int) (readBits(reader, 2) + 3);
+                    length = (int) (readBits(2) + 3);
                 } else if (symbol == 17) {
                     value = 0;
-                    length = (int) (readBits(reader, 3) + 3);
+                    length = (int) (readBits(3) + 3);
                 } else if (symbol == 18) {
                     value = 0;
-                    length = (int) (readBits(reader, 7) + 11);
+                    length = (int) (readBits(7) + 11);
                 }
             }
         }
@@ -418,83 +454,127 @@ private static void populateDynamicTables(BitInputStream reader, int[] literals,
         System.arraycopy(auxBuffer, literals.length, distances, 0, distances.length);
     }
 
-    private static class BinaryTreeNode {
-        private final int bits;
-        int literal = -1;
-        BinaryTreeNode leftNode;
-        BinaryTreeNode rightNode;
-
-        private BinaryTreeNode(int bits) {
-            this.bits = bits;
-        }
-
-        void leaf(int symbol) {
-            literal = symbol;
-            leftNode = null;
-            rightNode = null;
-        }
-
-        BinaryTreeNode left() {
-            if (leftNode == null && literal == -1) {
-                leftNode = new BinaryTreeNode(bits + 1);
+    /**
+     * Lookup table for a canonical Huffman code.
+     *
+     * <p>The primary table is indexed by the next {@code primaryBits}
+     * bits of the stream. Its entries either hold a symbol together
+     * with the length of its code or point to a sub-table that is
+     * indexed by the bits following the first {@code primaryBits}
+     * bits of longer codes. As Deflate stores codes starting with
+     * their most significant bit, the index of a code is its
+     * bit-reversed value and all entries that share this value in
+     * their lowest bits map to the same symbol.</p>
+     */
+    private static final class DecodingTable {
+        /** Length of the code or number of bits indexing a sub-table. */
+        static final int LENGTH_MASK = 0x1f;
+        /** Set for entries pointing to a sub-table. */
+        static final int LINK = 0x20;
+        /** Position of the symbol or sub-table offset. */
+        static final int SYMBOL_SHIFT = 6;
+        private static final int MAX_CODE_LENGTH = 15;
+
+        private final int[] entries;
+        private final int primaryBits;
+        private final int primaryMask;
+        private final int maxLength;
+
+        DecodingTable(int[] codeLengths, int maxPrimaryBits) {
+            final int[] lengthCount = new int[MAX_CODE_LENGTH + 1];
+            int max = 0;
+            for (int length : codeLengths) {
+                if (length < 0 || length > MAX_CODE_LENGTH) {
+                    throw new IllegalArgumentException("Invalid code " + length + " in literal table");
+                }
+                lengthCount[length]++;
+                max = Math.max(max, length);
+            }
+            lengthCount[0] = 0;
+            maxLength = max;
+            primaryBits = Math.max(1, Math.min(max, maxPrimaryBits));
+            primaryMask = (1 << primaryBits) - 1;
+
+            // canonical codes per RFC 1951 section 3.2.2
+            final int[] nextCode = new int[MAX_CODE_LENGTH + 2];
+            int code = 0;
+            int unused = 1;
+            for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+                code = (code + lengthCount[length - 1]) << 1;
+                nextCode[length] = code;
+                unused = (unused << 1) - lengthCount[length];
+                if (unused < 0) {
+                    throw new IllegalStateException("node doesn't exist in Huffman tree");
+                }
+            }
+            final int[] codes = new int[codeLengths.length];
+            for (int symbol = 0; symbol < codeLengths.length; symbol++) {
+                final int length = codeLengths[symbol];
+                if (length != 0) {
+                    codes[symbol] = Integer.reverse(nextCode[length]++) >>> (32 - length);
+                }
             }
-            return leftNode;
-        }
 
-        BinaryTreeNode right() {
-            if (rightNode == null && literal == -1) {
-                rightNode = new BinaryTreeNode(bits + 1);
+            // size the sub-tables by the longest code sharing a prefix
+            final int[] subTableBits = new int[1 << primaryBits];
+            for (int symbol = 0; symbol < codeLengths.length; symbol++) {
+                final int length = codeLengths[symbol];
+                if (length > primaryBits) {
+                    final int prefix = codes[symbol] & primaryMask;
+                    subTableBits[prefix] = Math.max(subTableBits[prefix], length - primaryBits);
+                }
+            }
+            int size = 1 << primaryBits;
+            for (int bits : subTableBits) {
+                if (bits > 0) {
+                    size += 1 << bits;
+                }
+            }
+            entries = new int[size];
+            int offset = 1 << primaryBits;
+            for (int prefix = 0; prefix < subTableBits.length; prefix++) {
+                if (subTableBits[prefix] > 0) {
+                    entries[prefix] = (offset << SYMBOL_SHIFT) | LINK | subTableBits[prefix];
+                    offset += 1 << subTableBits[prefix];
+                }
             }
-            return rightNode;
-        }
-    }
 
-    private static BinaryTreeNode buildTree(int[] litTable) {
-        int[] literalCodes = getCodes(litTable);
-
-        BinaryTreeNode root = new BinaryTreeNode(0);
-
-        for (int i = 0; i < litTable.length; i++) {
-            int len = litTable[i];
-            if (len != 0) {
-                BinaryTreeNode node = root;
-                int lit = literalCodes[len - 1];
-                for (int p = len - 1; p >= 0; p--) {
-                    int bit = lit & (1 << p);
-                    node = bit == 0 ? node.left() : node.right();
-                    if (node == null) {
-                        throw new IllegalStateException("node doesn't exist in Huffman tree");
+            for (int symbol = 0; symbol < codeLengths.length; symbol++) {
+                final int length = codeLengths[symbol];
+                if (length == 0) {
+                    continue;
+                }
+                final int entry = (symbol << SYMBOL_SHIFT) | length;
+                if (length <= primaryBits) {
+                    for (int i = codes[symbol]; i < 1 << primaryBits; i += 1 << length) {
+                        entries[i] = entry;
+                    }
+                } else {
+                    final int link = entries[codes[symbol] & primaryMask];
+                    final int subTable = link >>> SYMBOL_SHIFT;
+                    final int subBits = link & LENGTH_MASK;
+                    for (int i = codes[symbol] >>> primaryBits; i < 1 << subBits; i += 1 << (length - primaryBits)) {
+                        entries[subTable + i] = entry;
                     }
                 }
-                node.leaf(i);
-                literalCodes[len - 1]++;
             }
         }
-        return root;
-    }
-
-    private static int[] getCodes(int[] litTable) {
-        int max = 0;
-        int[] blCount = new int[65];
 
-        for (int aLitTable : litTable) {
-            if (aLitTable < 0 || aLitTable > 64) {
-                throw new IllegalArgumentException("Invalid code " + aLitTable
-                    + " in literal table");
+        /**
+         * Finds the entry for a code.
+         *
+         * @param bits the next bits of the stream, least significant bit first
+         * @return the symbol shifted by {@link #SYMBOL_SHIFT} combined
+         * with the length of its code, 0 if no code matches
+         */
+        int lookup(int bits) {
+            final int entry = entries[bits & primaryMask];
+            if ((entry & LINK) == 0) {
+                return entry;
             }
-            max = Math.max(max, aLitTable);
-            blCount[aLitTable]++;
+            final int subBits = entry & LENGTH_MASK;
+            return entries[(entry >>> SYMBOL_SHIFT) + ((bits >>> primaryBits) & ((1 << subBits) - 1))];
         }
-        blCount = Arrays.copyOf(blCount, max + 1);
-
-        int code = 0;
-        int[] nextCode = new int[max + 1];
-        for (int i = 0; i <= max; i++) {
-            code = (code + blCount[i]) << 1;
-            nextCode[i] = code;
-        }
-
-        return nextCode;
     }
 
     private static class DecodingMemory {
@@ -547,14 +627,30 @@ private int incCounter(int counter) {
     }
 
     private long readBits(int numBits) throws IOException {
-        return readBits(reader, numBits);
+        while (bitsCached < numBits) {
+            fillBitCache();
+        }
+        long r = bitCache & ((1L << numBits) - 1);
+        bitCache >>>= numBits;
+        bitsCached -= numBits;
+        return r;
     }
 
-    private static long readBits(BitInputStream reader, int numBits) throws IOException {
-        long r = reader.readBits(numBits);
-        if (r == -1) {
+    /**
+     * Reads a single byte into the bit cache.
+     *
+     * <p>Bytes are only read when the bits are needed, so the
+     * decoder never reads beyond the end of the compressed data. This
+     * matters for ZIP archives read as streams where the data
+     * descriptor follows the compressed data.</p>
+     */
+    private void fillBitCache() throws IOException {
+        final long nextByte = in.read();
+        if (nextByte < 0) {
             throw new EOFException("Truncated Deflate64 Stream");
         }
-        return r;
+        bytesRead++;
+        bitCache |= nextByte << bitsCached;
+        bitsCached += Byte.SIZE;
     }
 }
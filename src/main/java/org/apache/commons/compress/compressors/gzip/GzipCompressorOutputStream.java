@@ -23,12 +23,14 @@
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.compress.compressors.CompressorOutputStream;
+import org.apache.commons.compress.compressors.deflate.ParallelDeflater;
 
 /**
  * Compressed output stream using the gzip format. This implementation improves
@@ -61,6 +63,9 @@ public class GzipCompressorOutputStream extends CompressorOutputStream {
     /** The checksum of the uncompressed data */
     private final CRC32 crc = new CRC32();
 
+    /** Compresses blocks of the data in parallel, may be null */
+    private final ParallelDeflater parallelDeflater;
+
     /**
      * Creates a gzip compressed output stream with the default parameters.
      * @param out the stream to compress to
@@ -79,8 +84,40 @@ public GzipCompressorOutputStream(final OutputStream out) throws IOException {
      * @since 1.7
      */
     public GzipCompressorOutputStream(final OutputStream out, final GzipParameters parameters) throws IOException {
+        this(out, parameters, null);
+    }
+
+    /**
+     * Creates a gzip compressed output stream with the specified
+     * parameters that compresses blocks of the data in parallel.
+     *
+     * <p>The data is split into blocks that are deflated concurrently
+     * by the given executor service using a {@link ParallelDeflater}
+     * configured by {@link GzipParameters#setParallelBlockSize} and
+     * {@link GzipParameters#setMaxPendingParallelBlocks}.
+     * The result is a single gzip member that can be read by any gzip
+     * implementation. The executor service is not shut down by this
+     * stream.</p>
+     *
+     * @param out the stream to compress to
+     * @param parameters the parameters to use
+     * @param executorService the executor service that compresses the
+     * blocks, null to compress on the calling thread
+     * @throws IOException if writing fails
+     *
+     * @since 1.21
+     */
+    public GzipCompressorOutputStream(final OutputStream out, final GzipParameters parameters,
+        final ExecutorService executorService) throws IOException {
         this.out = out;
-        this.deflater = new Deflater(parameters.getCompressionLevel(), true);
+        if (executorService == null) {
+            this.deflater = new Deflater(parameters.getCompressionLevel(), true);
+            this.parallelDeflater = null;
+        } else {
+            this.deflater = null;
+            this.parallelDeflater = new ParallelDeflater(out, executorService, parameters.getCompressionLevel(),
+                parameters.getParallelBlockSize(), parameters.getMaxPendingParallelBlocks());
+        }
 
         writeHeader(parameters);
     }
@@ -124,8 +161,13 @@ private void writeHeader(final GzipParameters parameters) throws IOException {
     private void writeTrailer() throws IOException {
         final ByteBuffer buffer = ByteBuffer.allocate(8);
         buffer.order(ByteOrder.LITTLE_ENDIAN);
-        buffer.putInt((int) crc.getValue());
-        buffer.putInt(deflater.getTotalIn());
+        if (parallelDeflater != null) {
+            buffer.putInt((int) parallelDeflater.getCrc32());
+            buffer.putInt((int) parallelDeflater.getBytesRead());
+        } else {
+            buffer.putInt((int) crc.getValue());
+            buffer.putInt(deflater.getTotalIn());
+        }
 
         out.write(buffer.array());
     }
@@ -152,7 +194,9 @@ public void write(final byte[] buffer) throws IOException {
      */
     @Override
     public void write(final byte[] buffer, final int offset, final int length) throws IOException {
-        if (deflater.finished()) {
+        if (parallelDeflater != null) {
+            parallelDeflater.write(buffer, offset, length);
+        } else if (deflater.finished()) {
             throw new IOException("Cannot write more data, the end of the compressed data stream has been reached");
 
         } else if (length > 0) {
@@ -180,7 +224,12 @@ private void deflate() throws IOException {
      * @throws IOException on error
      */
     public void finish() throws IOException {
-        if (!deflater.finished()) {
+        if (parallelDeflater != null) {
+            if (!parallelDeflater.isFinished()) {
+                parallelDeflater.finish();
+                writeTrailer();
+            }
+        } else if (!deflater.finished()) {
             deflater.finish();
 
             while (!deflater.finished()) {
@@ -207,7 +256,11 @@ public void close() throws IOException {
             try {
                 finish();
             } finally {
-                deflater.end();
+                if (parallelDeflater != null) {
+                    parallelDeflater.close();
+                } else {
+                    deflater.end();
+                }
                 out.close();
                 closed = true;
             }
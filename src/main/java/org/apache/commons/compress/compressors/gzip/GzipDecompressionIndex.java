@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.gzip;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.compress.compressors.DecompressionIndex;
+
+/**
+ * Decoder checkpoints for .gz files.
+ *
+ * <p>Checkpoints are placed at the start of .gz members and at the
+ * start of DEFLATE blocks. A checkpoint inside of a member records
+ * the position of the block in bits as well as the 32k of
+ * uncompressed data in front of it that the block may refer to. The
+ * distance between checkpoints can't be smaller than the size of the
+ * DEFLATE blocks the file has been compressed with, which usually
+ * contain between 16k and a few hundred k of uncompressed data.</p>
+ *
+ * <p>The CRC of a member is only verified if decoding starts at the
+ * beginning of the member.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+public class GzipDecompressionIndex extends DecompressionIndex {
+
+    private static final String FORMAT = "gzip";
+    private static final byte[] NO_WINDOW = new byte[0];
+
+    private final long[] bitPositions;
+    private final boolean[] memberStarts;
+    private final byte[][] windows;
+
+    private GzipDecompressionIndex(final long uncompressedSize, final long[] offsets, final long[] bitPositions,
+        final boolean[] memberStarts, final byte[][] windows) {
+        super(FORMAT, uncompressedSize, offsets);
+        this.bitPositions = bitPositions;
+        this.memberStarts = memberStarts;
+        this.windows = windows;
+    }
+
+    /**
+     * Builds an index with checkpoints {@link #DEFAULT_SPAN} bytes apart.
+     *
+     * @param in the complete .gz file, will be read completely but
+     * not closed
+     * @return the index
+     * @throws IOException if the stream cannot be read or is not a
+     * valid .gz file
+     */
+    public static GzipDecompressionIndex build(final InputStream in) throws IOException {
+        return build(in, DEFAULT_SPAN);
+    }
+
+    /**
+     * Builds an index.
+     *
+     * @param in the complete .gz file, will be read completely but
+     * not closed
+     * @param span the minimum distance between two checkpoints in
+     * bytes of uncompressed data, must be positive
+     * @return the index
+     * @throws IOException if the stream cannot be read or is not a
+     * valid .gz file
+     * @throws IllegalArgumentException if span is not positive
+     */
+    public static GzipDecompressionIndex build(final InputStream in, final long span) throws IOException {
+        if (span <= 0) {
+            throw new IllegalArgumentException("span must be positive but is " + span);
+        }
+        final List<Long> offsets = new ArrayList<>();
+        final List<Long> bitPositions = new ArrayList<>();
+        final List<Boolean> memberStarts = new ArrayList<>();
+        final List<byte[]> windows = new ArrayList<>();
+        final ResumableGzipInputStream.BoundaryListener listener = new ResumableGzipInputStream.BoundaryListener() {
+            @Override
+            public void boundaryReached(final ResumableGzipInputStream stream, final long bitPosition,
+                final long uncompressedOffset, final boolean memberStart) {
+                if (offsets.isEmpty() || uncompressedOffset - offsets.get(offsets.size() - 1) >= span) {
+                    offsets.add(uncompressedOffset);
+                    bitPositions.add(bitPosition);
+                    memberStarts.add(memberStart);
+                    windows.add(memberStart ? NO_WINDOW : stream.copyWindow());
+                }
+            }
+        };
+        final ResumableGzipInputStream gz = new ResumableGzipInputStream(in, 0, listener);
+        final byte[] buffer = new byte[8192];
+        long uncompressedSize = 0;
+        int read;
+        while ((read = gz.read(buffer)) >= 0) {
+            uncompressedSize += read;
+        }
+        final int count = offsets.size();
+        final long[] offsetArray = new long[count];
+        final long[] bitPositionArray = new long[count];
+        final boolean[] memberStartArray = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            offsetArray[i] = offsets.get(i);
+            bitPositionArray[i] = bitPositions.get(i);
+            memberStartArray[i] = memberStarts.get(i);
+        }
+        return new GzipDecompressionIndex(uncompressedSize, offsetArray, bitPositionArray, memberStartArray,
+            windows.toArray(new byte[count][]));
+    }
+
+    /**
+     * Reads an index that has been written using {@link #writeTo}.
+     *
+     * @param in the stream to read from, the stream is not closed but
+     * may have been read beyond the end of the index
+     * @return the index
+     * @throws IOException if the stream cannot be read or doesn't
+     * contain an index for a .gz file
+     */
+    public static GzipDecompressionIndex readFrom(final InputStream in) throws IOException {
+        final DataInputStream data = readHeader(in, FORMAT);
+        final long uncompressedSize = data.readLong();
+        final int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of checkpoints " + count);
+        }
+        final long[] offsets = new long[count];
+        final long[] bitPositions = new long[count];
+        final boolean[] memberStarts = new boolean[count];
+        final byte[][] windows = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = data.readLong();
+            bitPositions[i] = data.readLong();
+            memberStarts[i] = data.readBoolean();
+            final int windowSize = data.readUnsignedShort();
+            if (windowSize > ResumableGzipInputStream.WINDOW_SIZE) {
+                throw new IOException("Invalid window size " + windowSize);
+            }
+            windows[i] = new byte[windowSize];
+            data.readFully(windows[i]);
+        }
+        try {
+            return new GzipDecompressionIndex(uncompressedSize, offsets, bitPositions, memberStarts, windows);
+        } catch (final IllegalArgumentException ex) {
+            throw new IOException("Invalid index: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    protected InputStream openAtCheckpoint(final SeekableByteChannel channel, final int checkpoint)
+        throws IOException {
+        final long bitPosition = bitPositions[checkpoint];
+        final InputStream in = newInputStream(channel, bitPosition >>> 3);
+        if (memberStarts[checkpoint]) {
+            return new ResumableGzipInputStream(in, bitPosition >>> 3, null);
+        }
+        return new ResumableGzipInputStream(in, (int) (bitPosition & 7), windows[checkpoint]);
+    }
+
+    @Override
+    protected void writeCheckpoint(final DataOutput out, final int checkpoint) throws IOException {
+        out.writeLong(bitPositions[checkpoint]);
+        out.writeBoolean(memberStarts[checkpoint]);
+        out.writeShort(windows[checkpoint].length);
+        out.write(windows[checkpoint]);
+    }
+}
@@ -21,6 +21,8 @@
 
 import java.util.zip.Deflater;
 
+import org.apache.commons.compress.compressors.deflate.ParallelDeflater;
+
 /**
  * Parameters for the GZIP compressor.
  *
@@ -33,6 +35,8 @@ public class GzipParameters {
     private String filename;
     private String comment;
     private int operatingSystem = 255; // Unknown OS by default
+    private int parallelBlockSize = ParallelDeflater.DEFAULT_BLOCK_SIZE;
+    private int maxPendingParallelBlocks = ParallelDeflater.defaultMaxPendingBlocks();
 
     public int getCompressionLevel() {
         return compressionLevel;
@@ -118,4 +122,59 @@ public int getOperatingSystem() {
     public void setOperatingSystem(final int operatingSystem) {
         this.operatingSystem = operatingSystem;
     }
+
+    /**
+     * The size of the blocks the data is split into when compressing
+     * in parallel.
+     *
+     * @return the block size
+     * @since 1.21
+     */
+    public int getParallelBlockSize() {
+        return parallelBlockSize;
+    }
+
+    /**
+     * Sets the size of the blocks the data is split into when
+     * compressing in parallel, defaults to {@link
+     * ParallelDeflater#DEFAULT_BLOCK_SIZE}.
+     *
+     * @param parallelBlockSize the block size, must be at least
+     * {@link ParallelDeflater#MIN_BLOCK_SIZE}
+     * @since 1.21
+     */
+    public void setParallelBlockSize(final int parallelBlockSize) {
+        if (parallelBlockSize < ParallelDeflater.MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid parallel block size: " + parallelBlockSize);
+        }
+        this.parallelBlockSize = parallelBlockSize;
+    }
+
+    /**
+     * The maximum number of blocks that have been submitted for
+     * parallel compression but not written.
+     *
+     * @return the limit for pending blocks
+     * @since 1.21
+     */
+    public int getMaxPendingParallelBlocks() {
+        return maxPendingParallelBlocks;
+    }
+
+    /**
+     * Sets the maximum number of blocks that have been submitted for
+     * parallel compression but not written, defaults to {@link
+     * ParallelDeflater#defaultMaxPendingBlocks}.
+     *
+     * @param maxPendingParallelBlocks the limit for pending blocks,
+     * must be positive
+     * @since 1.21
+     */
+    public void setMaxPendingParallelBlocks(final int maxPendingParallelBlocks) {
+        if (maxPendingParallelBlocks <= 0) {
+            throw new IllegalArgumentException("Invalid number of pending parallel blocks: "
+                + maxPendingParallelBlocks);
+        }
+        this.maxPendingParallelBlocks = maxPendingParallelBlocks;
+    }
 }
@@ -0,0 +1,592 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.gzip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Decompresses (possibly concatenated) .gz members with a DEFLATE
+ * decoder that can report and resume at block boundaries.
+ *
+ * <p>{@link java.util.zip.Inflater} neither reveals where a DEFLATE
+ * block starts nor can it be started in the middle of a stream, so
+ * this class contains its own decoder. At the start of each block
+ * the position inside of the compressed data - in bits - and the
+ * number of bytes decompressed so far are reported to a listener
+ * which may take a copy of the last 32k of uncompressed data. These
+ * three pieces of information are all that is needed to resume
+ * decompression at the block later.</p>
+ *
+ * @NotThreadSafe
+ * @since 1.21
+ */
+final class ResumableGzipInputStream extends InputStream {
+
+    /**
+     * Notified before a .gz member or a DEFLATE block is decoded.
+     */
+    interface BoundaryListener {
+        /**
+         * @param stream the stream that has reached the boundary
+         * @param bitPosition position of the member header or block
+         * header inside of the compressed data in bits
+         * @param uncompressedOffset number of bytes decompressed so far
+         * @param memberStart whether the boundary is the start of a
+         * .gz member
+         */
+        void boundaryReached(ResumableGzipInputStream stream, long bitPosition, long uncompressedOffset,
+            boolean memberStart) throws IOException;
+    }
+
+    static final int WINDOW_SIZE = 1 << 15;
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+    private static final int FRESERVED = 0xE0;
+
+    private static final int STATE_MEMBER_HEADER = 0;
+    private static final int STATE_BLOCK_HEADER = 1;
+    private static final int STATE_STORED = 2;
+    private static final int STATE_HUFFMAN = 3;
+    private static final int STATE_TRAILER = 4;
+    private static final int STATE_EOF = 5;
+
+    private static final int[] LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+        35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258
+    };
+    private static final int[] LENGTH_EXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+        3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+    private static final int[] DISTANCE_BASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+        257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577
+    };
+    private static final int[] DISTANCE_EXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+        7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+    };
+    private static final int[] CODE_LENGTH_ORDER = {
+        16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15
+    };
+
+    private static final HuffmanTable FIXED_LITERALS;
+    private static final HuffmanTable FIXED_DISTANCES;
+
+    static {
+        final byte[] literals = new byte[288];
+        Arrays.fill(literals, 0, 144, (byte) 8);
+        Arrays.fill(literals, 144, 256, (byte) 9);
+        Arrays.fill(literals, 256, 280, (byte) 7);
+        Arrays.fill(literals, 280, 288, (byte) 8);
+        final byte[] distances = new byte[30];
+        Arrays.fill(distances, (byte) 5);
+        try {
+            FIXED_LITERALS = new HuffmanTable(literals, 0, literals.length);
+            FIXED_DISTANCES = new HuffmanTable(distances, 0, distances.length);
+        } catch (final IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private final InputStream in;
+    private final long startOffset;
+    private final BoundaryListener listener;
+    private final byte[] inputBuffer = new byte[8192];
+    private final byte[] oneByte = new byte[1];
+    private int inputPosition;
+    private int inputLength;
+    private long bytesConsumed;
+    private long bitBuffer;
+    private int bitCount;
+
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int windowPosition;
+    /** number of bytes inside of the window that belong to the current member */
+    private long history;
+    private long totalOut;
+
+    private final CRC32 crc = new CRC32();
+    private boolean verifyTrailer;
+    private long memberOut;
+
+    private int state;
+    private boolean firstMember = true;
+    private boolean lastBlock;
+    private int storedRemaining;
+    private HuffmanTable literals;
+    private HuffmanTable distances;
+    private int copyLength;
+    private int copyDistance;
+
+    /**
+     * Creates a stream that starts at the header of a .gz member.
+     *
+     * @param in the compressed data
+     * @param startOffset offset of the first byte of {@code in} inside
+     * of the compressed file, used for the positions reported to the
+     * listener
+     * @param listener notified of member and block boundaries, may be null
+     */
+    ResumableGzipInputStream(final InputStream in, final long startOffset, final BoundaryListener listener) {
+        this.in = in;
+        this.startOffset = startOffset;
+        this.listener = listener;
+        state = STATE_MEMBER_HEADER;
+    }
+
+    /**
+     * Creates a stream that starts at the header of a DEFLATE block
+     * in the middle of a .gz member.
+     *
+     * <p>The CRC of the member is not verified as the data in front
+     * of the block is not known.</p>
+     *
+     * @param in the compressed data starting with the byte that
+     * contains the first bit of the block header
+     * @param bitOffset the number of bits of the first byte that
+     * precede the block header
+     * @param dictionary the uncompressed data in front of the block,
+     * at most 32k
+     */
+    ResumableGzipInputStream(final InputStream in, final int bitOffset, final byte[] dictionary) throws IOException {
+        this.in = in;
+        this.startOffset = 0;
+        this.listener = null;
+        System.arraycopy(dictionary, 0, window, 0, dictionary.length);
+        windowPosition = dictionary.length & WINDOW_MASK;
+        history = dictionary.length;
+        firstMember = false;
+        state = STATE_BLOCK_HEADER;
+        if (bitOffset > 0) {
+            bits(bitOffset);
+        }
+    }
+
+    /**
+     * Copies the uncompressed data of the current member the next
+     * block may refer to.
+     *
+     * @return the last (at most) 32k of uncompressed data
+     */
+    byte[] copyWindow() {
+        final int size = (int) Math.min(WINDOW_SIZE, history);
+        final byte[] result = new byte[size];
+        final int start = (windowPosition - size) & WINDOW_MASK;
+        final int firstPart = Math.min(size, WINDOW_SIZE - start);
+        System.arraycopy(window, start, result, 0, firstPart);
+        System.arraycopy(window, 0, result, firstPart, size - firstPart);
+        return result;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(oneByte, 0, 1) < 0 ? -1 : oneByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        int crcStart = off;
+        while (n < len) {
+            switch (state) {
+            case STATE_MEMBER_HEADER:
+                if (!readMemberHeader()) {
+                    state = STATE_EOF;
+                }
+                break;
+            case STATE_BLOCK_HEADER:
+                if (lastBlock) {
+                    state = STATE_TRAILER;
+                } else {
+                    if (listener != null) {
+                        listener.boundaryReached(this, getBitPosition(), totalOut, false);
+                    }
+                    readBlockHeader();
+                }
+                break;
+            case STATE_STORED:
+                n += readStored(b, off + n, len - n);
+                break;
+            case STATE_HUFFMAN:
+                n += inflate(b, off + n, len - n);
+                break;
+            case STATE_TRAILER:
+                crc.update(b, crcStart, off + n - crcStart);
+                crcStart = off + n;
+                readTrailer();
+                break;
+            default:
+                return n == 0 ? -1 : n;
+            }
+        }
+        crc.update(b, crcStart, off + n - crcStart);
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long getBitPosition() {
+        return (startOffset + bytesConsumed) * 8 - bitCount;
+    }
+
+    private boolean readMemberHeader() throws IOException {
+        alignToByte();
+        if (!firstMember && !fill(8)) {
+            return false;
+        }
+        if (listener != null) {
+            listener.boundaryReached(this, getBitPosition(), totalOut, true);
+        }
+        if (!fill(16) || bits(8) != 31 || bits(8) != 139) {
+            throw new IOException(firstMember
+                                  ? "Input is not in the .gz format"
+                                  : "Garbage after a valid .gz stream");
+        }
+        final int method = bits(8);
+        if (method != 8) {
+            throw new IOException("Unsupported compression method " + method + " in the .gz header");
+        }
+        final int flg = bits(8);
+        if ((flg & FRESERVED) != 0) {
+            throw new IOException("Reserved flags are set in the .gz header");
+        }
+        // modification time, extra flags and operating system
+        bits(16);
+        bits(16);
+        bits(16);
+        if ((flg & FEXTRA) != 0) {
+            int xlen = bits(16);
+            while (xlen-- > 0) {
+                bits(8);
+            }
+        }
+        if ((flg & FNAME) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flg & FCOMMENT) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flg & FHCRC) != 0) {
+            bits(16);
+        }
+        firstMember = false;
+        lastBlock = false;
+        history = 0;
+        memberOut = 0;
+        crc.reset();
+        verifyTrailer = true;
+        state = STATE_BLOCK_HEADER;
+        return true;
+    }
+
+    private void skipZeroTerminated() throws IOException {
+        while (bits(8) != 0) { // NOPMD
+            // skip
+        }
+    }
+
+    private void readTrailer() throws IOException {
+        alignToByte();
+        final long expectedCrc = bits(16) | ((long) bits(16) << 16);
+        final long expectedSize = bits(16) | ((long) bits(16) << 16);
+        if (verifyTrailer && (expectedCrc != crc.getValue() || expectedSize != (memberOut & 0xffffffffL))) {
+            throw new IOException("Gzip-compressed data is corrupt");
+        }
+        state = STATE_MEMBER_HEADER;
+    }
+
+    private void readBlockHeader() throws IOException {
+        lastBlock = bits(1) == 1;
+        final int type = bits(2);
+        switch (type) {
+        case 0:
+            alignToByte();
+            final int length = bits(16);
+            if ((length ^ 0xffff) != bits(16)) {
+                throw new IOException("Invalid stored block lengths");
+            }
+            storedRemaining = length;
+            state = STATE_STORED;
+            break;
+        case 1:
+            literals = FIXED_LITERALS;
+            distances = FIXED_DISTANCES;
+            state = STATE_HUFFMAN;
+            break;
+        case 2:
+            readDynamicTables();
+            state = STATE_HUFFMAN;
+            break;
+        default:
+            throw new IOException("Invalid block type " + type);
+        }
+    }
+
+    private void readDynamicTables() throws IOException {
+        final int literalCount = bits(5) + 257;
+        final int distanceCount = bits(5) + 1;
+        final int codeLengthCount = bits(4) + 4;
+        if (literalCount > 286 || distanceCount > 30) {
+            throw new IOException("Too many length or distance symbols");
+        }
+        final byte[] codeLengthLengths = new byte[19];
+        for (int i = 0; i < codeLengthCount; i++) {
+            codeLengthLengths[CODE_LENGTH_ORDER[i]] = (byte) bits(3);
+        }
+        final HuffmanTable codeLengths = new HuffmanTable(codeLengthLengths, 0, codeLengthLengths.length);
+        final byte[] lengths = new byte[literalCount + distanceCount];
+        int i = 0;
+        while (i < lengths.length) {
+            final int symbol = decode(codeLengths);
+            if (symbol < 16) {
+                lengths[i++] = (byte) symbol;
+                continue;
+            }
+            final byte value;
+            final int repeat;
+            if (symbol == 16) {
+                if (i == 0) {
+                    throw new IOException("Repeated code length without previous length");
+                }
+                value = lengths[i - 1];
+                repeat = 3 + bits(2);
+            } else if (symbol == 17) {
+                value = 0;
+                repeat = 3 + bits(3);
+            } else {
+                value = 0;
+                repeat = 11 + bits(7);
+            }
+            if (i + repeat > lengths.length) {
+                throw new IOException("Too many code lengths");
+            }
+            Arrays.fill(lengths, i, i + repeat, value);
+            i += repeat;
+        }
+        if (lengths[256] == 0) {
+            throw new IOException("Missing end-of-block code");
+        }
+        literals = new HuffmanTable(lengths, 0, literalCount);
+        distances = new HuffmanTable(lengths, literalCount, distanceCount);
+    }
+
+    private int readStored(final byte[] b, final int off, final int len) throws IOException {
+        final int toCopy = Math.min(len, storedRemaining);
+        int n = 0;
+        while (n < toCopy && bitCount >= 8) {
+            b[off + n++] = (byte) bits(8);
+        }
+        while (n < toCopy) {
+            if (inputPosition == inputLength && !refill()) {
+                throw new EOFException("Truncated .gz stream");
+            }
+            final int c = Math.min(toCopy - n, inputLength - inputPosition);
+            System.arraycopy(inputBuffer, inputPosition, b, off + n, c);
+            inputPosition += c;
+            bytesConsumed += c;
+            n += c;
+        }
+        for (int i = 0; i < n; i++) {
+            window[windowPosition] = b[off + i];
+            windowPosition = (windowPosition + 1) & WINDOW_MASK;
+        }
+        storedRemaining -= n;
+        produced(n);
+        if (storedRemaining == 0) {
+            state = STATE_BLOCK_HEADER;
+        }
+        return n;
+    }
+
+    private int inflate(final byte[] b, final int off, final int len) throws IOException {
+        final byte[] window = this.window;
+        int windowPosition = this.windowPosition;
+        int n = 0;
+        try {
+            while (n < len) {
+                if (copyLength > 0) {
+                    final int c = Math.min(copyLength, len - n);
+                    int from = windowPosition - copyDistance;
+                    for (int i = 0; i < c; i++) {
+                        final byte v = window[from++ & WINDOW_MASK];
+                        window[windowPosition] = v;
+                        windowPosition = (windowPosition + 1) & WINDOW_MASK;
+                        b[off + n++] = v;
+                    }
+                    copyLength -= c;
+                    continue;
+                }
+                final int symbol = decode(literals);
+                if (symbol < 256) {
+                    window[windowPosition] = (byte) symbol;
+                    windowPosition = (windowPosition + 1) & WINDOW_MASK;
+                    b[off + n++] = (byte) symbol;
+                } else if (symbol == 256) {
+                    state = STATE_BLOCK_HEADER;
+                    break;
+                } else {
+                    final int lengthSymbol = symbol - 257;
+                    if (lengthSymbol >= LENGTH_BASE.length) {
+                        throw new IOException("Invalid length symbol " + symbol);
+                    }
+                    copyLength = LENGTH_BASE[lengthSymbol] + bits(LENGTH_EXTRA[lengthSymbol]);
+                    final int distanceSymbol = decode(distances);
+                    if (distanceSymbol >= DISTANCE_BASE.length) {
+                        throw new IOException("Invalid distance symbol " + distanceSymbol);
+                    }
+                    copyDistance = DISTANCE_BASE[distanceSymbol] + bits(DISTANCE_EXTRA[distanceSymbol]);
+                    if (copyDistance > history + n) {
+                        throw new IOException("Invalid distance " + copyDistance);
+                    }
+                }
+            }
+        } finally {
+            this.windowPosition = windowPosition;
+            produced(n);
+        }
+        return n;
+    }
+
+    private void produced(final int n) {
+        history += n;
+        memberOut += n;
+        totalOut += n;
+    }
+
+    private int decode(final HuffmanTable table) throws IOException {
+        fill(table.maxLength);
+        final int entry = table.entries[(int) (bitBuffer & ((1 << table.maxLength) - 1))];
+        final int length = entry & 0xf;
+        if (length == 0) {
+            throw new IOException("Invalid Huffman code");
+        }
+        if (length > bitCount) {
+            throw new EOFException("Truncated .gz stream");
+        }
+        bitBuffer >>>= length;
+        bitCount -= length;
+        return entry >>> 4;
+    }
+
+    private int bits(final int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+        if (!fill(count)) {
+            throw new EOFException("Truncated .gz stream");
+        }
+        final int result = (int) (bitBuffer & ((1L << count) - 1));
+        bitBuffer >>>= count;
+        bitCount -= count;
+        return result;
+    }
+
+    private void alignToByte() {
+        final int drop = bitCount & 7;
+        bitBuffer >>>= drop;
+        bitCount -= drop;
+    }
+
+    /**
+     * Tries to provide at least the given number of bits in the bit buffer.
+     *
+     * @return false if the end of the input has been reached before
+     */
+    private boolean fill(final int count) throws IOException {
+        while (bitCount < count) {
+            if (inputPosition == inputLength && !refill()) {
+                return false;
+            }
+            bitBuffer |= (long) (inputBuffer[inputPosition++] & 0xff) << bitCount;
+            bitCount += 8;
+            bytesConsumed++;
+        }
+        return true;
+    }
+
+    private boolean refill() throws IOException {
+        final int read = in.read(inputBuffer);
+        if (read <= 0) {
+            return false;
+        }
+        inputPosition = 0;
+        inputLength = read;
+        return true;
+    }
+
+    /**
+     * Lookup table for canonical Huffman codes of at most 15 bits.
+     *
+     * <p>The table is indexed by the next maxLength bits of the input
+     * (in DEFLATE's LSB first bit order), each entry holds the symbol
+     * shifted by four bits and the length of its code.</p>
+     */
+    private static final class HuffmanTable {
+        private final int[] entries;
+        private final int maxLength;
+
+        HuffmanTable(final byte[] lengths, final int offset, final int count) throws IOException {
+            final int[] lengthCounts = new int[16];
+            int maxLength = 0;
+            for (int i = 0; i < count; i++) {
+                final int length = lengths[offset + i];
+                lengthCounts[length]++;
+                maxLength = Math.max(maxLength, length);
+            }
+            lengthCounts[0] = 0;
+            final int[] nextCode = new int[16];
+            int code = 0;
+            for (int length = 1; length <= 15; length++) {
+                code = (code + lengthCounts[length - 1]) << 1;
+                nextCode[length] = code;
+                if (code + lengthCounts[length] > 1 << length) {
+                    throw new IOException("Over-subscribed Huffman code");
+                }
+            }
+            this.maxLength = Math.max(maxLength, 1);
+            entries = new int[1 << this.maxLength];
+            for (int symbol = 0; symbol < count; symbol++) {
+                final int length = lengths[offset + symbol];
+                if (length == 0) {
+                    continue;
+                }
+                final int reversed = Integer.reverse(nextCode[length]++) >>> (32 - length);
+                final int entry = (symbol << 4) | length;
+                for (int i = reversed; i < entries.length; i += 1 << length) {
+                    entries[i] = entry;
+                }
+            }
+        }
+    }
+}
@@ -21,9 +21,6 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
-import java.util.Deque;
-import java.util.Iterator;
-import java.util.LinkedList;
 
 import org.apache.commons.compress.compressors.CompressorOutputStream;
 import org.apache.commons.compress.compressors.lz77support.LZ77Compressor;
@@ -83,10 +80,13 @@ public class BlockLZ4CompressorOutputStream extends CompressorOutputStream {
 
     private boolean finished = false;
 
-    private Deque<Pair> pairs = new LinkedList<>();
-    // keeps track of the last window-size bytes (64k) in order to be
+    private final Pairs pairs = new Pairs();
+    // keeps track of the last window-size bytes (64k) plus the bytes
+    // that may be needed when rewriting the last pairs in order to be
     // able to expand back-references when needed
-    private Deque<byte[]> expandedBlocks = new LinkedList<>();
+    private final byte[] history;
+    private final int historyToKeep;
+    private int historyLength = 0;
 
     /**
      * Creates a new LZ4 output stream.
@@ -112,21 +112,22 @@ public BlockLZ4CompressorOutputStream(final OutputStream os) throws IOException
      */
     public BlockLZ4CompressorOutputStream(final OutputStream os, Parameters params) throws IOException {
         this.os = os;
-        compressor = new LZ77Compressor(params,
-            new LZ77Compressor.Callback() {
+        final int windowSize = params.getWindowSize();
+        historyToKeep = windowSize + MIN_OFFSET_OF_LAST_BACK_REFERENCE;
+        history = new byte[historyToKeep + 2 * windowSize];
+        compressor = LZ77Compressor.withBlockCallback(params,
+            new LZ77Compressor.BlockCallback() {
                 @Override
-                public void accept(LZ77Compressor.Block block) throws IOException {
-                    switch (block.getType()) {
-                    case LITERAL:
-                        addLiteralBlock((LZ77Compressor.LiteralBlock) block);
-                        break;
-                    case BACK_REFERENCE:
-                        addBackReference((LZ77Compressor.BackReference) block);
-                        break;
-                    case EOD:
-                        writeFinalLiteralBlock();
-                        break;
-                    }
+                public void onLiteral(byte[] window, int off, int len) throws IOException {
+                    addLiteralBlock(window, off, len);
+                }
+                @Override
+                public void onBackReference(int offset, int length) throws IOException {
+                    addBackReference(offset, length);
+                }
+                @Override
+                public void onEndOfData() throws IOException {
+                    writeFinalLiteralBlock();
                 }
             });
     }
@@ -176,189 +177,97 @@ public void prefill(byte[] data, int off, int len) {
         if (len > 0) {
             byte[] b = Arrays.copyOfRange(data, off, off + len);
             compressor.prefill(b);
-            recordLiteral(b);
+            recordLiteral(b, 0, len);
         }
     }
 
-    private void addLiteralBlock(LZ77Compressor.LiteralBlock block) throws IOException {
-        Pair last = writeBlocksAndReturnUnfinishedPair(block.getLength());
-        recordLiteral(last.addLiteral(block));
-        clearUnusedBlocksAndPairs();
+    private void addLiteralBlock(byte[] data, int off, int len) throws IOException {
+        writeWritablePairs(len);
+        pairs.addLiteral(pairs.unfinishedPair(), data, off, len);
+        recordLiteral(data, off, len);
     }
 
-    private void addBackReference(LZ77Compressor.BackReference block) throws IOException {
-        Pair last = writeBlocksAndReturnUnfinishedPair(block.getLength());
-        last.setBackReference(block);
-        recordBackReference(block);
-        clearUnusedBlocksAndPairs();
-    }
-
-    private Pair writeBlocksAndReturnUnfinishedPair(int length) throws IOException {
+    private void addBackReference(int offset, int length) throws IOException {
         writeWritablePairs(length);
-        Pair last = pairs.peekLast();
-        if (last == null || last.hasBackReference()) {
-            last = new Pair();
-            pairs.addLast(last);
-        }
-        return last;
-    }
-
-    private void recordLiteral(byte[] b) {
-        expandedBlocks.addFirst(b);
-    }
-
-    private void clearUnusedBlocksAndPairs() {
-        clearUnusedBlocks();
-        clearUnusedPairs();
+        pairs.setBackReference(pairs.unfinishedPair(), offset, length);
+        recordBackReference(offset, length);
     }
 
-    private void clearUnusedBlocks() {
-        int blockLengths = 0;
-        int blocksToKeep = 0;
-        for (byte[] b : expandedBlocks) {
-            blocksToKeep++;
-            blockLengths += b.length;
-            if (blockLengths >= BlockLZ4CompressorInputStream.WINDOW_SIZE) {
-                break;
-            }
-        }
-        final int size = expandedBlocks.size();
-        for (int i = blocksToKeep; i < size; i++) {
-            expandedBlocks.removeLast();
+    private void recordLiteral(byte[] data, int off, int len) {
+        if (len >= historyToKeep) {
+            System.arraycopy(data, off + len - historyToKeep, history, 0, historyToKeep);
+            historyLength = historyToKeep;
+            return;
         }
+        makeRoomInHistory(len);
+        System.arraycopy(data, off, history, historyLength, len);
+        historyLength += len;
     }
 
-    private void recordBackReference(LZ77Compressor.BackReference block) {
-        expandedBlocks.addFirst(expand(block.getOffset(), block.getLength()));
-    }
-
-    private byte[] expand(final int offset, final int length) {
-        byte[] expanded = new byte[length];
-        if (offset == 1) { // surprisingly common special case
-            byte[] block = expandedBlocks.peekFirst();
-            byte b = block[block.length - 1];
-            if (b != 0) { // the fresh array contains 0s anyway
-                Arrays.fill(expanded, b);
-            }
+    private void recordBackReference(int offset, int length) {
+        makeRoomInHistory(length);
+        final int start = historyLength - offset;
+        if (offset >= length) {
+            System.arraycopy(history, start, history, historyLength, length);
         } else {
-            expandFromList(expanded, offset, length);
-        }
-        return expanded;
-    }
-
-    private void expandFromList(final byte[] expanded, int offset, int length) {
-        int offsetRemaining = offset;
-        int lengthRemaining = length;
-        int writeOffset = 0;
-        while (lengthRemaining > 0) {
-            // find block that contains offsetRemaining
-            byte[] block = null;
-            int copyLen, copyOffset;
-            if (offsetRemaining > 0) {
-                int blockOffset = 0;
-                for (byte[] b : expandedBlocks) {
-                    if (b.length + blockOffset >= offsetRemaining) {
-                        block = b;
-                        break;
-                    }
-                    blockOffset += b.length;
-                }
-                if (block == null) {
-                    // should not be possible
-                    throw new IllegalStateException("Failed to find a block containing offset " + offset);
-                }
-                copyOffset = blockOffset + block.length - offsetRemaining;
-                copyLen = Math.min(lengthRemaining, block.length - copyOffset);
-            } else {
-                // offsetRemaining is negative or 0 and points into the expanded bytes
-                block = expanded;
-                copyOffset = -offsetRemaining;
-                copyLen = Math.min(lengthRemaining, writeOffset + offsetRemaining);
+            // overlapping copy, the back-reference repeats bytes it has just expanded
+            for (int i = 0; i < length; i++) {
+                history[historyLength + i] = history[start + i];
             }
-            System.arraycopy(block, copyOffset, expanded, writeOffset, copyLen);
-            offsetRemaining -= copyLen;
-            lengthRemaining -= copyLen;
-            writeOffset += copyLen;
         }
+        historyLength += length;
     }
 
-    private void clearUnusedPairs() {
-        int pairLengths = 0;
-        int pairsToKeep = 0;
-        for (Iterator<Pair> it = pairs.descendingIterator(); it.hasNext(); ) {
-            Pair p = it.next();
-            pairsToKeep++;
-            pairLengths += p.length();
-            if (pairLengths >= BlockLZ4CompressorInputStream.WINDOW_SIZE) {
-                break;
-            }
-        }
-        final int size = pairs.size();
-        for (int i = pairsToKeep; i < size; i++) {
-            Pair p = pairs.peekFirst();
-            if (p.hasBeenWritten()) {
-                pairs.removeFirst();
-            } else {
-                break;
-            }
+    private void makeRoomInHistory(int len) {
+        if (historyLength + len > history.length) {
+            final int keep = Math.min(historyLength, historyToKeep);
+            System.arraycopy(history, historyLength - keep, history, 0, keep);
+            historyLength = keep;
         }
     }
 
     private void writeFinalLiteralBlock() throws IOException {
         rewriteLastPairs();
-        for (Pair p : pairs) {
-            if (!p.hasBeenWritten()) {
-                p.writeTo(os);
-            }
+        while (!pairs.isEmpty()) {
+            pairs.writeFirst(os);
         }
-        pairs.clear();
     }
 
     private void writeWritablePairs(int lengthOfBlocksAfterLastPair) throws IOException {
         int unwrittenLength = lengthOfBlocksAfterLastPair;
-        for (Iterator<Pair> it = pairs.descendingIterator(); it.hasNext(); ) {
-            Pair p = it.next();
-            if (p.hasBeenWritten()) {
-                break;
-            }
-            unwrittenLength += p.length();
+        final int size = pairs.size();
+        for (int i = 0; i < size; i++) {
+            unwrittenLength += pairs.length(i);
         }
-        for (Pair p : pairs) {
-            if (p.hasBeenWritten()) {
-                continue;
-            }
-            unwrittenLength -= p.length();
-            if (p.canBeWritten(unwrittenLength)) {
-                p.writeTo(os);
-            } else {
+        while (!pairs.isEmpty()) {
+            unwrittenLength -= pairs.length(0);
+            if (!pairs.canBeWritten(0, unwrittenLength)) {
                 break;
             }
+            pairs.writeFirst(os);
         }
     }
 
     private void rewriteLastPairs() {
-        LinkedList<Pair> lastPairs = new LinkedList<>();
-        LinkedList<Integer> pairLength = new LinkedList<>();
+        if (pairs.isEmpty()) {
+            // no data at all, we'll write a single empty literal
+            pairs.unfinishedPair();
+        }
+        // find the last pair that starts at least twelve bytes before
+        // the end or the first unwritten one
+        int candidate = 0;
         int offset = 0;
-        for (Iterator<Pair> it = pairs.descendingIterator(); it.hasNext(); ) {
-            Pair p = it.next();
-            if (p.hasBeenWritten()) {
-                break;
-            }
-            int len = p.length();
-            pairLength.addFirst(len);
-            lastPairs.addFirst(p);
-            offset += len;
+        for (int i = pairs.size() - 1; i >= 0; i--) {
+            offset += pairs.length(i);
             if (offset >= MIN_OFFSET_OF_LAST_BACK_REFERENCE) {
+                candidate = i;
                 break;
             }
         }
-        for (Pair p : lastPairs) {
-            pairs.remove(p);
-        }
-        // lastPairs may contain between one and four Pairs:
+        // the candidate may be followed by between zero and three
+        // pairs:
         // * the last pair may be a one byte literal
-        // * all other Pairs contain a back-reference which must be four bytes long at minimum
+        // * all other pairs contain a back-reference which must be four bytes long at minimum
         // we could merge them all into a single literal block but
         // this may harm compression. For example compressing
         // "bla.tar" from our tests yields a last block containing a
@@ -366,42 +275,34 @@ private void rewriteLastPairs() {
         // literal of that size rather than a 2k back-reference and a
         // 12 byte literal at the end.
 
-        // Instead we merge all but the first of lastPairs into a new
-        // literal-only Pair "replacement" and look at the
-        // back-reference in the first of lastPairs and see if we can
-        // split it. We can split it if it is longer than 16 -
-        // replacement.length (i.e. the minimal length of four is kept
-        // while making sure the last literal is at least twelve bytes
-        // long). If we can't split it, we expand the first of the pairs
-        // as well.
+        // Instead we merge all pairs following the candidate into a
+        // final literal block and look at the back-reference of the
+        // candidate and see if we can split it. We can split it if it
+        // is longer than 16 - length of the merged pairs (i.e. the
+        // minimal length of four is kept while making sure the last
+        // literal is at least twelve bytes long). If we can't split
+        // it, we expand the candidate as well.
 
         // this is not optimal, we could get better compression
         // results with more complex approaches as the last literal
         // only needs to be five bytes long if the previous
         // back-reference has an offset big enough
 
-        final int lastPairsSize = lastPairs.size();
-        int toExpand = 0;
-        for (int i = 1; i < lastPairsSize; i++) {
-            toExpand += pairLength.get(i);
-        }
-        Pair replacement = new Pair();
-        if (toExpand > 0) {
-            replacement.prependLiteral(expand(toExpand, toExpand));
-        }
-        Pair splitCandidate = lastPairs.get(0);
-        int stillNeeded = MIN_OFFSET_OF_LAST_BACK_REFERENCE - toExpand;
-        int brLen = splitCandidate.hasBackReference() ? splitCandidate.backReferenceLength() : 0;
-        if (splitCandidate.hasBackReference() && brLen >= MIN_BACK_REFERENCE_LENGTH + stillNeeded) {
-            replacement.prependLiteral(expand(toExpand + stillNeeded, stillNeeded));
-            pairs.add(splitCandidate.splitWithNewBackReferenceLengthOf(brLen - stillNeeded));
+        final int toExpand = offset - pairs.length(candidate);
+        final int stillNeeded = MIN_OFFSET_OF_LAST_BACK_REFERENCE - toExpand;
+        final int brLen = pairs.backReferenceLength(candidate);
+        pairs.truncate(candidate + 1);
+        if (pairs.hasBackReference(candidate) && brLen >= MIN_BACK_REFERENCE_LENGTH + stillNeeded) {
+            pairs.shortenBackReference(candidate, brLen - stillNeeded);
+            final int finalLiteralLength = toExpand + stillNeeded;
+            pairs.addLiteral(pairs.unfinishedPair(), history, historyLength - finalLiteralLength,
+                finalLiteralLength);
         } else {
-            if (splitCandidate.hasBackReference()) {
-                replacement.prependLiteral(expand(toExpand + brLen, brLen));
-            }
-            splitCandidate.prependTo(replacement);
+            // the expanded back-reference and the merged pairs follow the candidate's literals
+            pairs.shortenBackReference(candidate, 0);
+            final int expandedLength = brLen + toExpand;
+            pairs.addLiteral(candidate, history, historyLength - expandedLength, expandedLength);
         }
-        pairs.add(replacement);
     }
 
     /**
@@ -417,64 +318,150 @@ public static Parameters.Builder createParameterBuilder() {
             .withMaxLiteralLength(maxLen);
     }
 
-    final static class Pair {
-        private final Deque<byte[]> literals = new LinkedList<>();
-        private int brOffset, brLength;
-        private boolean written;
-
-        private void prependLiteral(byte[] data) {
-            literals.addFirst(data);
-        }
-        byte[] addLiteral(LZ77Compressor.LiteralBlock block) {
-            byte[] copy = Arrays.copyOfRange(block.getData(), block.getOffset(),
-                block.getOffset() + block.getLength());
-            literals.add(copy);
-            return copy;
-        }
-        void setBackReference(LZ77Compressor.BackReference block) {
-            if (hasBackReference()) {
+    /**
+     * The literal/back-reference pairs that haven't been written, yet.
+     *
+     * <p>Pairs are stored in parallel arrays and the literal data of
+     * all pairs is stored back to back inside of a single array, this
+     * avoids creating objects for each pair or literal block. Pairs
+     * are addressed by their index relative to the first pair that
+     * hasn't been written.</p>
+     */
+    static final class Pairs {
+        private static final int INITIAL_PAIR_CAPACITY = 16;
+        private static final int INITIAL_LITERAL_CAPACITY = 1024;
+
+        private int[] literalLengths = new int[INITIAL_PAIR_CAPACITY];
+        private int[] brOffsets = new int[INITIAL_PAIR_CAPACITY];
+        private int[] brLengths = new int[INITIAL_PAIR_CAPACITY];
+        // the pairs are stored at indices firstPair (inclusive) to endOfPairs (exclusive)
+        private int firstPair, endOfPairs;
+        private byte[] literals = new byte[INITIAL_LITERAL_CAPACITY];
+        // the literal data is stored at indices firstLiteral (inclusive) to endOfLiterals (exclusive)
+        private int firstLiteral, endOfLiterals;
+
+        int size() {
+            return endOfPairs - firstPair;
+        }
+        boolean isEmpty() {
+            return firstPair == endOfPairs;
+        }
+        /**
+         * Returns the index of the last pair if it doesn't have a
+         * back-reference, adds a new pair otherwise.
+         */
+        int unfinishedPair() {
+            if (!isEmpty() && !hasBackReference(size() - 1)) {
+                return size() - 1;
+            }
+            if (endOfPairs == literalLengths.length) {
+                makeRoomForPair();
+            }
+            literalLengths[endOfPairs] = 0;
+            brOffsets[endOfPairs] = 0;
+            brLengths[endOfPairs] = 0;
+            endOfPairs++;
+            return size() - 1;
+        }
+        /**
+         * Copies literal data to the pair, only the last pair may
+         * receive literal data.
+         */
+        void addLiteral(int pair, byte[] data, int off, int len) {
+            makeRoomForLiterals(len);
+            System.arraycopy(data, off, literals, endOfLiterals, len);
+            endOfLiterals += len;
+            literalLengths[firstPair + pair] += len;
+        }
+        void setBackReference(int pair, int offset, int length) {
+            if (hasBackReference(pair)) {
                 throw new IllegalStateException();
             }
-            brOffset = block.getOffset();
-            brLength = block.getLength();
-        }
-        boolean hasBackReference() {
-            return brOffset > 0;
+            brOffsets[firstPair + pair] = offset;
+            brLengths[firstPair + pair] = length;
+        }
+        boolean hasBackReference(int pair) {
+            return brOffsets[firstPair + pair] > 0;
+        }
+        int backReferenceLength(int pair) {
+            return brLengths[firstPair + pair];
+        }
+        /**
+         * Shortens the back-reference of a pair, removes it if the new length is 0.
+         */
+        void shortenBackReference(int pair, int newLength) {
+            brLengths[firstPair + pair] = newLength;
+            if (newLength == 0) {
+                brOffsets[firstPair + pair] = 0;
+            }
         }
-        boolean canBeWritten(int lengthOfBlocksAfterThisPair) {
-            return hasBackReference()
+        boolean canBeWritten(int pair, int lengthOfBlocksAfterThisPair) {
+            return hasBackReference(pair)
                 && lengthOfBlocksAfterThisPair >= MIN_OFFSET_OF_LAST_BACK_REFERENCE + MIN_BACK_REFERENCE_LENGTH;
         }
-        int length() {
-            return literalLength() + brLength;
-        }
-        private boolean hasBeenWritten() {
-            return written;
+        int length(int pair) {
+            return literalLengths[firstPair + pair] + brLengths[firstPair + pair];
         }
-        void writeTo(OutputStream out) throws IOException {
-            int litLength = literalLength();
+        /**
+         * Removes all pairs starting with index newSize.
+         */
+        void truncate(int newSize) {
+            for (int i = firstPair + newSize; i < endOfPairs; i++) {
+                endOfLiterals -= literalLengths[i];
+            }
+            endOfPairs = firstPair + newSize;
+        }
+        /**
+         * Writes the first pair and removes it.
+         */
+        void writeFirst(OutputStream out) throws IOException {
+            final int litLength = literalLengths[firstPair];
+            final int brOffset = brOffsets[firstPair];
+            final int brLength = brLengths[firstPair];
             out.write(lengths(litLength, brLength));
             if (litLength >= BlockLZ4CompressorInputStream.BACK_REFERENCE_SIZE_MASK) {
                 writeLength(litLength - BlockLZ4CompressorInputStream.BACK_REFERENCE_SIZE_MASK, out);
             }
-            for (byte[] b : literals) {
-                out.write(b);
-            }
-            if (hasBackReference()) {
+            out.write(literals, firstLiteral, litLength);
+            if (brOffset > 0) {
                 ByteUtils.toLittleEndian(out, brOffset, 2);
                 if (brLength - MIN_BACK_REFERENCE_LENGTH >= BlockLZ4CompressorInputStream.BACK_REFERENCE_SIZE_MASK) {
                     writeLength(brLength - MIN_BACK_REFERENCE_LENGTH
                         - BlockLZ4CompressorInputStream.BACK_REFERENCE_SIZE_MASK, out);
                 }
             }
-            written = true;
+            firstLiteral += litLength;
+            if (++firstPair == endOfPairs) {
+                firstPair = endOfPairs = 0;
+                firstLiteral = endOfLiterals = 0;
+            }
+        }
+        private void makeRoomForPair() {
+            final int size = size();
+            if (firstPair == 0) {
+                final int newCapacity = 2 * literalLengths.length;
+                literalLengths = Arrays.copyOf(literalLengths, newCapacity);
+                brOffsets = Arrays.copyOf(brOffsets, newCapacity);
+                brLengths = Arrays.copyOf(brLengths, newCapacity);
+            } else {
+                System.arraycopy(literalLengths, firstPair, literalLengths, 0, size);
+                System.arraycopy(brOffsets, firstPair, brOffsets, 0, size);
+                System.arraycopy(brLengths, firstPair, brLengths, 0, size);
+                firstPair = 0;
+                endOfPairs = size;
+            }
         }
-        private int literalLength() {
-            int length = 0;
-            for (byte[] b : literals) {
-                length += b.length;
+        private void makeRoomForLiterals(int len) {
+            if (endOfLiterals + len <= literals.length) {
+                return;
             }
-            return length;
+            final int used = endOfLiterals - firstLiteral;
+            final byte[] target = used + len <= literals.length ? literals
+                : new byte[Math.max(2 * literals.length, used + len)];
+            System.arraycopy(literals, firstLiteral, target, 0, used);
+            literals = target;
+            firstLiteral = 0;
+            endOfLiterals = used;
         }
         private static int lengths(int litLength, int brLength) {
             int l = litLength < 15 ? litLength : 15;
@@ -488,21 +475,5 @@ private static void writeLength(int length, OutputStream out) throws IOException
             }
             out.write(length);
         }
-        private int backReferenceLength() {
-            return brLength;
-        }
-        private void prependTo(Pair other) {
-            Iterator<byte[]> listBackwards = literals.descendingIterator();
-            while (listBackwards.hasNext()) {
-                other.prependLiteral(listBackwards.next());
-            }
-        }
-        private Pair splitWithNewBackReferenceLengthOf(int newBackReferenceLength) {
-            Pair p = new Pair();
-            p.literals.addAll(literals);
-            p.brOffset = brOffset;
-            p.brLength = newBackReferenceLength;
-            return p;
-        }
     }
 }
@@ -55,6 +55,11 @@
  * the {@code #finish} method must be used once all data has been fed
  * into the compressor.</p>
  *
+ * <p>Alternatively a compressor created by {@link #withBlockCallback}
+ * emits the same information to a {@link BlockCallback} which
+ * receives it as primitive values and doesn't require an object to be
+ * created for each block.</p>
+ *
  * <p>Several parameters influence the outcome of the "compression":</p>
  * <dl>
  *
@@ -210,11 +215,80 @@ public interface Callback {
         void accept(Block b) throws IOException;
     }
 
+    /**
+     * Callback invoked while the compressor processes data that
+     * receives blocks as primitive values rather than {@link Block}
+     * instances.
+     *
+     * <p>The callback is invoked on the same thread that receives the
+     * bytes to compress and may be invoked multiple times during the
+     * execution of {@link #compress} or {@link #finish}.</p>
+     *
+     * @since 1.21
+     */
+    public interface BlockCallback {
+        /**
+         * Consumes a literal block.
+         *
+         * <p>For performance reasons this is a view of the
+         * compressor's window, not a copy of it. Don't modify the data
+         * and process it immediately as it will get overwritten sooner
+         * or later.</p>
+         *
+         * @param window the array holding the literal data
+         * @param off offset into window where the literal block starts
+         * @param len length of the literal block
+         * @throws IOException in case of an error
+         */
+        void onLiteral(byte[] window, int off, int len) throws IOException;
+
+        /**
+         * Consumes a back-reference.
+         * @param offset the offset of the back-reference
+         * @param length the length of the back-reference
+         * @throws IOException in case of an error
+         */
+        void onBackReference(int offset, int length) throws IOException;
+
+        /**
+         * Signals the end of data.
+         * @throws IOException in case of an error
+         */
+        void onEndOfData() throws IOException;
+    }
+
+    /**
+     * Adapts a {@link Callback} to the {@link BlockCallback} interface
+     * by wrapping the primitive values into {@link Block}s.
+     */
+    private static final class BlockCreatingCallback implements BlockCallback {
+        private final Callback callback;
+
+        BlockCreatingCallback(final Callback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onLiteral(final byte[] window, final int off, final int len) throws IOException {
+            callback.accept(new LiteralBlock(window, off, len));
+        }
+
+        @Override
+        public void onBackReference(final int offset, final int length) throws IOException {
+            callback.accept(new BackReference(offset, length));
+        }
+
+        @Override
+        public void onEndOfData() throws IOException {
+            callback.accept(THE_EOD);
+        }
+    }
+
     static final int NUMBER_OF_BYTES_IN_HASH = 3;
     private static final int NO_MATCH = -1;
 
     private final Parameters params;
-    private final Callback callback;
+    private final BlockCallback callback;
 
     // the sliding window, twice as big as "windowSize" parameter
     private final byte[] window;
@@ -256,9 +330,13 @@ public interface Callback {
      * @throws NullPointerException if either parameter is <code>null</code>
      */
     public LZ77Compressor(Parameters params, Callback callback) {
+        this(params, new BlockCreatingCallback(Objects.requireNonNull(callback, "callback")));
+    }
+
+    private LZ77Compressor(Parameters params, BlockCallback callback) {
         Objects.requireNonNull(params, "params");
         Objects.requireNonNull(callback, "callback");
-        
+
         this.params = params;
         this.callback = callback;
 
@@ -270,6 +348,19 @@ public LZ77Compressor(Parameters params, Callback callback) {
         prev = new int[wSize];
     }
 
+    /**
+     * Creates a compressor with parameters and a callback that
+     * receives blocks as primitive values.
+     * @param params the parameters
+     * @param callback the callback
+     * @return the compressor
+     * @throws NullPointerException if either parameter is <code>null</code>
+     * @since 1.21
+     */
+    public static LZ77Compressor withBlockCallback(Parameters params, BlockCallback callback) {
+        return new LZ77Compressor(params, callback);
+    }
+
     /**
      * Feeds bytes into the compressor which in turn may emit zero or
      * more blocks to the callback during the execution of this
@@ -316,7 +407,7 @@ public void finish() throws IOException {
             currentPosition += lookahead;
             flushLiteralBlock();
         }
-        callback.accept(THE_EOD);
+        callback.onEndOfData();
     }
 
     /**
@@ -512,11 +603,11 @@ private void catchUpMissedInserts() {
     }
 
     private void flushBackReference(int matchLength) throws IOException {
-        callback.accept(new BackReference(currentPosition - matchStart, matchLength));
+        callback.onBackReference(currentPosition - matchStart, matchLength);
     }
 
     private void flushLiteralBlock() throws IOException {
-        callback.accept(new LiteralBlock(window, blockStart, currentPosition - blockStart));
+        callback.onLiteral(window, blockStart, currentPosition - blockStart);
     }
 
     /**
@@ -53,7 +53,7 @@ public abstract class LZWInputStream extends CompressorInputStream implements In
     private int outputStackLocation;
 
     protected LZWInputStream(final InputStream inputStream, final ByteOrder byteOrder) {
-        this.in = new BitInputStream(inputStream, byteOrder);
+        this.in = new BitInputStream(inputStream, byteOrder, true);
     }
 
     @Override
@@ -99,19 +99,17 @@ public SnappyCompressorOutputStream(final OutputStream os, final long uncompress
         throws IOException {
         this.os = os;
         consumer = new ByteUtils.OutputStreamByteConsumer(os);
-        compressor = new LZ77Compressor(params, new LZ77Compressor.Callback() {
+        compressor = LZ77Compressor.withBlockCallback(params, new LZ77Compressor.BlockCallback() {
                 @Override
-                public void accept(LZ77Compressor.Block block) throws IOException {
-                    switch (block.getType()) {
-                    case LITERAL:
-                        writeLiteralBlock((LZ77Compressor.LiteralBlock) block);
-                        break;
-                    case BACK_REFERENCE:
-                        writeBackReference((LZ77Compressor.BackReference) block);
-                        break;
-                    case EOD:
-                        break;
-                    }
+                public void onLiteral(byte[] window, int off, int len) throws IOException {
+                    writeLiteralBlock(window, off, len);
+                }
+                @Override
+                public void onBackReference(int offset, int length) throws IOException {
+                    writeBackReference(offset, length);
+                }
+                @Override
+                public void onEndOfData() {
                 }
             });
         writeUncompressedSize(uncompressedSize);
@@ -174,46 +172,45 @@ private void writeUncompressedSize(long uncompressedSize) throws IOException {
     private static final int THREE_SIZE_BYTE_MARKER = 62 << 2;
     private static final int FOUR_SIZE_BYTE_MARKER = 63 << 2;
 
-    private void writeLiteralBlock(LZ77Compressor.LiteralBlock block) throws IOException {
-        int len = block.getLength();
+    private void writeLiteralBlock(byte[] data, int off, int len) throws IOException {
         if (len <= MAX_LITERAL_SIZE_WITHOUT_SIZE_BYTES) {
-            writeLiteralBlockNoSizeBytes(block, len);
+            writeLiteralBlockNoSizeBytes(data, off, len);
         } else if (len <= MAX_LITERAL_SIZE_WITH_ONE_SIZE_BYTE) {
-            writeLiteralBlockOneSizeByte(block, len);
+            writeLiteralBlockOneSizeByte(data, off, len);
         } else if (len <= MAX_LITERAL_SIZE_WITH_TWO_SIZE_BYTES) {
-            writeLiteralBlockTwoSizeBytes(block, len);
+            writeLiteralBlockTwoSizeBytes(data, off, len);
         } else if (len <= MAX_LITERAL_SIZE_WITH_THREE_SIZE_BYTES) {
-            writeLiteralBlockThreeSizeBytes(block, len);
+            writeLiteralBlockThreeSizeBytes(data, off, len);
         } else {
-            writeLiteralBlockFourSizeBytes(block, len);
+            writeLiteralBlockFourSizeBytes(data, off, len);
         }
     }
 
-    private void writeLiteralBlockNoSizeBytes(LZ77Compressor.LiteralBlock block, int len) throws IOException {
-        writeLiteralBlockWithSize(len - 1 << 2, 0, len, block);
+    private void writeLiteralBlockNoSizeBytes(byte[] data, int off, int len) throws IOException {
+        writeLiteralBlockWithSize(len - 1 << 2, 0, data, off, len);
     }
 
-    private void writeLiteralBlockOneSizeByte(LZ77Compressor.LiteralBlock block, int len) throws IOException {
-        writeLiteralBlockWithSize(ONE_SIZE_BYTE_MARKER, 1, len, block);
+    private void writeLiteralBlockOneSizeByte(byte[] data, int off, int len) throws IOException {
+        writeLiteralBlockWithSize(ONE_SIZE_BYTE_MARKER, 1, data, off, len);
     }
 
-    private void writeLiteralBlockTwoSizeBytes(LZ77Compressor.LiteralBlock block, int len) throws IOException {
-        writeLiteralBlockWithSize(TWO_SIZE_BYTE_MARKER, 2, len, block);
+    private void writeLiteralBlockTwoSizeBytes(byte[] data, int off, int len) throws IOException {
+        writeLiteralBlockWithSize(TWO_SIZE_BYTE_MARKER, 2, data, off, len);
     }
 
-    private void writeLiteralBlockThreeSizeBytes(LZ77Compressor.LiteralBlock block, int len) throws IOException {
-        writeLiteralBlockWithSize(THREE_SIZE_BYTE_MARKER, 3, len, block);
+    private void writeLiteralBlockThreeSizeBytes(byte[] data, int off, int len) throws IOException {
+        writeLiteralBlockWithSize(THREE_SIZE_BYTE_MARKER, 3, data, off, len);
     }
 
-    private void writeLiteralBlockFourSizeBytes(LZ77Compressor.LiteralBlock block, int len) throws IOException {
-        writeLiteralBlockWithSize(FOUR_SIZE_BYTE_MARKER, 4, len, block);
+    private void writeLiteralBlockFourSizeBytes(byte[] data, int off, int len) throws IOException {
+        writeLiteralBlockWithSize(FOUR_SIZE_BYTE_MARKER, 4, data, off, len);
     }
 
-    private void writeLiteralBlockWithSize(int tagByte, int sizeBytes, int len, LZ77Compressor.LiteralBlock block)
+    private void writeLiteralBlockWithSize(int tagByte, int sizeBytes, byte[] data, int off, int len)
         throws IOException {
         os.write(tagByte);
         writeLittleEndian(sizeBytes, len - 1);
-        os.write(block.getData(), block.getOffset(), len);
+        os.write(data, off, len);
     }
 
     private void writeLittleEndian(final int numBytes, int num) throws IOException {
@@ -231,9 +228,7 @@ private void writeLittleEndian(final int numBytes, int num) throws IOException {
     private static final int TWO_BYTE_COPY_TAG = 2;
     private static final int FOUR_BYTE_COPY_TAG = 3;
 
-    private void writeBackReference(LZ77Compressor.BackReference block) throws IOException {
-        final int len = block.getLength();
-        final int offset = block.getOffset();
+    private void writeBackReference(final int offset, final int len) throws IOException {
         if (len >= MIN_MATCH_LENGTH_WITH_ONE_OFFSET_BYTE && len <= MAX_MATCH_LENGTH_WITH_ONE_OFFSET_BYTE
             && offset <= MAX_OFFSET_WITH_ONE_OFFSET_BYTE) {
             writeBackReferenceWithOneOffsetByte(len, offset);
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.xz;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.compress.compressors.DecompressionIndex;
+import org.apache.commons.compress.utils.IOUtils;
+import org.tukaani.xz.SeekableInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+/**
+ * Decoder checkpoints for .xz files.
+ *
+ * <p>Unlike gzip and bzip2 the xz format contains an index of its
+ * own that lists all blocks of the file, and each block can be
+ * decoded independently of the others. Building an index therefore
+ * only reads the indices at the end of the file rather than
+ * decoding it, and each block becomes a checkpoint. The distance
+ * between checkpoints is determined by the block size used when
+ * compressing the file, files written by {@link
+ * XZCompressorOutputStream} or by the xz command line tool in single
+ * threaded mode only consist of a single block.</p>
+ *
+ * <p>Opening a stream has to parse the indices at the end of the
+ * file. The decoder of the last stream that has been closed is kept
+ * and reused by the next stream opened for the same channel, so
+ * seeking inside of a channel created by {@link #newChannel} parses
+ * the indices only once.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+public class XZDecompressionIndex extends DecompressionIndex {
+
+    private static final String FORMAT = "xz";
+
+    /** The decoder of the last stream that has been closed, if any. */
+    private final AtomicReference<IdleDecoder> idleDecoder = new AtomicReference<>();
+
+    private XZDecompressionIndex(final long uncompressedSize, final long[] offsets) {
+        super(FORMAT, uncompressedSize, offsets);
+    }
+
+    /**
+     * Builds an index from the indices stored inside of the .xz file.
+     *
+     * @param channel the .xz file
+     * @return the index
+     * @throws IOException if the channel cannot be read or is not a
+     * valid .xz file
+     */
+    public static XZDecompressionIndex build(final SeekableByteChannel channel) throws IOException {
+        final SeekableXZInputStream xz = new SeekableXZInputStream(new ChannelSeekableInputStream(channel));
+        final long[] offsets = new long[xz.getBlockCount()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = xz.getBlockPos(i);
+        }
+        return new XZDecompressionIndex(xz.length(), offsets);
+    }
+
+    /**
+     * Reads an index that has been written using {@link #writeTo}.
+     *
+     * @param in the stream to read from, the stream is not closed but
+     * may have been read beyond the end of the index
+     * @return the index
+     * @throws IOException if the stream cannot be read or doesn't
+     * contain an index for a .xz file
+     */
+    public static XZDecompressionIndex readFrom(final InputStream in) throws IOException {
+        final DataInputStream data = readHeader(in, FORMAT);
+        final long uncompressedSize = data.readLong();
+        final int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid number of checkpoints " + count);
+        }
+        final long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = data.readLong();
+        }
+        try {
+            return new XZDecompressionIndex(uncompressedSize, offsets);
+        } catch (final IllegalArgumentException ex) {
+            throw new IOException("Invalid index: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    protected InputStream openAtCheckpoint(final SeekableByteChannel channel, final int checkpoint)
+        throws IOException {
+        SeekableXZInputStream xz = null;
+        final IdleDecoder idle = idleDecoder.getAndSet(null);
+        if (idle != null) {
+            if (idle.channel == channel) {
+                xz = idle.xz;
+            } else {
+                idle.xz.close();
+            }
+        }
+        if (xz == null) {
+            xz = newDecoder(channel);
+        }
+        boolean success = false;
+        try {
+            xz.seekToBlock(checkpoint);
+            success = true;
+        } finally {
+            if (!success) {
+                xz.close();
+            }
+        }
+        return new CheckpointInputStream(channel, xz);
+    }
+
+    private SeekableXZInputStream newDecoder(final SeekableByteChannel channel) throws IOException {
+        final SeekableXZInputStream xz = new SeekableXZInputStream(new ChannelSeekableInputStream(channel));
+        boolean matches = xz.getBlockCount() == getCheckpointCount();
+        for (int i = 0; matches && i < getCheckpointCount(); i++) {
+            matches = xz.getBlockPos(i) == getCheckpointOffset(i);
+        }
+        if (!matches) {
+            xz.close();
+            throw new IOException("The .xz file doesn't match the index");
+        }
+        return xz;
+    }
+
+    @Override
+    protected void writeCheckpoint(final DataOutput out, final int checkpoint) {
+        // the checkpoint is identified by the block number, no additional data needed
+    }
+
+    private static class IdleDecoder {
+        private final SeekableByteChannel channel;
+        private final SeekableXZInputStream xz;
+
+        IdleDecoder(final SeekableByteChannel channel, final SeekableXZInputStream xz) {
+            this.channel = channel;
+            this.xz = xz;
+        }
+    }
+
+    /**
+     * Stream returned by openAtCheckpoint, hands the decoder back for
+     * reuse when it is closed.
+     */
+    private class CheckpointInputStream extends InputStream {
+        private final SeekableByteChannel channel;
+        private final SeekableXZInputStream xz;
+        private boolean closed;
+
+        CheckpointInputStream(final SeekableByteChannel channel, final SeekableXZInputStream xz) {
+            this.channel = channel;
+            this.xz = xz;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ensureOpen();
+            return xz.read();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            ensureOpen();
+            return xz.read(b, off, len);
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            ensureOpen();
+            return xz.skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            ensureOpen();
+            return xz.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                if (!idleDecoder.compareAndSet(null, new IdleDecoder(channel, xz))) {
+                    xz.close();
+                }
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+        }
+    }
+
+    /**
+     * Adapts a channel to XZ for Java's SeekableInputStream.
+     */
+    private static class ChannelSeekableInputStream extends SeekableInputStream {
+        private final SeekableByteChannel channel;
+        private final long length;
+        private final byte[] oneByte = new byte[1];
+        private long position;
+
+        ChannelSeekableInputStream(final SeekableByteChannel channel) throws IOException {
+            this.channel = channel;
+            this.length = channel.size();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(oneByte, 0, 1) < 0 ? -1 : oneByte[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= length) {
+                return -1;
+            }
+            final ByteBuffer buf = ByteBuffer.wrap(b, off, (int) Math.min(len, length - position));
+            final int read = IOUtils.read(channel, buf, position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public void seek(final long pos) throws IOException {
+            if (pos < 0) {
+                throw new IOException("Negative seek offset");
+            }
+            position = pos;
+        }
+
+        @Override
+        public void close() {
+            // the channel is owned by the caller
+        }
+    }
+}
@@ -26,6 +26,13 @@
 
 /**
  * Input stream that decompresses .Z files.
+ *
+ * <p>The stream reads from its input in chunks of up to 8 KiB and
+ * may consume up to 8 KiB past the end of the compressed data, wrap
+ * the input in a stream bounded to the length of the compressed data
+ * if anything following it is going to be read. If the input supports
+ * {@link InputStream#mark mark} any mark set on it is lost.</p>
+ *
  * @NotThreadSafe
  * @since 1.7
  */
@@ -91,7 +98,7 @@ private void reAlignReading() throws IOException {
         for (long i = 0; i < codeReadsToThrowAway; i++) {
             readNextCode();
         }
-        in.clearBitCache();
+        in.alignWithByteBoundary();
     }
 
     /**
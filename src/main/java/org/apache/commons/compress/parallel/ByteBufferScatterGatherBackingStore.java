@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.parallel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ScatterGatherBackingStore that keeps the payload in memory.
+ *
+ * <p>The payload is stored in a list of {@link ByteBuffer}s of a
+ * fixed size, which may be allocated on the heap or - using {@link
+ * ByteBuffer#allocateDirect} - outside of it. Growing the store never
+ * copies payload that has already been written.</p>
+ *
+ * @since 1.21
+ * @NotThreadSafe
+ */
+public class ByteBufferScatterGatherBackingStore implements ScatterGatherBackingStore {
+
+    /**
+     * Size of the chunks used unless specified otherwise, 64k.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final int chunkSize;
+    private final boolean direct;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long size;
+    private boolean closedForWriting;
+
+    /**
+     * Creates a store using heap buffers of {@link #DEFAULT_CHUNK_SIZE}.
+     */
+    public ByteBufferScatterGatherBackingStore() {
+        this(DEFAULT_CHUNK_SIZE, false);
+    }
+
+    /**
+     * Creates a store.
+     *
+     * @param chunkSize the size of each buffer, must be positive
+     * @param direct whether to allocate direct buffers outside of the
+     * Java heap
+     * @throws IllegalArgumentException if chunkSize is not positive
+     */
+    public ByteBufferScatterGatherBackingStore(final int chunkSize, final boolean direct) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive but is " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.direct = direct;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        final List<ByteBuffer> readable = new ArrayList<>(chunks.size());
+        for (final ByteBuffer chunk : chunks) {
+            final ByteBuffer b = chunk.duplicate();
+            b.flip();
+            readable.add(b);
+        }
+        return new ChunkInputStream(readable);
+    }
+
+    @Override
+    public void writeOut(final byte[] data, final int offset, final int length) throws IOException {
+        if (closedForWriting) {
+            throw new IOException("The store has been closed for writing");
+        }
+        int off = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            ByteBuffer current = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (current == null || !current.hasRemaining()) {
+                current = direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+                chunks.add(current);
+            }
+            final int n = Math.min(remaining, current.remaining());
+            current.put(data, off, n);
+            off += n;
+            remaining -= n;
+        }
+        size += length;
+    }
+
+    @Override
+    public void closeForWriting() {
+        closedForWriting = true;
+    }
+
+    /**
+     * Releases all buffers.
+     */
+    @Override
+    public void close() {
+        closeForWriting();
+        chunks.clear();
+    }
+
+    /**
+     * The number of bytes written to this store.
+     * @return the number of bytes written
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * The number of bytes allocated by this store.
+     * @return the number of bytes allocated
+     */
+    public long getCapacity() {
+        return (long) chunks.size() * chunkSize;
+    }
+
+    private static class ChunkInputStream extends InputStream {
+        private final List<ByteBuffer> chunks;
+        private int current;
+
+        ChunkInputStream(final List<ByteBuffer> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read() {
+            final ByteBuffer b = nextNonEmptyChunk();
+            return b == null ? -1 : b.get() & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] buf, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            final ByteBuffer b = nextNonEmptyChunk();
+            if (b == null) {
+                return -1;
+            }
+            final int n = Math.min(len, b.remaining());
+            b.get(buf, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) {
+            long skipped = 0;
+            ByteBuffer b;
+            while (skipped < n && (b = nextNonEmptyChunk()) != null) {
+                final int s = (int) Math.min(n - skipped, b.remaining());
+                b.position(b.position() + s);
+                skipped += s;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            final ByteBuffer b = nextNonEmptyChunk();
+            return b == null ? 0 : b.remaining();
+        }
+
+        private ByteBuffer nextNonEmptyChunk() {
+            while (current < chunks.size()) {
+                final ByteBuffer b = chunks.get(current);
+                if (b.hasRemaining()) {
+                    return b;
+                }
+                current++;
+            }
+            return null;
+        }
+    }
+}
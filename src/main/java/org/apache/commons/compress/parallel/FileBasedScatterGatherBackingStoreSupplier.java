@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.parallel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Supplies {@link FileBasedScatterGatherBackingStore}s writing to
+ * temporary files.
+ *
+ * <p>This is the supplier used by the parallel archive creators
+ * unless a different one has been specified.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+public class FileBasedScatterGatherBackingStoreSupplier implements ScatterGatherBackingStoreSupplier {
+
+    private final AtomicInteger storeNum = new AtomicInteger(0);
+
+    @Override
+    public ScatterGatherBackingStore get() throws IOException {
+        final File tempFile = File.createTempFile("parallelscatter", "n" + storeNum.incrementAndGet());
+        return new FileBasedScatterGatherBackingStore(tempFile);
+    }
+}
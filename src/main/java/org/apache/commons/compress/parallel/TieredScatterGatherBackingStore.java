@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.parallel;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ScatterGatherBackingStore that keeps the payload in memory until
+ * it exceeds a threshold and then moves it to a different store -
+ * usually a {@link FileBasedScatterGatherBackingStore}.
+ *
+ * <p>Stores created by {@link TieredScatterGatherBackingStoreSupplier}
+ * additionally share a global memory budget and move their payload
+ * as soon as the budget is exhausted.</p>
+ *
+ * @since 1.21
+ * @NotThreadSafe
+ */
+public class TieredScatterGatherBackingStore implements ScatterGatherBackingStore {
+
+    private final long threshold;
+    private final int chunkSize;
+    private final ScatterGatherBackingStoreSupplier overflowSupplier;
+    private final TieredScatterGatherBackingStoreSupplier budget;
+
+    private ByteBufferScatterGatherBackingStore memory;
+    private ScatterGatherBackingStore overflow;
+    private long reserved;
+
+    /**
+     * Creates a store that keeps up to {@code threshold} bytes in heap
+     * buffers.
+     *
+     * @param threshold the maximum number of bytes to keep in memory
+     * @param overflowSupplier supplies the store used once the
+     * payload exceeds the threshold
+     */
+    public TieredScatterGatherBackingStore(final long threshold,
+                                           final ScatterGatherBackingStoreSupplier overflowSupplier) {
+        this(threshold, overflowSupplier, ByteBufferScatterGatherBackingStore.DEFAULT_CHUNK_SIZE, false, null);
+    }
+
+    /**
+     * Creates a store that keeps up to {@code threshold} bytes in memory.
+     *
+     * @param threshold the maximum number of bytes to keep in memory
+     * @param overflowSupplier supplies the store used once the
+     * payload exceeds the threshold
+     * @param chunkSize the size of the buffers used to keep the
+     * payload in memory
+     * @param direct whether to allocate direct buffers outside of the
+     * Java heap
+     */
+    public TieredScatterGatherBackingStore(final long threshold,
+                                           final ScatterGatherBackingStoreSupplier overflowSupplier,
+                                           final int chunkSize, final boolean direct) {
+        this(threshold, overflowSupplier, chunkSize, direct, null);
+    }
+
+    TieredScatterGatherBackingStore(final long threshold,
+                                    final ScatterGatherBackingStoreSupplier overflowSupplier,
+                                    final int chunkSize, final boolean direct,
+                                    final TieredScatterGatherBackingStoreSupplier budget) {
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+        this.overflowSupplier = overflowSupplier;
+        this.budget = budget;
+        memory = new ByteBufferScatterGatherBackingStore(chunkSize, direct);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return memory != null ? memory.getInputStream() : overflow.getInputStream();
+    }
+
+    @Override
+    public void writeOut(final byte[] data, final int offset, final int length) throws IOException {
+        if (memory != null) {
+            final long size = memory.getSize() + length;
+            if (size <= threshold && reserve(capacityFor(size) - memory.getCapacity())) {
+                memory.writeOut(data, offset, length);
+                return;
+            }
+            moveToOverflow();
+        }
+        overflow.writeOut(data, offset, length);
+    }
+
+    @Override
+    public void closeForWriting() throws IOException {
+        if (memory != null) {
+            memory.closeForWriting();
+        } else {
+            overflow.closeForWriting();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            releaseMemory();
+        } finally {
+            if (overflow != null) {
+                overflow.close();
+            }
+        }
+    }
+
+    /**
+     * Whether the payload is still kept in memory.
+     * @return true if the payload has not been moved to the overflow
+     * store
+     */
+    public boolean isInMemory() {
+        return memory != null;
+    }
+
+    private long capacityFor(final long size) {
+        return (size + chunkSize - 1) / chunkSize * chunkSize;
+    }
+
+    private boolean reserve(final long bytes) {
+        if (bytes <= 0 || budget == null) {
+            return true;
+        }
+        if (budget.reserve(bytes)) {
+            reserved += bytes;
+            return true;
+        }
+        return false;
+    }
+
+    private void moveToOverflow() throws IOException {
+        overflow = overflowSupplier.get();
+        try (InputStream in = memory.getInputStream()) {
+            final byte[] buffer = new byte[chunkSize];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                overflow.writeOut(buffer, 0, n);
+            }
+        }
+        releaseMemory();
+        if (budget != null) {
+            budget.movedToOverflow();
+        }
+    }
+
+    private void releaseMemory() {
+        if (memory != null) {
+            memory.close();
+            memory = null;
+        }
+        if (budget != null && reserved > 0) {
+            budget.release(reserved);
+        }
+        reserved = 0;
+    }
+}
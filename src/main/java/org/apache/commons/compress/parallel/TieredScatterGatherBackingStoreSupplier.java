@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.parallel;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Supplies {@link TieredScatterGatherBackingStore}s sharing a global
+ * memory budget.
+ *
+ * <p>Each store keeps its payload in memory as long as it doesn't
+ * exceed the per-store threshold and the memory used by all stores
+ * created by this supplier stays within the budget. Once either
+ * limit would be exceeded the store moves its payload to a store
+ * obtained from the overflow supplier - temporary files by default -
+ * and returns its memory to the budget.</p>
+ *
+ * <p>This allows {@link
+ * org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator}
+ * to avoid temporary files completely for archives whose compressed
+ * size fits into the budget.</p>
+ *
+ * @since 1.21
+ * @ThreadSafe
+ */
+public class TieredScatterGatherBackingStoreSupplier implements ScatterGatherBackingStoreSupplier {
+
+    private final long memoryBudget;
+    private final long storeThreshold;
+    private final ScatterGatherBackingStoreSupplier overflowSupplier;
+    private final int chunkSize;
+    private final boolean direct;
+
+    private final AtomicLong memoryInUse = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    /**
+     * Creates a supplier for stores using heap buffers which move
+     * their payload to temporary files once the budget is exhausted.
+     *
+     * @param memoryBudget the maximum number of bytes all stores may
+     * keep in memory at the same time
+     */
+    public TieredScatterGatherBackingStoreSupplier(final long memoryBudget) {
+        this(memoryBudget, memoryBudget, new FileBasedScatterGatherBackingStoreSupplier(),
+            ByteBufferScatterGatherBackingStore.DEFAULT_CHUNK_SIZE, false);
+    }
+
+    /**
+     * Creates a supplier.
+     *
+     * @param memoryBudget the maximum number of bytes all stores may
+     * keep in memory at the same time
+     * @param storeThreshold the maximum number of bytes a single store
+     * may keep in memory
+     * @param overflowSupplier supplies the stores used for payload
+     * that doesn't fit into memory
+     * @param chunkSize the size of the buffers used to keep the
+     * payload in memory
+     * @param direct whether to allocate direct buffers outside of the
+     * Java heap
+     */
+    public TieredScatterGatherBackingStoreSupplier(final long memoryBudget, final long storeThreshold,
+        final ScatterGatherBackingStoreSupplier overflowSupplier, final int chunkSize, final boolean direct) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive but is " + chunkSize);
+        }
+        this.memoryBudget = memoryBudget;
+        this.storeThreshold = storeThreshold;
+        this.overflowSupplier = overflowSupplier;
+        this.chunkSize = chunkSize;
+        this.direct = direct;
+    }
+
+    @Override
+    public ScatterGatherBackingStore get() throws IOException {
+        return new TieredScatterGatherBackingStore(storeThreshold, overflowSupplier, chunkSize, direct, this);
+    }
+
+    /**
+     * The maximum number of bytes all stores may keep in memory.
+     * @return the memory budget
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * The number of bytes currently allocated by stores that keep
+     * their payload in memory.
+     * @return the number of bytes in use
+     */
+    public long getMemoryInUse() {
+        return memoryInUse.get();
+    }
+
+    /**
+     * The number of stores that had to move their payload to the
+     * overflow store.
+     * @return the number of stores that overflowed
+     */
+    public long getOverflows() {
+        return overflows.get();
+    }
+
+    boolean reserve(final long bytes) {
+        while (true) {
+            final long current = memoryInUse.get();
+            if (current + bytes > memoryBudget) {
+                return false;
+            }
+            if (memoryInUse.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    void release(final long bytes) {
+        memoryInUse.addAndGet(-bytes);
+    }
+
+    void movedToOverflow() {
+        overflows.incrementAndGet();
+    }
+}
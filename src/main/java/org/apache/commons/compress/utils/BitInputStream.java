@@ -30,6 +30,8 @@
  */
 public class BitInputStream implements Closeable {
     private static final int MAXIMUM_CACHE_SIZE = 63; // bits in long minus sign bit
+    private static final int MAXIMUM_PEEK_SIZE = 56; // bits the cache holds after each refill
+    private static final int READ_AHEAD_BUFFER_SIZE = 8192;
     private static final long[] MASKS = new long[MAXIMUM_CACHE_SIZE + 1];
 
     static {
@@ -42,6 +44,11 @@ public class BitInputStream implements Closeable {
     private final ByteOrder byteOrder;
     private long bitsCached = 0;
     private int bitsCachedSize = 0;
+    // only used when reading ahead, buffer is null otherwise
+    private final byte[] buffer;
+    private int bufferPos = 0;
+    private int bufferLength = 0;
+    private long bytesMovedToCache = 0;
 
     /**
      * Constructor taking an InputStream and its bit arrangement.
@@ -50,8 +57,38 @@ public class BitInputStream implements Closeable {
      *      either BIG_ENDIAN (aaaaabbb bb000000) or LITTLE_ENDIAN (bbbaaaaa 000000bb)
      */
     public BitInputStream(final InputStream in, final ByteOrder byteOrder) {
+        this(in, byteOrder, false);
+    }
+
+    /**
+     * Constructor taking an InputStream and its bit arrangement that
+     * optionally reads ahead.
+     *
+     * <p>When reading ahead the stream reads up to 8k bytes from the
+     * underlying stream at once and refills its cache from that
+     * buffer up to eight bytes at a time. This is a lot faster for
+     * decoders that read few bits at a time but consumes more of the
+     * underlying stream than has been provided as bits. Only read
+     * ahead if nobody is going to read from the underlying stream
+     * after this stream or if the underlying stream supports {@link
+     * InputStream#mark mark} and {@link #releaseReadAhead} is invoked
+     * before reading from the underlying stream again.</p>
+     *
+     * <p>When reading ahead from a stream that supports {@link
+     * InputStream#mark mark} this stream sets a new mark each time it
+     * reads from the underlying stream, any mark set by the caller is
+     * lost.</p>
+     *
+     * @param in the InputStream
+     * @param byteOrder the bit arrangement across byte boundaries,
+     *      either BIG_ENDIAN (aaaaabbb bb000000) or LITTLE_ENDIAN (bbbaaaaa 000000bb)
+     * @param readAhead whether to read ahead from the underlying stream
+     * @since 1.21
+     */
+    public BitInputStream(final InputStream in, final ByteOrder byteOrder, final boolean readAhead) {
         this.in = new CountingInputStream(in);
         this.byteOrder = byteOrder;
+        this.buffer = readAhead ? new byte[READ_AHEAD_BUFFER_SIZE] : null;
     }
 
     @Override
@@ -62,6 +99,10 @@ public void close() throws IOException {
     /**
      * Clears the cache of bits that have been read from the
      * underlying stream but not yet provided via {@link #readBits}.
+     *
+     * <p>When reading ahead the cache may contain several whole
+     * bytes, use {@link #alignWithByteBoundary} in order to skip to
+     * the next byte boundary instead.</p>
      */
     public void clearBitCache() {
         bitsCached = 0;
@@ -92,6 +133,73 @@ public long readBits(final int count) throws IOException {
         return readCachedBits(count);
     }
 
+    /**
+     * Returns the next bits without consuming them.
+     *
+     * <p>Bits beyond the end of the underlying stream are returned as
+     * zeros, use {@link #readBits} to consume the bits actually used,
+     * which also detects the end of the stream.</p>
+     *
+     * @param count the number of bits to look at, must be a positive
+     * number not bigger than 56.
+     * @return the bits concatenated as a long using the stream's byte order.
+     * @throws IOException on error
+     * @since 1.21
+     */
+    public long peekBits(final int count) throws IOException {
+        if (count < 0 || count > MAXIMUM_PEEK_SIZE) {
+            throw new IllegalArgumentException("count must not be negative or greater than " + MAXIMUM_PEEK_SIZE);
+        }
+        ensureCache(count);
+        if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
+            return bitsCached & MASKS[count];
+        }
+        if (bitsCachedSize >= count) {
+            return (bitsCached >> (bitsCachedSize - count)) & MASKS[count];
+        }
+        return (bitsCached & MASKS[bitsCachedSize]) << (count - bitsCachedSize);
+    }
+
+    /**
+     * Positions the underlying stream right after the byte holding
+     * the last bit that has been read and drops all whole bytes from
+     * the cache.
+     *
+     * <p>Does nothing unless the stream reads ahead. If bytes have
+     * been read ahead the underlying stream must support {@link
+     * InputStream#mark mark}. Repositioning may fail if the end of the
+     * underlying stream has been reached.</p>
+     *
+     * @throws IOException if the underlying stream cannot be repositioned
+     * @since 1.21
+     */
+    public void releaseReadAhead() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        final int wholeBytesCached = bitsCachedSize / Byte.SIZE;
+        final int unread = bufferLength - bufferPos + wholeBytesCached;
+        if (unread == 0) {
+            return;
+        }
+        if (!in.markSupported() || unread > bufferLength) {
+            throw new IOException("Cannot move underlying stream back by " + unread + " bytes");
+        }
+        in.reset();
+        final long toSkip = bufferLength - unread;
+        if (IOUtils.skip(in, toSkip) != toSkip) {
+            throw new IOException("Failed to reposition underlying stream");
+        }
+        bufferPos = bufferLength = 0;
+        bitsCachedSize -= wholeBytesCached * Byte.SIZE;
+        if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
+            bitsCached &= MASKS[bitsCachedSize];
+        } else {
+            bitsCached >>>= wholeBytesCached * Byte.SIZE;
+        }
+        bytesMovedToCache -= wholeBytesCached;
+    }
+
     /**
      * Returns the number of bits that can be read from this input
      * stream without reading from the underlying input stream at all.
@@ -111,7 +219,7 @@ public int bitsCached() {
      * @since 1.16
      */
     public long bitsAvailable() throws IOException {
-        return bitsCachedSize + ((long) Byte.SIZE) * in.available();
+        return bitsCachedSize + ((long) Byte.SIZE) * (bufferLength - bufferPos + in.available());
     }
 
     /**
@@ -129,12 +237,14 @@ public void alignWithByteBoundary() {
      * Returns the number of bytes read from the underlying stream.
      *
      * <p>This includes the bytes read to fill the current cache and
-     * not read as bits so far.</p>
+     * not read as bits so far. When reading ahead bytes that have
+     * been read from the underlying stream but not moved to the cache
+     * are not included.</p>
      * @return the number of bytes read from the underlying stream
      * @since 1.17
      */
     public long getBytesRead() {
-        return in.getBytesRead();
+        return buffer == null ? in.getBytesRead() : bytesMovedToCache;
     }
 
     private long processBitsGreater57(final int count) throws IOException {
@@ -145,7 +255,7 @@ private long processBitsGreater57(final int count) throws IOException {
         // bitsCachedSize >= 57 and left-shifting it 8 bits would cause an overflow
         int bitsToAddCount = count - bitsCachedSize;
         overflowBits = Byte.SIZE - bitsToAddCount;
-        final long nextByte = in.read();
+        final long nextByte = buffer == null ? in.read() : nextBufferedByte();
         if (nextByte < 0) {
             return nextByte;
         }
@@ -184,6 +294,9 @@ private long readCachedBits(int count) {
      * @throws IOException
      */
     private boolean ensureCache(final int count) throws IOException {
+        if (buffer != null) {
+            return fillCacheFromBuffer(count);
+        }
         while (bitsCachedSize < count && bitsCachedSize < 57) {
             final long nextByte = in.read();
             if (nextByte < 0) {
@@ -200,4 +313,65 @@ private boolean ensureCache(final int count) throws IOException {
         return false;
     }
 
+    /**
+     * Fills the cache with up to eight bytes at a time from the read
+     * ahead buffer until it holds at least 57 bits.
+     * @param count
+     * @return return true, when EOF
+     * @throws IOException
+     */
+    private boolean fillCacheFromBuffer(final int count) throws IOException {
+        while (bitsCachedSize < count && bitsCachedSize < 57) {
+            if (bufferPos == bufferLength && !refillBuffer()) {
+                return true;
+            }
+            final int bytes = Math.min((Long.SIZE - bitsCachedSize) / Byte.SIZE, bufferLength - bufferPos);
+            final byte[] buf = buffer;
+            int pos = bufferPos;
+            final int end = pos + bytes;
+            long cache = bitsCached;
+            if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
+                int shift = bitsCachedSize;
+                for (; pos < end; pos++, shift += Byte.SIZE) {
+                    cache |= (buf[pos] & 0xffL) << shift;
+                }
+            } else {
+                for (; pos < end; pos++) {
+                    cache = (cache << Byte.SIZE) | (buf[pos] & 0xffL);
+                }
+            }
+            bitsCached = cache;
+            bitsCachedSize += bytes * Byte.SIZE;
+            bufferPos = end;
+            bytesMovedToCache += bytes;
+        }
+        return false;
+    }
+
+    private long nextBufferedByte() throws IOException {
+        if (bufferPos == bufferLength && !refillBuffer()) {
+            return -1;
+        }
+        bytesMovedToCache++;
+        return buffer[bufferPos++] & 0xffL;
+    }
+
+    private boolean refillBuffer() throws IOException {
+        if (in.markSupported()) {
+            in.mark(buffer.length);
+        }
+        // at least eight bytes so all whole bytes of the cache can be pushed back by releaseReadAhead
+        int length = 0;
+        while (length < Long.SIZE / Byte.SIZE) {
+            final int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        bufferPos = 0;
+        bufferLength = length;
+        return length > 0;
+    }
+
 }
@@ -99,7 +99,7 @@ public int read(final byte[] b, final int off, final int len) throws IOException
     @Override
     public long skip(final long n) throws IOException {
         // Can't really skip, we have to hash everything to verify the checksum
-        if (read() >= 0) {
+        if (n > 0 && read() >= 0) {
             return 1;
         }
         return 0;
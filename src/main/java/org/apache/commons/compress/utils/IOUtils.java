@@ -27,7 +27,9 @@
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 
 /**
  * Utility functions
@@ -224,6 +226,37 @@ public static void readFully(ReadableByteChannel channel, ByteBuffer b) throws I
         }
     }
 
+    /**
+     * Reads a sequence of bytes from the given channel into the given
+     * buffer, starting at the given position.
+     *
+     * <p>{@link FileChannel}s and {@link PositionedReadableChannel}s
+     * are read without modifying their position, so concurrent
+     * callers don't block each other. Any other channel is
+     * positioned and read while holding its lock.</p>
+     *
+     * @param channel the channel to read from
+     * @param dst the buffer into which bytes are to be transferred
+     * @param position the position at which the transfer is to begin
+     * @return the number of bytes read, possibly zero, or -1 if the
+     * given position is greater than or equal to the channel's size
+     * @throws IOException if an I/O error occurs
+     * @since 1.21
+     */
+    public static int read(final SeekableByteChannel channel, final ByteBuffer dst, final long position)
+        throws IOException {
+        if (channel instanceof FileChannel) {
+            return ((FileChannel) channel).read(dst, position);
+        }
+        if (channel instanceof PositionedReadableChannel) {
+            return ((PositionedReadableChannel) channel).read(dst, position);
+        }
+        synchronized (channel) {
+            channel.position(position);
+            return channel.read(dst);
+        }
+    }
+
     // toByteArray(InputStream) copied from:
     // commons/proper/io/trunk/src/main/java/org/apache/commons/io/IOUtils.java?revision=1428941
     // January 8th, 2013
@@ -22,6 +22,7 @@
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
@@ -40,9 +41,13 @@
  * href="https://github.com/frugalmechanic/fm-common/blob/master/jvm/src/main/scala/fm/common/MultiReadOnlySeekableByteChannel.scala">MultiReadOnlySeekableByteChannel</a>
  * by Tim Underwood.</p>
  *
+ * <p>Positioned reads via {@link #read(ByteBuffer, long)} don't
+ * require any locking as long as all concatenated channels are
+ * {@link FileChannel}s or {@link PositionedReadableChannel}s.</p>
+ *
  * @since 1.19
  */
-public class MultiReadOnlySeekableByteChannel implements SeekableByteChannel {
+public class MultiReadOnlySeekableByteChannel implements PositionedReadableChannel {
 
     private final List<SeekableByteChannel> channels;
     private long globalPosition;
@@ -90,6 +95,69 @@ public synchronized int read(ByteBuffer dst) throws IOException {
         return -1;
     }
 
+    /**
+     * Reads from the given global position without modifying this channel's position.
+     *
+     * @since 1.21
+     */
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position: " + position);
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+
+        int totalBytesRead = 0;
+        long pos = position;
+        for (int i = 0; i < channels.size() && dst.hasRemaining(); i++) {
+            final SeekableByteChannel currentChannel = channels.get(i);
+            final long size = currentChannel.size();
+            if (pos >= size) {
+                // position is past this channel
+                pos -= size;
+                continue;
+            }
+            while (dst.hasRemaining() && pos < size) {
+                final int newBytesRead = readFromChannel(currentChannel, dst, pos);
+                if (newBytesRead == -1) {
+                    break;
+                }
+                pos += newBytesRead;
+                totalBytesRead += newBytesRead;
+            }
+            // continue at the start of the next channel
+            pos = 0;
+        }
+        return totalBytesRead > 0 ? totalBytesRead : -1;
+    }
+
+    private int readFromChannel(final SeekableByteChannel channel, final ByteBuffer dst, final long pos)
+        throws IOException {
+        if (channel instanceof FileChannel) {
+            return ((FileChannel) channel).read(dst, pos);
+        }
+        if (channel instanceof PositionedReadableChannel) {
+            return ((PositionedReadableChannel) channel).read(dst, pos);
+        }
+        // the wrapped channel's position is part of this channel's
+        // state, so restore it while holding the same lock as read
+        // and position
+        synchronized (this) {
+            final long oldPosition = channel.position();
+            try {
+                channel.position(pos);
+                return channel.read(dst);
+            } finally {
+                channel.position(oldPosition);
+            }
+        }
+    }
+
     @Override
     public void close() throws IOException {
         IOException first = null;
@@ -0,0 +1,56 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A {@link SeekableByteChannel} that supports reading from an
+ * absolute position without modifying the channel's own position.
+ *
+ * <p>This mirrors {@link java.nio.channels.FileChannel#read(ByteBuffer,
+ * long)} and allows readers like {@link
+ * org.apache.commons.compress.archivers.zip.ZipFile} to read from
+ * several threads concurrently without having to synchronize on the
+ * channel.</p>
+ *
+ * @since 1.21
+ */
+public interface PositionedReadableChannel extends SeekableByteChannel {
+
+    /**
+     * Reads a sequence of bytes from this channel into the given
+     * buffer, starting at the given position.
+     *
+     * <p>The channel's position is not modified by this method.
+     * Implementations must allow concurrent invocations of this method
+     * as long as the channel's content is not modified at the same
+     * time.</p>
+     *
+     * @param dst the buffer into which bytes are to be transferred
+     * @param position the position at which the transfer is to begin,
+     * must be non-negative
+     * @return the number of bytes read, possibly zero, or -1 if the
+     * given position is greater than or equal to the channel's size
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the position is negative
+     */
+    int read(ByteBuffer dst, long position) throws IOException;
+}
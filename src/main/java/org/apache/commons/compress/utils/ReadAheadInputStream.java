@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads from another stream on a dedicated thread ahead of the
+ * consumer.
+ *
+ * <p>A background thread fills a ring of reusable buffers from the
+ * wrapped stream while the thread reading from this stream consumes
+ * them. This allows expensive work done by the wrapped stream - like
+ * decompression - to overlap with the work done by the consumer -
+ * like parsing an archive and processing its entries:</p>
+ *
+ * <pre>
+ * InputStream file = Files.newInputStream(path);
+ * InputStream decompressed = new ReadAheadInputStream(
+ *     new CompressorStreamFactory().createCompressorInputStream(new BufferedInputStream(file)));
+ * try (TarArchiveInputStream tar = new TarArchiveInputStream(decompressed)) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * <p>The depth of the ring limits how far the background thread may
+ * read ahead. Exceptions thrown by the wrapped stream are reported by
+ * the read method that would have returned the failing data.
+ * Closing this stream stops the background thread and closes the
+ * wrapped stream.</p>
+ *
+ * @since 1.21
+ * @NotThreadSafe
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    /**
+     * Default size of each buffer, 64k.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Default number of buffers.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    /**
+     * How long close waits for the background thread before closing
+     * the wrapped stream anyway.
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private static final Chunk END_OF_STREAM = new Chunk(new byte[0]);
+
+    private final InputStream in;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled;
+    private final Thread reader;
+
+    private Chunk current;
+    private volatile boolean closed;
+
+    /**
+     * Creates a stream using {@link #DEFAULT_DEPTH} buffers of
+     * {@link #DEFAULT_BUFFER_SIZE}.
+     *
+     * @param in the stream to read from
+     */
+    public ReadAheadInputStream(final InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Creates a stream.
+     *
+     * @param in the stream to read from
+     * @param bufferSize the size of each buffer
+     * @param depth the number of buffers, limits the amount of data
+     * read ahead to {@code bufferSize * depth} bytes
+     * @throws IllegalArgumentException if bufferSize or depth is not positive
+     */
+    public ReadAheadInputStream(final InputStream in, final int bufferSize, final int depth) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive but is " + bufferSize);
+        }
+        if (depth <= 0) {
+            throw new IllegalArgumentException("depth must be positive but is " + depth);
+        }
+        this.in = in;
+        free = new ArrayBlockingQueue<>(depth);
+        // one additional slot for the end of stream marker
+        filled = new ArrayBlockingQueue<>(depth + 1);
+        for (int i = 0; i < depth; i++) {
+            free.add(new Chunk(new byte[bufferSize]));
+        }
+        reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readAhead();
+            }
+        }, "commons-compress-read-ahead");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        final Chunk chunk = currentChunk();
+        return chunk == null ? -1 : chunk.data[chunk.position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        final Chunk chunk = currentChunk();
+        if (chunk == null) {
+            return -1;
+        }
+        final int n = Math.min(len, chunk.length - chunk.position);
+        System.arraycopy(chunk.data, chunk.position, b, off, n);
+        chunk.position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            final Chunk chunk = currentChunk();
+            if (chunk == null) {
+                break;
+            }
+            final int s = (int) Math.min(n - skipped, chunk.length - chunk.position);
+            chunk.position += s;
+            skipped += s;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        return current == null || current == END_OF_STREAM ? 0 : current.length - current.position;
+    }
+
+    /**
+     * Stops the background thread and closes the wrapped stream.
+     *
+     * <p>If the background thread is blocked reading from the wrapped
+     * stream and doesn't react to being interrupted, the wrapped
+     * stream is closed after a short wait so the read fails and the
+     * thread exits.</p>
+     *
+     * @throws IOException if closing the wrapped stream fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reader.interrupt();
+        boolean interrupted = false;
+        try {
+            reader.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (final InterruptedException ex) { // NOSONAR
+            interrupted = true;
+        }
+        free.clear();
+        filled.clear();
+        current = null;
+        try {
+            in.close();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Provides a chunk that has unread data, waiting for the
+     * background thread if necessary.
+     *
+     * @return the chunk or null if the end of the stream has been reached
+     */
+    private Chunk currentChunk() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (current == null || current.position == current.length) {
+            if (current == END_OF_STREAM) {
+                return null;
+            }
+            if (current != null) {
+                current.position = 0;
+                current.length = 0;
+                free.add(current);
+                current = null;
+            }
+            final Chunk next;
+            try {
+                next = filled.take();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for data");
+            }
+            if (next.failure != null) {
+                // keep reporting the failure on subsequent reads
+                filled.add(next);
+                if (next.failure instanceof IOException) {
+                    throw (IOException) next.failure;
+                }
+                if (next.failure instanceof RuntimeException) {
+                    throw (RuntimeException) next.failure;
+                }
+                if (next.failure instanceof Error) {
+                    throw (Error) next.failure;
+                }
+                throw new IOException(next.failure);
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * The loop executed by the background thread.
+     */
+    private void readAhead() {
+        try {
+            while (!closed) {
+                final Chunk chunk = free.take();
+                final int read = IOUtils.readFully(in, chunk.data);
+                if (read > 0) {
+                    chunk.length = read;
+                    filled.put(chunk);
+                }
+                if (read < chunk.data.length) {
+                    filled.put(END_OF_STREAM);
+                    return;
+                }
+            }
+        } catch (final InterruptedException ex) { // NOSONAR
+            // closed by consumer, exit
+        } catch (final Throwable ex) { // NOSONAR
+            if (!closed) {
+                final Chunk failure = new Chunk(new byte[0]);
+                failure.failure = ex;
+                filled.offer(failure);
+            }
+        }
+    }
+
+    private static final class Chunk {
+        private final byte[] data;
+        private int length;
+        private int position;
+        private Throwable failure;
+
+        Chunk(final byte[] data) {
+            this.data = data;
+        }
+    }
+}
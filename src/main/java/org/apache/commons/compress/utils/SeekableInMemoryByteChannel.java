@@ -33,10 +33,13 @@
  * {@link #truncate truncate} to a value bigger than that.  Internal buffer can be accessed via {@link
  * SeekableInMemoryByteChannel#array()}.</p>
  *
+ * <p>Since Compress 1.21 this channel implements {@link PositionedReadableChannel}, positioned reads may be performed
+ * from several threads concurrently as long as nobody writes to or truncates the channel at the same time.</p>
+ *
  * @since 1.13
  * @NotThreadSafe
  */
-public class SeekableInMemoryByteChannel implements SeekableByteChannel {
+public class SeekableInMemoryByteChannel implements PositionedReadableChannel {
 
     private static final int NAIVE_RESIZE_LIMIT = Integer.MAX_VALUE >> 1;
 
@@ -144,6 +147,26 @@ public int read(ByteBuffer buf) throws IOException {
         return wanted;
     }
 
+    /**
+     * Reads from the given position without modifying this channel's position.
+     *
+     * @since 1.21
+     */
+    @Override
+    public int read(ByteBuffer buf, long position) throws IOException {
+        ensureOpen();
+        if (position < 0L) {
+            throw new IllegalArgumentException("Negative position: " + position);
+        }
+        final int currentSize = size;
+        if (position >= currentSize) {
+            return -1;
+        }
+        final int wanted = Math.min(buf.remaining(), currentSize - (int) position);
+        buf.put(data, (int) position, wanted);
+        return wanted;
+    }
+
     @Override
     public void close() {
         closed.set(true);
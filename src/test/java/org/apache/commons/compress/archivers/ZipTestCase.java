@@ -21,6 +21,7 @@
 import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -36,6 +37,8 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 
@@ -109,6 +112,53 @@ public void testZipArchiveCreation() throws Exception {
         assertEquals(file2.length(), result.length());
     }
 
+    @Test
+    public void testZipArchiveCreationWithParallelDeflate() throws Exception {
+        final byte[] large = new byte[1024 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 251 + i / 4096);
+        }
+        final byte[] small = "small stored entry".getBytes(StandardCharsets.UTF_8);
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(bos)) {
+            zos.setParallelDeflateExecutor(executorService);
+            zos.putArchiveEntry(new ZipArchiveEntry("large.bin"));
+            zos.write(large);
+            zos.closeArchiveEntry();
+            final ZipArchiveEntry stored = new ZipArchiveEntry("small.txt");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(small.length);
+            final java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+            crc.update(small);
+            stored.setCrc(crc.getValue());
+            zos.putArchiveEntry(stored);
+            zos.write(small);
+            zos.closeArchiveEntry();
+            zos.putArchiveEntry(new ZipArchiveEntry("large-again.bin"));
+            zos.write(large);
+            zos.closeArchiveEntry();
+        } finally {
+            executorService.shutdown();
+        }
+
+        try (ZipArchiveInputStream zis = new ZipArchiveInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            assertEquals("large.bin", zis.getNextZipEntry().getName());
+            assertArrayEquals(large, IOUtils.toByteArray(zis));
+            assertEquals("small.txt", zis.getNextZipEntry().getName());
+            assertArrayEquals(small, IOUtils.toByteArray(zis));
+            assertEquals("large-again.bin", zis.getNextZipEntry().getName());
+            assertArrayEquals(large, IOUtils.toByteArray(zis));
+        }
+        try (ZipFile zf = new ZipFile(new SeekableInMemoryByteChannel(bos.toByteArray()))) {
+            final ZipArchiveEntry entry = zf.getEntry("large-again.bin");
+            assertEquals(large.length, entry.getSize());
+            try (InputStream in = zf.getInputStream(entry)) {
+                assertArrayEquals(large, IOUtils.toByteArray(in));
+            }
+        }
+    }
+
     /**
      * Archives 2 files and unarchives it again. If the file contents of result
      * and source is the same, it looks like the operations have worked
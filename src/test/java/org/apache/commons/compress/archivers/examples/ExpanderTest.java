@@ -28,6 +28,8 @@
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.compress.AbstractTestCase;
 import org.apache.commons.compress.archivers.ArchiveException;
@@ -36,7 +38,10 @@
 import org.apache.commons.compress.archivers.StreamingNotSupportedException;
 import org.apache.commons.compress.archivers.sevenz.SevenZFile;
 import org.apache.commons.compress.archivers.sevenz.SevenZOutputFile;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.archivers.zip.ZipFileOptions;
 import org.apache.commons.compress.utils.IOUtils;
 import org.junit.Assert;
 import org.junit.Assume;
@@ -108,6 +113,60 @@ public void zipFileVersion() throws IOException, ArchiveException {
         verifyTargetDir();
     }
 
+    @Test
+    public void zipFileVersionWithExecutorService() throws IOException, ArchiveException {
+        setupZip();
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try (ZipFile f = new ZipFile(archive)) {
+            final ExpansionStatistics statistics = new Expander().expand(f, resultDir, executorService);
+            Assert.assertEquals(3, statistics.getDirectories());
+            Assert.assertEquals(2, statistics.getFiles());
+            Assert.assertEquals(28, statistics.getBytesWritten());
+        } finally {
+            executorService.shutdown();
+        }
+        verifyTargetDir();
+    }
+
+    @Test
+    public void zipFileVersionWithManyEntriesInParallel() throws IOException, ArchiveException {
+        archive = new File(dir, "test.zip");
+        try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(archive)) {
+            for (int i = 0; i < 100; i++) {
+                zos.putArchiveEntry(new ZipArchiveEntry("d" + (i % 7) + "/f" + i + ".txt"));
+                zos.write(("Hello, world " + i).getBytes(StandardCharsets.UTF_8));
+                zos.closeArchiveEntry();
+            }
+        }
+        try (ZipFile f = new ZipFile(archive)) {
+            final ExpansionStatistics statistics = new Expander().expand(f, resultDir, 4);
+            Assert.assertEquals(100, statistics.getFiles());
+        }
+        for (int i = 0; i < 100; i++) {
+            assertHelloWorld("d" + (i % 7) + "/f" + i + ".txt", String.valueOf(i));
+        }
+    }
+
+    @Test
+    public void zipFileWithCompactEntryTableInParallel() throws IOException, ArchiveException {
+        setupZip();
+        try (ZipFile f = new ZipFile(archive, ZipFileOptions.builder().withCompactEntryTable(true).build())) {
+            final ExpansionStatistics statistics = new Expander().expand(f, resultDir, 2);
+            Assert.assertEquals(2, statistics.getFiles());
+        }
+        verifyTargetDir();
+    }
+
+    @Test
+    public void fileCantEscapeDoubleDotPathInParallel() throws IOException, ArchiveException {
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Expanding ../foo would create file outside of");
+        setupZip("../foo");
+        try (ZipFile f = new ZipFile(archive)) {
+            new Expander().expand(f, resultDir, 2);
+        }
+    }
+
     @Test
     public void fileCantEscapeViaAbsolutePath() throws IOException, ArchiveException {
         setupZip("/tmp/foo");
@@ -29,10 +29,15 @@
 import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.crypto.Cipher;
 
@@ -708,6 +713,131 @@ public void retrieveInputStreamForAllEntriesWithoutCRCMultipleTimes() throws IOE
         }
     }
 
+    @Test
+    public void extractInParallelProvidesSameContentAsSequentialReading() throws Exception {
+        final File multipleFolders = new File(dir, "folders.7z");
+        final Random random = new Random(3);
+        try (SevenZOutputFile out = new SevenZOutputFile(multipleFolders)) {
+            for (int i = 0; i < 20; i++) {
+                final SevenZArchiveEntry entry = new SevenZArchiveEntry();
+                entry.setName("entry-" + i);
+                entry.setDirectory(i % 7 == 0);
+                out.putArchiveEntry(entry);
+                if (!entry.isDirectory() && i % 5 != 0) {
+                    final byte[] content = new byte[random.nextInt(100 * 1000)];
+                    random.nextBytes(content);
+                    Arrays.fill(content, 0, content.length / 2, (byte) i);
+                    out.write(content);
+                }
+                out.closeArchiveEntry();
+            }
+        }
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            for (final File f : new File[] { multipleFolders, getFile("bla.7z"), getFile("bla.deflate.7z"),
+                    getFile("COMPRESS-256.7z") }) {
+                final Map<SevenZArchiveEntry, byte[]> expected = new IdentityHashMap<>();
+                final Map<SevenZArchiveEntry, byte[]> actual =
+                    Collections.synchronizedMap(new IdentityHashMap<SevenZArchiveEntry, byte[]>());
+                try (SevenZFile sevenZFile = new SevenZFile(f)) {
+                    sevenZFile.extractInParallel(executorService, new SevenZArchiveEntryHandler() {
+                        @Override
+                        public void handle(final SevenZArchiveEntry entry, final InputStream content)
+                            throws IOException {
+                            actual.put(entry, IOUtils.toByteArray(content));
+                        }
+                    });
+                    SevenZArchiveEntry entry;
+                    while ((entry = sevenZFile.getNextEntry()) != null) {
+                        expected.put(entry, readFully(sevenZFile));
+                    }
+                }
+                assertEquals(f.getName(), expected.size(), actual.size());
+                for (final Map.Entry<SevenZArchiveEntry, byte[]> e : expected.entrySet()) {
+                    assertArrayEquals(e.getKey().getName(), e.getValue(), actual.get(e.getKey()));
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void folderCacheServesRandomAccessInAnyOrder() throws Exception {
+        final File solid = new File(dir, "solid.7z");
+        final Random random = new Random(5);
+        try (SevenZOutputFile out = new SevenZOutputFile(solid)) {
+            out.setSolidBlockSize(200 * 1024);
+            for (int i = 0; i < 30; i++) {
+                final SevenZArchiveEntry entry = new SevenZArchiveEntry();
+                entry.setName("entry-" + i);
+                out.putArchiveEntry(entry);
+                if (i % 6 != 0) {
+                    final byte[] content = new byte[random.nextInt(30 * 1000)];
+                    random.nextBytes(content);
+                    Arrays.fill(content, 0, content.length / 2, (byte) i);
+                    out.write(content);
+                }
+                out.closeArchiveEntry();
+            }
+        }
+        final Map<String, byte[]> expected = new HashMap<>();
+        try (SevenZFile sevenZFile = new SevenZFile(solid)) {
+            SevenZArchiveEntry entry;
+            while ((entry = sevenZFile.getNextEntry()) != null) {
+                expected.put(entry.getName(), readFully(sevenZFile));
+            }
+        }
+        final SevenZFileOptions options = SevenZFileOptions.builder().withFolderCacheSizeInKb(300).build();
+        try (SevenZFile sevenZFile = new SevenZFile(solid, options)) {
+            final List<List<SevenZArchiveEntry>> folders = sevenZFile.getEntriesByFolder();
+            assertTrue(folders.size() > 1);
+            int entriesWithContent = 0;
+            for (final List<SevenZArchiveEntry> folder : folders) {
+                entriesWithContent += folder.size();
+            }
+            assertEquals(25, entriesWithContent);
+
+            // reverse order and repeated access evict folders and skip backwards
+            for (int round = 0; round < 2; round++) {
+                for (int i = folders.size() - 1; i >= 0; i--) {
+                    final List<SevenZArchiveEntry> folder = folders.get(i);
+                    for (int j = folder.size() - 1; j >= 0; j--) {
+                        final SevenZArchiveEntry entry = folder.get(j);
+                        try (InputStream in = sevenZFile.getInputStream(entry)) {
+                            assertArrayEquals(entry.getName(), expected.get(entry.getName()),
+                                IOUtils.toByteArray(in));
+                        }
+                        assertNotNull(entry.getContentMethods());
+                    }
+                }
+            }
+            // sequential reading isn't affected by cached streams
+            SevenZArchiveEntry entry;
+            while ((entry = sevenZFile.getNextEntry()) != null) {
+                assertArrayEquals(entry.getName(), expected.get(entry.getName()), readFully(sevenZFile));
+            }
+        }
+    }
+
+    @Test
+    public void extractInParallelPropagatesExceptionOfHandler() throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try (SevenZFile sevenZFile = new SevenZFile(getFile("bla.7z"))) {
+            sevenZFile.extractInParallel(executorService, new SevenZArchiveEntryHandler() {
+                @Override
+                public void handle(final SevenZArchiveEntry entry, final InputStream content) throws IOException {
+                    throw new IOException("failed to handle " + entry.getName());
+                }
+            });
+            fail("expected an exception");
+        } catch (final IOException ex) {
+            assertTrue(ex.getMessage().startsWith("failed to handle "));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     private void test7zUnarchive(final File f, final SevenZMethod m, final byte[] password) throws Exception {
         try (SevenZFile sevenZFile = new SevenZFile(f, password)) {
             test7zUnarchive(sevenZFile, m);
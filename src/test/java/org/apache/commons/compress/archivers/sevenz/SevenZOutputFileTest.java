@@ -20,15 +20,26 @@
 import static org.junit.Assert.*;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.apache.commons.compress.AbstractTestCase;
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
 import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 import org.tukaani.xz.LZMA2Options;
 
@@ -376,6 +387,129 @@ public void testArchiveWithMixedMethods() throws Exception {
         }
     }
 
+    @Test
+    public void testSolidBlocks() throws Exception {
+        output = new File(dir, "solid.7z");
+        final byte[][] contents = createContents();
+        try (SevenZOutputFile outArchive = new SevenZOutputFile(output)) {
+            outArchive.setSolidBlockSize(3000);
+            addDir(outArchive);
+            for (int i = 0; i < contents.length; i++) {
+                final SevenZArchiveEntry entry = new SevenZArchiveEntry();
+                entry.setName("foo/" + i + ".txt");
+                if (i == 7) {
+                    // forces a new folder
+                    entry.setContentMethods(Arrays.asList(new SevenZMethodConfiguration(SevenZMethod.BZIP2)));
+                }
+                outArchive.putArchiveEntry(entry);
+                outArchive.write(contents[i]);
+                outArchive.closeArchiveEntry();
+            }
+        }
+        verifyContents(contents);
+    }
+
+    @Test
+    public void testParallelCreator() throws Exception {
+        output = new File(dir, "parallel.7z");
+        final byte[][] contents = createContents();
+        final ExecutorService es = Executors.newFixedThreadPool(3);
+        try (SevenZOutputFile outArchive = new SevenZOutputFile(output)) {
+            final ParallelSevenZCreator creator = new ParallelSevenZCreator(outArchive,
+                es, new ScatterGatherBackingStoreSupplier() {
+                    @Override
+                    public ScatterGatherBackingStore get() throws IOException {
+                        return new FileBasedScatterGatherBackingStore(File.createTempFile("parallel", ".7z", dir));
+                    }
+                }, 3000, 2);
+            final SevenZArchiveEntry dirEntry = outArchive.createArchiveEntry(dir, "foo/");
+            creator.addArchiveEntry(dirEntry, null);
+            for (int i = 0; i < contents.length; i++) {
+                final SevenZArchiveEntry entry = new SevenZArchiveEntry();
+                entry.setName("foo/" + i + ".txt");
+                entry.setSize(contents[i].length);
+                final byte[] content = contents[i];
+                creator.addArchiveEntry(entry, new InputStreamSupplier() {
+                    @Override
+                    public InputStream get() {
+                        return new ByteArrayInputStream(content);
+                    }
+                });
+            }
+            creator.finish();
+            assertFalse(es.isShutdown());
+        } finally {
+            es.shutdown();
+        }
+        verifyContents(contents);
+    }
+
+    @Test
+    public void testNonSeekableStreamMatchesSeekableOutput() throws Exception {
+        final byte[][] contents = createContents();
+        // created first as it modifies the timestamp of dir used for the directory entry
+        final File packed = File.createTempFile("packed", ".7z", dir);
+        final SeekableInMemoryByteChannel channel = new SeekableInMemoryByteChannel();
+        try (SevenZOutputFile outArchive = new SevenZOutputFile(channel)) {
+            writeContents(outArchive, contents);
+        }
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (SevenZOutputFile outArchive = new SevenZOutputFile(stream, new FileBasedScatterGatherBackingStore(packed))) {
+            writeContents(outArchive, contents);
+        }
+        assertArrayEquals(Arrays.copyOf(channel.array(), (int) channel.size()), stream.toByteArray());
+
+        output = new File(dir, "streamed.7z");
+        Files.write(output.toPath(), stream.toByteArray());
+        verifyContents(contents);
+    }
+
+    private void writeContents(final SevenZOutputFile outArchive, final byte[][] contents) throws Exception {
+        outArchive.setSolidBlockSize(3000);
+        addDir(outArchive);
+        for (int i = 0; i < contents.length; i++) {
+            final SevenZArchiveEntry entry = new SevenZArchiveEntry();
+            entry.setName("foo/" + i + ".txt");
+            outArchive.putArchiveEntry(entry);
+            outArchive.write(contents[i]);
+            outArchive.closeArchiveEntry();
+        }
+    }
+
+    private static byte[][] createContents() {
+        final Random random = new Random(42);
+        final byte[][] contents = new byte[20][];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = new byte[i % 5 == 0 ? 0 : random.nextInt(2000)];
+            for (int j = 0; j < contents[i].length; j++) {
+                contents[i][j] = (byte) ('a' + random.nextInt(4));
+            }
+        }
+        return contents;
+    }
+
+    private void verifyContents(final byte[][] contents) throws Exception {
+        try (SevenZFile archive = new SevenZFile(output)) {
+            verifyDir(archive);
+            for (int i = 0; i < contents.length; i++) {
+                final SevenZArchiveEntry entry = archive.getNextEntry();
+                assertEquals("foo/" + i + ".txt", entry.getName());
+                assertEquals(contents[i].length > 0, entry.hasStream());
+                assertEquals(contents[i].length, entry.getSize());
+                final byte[] actual = new byte[contents[i].length];
+                int off = 0;
+                while (off < actual.length) {
+                    final int n = archive.read(actual, off, actual.length - off);
+                    assertTrue(n > 0);
+                    off += n;
+                }
+                assertEquals(-1, archive.read());
+                assertArrayEquals(contents[i], actual);
+            }
+            assertNull(archive.getNextEntry());
+        }
+    }
+
     private void testCompress252(final int numberOfFiles, final int numberOfNonEmptyFiles)
         throws Exception {
         final int nonEmptyModulus = numberOfNonEmptyFiles != 0
@@ -0,0 +1,189 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.tar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Test;
+
+public class ParallelTarCreatorTest {
+
+    @Test
+    public void writesEntriesInOrderIntoCompressedStream() throws Exception {
+        final Random random = new Random(3);
+        final byte[][] contents = new byte[200][];
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final ExecutorService es = Executors.newFixedThreadPool(4);
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(new GzipCompressorOutputStream(bos))) {
+            final ParallelTarCreator creator = new ParallelTarCreator(tos, es, 16, 64 * 1024);
+            for (int i = 0; i < contents.length; i++) {
+                if (i % 10 == 0) {
+                    creator.addArchiveEntry(new TarArchiveEntry("dir" + i + "/"), null);
+                    continue;
+                }
+                contents[i] = new byte[random.nextInt(i % 7 == 0 ? 200 * 1024 : 10 * 1024)];
+                random.nextBytes(contents[i]);
+                final TarArchiveEntry entry = new TarArchiveEntry("file" + i);
+                entry.setSize(contents[i].length);
+                creator.addArchiveEntry(entry, supplier(contents[i]));
+                assertTrue(creator.getBufferedBytes() < 64 * 1024 + 16 * 10 * 1024);
+            }
+            creator.finish();
+            assertEquals(0, creator.getBufferedBytes());
+        }
+        assertTrue(es.isShutdown());
+        try (TarArchiveInputStream tis = new TarArchiveInputStream(
+                 new GzipCompressorInputStream(new ByteArrayInputStream(bos.toByteArray())))) {
+            for (int i = 0; i < contents.length; i++) {
+                final TarArchiveEntry entry = tis.getNextTarEntry();
+                if (i % 10 == 0) {
+                    assertEquals("dir" + i + "/", entry.getName());
+                    assertTrue(entry.isDirectory());
+                } else {
+                    assertEquals("file" + i, entry.getName());
+                    assertArrayEquals(contents[i], IOUtils.toByteArray(tis));
+                }
+            }
+            assertNull(tis.getNextTarEntry());
+        }
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void failsIfContentDoesNotMatchSize() throws Exception {
+        final TarArchiveOutputStream tos = new TarArchiveOutputStream(new ByteArrayOutputStream());
+        final ParallelTarCreator creator = new ParallelTarCreator(tos, Executors.newSingleThreadExecutor());
+        final TarArchiveEntry entry = new TarArchiveEntry("test");
+        entry.setSize(10);
+        creator.addArchiveEntry(entry, supplier(new byte[5]));
+        creator.finish();
+    }
+
+    @Test
+    public void closesStreamsOfUnwrittenEntriesWhenFailing() throws Exception {
+        final TarArchiveOutputStream tos = new TarArchiveOutputStream(new ByteArrayOutputStream());
+        final ExecutorService es = Executors.newSingleThreadExecutor();
+        final ParallelTarCreator creator = new ParallelTarCreator(tos, es, 16, 1);
+        final TarArchiveEntry failing = new TarArchiveEntry("failing");
+        failing.setSize(10);
+        final AtomicBoolean opened = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final TarArchiveEntry streamed = new TarArchiveEntry("streamed");
+        streamed.setSize(10);
+        // the failure may surface while adding the second entry or in finish
+        ExecutionException failure = null;
+        try {
+            creator.addArchiveEntry(failing, new InputStreamSupplier() {
+                @Override
+                public InputStream get() {
+                    throw new IllegalStateException("source is not available");
+                }
+            });
+            creator.addArchiveEntry(streamed, new InputStreamSupplier() {
+                @Override
+                public InputStream get() {
+                    opened.set(true);
+                    return new ByteArrayInputStream(new byte[10]) {
+                        @Override
+                        public void close() {
+                            closed.set(true);
+                        }
+                    };
+                }
+            });
+        } catch (final ExecutionException expected) {
+            failure = expected;
+        }
+        try {
+            creator.finish();
+        } catch (final ExecutionException expected) {
+            failure = expected;
+        } catch (final IllegalStateException expected) {
+            // adding the second entry has aborted the creator
+            assertNotNull(failure);
+        }
+        assertNotNull("expected an ExecutionException", failure);
+        assertTrue(es.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(opened.get(), closed.get());
+        assertEquals(0, creator.getBufferedBytes());
+    }
+
+    @Test
+    public void rejectsEntriesAfterAbort() throws Exception {
+        final ExecutorService es = Executors.newSingleThreadExecutor();
+        final ParallelTarCreator creator =
+            new ParallelTarCreator(new TarArchiveOutputStream(new ByteArrayOutputStream()), es, 1, 1024);
+        final TarArchiveEntry failing = new TarArchiveEntry("failing");
+        failing.setSize(10);
+        creator.addArchiveEntry(failing, new InputStreamSupplier() {
+            @Override
+            public InputStream get() {
+                throw new IllegalStateException("source is not available");
+            }
+        });
+        final TarArchiveEntry next = new TarArchiveEntry("next");
+        next.setSize(3);
+        try {
+            // has to wait for the failing entry as only one entry may be pending
+            creator.addArchiveEntry(next, supplier(new byte[3]));
+            fail("expected an ExecutionException");
+        } catch (final ExecutionException expected) {
+            // expected
+        }
+        try {
+            creator.addArchiveEntry(next, supplier(new byte[3]));
+            fail("expected an IllegalStateException");
+        } catch (final IllegalStateException expected) {
+            assertEquals("creator has been aborted", expected.getMessage());
+        }
+        try {
+            creator.finish();
+            fail("expected an IllegalStateException");
+        } catch (final IllegalStateException expected) {
+            assertEquals("creator has been aborted", expected.getMessage());
+        }
+        assertTrue(es.isShutdown());
+    }
+
+    private static InputStreamSupplier supplier(final byte[] content) {
+        return new InputStreamSupplier() {
+            @Override
+            public InputStream get() {
+                return new ByteArrayInputStream(content);
+            }
+        };
+    }
+}
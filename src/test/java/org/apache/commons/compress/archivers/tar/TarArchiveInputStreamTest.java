@@ -22,6 +22,7 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -33,11 +34,18 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.compress.AbstractTestCase;
@@ -46,6 +54,7 @@
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
 import org.apache.commons.compress.utils.CharsetNames;
 import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 import org.junit.Test;
 
 public class TarArchiveInputStreamTest extends AbstractTestCase {
@@ -442,6 +451,127 @@ public void testParseTarWithNonNumberPaxHeaders() throws IOException {
         }
     }
 
+    @Test
+    public void skipsEntryDataByRepositioningChannel() throws Exception {
+        final byte[][] contents = createContents();
+        final byte[] archive = createArchive(contents);
+        final AtomicLong bytesRead = new AtomicLong();
+        final SeekableInMemoryByteChannel channel = new SeekableInMemoryByteChannel(archive) {
+            @Override
+            public int read(final ByteBuffer buf) throws IOException {
+                final int read = super.read(buf);
+                bytesRead.addAndGet(Math.max(read, 0));
+                return read;
+            }
+        };
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(channel, TarConstants.DEFAULT_BLKSIZE,
+                TarConstants.DEFAULT_RCDSIZE, null, false)) {
+            assertEquals("first", tar.getNextTarEntry().getName());
+            final byte[] start = new byte[100];
+            assertEquals(start.length, IOUtils.readFully(tar, start));
+            assertArrayEquals(Arrays.copyOf(contents[0], start.length), start);
+            assertEquals("second", tar.getNextTarEntry().getName());
+            assertNull(tar.getNextTarEntry());
+        }
+        assertTrue("read " + bytesRead.get() + " bytes", bytesRead.get() < 64 * 1024);
+    }
+
+    @Test
+    public void skipsEntryDataOfFileInputStream() throws Exception {
+        final byte[][] contents = createContents();
+        final File archive = new File(dir, "skip.tar");
+        try (OutputStream out = new FileOutputStream(archive)) {
+            out.write(createArchive(contents));
+        }
+        try (FileInputStream in = new FileInputStream(archive);
+             TarArchiveInputStream tar = new TarArchiveInputStream(in)) {
+            assertEquals("first", tar.getNextTarEntry().getName());
+            assertEquals(1000, tar.skip(1000));
+            final byte[] next = new byte[100];
+            assertEquals(next.length, IOUtils.readFully(tar, next));
+            assertArrayEquals(Arrays.copyOfRange(contents[0], 1000, 1100), next);
+            assertEquals("second", tar.getNextTarEntry().getName());
+            assertArrayEquals(contents[1], IOUtils.toByteArray(tar));
+            assertNull(tar.getNextTarEntry());
+        }
+    }
+
+    @Test
+    public void forEachEntryProvidesSameEntriesAsGetNextTarEntry() throws Exception {
+        for (final String name : new String[] { "bla.tar", "COMPRESS-114.tar", "COMPRESS-197.tar",
+                "COMPRESS-356.tar", "oldgnu_sparse.tar", "pax_gnu_sparse.tar", "posix01_sparse.tar",
+                "preepoch-star.tar" }) {
+            final List<String> expected = new ArrayList<>();
+            try (TarArchiveInputStream tar = new TarArchiveInputStream(
+                    new FileInputStream(getFile(name)), CharsetNames.ISO_8859_1)) {
+                TarArchiveEntry entry;
+                while ((entry = tar.getNextTarEntry()) != null) {
+                    expected.add(describe(entry, tar));
+                }
+            }
+            final List<String> actual = new ArrayList<>();
+            try (TarArchiveInputStream tar = new TarArchiveInputStream(
+                    new FileInputStream(getFile(name)), CharsetNames.ISO_8859_1)) {
+                tar.forEachEntry(new TarArchiveEntryHandler() {
+                    @Override
+                    public boolean handle(final TarArchiveEntry entry, final InputStream content)
+                        throws IOException {
+                        actual.add(describe(entry, content));
+                        return true;
+                    }
+                });
+            }
+            assertEquals(name, expected, actual);
+        }
+    }
+
+    @Test
+    public void forEachEntryReusesEntryAndStopsWhenHandlerAsksTo() throws Exception {
+        final List<TarArchiveEntry> seen = new ArrayList<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new FileInputStream(getFile("bla.tar")))) {
+            tar.forEachEntry(new TarArchiveEntryHandler() {
+                @Override
+                public boolean handle(final TarArchiveEntry entry, final InputStream content) {
+                    seen.add(entry);
+                    return seen.size() < 2;
+                }
+            });
+        }
+        assertEquals(2, seen.size());
+        assertSame(seen.get(0), seen.get(1));
+    }
+
+    private static String describe(final TarArchiveEntry entry, final InputStream content) throws IOException {
+        final byte[] data = IOUtils.toByteArray(content);
+        return entry.getName() + "|" + entry.getSize() + "|" + entry.getRealSize() + "|" + entry.getMode()
+            + "|" + entry.getLongUserId() + "|" + entry.getLongGroupId() + "|" + entry.getModTime().getTime()
+            + "|" + entry.getLinkName() + "|" + entry.getUserName() + "|" + entry.getGroupName()
+            + "|" + entry.isSparse() + "|" + data.length + "|" + Arrays.hashCode(data);
+    }
+
+    private static byte[][] createContents() {
+        final Random random = new Random(1);
+        final byte[][] contents = new byte[][] { new byte[1024 * 1024 + 17], new byte[1024 * 1024] };
+        random.nextBytes(contents[0]);
+        random.nextBytes(contents[1]);
+        return contents;
+    }
+
+    private static byte[] createArchive(final byte[][] contents) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(bos)) {
+            final String[] names = { "first", "second" };
+            for (int i = 0; i < contents.length; i++) {
+                final TarArchiveEntry entry = new TarArchiveEntry(names[i]);
+                entry.setSize(contents[i].length);
+                tos.putArchiveEntry(entry);
+                tos.write(contents[i]);
+                tos.closeArchiveEntry();
+            }
+        }
+        return bos.toByteArray();
+    }
+
     private TarArchiveInputStream getTestStream(final String name) {
         return new TarArchiveInputStream(
                 TarArchiveInputStreamTest.class.getResourceAsStream(name));
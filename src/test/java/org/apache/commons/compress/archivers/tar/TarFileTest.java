@@ -0,0 +1,175 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.commons.compress.archivers.tar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.AbstractTestCase;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.junit.Test;
+
+public class TarFileTest extends AbstractTestCase {
+
+    @Test
+    public void providesSameEntriesAndContentAsTarArchiveInputStream() throws Exception {
+        for (final String name : new String[] { "bla.tar", "COMPRESS-197.tar",
+                "COMPRESS-324.tar", "COMPRESS-356.tar", "archive_with_trailer.tar", "preepoch-posix.tar",
+                "simple-aix-native-tar.tar", "oldgnu_sparse.tar", "oldgnu_extended_sparse.tar",
+                "pax_gnu_sparse.tar", "posix00_sparse.tar", "posix01_sparse.tar", "posix10_sparse.tar" }) {
+            final File archive = getFile(name);
+            try (TarFile tarFile = new TarFile(archive);
+                 TarArchiveInputStream tais = new TarArchiveInputStream(new FileInputStream(archive))) {
+                final List<TarArchiveEntry> entries = tarFile.getEntries();
+                int i = 0;
+                TarArchiveEntry expected;
+                while ((expected = tais.getNextTarEntry()) != null) {
+                    final TarArchiveEntry actual = entries.get(i++);
+                    assertEquals(name, expected.getName(), actual.getName());
+                    assertEquals(name, expected.getLinkName(), actual.getLinkName());
+                    assertEquals(name, expected.getRealSize(), actual.getRealSize());
+                    assertEquals(name, expected.isSparse(), actual.isSparse());
+                    try (InputStream in = tarFile.getInputStream(actual)) {
+                        assertArrayEquals(name + " " + actual.getName(), IOUtils.toByteArray(tais),
+                            IOUtils.toByteArray(in));
+                    }
+                }
+                assertEquals(name, i, entries.size());
+            }
+        }
+    }
+
+    @Test
+    public void readsEntriesInAnyOrder() throws Exception {
+        final byte[] archive = createArchive(20);
+        try (TarFile tarFile = new TarFile(new SeekableInMemoryByteChannel(archive))) {
+            final List<TarArchiveEntry> entries = tarFile.getEntries();
+            assertEquals(20, entries.size());
+            long expectedOffset = 512;
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(expectedOffset, entries.get(i).getDataOffset());
+                // header of the next entry plus padded data
+                expectedOffset += 512 + (i * 1000 + 511) / 512 * 512;
+            }
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                final TarArchiveEntry entry = entries.get(i);
+                try (InputStream in = tarFile.getInputStream(entry)) {
+                    assertArrayEquals(content(i), IOUtils.toByteArray(in));
+                }
+            }
+            assertNotNull(tarFile.getEntry("file7.txt"));
+            assertNull(tarFile.getEntry("missing"));
+        }
+    }
+
+    @Test
+    public void readsEntriesConcurrently() throws Exception {
+        final byte[] archive = createArchive(50);
+        final ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try (final TarFile tarFile = new TarFile(new SeekableInMemoryByteChannel(archive))) {
+            final List<Future<byte[]>> futures = new ArrayList<>();
+            for (final TarArchiveEntry entry : tarFile.getEntries()) {
+                futures.add(executorService.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        try (InputStream in = tarFile.getInputStream(entry)) {
+                            return IOUtils.toByteArray(in);
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertArrayEquals(content(i), futures.get(i).get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void readsLongNamesAndPaxHeaders() throws Exception {
+        final String longName = "a/very/long/directory/name/that/does/not/fit/into/the/ustar/header/"
+            + "and/therefore/needs/an/additional/header/file\u00e4.txt";
+        for (final int mode : new int[] { TarArchiveOutputStream.LONGFILE_GNU, TarArchiveOutputStream.LONGFILE_POSIX }) {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (TarArchiveOutputStream tos = new TarArchiveOutputStream(bos, "UTF-8")) {
+                tos.setLongFileMode(mode);
+                final TarArchiveEntry entry = new TarArchiveEntry(longName);
+                entry.setSize(3);
+                tos.putArchiveEntry(entry);
+                tos.write(new byte[] { 1, 2, 3 });
+                tos.closeArchiveEntry();
+            }
+            try (TarFile tarFile = new TarFile(new SeekableInMemoryByteChannel(bos.toByteArray()), 512, "UTF-8",
+                    false)) {
+                assertEquals(1, tarFile.getEntries().size());
+                final TarArchiveEntry entry = tarFile.getEntries().get(0);
+                assertEquals(longName, entry.getName());
+                try (InputStream in = tarFile.getInputStream(entry)) {
+                    assertArrayEquals(new byte[] { 1, 2, 3 }, IOUtils.toByteArray(in));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEntriesOfOtherArchives() throws Exception {
+        try (TarFile tarFile = new TarFile(new SeekableInMemoryByteChannel(createArchive(1)))) {
+            tarFile.getInputStream(new TarArchiveEntry("foo"));
+        }
+    }
+
+    private static byte[] createArchive(final int entries) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(bos)) {
+            for (int i = 0; i < entries; i++) {
+                final byte[] content = content(i);
+                final TarArchiveEntry entry = new TarArchiveEntry("file" + i + ".txt");
+                entry.setSize(content.length);
+                tos.putArchiveEntry(entry);
+                tos.write(content);
+                tos.closeArchiveEntry();
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] content(final int index) {
+        final byte[] content = new byte[index * 1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i + index);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.apache.commons.compress.archivers.EntryStreamOffsets;
+import org.junit.Test;
+
+public class CompactEntryTableTest {
+
+    @Test
+    public void findsCandidatesInCentralDirectoryOrder() {
+        // "Aa" and "BB" share the same hash code
+        final CompactEntryTable table = createTable("Aa", "x", "BB", "Aa", "y");
+        assertArrayEquals(new int[] { 0, 2, 3 }, table.findCandidates("Aa".hashCode()));
+        assertArrayEquals(new int[] { 1 }, table.findCandidates("x".hashCode()));
+        assertArrayEquals(new int[0], table.findCandidates("z".hashCode()));
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        final String[] names = new String[100];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "entry" + i;
+        }
+        final CompactEntryTable table = createTable(names);
+        assertEquals(100, table.size());
+        for (int i = 0; i < names.length; i++) {
+            assertArrayEquals(new int[] { i }, table.findCandidates(names[i].hashCode()));
+            assertEquals(i * 10, table.getRecordOffset(i));
+        }
+    }
+
+    @Test
+    public void sortsByDiskNumberAndLocalHeaderOffset() {
+        final CompactEntryTable table = new CompactEntryTable(new byte[0]);
+        table.add(0, entry("a", 1, 10));
+        table.add(10, entry("b", 0, 20));
+        table.add(20, entry("c", 1, 5));
+        table.add(30, entry("d", 0, 10));
+        table.complete();
+        assertArrayEquals(new int[] { 3, 1, 2, 0 }, table.getPhysicalOrder());
+    }
+
+    @Test
+    public void storesSizesCrcMethodAndDataOffsets() {
+        final CompactEntryTable table = new CompactEntryTable(new byte[0]);
+        final ZipArchiveEntry entry = entry("a", 0, 10);
+        entry.setMethod(ZipMethod.DEFLATED.getCode());
+        entry.setCrc(0xcafebabeL);
+        entry.setCompressedSize(5);
+        entry.setSize(0x100000000L);
+        table.add(0, entry);
+        table.complete();
+        assertEquals(ZipMethod.DEFLATED.getCode(), table.getMethod(0));
+        assertEquals(0xcafebabeL, table.getCrc(0));
+        assertEquals(5, table.getCompressedSize(0));
+        assertEquals(0x100000000L, table.getSize(0));
+        assertEquals(EntryStreamOffsets.OFFSET_UNKNOWN, table.getDataOffset(0));
+        table.setDataOffset(0, 42);
+        assertEquals(42, table.getDataOffset(0));
+    }
+
+    private static CompactEntryTable createTable(final String... names) {
+        final CompactEntryTable table = new CompactEntryTable(new byte[0]);
+        for (int i = 0; i < names.length; i++) {
+            table.add(i * 10, entry(names[i], 0, i));
+        }
+        table.complete();
+        return table;
+    }
+
+    private static ZipArchiveEntry entry(final String name, final long disk, final long offset) {
+        final ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setDiskNumberStart(disk);
+        entry.setLocalHeaderOffset(offset);
+        return entry;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import static org.apache.commons.compress.AbstractTestCase.getFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class MemoryMappedArchiveTest {
+
+    @Test
+    public void readsAcrossWindowBoundaries() throws Exception {
+        final File file = getFile("mixed.zip");
+        final byte[] expected = Files.readAllBytes(file.toPath());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MemoryMappedArchive mapped = new MemoryMappedArchive(channel, 1000);
+            assertEquals(expected.length, mapped.size());
+
+            final ByteBuffer all = ByteBuffer.allocate(expected.length);
+            while (all.hasRemaining()) {
+                mapped.read(all.position(), all);
+            }
+            assertArrayEquals(expected, all.array());
+
+            assertEquals(expected[999] & 0xff, mapped.read(999));
+            assertEquals(expected[1000] & 0xff, mapped.read(1000));
+            assertEquals(-1, mapped.read(expected.length));
+            assertEquals(-1, mapped.read(expected.length, ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    public void slicesInsideAndAcrossWindows() throws Exception {
+        final File file = getFile("mixed.zip");
+        final byte[] expected = Files.readAllBytes(file.toPath());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MemoryMappedArchive mapped = new MemoryMappedArchive(channel, 1000);
+            assertSlice(expected, mapped.slice(100, 800), 100);
+            assertSlice(expected, mapped.slice(900, 300), 900);
+        }
+    }
+
+    private static void assertSlice(final byte[] expected, final ByteBuffer slice, final int offset) {
+        final byte[] actual = new byte[slice.remaining()];
+        slice.get(actual);
+        assertArrayEquals(Arrays.copyOfRange(expected, offset, offset + actual.length), actual);
+    }
+}
@@ -21,6 +21,7 @@
 import org.apache.commons.compress.parallel.InputStreamSupplier;
 import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+import org.apache.commons.compress.parallel.TieredScatterGatherBackingStoreSupplier;
 import org.apache.commons.compress.utils.IOUtils;
 import org.junit.After;
 import org.junit.Test;
@@ -78,6 +79,26 @@ public void concurrent()
         assertNotNull( zipCreator.getStatisticsMessage());
     }
 
+    @Test
+    public void concurrentWithTieredBackingStores()
+            throws Exception {
+        result = File.createTempFile("parallelScatterGather1", "");
+        final ZipArchiveOutputStream zos = new ZipArchiveOutputStream(result);
+        zos.setEncoding("UTF-8");
+        final TieredScatterGatherBackingStoreSupplier supplier =
+            new TieredScatterGatherBackingStoreSupplier(1024 * 1024);
+        final ParallelScatterZipCreator zipCreator =
+            new ParallelScatterZipCreator(Executors.newFixedThreadPool(2), supplier);
+
+        final Map<String, byte[]> entries = writeEntries(zipCreator);
+        zipCreator.writeTo(zos);
+        zos.close();
+        removeEntriesFoundInZipFile(result, entries);
+        assertTrue(entries.size() == 0);
+        assertEquals(0, supplier.getOverflows());
+        assertEquals(0, supplier.getMemoryInUse());
+    }
+
     @Test
     public void callableApiUsingSubmit() throws Exception {
         result = File.createTempFile("parallelScatterGather2", "");
@@ -0,0 +1,340 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import org.apache.commons.compress.parallel.ByteBufferScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingParallelScatterZipCreatorTest {
+
+    private static final int NUMITEMS = 500;
+
+    @Test
+    public void writesEntriesInOrderTheyHaveBeenAdded() throws Exception {
+        final SeekableInMemoryByteChannel channel = new SeekableInMemoryByteChannel();
+        final ZipArchiveOutputStream zos = new ZipArchiveOutputStream(channel);
+        final StreamingParallelScatterZipCreator zipCreator =
+            new StreamingParallelScatterZipCreator(zos, Executors.newFixedThreadPool(4));
+        final List<String> names = addEntries(zipCreator, NUMITEMS);
+        zipCreator.finish();
+        zos.close();
+        assertEquals(0, zipCreator.getBufferedBytes());
+        assertNotNull(zipCreator.getStatisticsMessage());
+
+        final List<String> actual = readEntries(channel);
+        assertEquals(names, actual);
+    }
+
+    @Test
+    public void writesAllEntriesIfOrderIsNotPreserved() throws Exception {
+        final SeekableInMemoryByteChannel channel = new SeekableInMemoryByteChannel();
+        final ZipArchiveOutputStream zos = new ZipArchiveOutputStream(channel);
+        final StreamingParallelScatterZipCreator zipCreator =
+            new StreamingParallelScatterZipCreator(zos, Executors.newFixedThreadPool(4), new InMemorySupplier(),
+                Deflater.DEFAULT_COMPRESSION, new ZipCodecPool(), false, 8, 1024);
+        final List<String> names = addEntries(zipCreator, NUMITEMS);
+        zipCreator.finish();
+        zos.close();
+
+        final List<String> actual = readEntries(channel);
+        Collections.sort(names);
+        Collections.sort(actual);
+        assertEquals(names, actual);
+    }
+
+    @Test
+    public void boundsNumberOfPendingEntries() throws Exception {
+        final int maxPending = 3;
+        final AtomicInteger liveStores = new AtomicInteger();
+        final AtomicInteger maxLiveStores = new AtomicInteger();
+        final ScatterGatherBackingStoreSupplier supplier = new ScatterGatherBackingStoreSupplier() {
+            @Override
+            public ScatterGatherBackingStore get() {
+                final int live = liveStores.incrementAndGet();
+                int max;
+                while ((max = maxLiveStores.get()) < live && !maxLiveStores.compareAndSet(max, live)) {
+                    // retry
+                }
+                return new ByteBufferScatterGatherBackingStore() {
+                    @Override
+                    public void close() {
+                        liveStores.decrementAndGet();
+                        super.close();
+                    }
+                };
+            }
+        };
+        final SeekableInMemoryByteChannel channel = new SeekableInMemoryByteChannel();
+        final ZipArchiveOutputStream zos = new ZipArchiveOutputStream(channel);
+        final StreamingParallelScatterZipCreator zipCreator =
+            new StreamingParallelScatterZipCreator(zos, Executors.newFixedThreadPool(4), supplier,
+                Deflater.DEFAULT_COMPRESSION, new ZipCodecPool(), true, maxPending, Long.MAX_VALUE);
+        final List<String> names = addEntries(zipCreator, NUMITEMS);
+        zipCreator.finish();
+        zos.close();
+
+        assertEquals(0, liveStores.get());
+        assertTrue("at most " + maxPending + " stores expected but got " + maxLiveStores.get(),
+            maxLiveStores.get() <= maxPending);
+        assertEquals(names, readEntries(channel));
+    }
+
+    @Test
+    public void blocksOnceBufferedBytesLimitIsReached() throws Exception {
+        final SeekableInMemoryByteChannel channel = new SeekableInMemoryByteChannel();
+        final ZipArchiveOutputStream zos = new ZipArchiveOutputStream(channel);
+        final StreamingParallelScatterZipCreator zipCreator =
+            new StreamingParallelScatterZipCreator(zos, Executors.newFixedThreadPool(2), new InMemorySupplier(),
+                Deflater.NO_COMPRESSION, new ZipCodecPool(), true, Integer.MAX_VALUE, 1);
+        for (int i = 0; i < 50; i++) {
+            addEntry(zipCreator, "file" + i, new byte[1000]);
+            // all but the entry just added must have been written
+            assertTrue(zipCreator.getBufferedBytes() <= 1000);
+        }
+        zipCreator.finish();
+        zos.close();
+        assertEquals(50, readEntries(channel).size());
+    }
+
+    @Test
+    public void propagatesFailureOfEntry() throws Exception {
+        final ZipArchiveOutputStream zos = new ZipArchiveOutputStream(new SeekableInMemoryByteChannel());
+        final ExecutorService es = Executors.newFixedThreadPool(2);
+        final StreamingParallelScatterZipCreator zipCreator =
+            new StreamingParallelScatterZipCreator(zos, es, new InMemorySupplier(),
+                Deflater.DEFAULT_COMPRESSION, new ZipCodecPool(), true, 4, Long.MAX_VALUE);
+        final ZipArchiveEntry entry = new ZipArchiveEntry("broken");
+        entry.setMethod(ZipEntry.DEFLATED);
+        try {
+            zipCreator.addArchiveEntry(entry, new InputStreamSupplier() {
+                @Override
+                public InputStream get() {
+                    return new InputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            throw new IOException("broken");
+                        }
+                    };
+                }
+            });
+            zipCreator.finish();
+            fail("expected an exception");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        } finally {
+            es.shutdownNow();
+            zos.close();
+        }
+    }
+
+    @Test
+    public void rejectsEntriesAfterAbort() throws Exception {
+        final ZipArchiveOutputStream zos = new ZipArchiveOutputStream(new SeekableInMemoryByteChannel());
+        final ExecutorService es = Executors.newFixedThreadPool(1);
+        final StreamingParallelScatterZipCreator zipCreator =
+            new StreamingParallelScatterZipCreator(zos, es, new InMemorySupplier(),
+                Deflater.DEFAULT_COMPRESSION, new ZipCodecPool(), true, 1, Long.MAX_VALUE);
+        final ZipArchiveEntry entry = new ZipArchiveEntry("broken");
+        entry.setMethod(ZipEntry.DEFLATED);
+        try {
+            zipCreator.addArchiveEntry(entry, new InputStreamSupplier() {
+                @Override
+                public InputStream get() {
+                    throw new IllegalStateException("source is not available");
+                }
+            });
+            try {
+                // has to wait for the broken entry as only one entry may be pending
+                addEntry(zipCreator, "next", new byte[3]);
+                fail("expected an ExecutionException");
+            } catch (final ExecutionException expected) {
+                // expected
+            }
+            try {
+                addEntry(zipCreator, "next", new byte[3]);
+                fail("expected an IllegalStateException");
+            } catch (final IllegalStateException expected) {
+                assertEquals("creator has been aborted", expected.getMessage());
+            }
+            try {
+                zipCreator.finish();
+                fail("expected an IllegalStateException");
+            } catch (final IllegalStateException expected) {
+                assertEquals("creator has been aborted", expected.getMessage());
+            }
+            assertTrue(es.isShutdown());
+        } finally {
+            es.shutdownNow();
+            zos.close();
+        }
+    }
+
+    @Test
+    public void releasesBackingStoresOfRunningEntriesOnFailure() throws Exception {
+        final AtomicInteger liveStores = new AtomicInteger();
+        final ScatterGatherBackingStoreSupplier supplier = new ScatterGatherBackingStoreSupplier() {
+            @Override
+            public ScatterGatherBackingStore get() {
+                liveStores.incrementAndGet();
+                return new ByteBufferScatterGatherBackingStore() {
+                    @Override
+                    public void close() {
+                        liveStores.decrementAndGet();
+                        super.close();
+                    }
+                };
+            }
+        };
+        final CountDownLatch slowEntryStarted = new CountDownLatch(1);
+        final CountDownLatch releaseSlowEntry = new CountDownLatch(1);
+        final ZipArchiveOutputStream zos = new ZipArchiveOutputStream(new SeekableInMemoryByteChannel());
+        final ExecutorService es = Executors.newFixedThreadPool(2);
+        final StreamingParallelScatterZipCreator zipCreator =
+            new StreamingParallelScatterZipCreator(zos, es, supplier,
+                Deflater.DEFAULT_COMPRESSION, new ZipCodecPool(), true, 4, Long.MAX_VALUE);
+        final ZipArchiveEntry broken = new ZipArchiveEntry("broken");
+        broken.setMethod(ZipEntry.DEFLATED);
+        final ZipArchiveEntry slow = new ZipArchiveEntry("slow");
+        slow.setMethod(ZipEntry.DEFLATED);
+        try {
+            zipCreator.addArchiveEntry(broken, new InputStreamSupplier() {
+                @Override
+                public InputStream get() {
+                    return new InputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            try {
+                                slowEntryStarted.await();
+                            } catch (final InterruptedException ex) {
+                                throw new IOException(ex);
+                            }
+                            throw new IOException("broken");
+                        }
+                    };
+                }
+            });
+            zipCreator.addArchiveEntry(slow, new InputStreamSupplier() {
+                @Override
+                public InputStream get() {
+                    slowEntryStarted.countDown();
+                    try {
+                        releaseSlowEntry.await();
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new ByteArrayInputStream(new byte[100]);
+                }
+            });
+            zipCreator.finish();
+            fail("expected an exception");
+        } catch (final ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        } finally {
+            releaseSlowEntry.countDown();
+            es.shutdown();
+            assertTrue(es.awaitTermination(10, TimeUnit.SECONDS));
+            zos.close();
+        }
+        assertEquals(0, liveStores.get());
+        assertEquals(0, zipCreator.getBufferedBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsExceptionWithCompressionLevelTooBig() {
+        new StreamingParallelScatterZipCreator(null, Executors.newFixedThreadPool(1), new InMemorySupplier(),
+            Deflater.BEST_COMPRESSION + 1, null, true, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsExceptionWithNonPositiveMaxPendingEntries() {
+        new StreamingParallelScatterZipCreator(null, Executors.newFixedThreadPool(1), new InMemorySupplier(),
+            Deflater.DEFAULT_COMPRESSION, null, true, 0, 1);
+    }
+
+    private static List<String> addEntries(final StreamingParallelScatterZipCreator zipCreator, final int count)
+        throws Exception {
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final String name = "file" + i;
+            addEntry(zipCreator, name, ("content" + i).getBytes());
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static void addEntry(final StreamingParallelScatterZipCreator zipCreator, final String name,
+        final byte[] payload) throws Exception {
+        final ZipArchiveEntry za = new ZipArchiveEntry(name);
+        za.setMethod(ZipEntry.DEFLATED);
+        za.setComment(new String(payload));
+        zipCreator.addArchiveEntry(za, new InputStreamSupplier() {
+            @Override
+            public InputStream get() {
+                return new ByteArrayInputStream(payload);
+            }
+        });
+    }
+
+    private static List<String> readEntries(final SeekableInMemoryByteChannel channel) throws IOException {
+        final List<String> names = new ArrayList<>();
+        final byte[] archive = Arrays.copyOf(channel.array(), (int) channel.size());
+        try (ZipFile zf = new ZipFile(new SeekableInMemoryByteChannel(archive))) {
+            for (final ZipArchiveEntry ze : Collections.list(zf.getEntriesInPhysicalOrder())) {
+                try (InputStream in = zf.getInputStream(ze)) {
+                    assertArrayEquals(ze.getComment().getBytes(), IOUtils.toByteArray(in));
+                }
+                names.add(ze.getName());
+            }
+        }
+        return names;
+    }
+
+    private static class InMemorySupplier implements ScatterGatherBackingStoreSupplier {
+        @Override
+        public ScatterGatherBackingStore get() {
+            return new ByteBufferScatterGatherBackingStore();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.apache.commons.compress.AbstractTestCase;
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Test;
+
+public class ZipCentralDirectoryCacheTest extends AbstractTestCase {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveMaxArchives() {
+        new ZipCentralDirectoryCache(0);
+    }
+
+    @Test
+    public void reusesCentralDirectoryOfUnmodifiedArchive() throws Exception {
+        final ZipCentralDirectoryCache cache = new ZipCentralDirectoryCache();
+        final ZipFileOptions options = ZipFileOptions.builder().withCentralDirectoryCache(cache).build();
+        final File archive = getFile("ordertest.zip");
+        // entries of a cached central directory read their local file headers lazily
+        final ZipFileOptions lazy = ZipFileOptions.builder().withLazyLocalFileHeaders(true).build();
+        for (int i = 0; i < 2; i++) {
+            try (ZipFile expected = new ZipFile(archive, lazy);
+                 ZipFile actual = new ZipFile(archive, options)) {
+                assertEquals(Collections.list(expected.getEntries()).size(), Collections.list(actual.getEntries()).size());
+                for (final ZipArchiveEntry entry : Collections.list(expected.getEntries())) {
+                    final ZipArchiveEntry cachedEntry = actual.getEntry(entry.getName());
+                    expected.resolveLocalFileHeader(entry);
+                    actual.resolveLocalFileHeader(cachedEntry);
+                    assertEquals(entry, cachedEntry);
+                    try (InputStream e = expected.getInputStream(entry);
+                         InputStream a = actual.getInputStream(cachedEntry)) {
+                        assertArrayEquals(IOUtils.toByteArray(e), IOUtils.toByteArray(a));
+                    }
+                }
+            }
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void cachesDataOffsets() throws Exception {
+        final ZipCentralDirectoryCache cache = new ZipCentralDirectoryCache();
+        final ZipFileOptions options = ZipFileOptions.builder().withCentralDirectoryCache(cache).build();
+        final File archive = getFile("ordertest.zip");
+        try (ZipFile ignored = new ZipFile(archive, options)) {
+            assertEquals(1, cache.size());
+        }
+        try (ZipFile expected = new ZipFile(archive);
+             ZipFile actual = new ZipFile(archive, options)) {
+            for (final ZipArchiveEntry entry : Collections.list(expected.getEntries())) {
+                assertEquals(entry.getDataOffset(), actual.getEntry(entry.getName()).getDataOffset());
+            }
+        }
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void detectsModifiedArchiveOfSameSize() throws Exception {
+        final ZipCentralDirectoryCache cache = new ZipCentralDirectoryCache();
+        final ZipFileOptions options = ZipFileOptions.builder().withCentralDirectoryCache(cache).build();
+        final File archive = new File(dir, "archive.zip");
+        writeArchive(archive, "first");
+        final long lastModified = archive.lastModified();
+        final long size = archive.length();
+        try (ZipFile zf = new ZipFile(archive, options)) {
+            assertEquals(1, Collections.list(zf.getEntries()).size());
+        }
+        writeArchive(archive, "other");
+        archive.setLastModified(lastModified);
+        assertEquals(size, archive.length());
+        try (ZipFile zf = new ZipFile(archive, options)) {
+            assertEquals(1, Collections.list(zf.getEntries()).size());
+        }
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedArchive() throws Exception {
+        final ZipCentralDirectoryCache cache = new ZipCentralDirectoryCache(1);
+        final ZipFileOptions options = ZipFileOptions.builder().withCentralDirectoryCache(cache).build();
+        for (final String name : new String[] { "mixed.zip", "ordertest.zip", "mixed.zip" }) {
+            new ZipFile(getFile(name), options).close();
+        }
+        assertEquals(3, cache.getMisses());
+        assertEquals(2, cache.getEvictions());
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    private static void writeArchive(final File archive, final String comment) throws Exception {
+        try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(archive)) {
+            zos.setComment(comment);
+            zos.putArchiveEntry(new ZipArchiveEntry("test.txt"));
+            zos.write(new byte[] { 1, 2, 3 });
+            zos.closeArchiveEntry();
+        }
+    }
+}
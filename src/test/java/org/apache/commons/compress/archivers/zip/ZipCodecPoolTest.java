@@ -0,0 +1,145 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.commons.compress.archivers.zip;
+
+import static org.apache.commons.compress.AbstractTestCase.getFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Test;
+
+public class ZipCodecPoolTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveMaxIdle() {
+        new ZipCodecPool(0);
+    }
+
+    @Test
+    public void reusesReturnedInflater() {
+        final ZipCodecPool pool = new ZipCodecPool(1);
+        final Inflater first = pool.borrowInflater();
+        pool.returnInflater(first);
+        assertSame(first, pool.borrowInflater());
+        assertEquals(1, pool.getInflaterHits());
+        assertEquals(1, pool.getInflaterMisses());
+    }
+
+    @Test
+    public void endsSurplusCodecs() {
+        final ZipCodecPool pool = new ZipCodecPool(1);
+        final Deflater first = pool.borrowDeflater(Deflater.BEST_SPEED);
+        final Deflater second = pool.borrowDeflater(Deflater.BEST_SPEED);
+        assertNotSame(first, second);
+        pool.returnDeflater(first);
+        pool.returnDeflater(second);
+        assertEquals(1, pool.getIdleDeflaters());
+        assertEquals(2, pool.getDeflaterMisses());
+        pool.clear();
+        assertEquals(0, pool.getIdleDeflaters());
+    }
+
+    @Test
+    public void pooledDeflaterProducesSameOutputAsFreshOne() throws Exception {
+        final byte[] data = "AAAAAABBBBBBAAAAAABBBBBB".getBytes();
+        final ZipCodecPool pool = new ZipCodecPool();
+        final byte[] first = deflate(pool, data);
+        final byte[] second = deflate(pool, data);
+        assertArrayEquals(first, second);
+        assertEquals(1, pool.getDeflaterHits());
+    }
+
+    @Test
+    public void zipFileReturnsInflatersToPool() throws Exception {
+        final ZipCodecPool pool = new ZipCodecPool();
+        final ZipFileOptions options = ZipFileOptions.builder().withCodecPool(pool).build();
+        try (ZipFile zf = new ZipFile(getFile("mixed.zip"), options)) {
+            for (final ZipArchiveEntry entry : Collections.list(zf.getEntries())) {
+                try (InputStream in = zf.getInputStream(entry)) {
+                    IOUtils.toByteArray(in);
+                }
+            }
+        }
+        assertEquals(1, pool.getInflaterMisses());
+        assertEquals(1, pool.getIdleInflaters());
+    }
+
+    @Test
+    public void zipArchiveInputStreamReturnsInflaterToPool() throws Exception {
+        final ZipCodecPool pool = new ZipCodecPool();
+        for (int i = 0; i < 2; i++) {
+            try (InputStream archive = new ByteArrayInputStream(Files.readAllBytes(getFile("mixed.zip").toPath()));
+                 ZipArchiveInputStream in = new ZipArchiveInputStream(archive, ZipEncodingHelper.UTF8, true, false,
+                     false, pool)) {
+                while (in.getNextZipEntry() != null) {
+                    IOUtils.toByteArray(in);
+                }
+            }
+        }
+        assertEquals(1, pool.getInflaterMisses());
+        assertEquals(1, pool.getInflaterHits());
+    }
+
+    private static byte[] deflate(final ZipCodecPool pool, final byte[] data) throws Exception {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (StreamCompressor sc = StreamCompressor.create(Deflater.DEFAULT_COMPRESSION,
+                 new ByteArrayBackingStore(baos), pool)) {
+            sc.deflate(new ByteArrayInputStream(data), ZipEntry.DEFLATED);
+        }
+        return baos.toByteArray();
+    }
+
+    private static class ByteArrayBackingStore implements ScatterGatherBackingStore {
+        private final ByteArrayOutputStream out;
+
+        ByteArrayBackingStore(final ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(out.toByteArray());
+        }
+
+        @Override
+        public void writeOut(final byte[] data, final int offset, final int length) {
+            out.write(data, offset, length);
+        }
+
+        @Override
+        public void closeForWriting() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -28,6 +28,7 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -46,6 +47,7 @@
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 
+import org.apache.commons.compress.archivers.EntryStreamOffsets;
 import org.apache.commons.compress.utils.IOUtils;
 import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 import org.junit.After;
@@ -297,6 +299,76 @@ public void testDuplicateEntry() throws Exception {
         assertEquals(2, numberOfEntries);
     }
 
+    @Test
+    public void testDuplicateEntryWithCompactEntryTable() throws Exception {
+        final File archive = getFile("COMPRESS-227.zip");
+        zf = new ZipFile(archive, ZipFileOptions.builder().withCompactEntryTable(true).build());
+
+        final ZipArchiveEntry ze = zf.getEntry("test1.txt");
+        assertNotNull(ze);
+        assertNull(zf.getEntry("test3.txt"));
+
+        final List<ZipArchiveEntry> entriesOfThatName = new ArrayList<>();
+        for (final ZipArchiveEntry entry : zf.getEntries("test1.txt")) {
+            entriesOfThatName.add(entry);
+            try (InputStream stream = zf.getInputStream(entry)) {
+                assertNotNull(stream);
+            }
+        }
+        assertEquals(2, entriesOfThatName.size());
+        zf.resolveLocalFileHeader(ze);
+        assertEquals(ze, entriesOfThatName.get(0));
+    }
+
+    @Test
+    public void compactEntryTableRemembersEntriesAndDataOffsets() throws Exception {
+        final ByteArrayOutputStream zipContent = new ByteArrayOutputStream();
+        try (ZipArchiveOutputStream zipOutput = new ZipArchiveOutputStream(zipContent)) {
+            for (int i = 0; i < 100; i++) {
+                zipOutput.putArchiveEntry(new ZipArchiveEntry("entry" + i + ".txt"));
+                zipOutput.write(("Hello " + i + "\n").getBytes());
+                zipOutput.closeArchiveEntry();
+            }
+        }
+        zf = new ZipFile(new SeekableInMemoryByteChannel(zipContent.toByteArray()), "in-memory", "UTF8", true,
+            false, ZipFileOptions.builder().withCompactEntryTable(true).build());
+        final ZipArchiveEntry first = zf.getEntries().nextElement();
+        assertSame(first, zf.getEntry(first.getName()));
+        assertEquals(EntryStreamOffsets.OFFSET_UNKNOWN, first.getDataOffset());
+        try (InputStream stream = zf.getInputStream(first)) {
+            assertNotNull(stream);
+        }
+        final long dataOffset = first.getDataOffset();
+        assertNotEquals(EntryStreamOffsets.OFFSET_UNKNOWN, dataOffset);
+        // push the first entry out of the recently created entries
+        Collections.list(zf.getEntries());
+        final ZipArchiveEntry recreated = zf.getEntry(first.getName());
+        assertNotSame(first, recreated);
+        assertEquals(dataOffset, recreated.getDataOffset());
+    }
+
+    @Test
+    public void compactEntryTableProvidesSameEntriesAsDefaultTables() throws Exception {
+        final File archive = getFile("ordertest.zip");
+        // entries of a compact entry table read their local file headers lazily
+        try (ZipFile expected = new ZipFile(archive, ZipFileOptions.builder().withLazyLocalFileHeaders(true).build());
+             ZipFile actual = new ZipFile(archive, ZipFileOptions.builder().withCompactEntryTable(true).build())) {
+            assertEquals(Collections.list(expected.getEntries()), Collections.list(actual.getEntries()));
+            assertEquals(Collections.list(expected.getEntriesInPhysicalOrder()),
+                Collections.list(actual.getEntriesInPhysicalOrder()));
+            for (final ZipArchiveEntry entry : Collections.list(expected.getEntries())) {
+                final ZipArchiveEntry compactEntry = actual.getEntry(entry.getName());
+                expected.resolveLocalFileHeader(entry);
+                actual.resolveLocalFileHeader(compactEntry);
+                assertEquals(entry, compactEntry);
+                try (InputStream e = expected.getInputStream(entry);
+                     InputStream a = actual.getInputStream(compactEntry)) {
+                    assertArrayEquals(IOUtils.toByteArray(e), IOUtils.toByteArray(a));
+                }
+            }
+        }
+    }
+
     /**
      * @see "https://issues.apache.org/jira/browse/COMPRESS-228"
      */
@@ -420,6 +492,119 @@ public void run() {
         assertEquals(2, passedCount.get());
     }
 
+    @Test
+    public void testConcurrentReadMemoryMapped() throws Exception {
+        // mixed.zip contains both inflated and stored files
+        final File archive = getFile("mixed.zip");
+        final Map<String, byte[]> content = new HashMap<String, byte[]>();
+        try (ZipFile unmapped = new ZipFile(archive)) {
+            for (ZipArchiveEntry entry: Collections.list(unmapped.getEntries())) {
+                content.put(entry.getName(), IOUtils.toByteArray(unmapped.getInputStream(entry)));
+            }
+        }
+        zf = new ZipFile(archive, ZipFileOptions.builder().withUseMemoryMapping(true).build());
+
+        final AtomicInteger passedCount = new AtomicInteger();
+        Runnable run = new Runnable() {
+            @Override
+            public void run() {
+                for (ZipArchiveEntry entry: Collections.list(zf.getEntries())) {
+                    assertAllReadMethods(content.get(entry.getName()), zf, entry);
+                }
+                passedCount.incrementAndGet();
+            }
+        };
+        Thread t0 = new Thread(run);
+        Thread t1 = new Thread(run);
+        t0.start();
+        t1.start();
+        t0.join();
+        t1.join();
+        assertEquals(2, passedCount.get());
+    }
+
+    @Test
+    public void testGetEntryBuffer() throws Exception {
+        final File archive = getFile("mixed.zip");
+        try (ZipFile unmapped = new ZipFile(archive)) {
+            assertNull(unmapped.getEntryBuffer(unmapped.getEntry("stored.txt")));
+        }
+        zf = new ZipFile(archive, ZipFileOptions.builder().withUseMemoryMapping(true).build());
+        assertNull(zf.getEntryBuffer(zf.getEntry("inflated.txt")));
+        final ZipArchiveEntry stored = zf.getEntry("stored.txt");
+        final ByteBuffer buffer = zf.getEntryBuffer(stored);
+        assertTrue(buffer.isReadOnly());
+        final byte[] fromBuffer = new byte[buffer.remaining()];
+        buffer.get(fromBuffer);
+        try (InputStream stream = zf.getInputStream(stored)) {
+            assertArrayEquals(IOUtils.toByteArray(stream), fromBuffer);
+        }
+    }
+
+    @Test
+    public void testOffsetsWithLazyLocalFileHeaders() throws Exception {
+        final File archive = getFile("mixed.zip");
+        zf = new ZipFile(archive, ZipFileOptions.builder().withLazyLocalFileHeaders(true).build());
+        final ZipArchiveEntry inflatedEntry = zf.getEntry("inflated.txt");
+        assertEquals(0x0000, inflatedEntry.getLocalHeaderOffset());
+        assertEquals(EntryStreamOffsets.OFFSET_UNKNOWN, inflatedEntry.getDataOffset());
+        zf.resolveLocalFileHeader(inflatedEntry);
+        assertEquals(0x0046, inflatedEntry.getDataOffset());
+        final ZipArchiveEntry storedEntry = zf.getEntry("stored.txt");
+        assertEquals(0x5892, storedEntry.getLocalHeaderOffset());
+        assertEquals(EntryStreamOffsets.OFFSET_UNKNOWN, storedEntry.getDataOffset());
+        try (InputStream stream = zf.getRawInputStream(storedEntry)) {
+            assertNotNull(stream);
+        }
+        assertEquals(0x58d6, storedEntry.getDataOffset());
+    }
+
+    @Test
+    public void lazyLocalFileHeadersProvideSameExtraFieldsAsEagerReading() throws Exception {
+        final File archive = getFile("COMPRESS-211_uid_gid_zip_test.zip");
+        try (ZipFile eager = new ZipFile(archive);
+             ZipFile lazy = new ZipFile(archive, ZipFileOptions.builder().withLazyLocalFileHeaders(true).build())) {
+            for (final ZipArchiveEntry expected : Collections.list(eager.getEntries())) {
+                final ZipArchiveEntry actual = lazy.getEntry(expected.getName());
+                lazy.resolveLocalFileHeader(actual);
+                assertArrayEquals(expected.getLocalFileDataExtra(), actual.getLocalFileDataExtra());
+                assertArrayEquals(expected.getCentralDirectoryExtra(), actual.getCentralDirectoryExtra());
+                assertEquals(expected.getDataOffset(), actual.getDataOffset());
+                assertEquals(expected, actual);
+                try (InputStream e = eager.getInputStream(expected);
+                     InputStream a = lazy.getInputStream(actual)) {
+                    assertArrayEquals(IOUtils.toByteArray(e), IOUtils.toByteArray(a));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void lazyLocalFileHeadersAreReadWhenEntryDataIsAccessed() throws Exception {
+        final File archive = getFile("COMPRESS-211_uid_gid_zip_test.zip");
+        try (ZipFile eager = new ZipFile(archive);
+             ZipFile lazy = new ZipFile(archive, ZipFileOptions.builder().withLazyLocalFileHeaders(true).build())) {
+            final ZipArchiveEntry expected = eager.getEntries().nextElement();
+            final ZipArchiveEntry actual = lazy.getEntry(expected.getName());
+            assertEquals(EntryStreamOffsets.OFFSET_UNKNOWN, actual.getDataOffset());
+            try (InputStream a = lazy.getInputStream(actual)) {
+                assertEquals(expected.getDataOffset(), actual.getDataOffset());
+                assertArrayEquals(expected.getLocalFileDataExtra(), actual.getLocalFileDataExtra());
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void resolvingLazyLocalFileHeaderFailsAfterClose() throws Exception {
+        final ZipArchiveEntry entry;
+        try (ZipFile lazy = new ZipFile(getFile("mixed.zip"),
+            ZipFileOptions.builder().withLazyLocalFileHeaders(true).build())) {
+            entry = lazy.getEntry("stored.txt");
+            lazy.close();
+            lazy.resolveLocalFileHeader(entry);
+        }
+    }
+
     /**
      * Test correct population of header and data offsets.
      */
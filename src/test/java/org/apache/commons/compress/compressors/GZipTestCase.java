@@ -28,6 +28,8 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 
@@ -191,6 +193,35 @@ public void testInteroperabilityWithGZIPInputStream() throws Exception {
         Assert.assertArrayEquals("uncompressed content", content, content2);
     }
 
+    @Test
+    public void testParallelDeflateInteroperabilityWithGZIPInputStream() throws Exception {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (FileInputStream fis = new FileInputStream(getFile("test3.xml"))) {
+            final byte[] xml = IOUtils.toByteArray(fis);
+            // make sure the content spans several blocks
+            while (content.size() < 1024 * 1024) {
+                content.write(xml);
+            }
+        }
+
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        final GzipParameters parameters = new GzipParameters();
+        parameters.setParallelBlockSize(64 * 1024);
+        parameters.setMaxPendingParallelBlocks(2);
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try (GzipCompressorOutputStream out = new GzipCompressorOutputStream(bout, parameters,
+                executorService)) {
+            out.write(content.toByteArray());
+        } finally {
+            executorService.shutdown();
+        }
+
+        final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bout.toByteArray()));
+        final byte[] content2 = IOUtils.toByteArray(in);
+
+        Assert.assertArrayEquals("uncompressed content", content.toByteArray(), content2);
+    }
+
     @Test
     public void testInvalidCompressionLevel() {
         final GzipParameters parameters = new GzipParameters();
@@ -209,6 +240,11 @@ public void testInvalidCompressionLevel() {
         }
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParallelBlockSize() {
+        new GzipParameters().setParallelBlockSize(1024);
+    }
+
     private void testExtraFlags(final int compressionLevel, final int flag) throws Exception {
         byte[] content;
         try (FileInputStream fis = new FileInputStream(getFile("test3.xml"))) {
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.bzip2;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Test;
+
+public class BZip2CompressorOutputStreamTest {
+
+    @Test
+    public void parallelModeCreatesSameOutputAsSequentialMode() throws Exception {
+        final byte[] data = createData(1500 * 1000);
+        for (final int blockSize : new int[] { 1, 3 }) {
+            final byte[] expected = compress(data, blockSize, null, 0);
+
+            final ExecutorService executorService = Executors.newFixedThreadPool(3);
+            try {
+                assertArrayEquals(expected, compress(data, blockSize, executorService, 1));
+                assertArrayEquals(expected, compress(data, blockSize, executorService, 4));
+            } finally {
+                executorService.shutdownNow();
+            }
+
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (BZip2CompressorOutputStream out = new BZip2CompressorOutputStream(bos, blockSize, 2)) {
+                writeInChunks(out, data);
+            }
+            assertArrayEquals(expected, bos.toByteArray());
+
+            try (InputStream in = new BZip2CompressorInputStream(new ByteArrayInputStream(expected))) {
+                assertArrayEquals(data, IOUtils.toByteArray(in));
+            }
+        }
+    }
+
+    @Test
+    public void parallelModeHandlesEmptyInput() throws Exception {
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            assertArrayEquals(compress(new byte[0], 9, null, 0), compress(new byte[0], 9, executorService, 2));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveThreadCount() throws IOException {
+        new BZip2CompressorOutputStream(new ByteArrayOutputStream(), 9, 0);
+    }
+
+    private static byte[] compress(final byte[] data, final int blockSize, final ExecutorService executorService,
+        final int maxBlocksInFlight) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (BZip2CompressorOutputStream out = executorService == null
+                 ? new BZip2CompressorOutputStream(bos, blockSize)
+                 : new BZip2CompressorOutputStream(bos, blockSize, executorService, maxBlocksInFlight)) {
+            writeInChunks(out, data);
+        }
+        return bos.toByteArray();
+    }
+
+    private static void writeInChunks(final BZip2CompressorOutputStream out, final byte[] data)
+        throws IOException {
+        final Random random = new Random(1);
+        int off = 0;
+        while (off < data.length) {
+            final int len = Math.min(data.length - off, random.nextInt(50 * 1000));
+            out.write(data, off, len);
+            off += len;
+        }
+    }
+
+    /**
+     * Mixes runs, text and random bytes so blocks end in the middle
+     * of runs and compress to bit lengths that aren't multiples of 8.
+     */
+    private static byte[] createData(final int size) {
+        final Random random = new Random(size);
+        final byte[] data = new byte[size];
+        final byte[] words = "Lorem ipsum dolor sit amet, consectetur adipiscing elit ".getBytes();
+        int i = 0;
+        while (i < size) {
+            final int run = Math.min(size - i, 1 + random.nextInt(20 * 1000));
+            switch (random.nextInt(3)) {
+            case 0:
+                for (int j = 0; j < run; j++) {
+                    data[i + j] = (byte) random.nextInt();
+                }
+                break;
+            case 1:
+                for (int j = 0; j < run; j++) {
+                    data[i + j] = words[(i + j) % words.length];
+                }
+                break;
+            default:
+                final byte b = (byte) random.nextInt();
+                for (int j = 0; j < run; j++) {
+                    data[i + j] = b;
+                }
+                break;
+            }
+            i += run;
+        }
+        return data;
+    }
+}
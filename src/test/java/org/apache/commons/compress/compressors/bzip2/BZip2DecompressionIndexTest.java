@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.bzip2;
+
+import static org.apache.commons.compress.AbstractTestCase.getFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.junit.Test;
+
+public class BZip2DecompressionIndexTest {
+
+    @Test
+    public void resumesAtEveryBlock() throws Exception {
+        final byte[] data = createData(1024 * 1024);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (BZip2CompressorOutputStream out = new BZip2CompressorOutputStream(bos, 1)) {
+            out.write(data, 0, data.length / 3);
+        }
+        try (BZip2CompressorOutputStream out = new BZip2CompressorOutputStream(bos, 2)) {
+            out.write(data, data.length / 3, data.length - data.length / 3);
+        }
+        final byte[] compressed = bos.toByteArray();
+        final BZip2DecompressionIndex index = BZip2DecompressionIndex.build(new ByteArrayInputStream(compressed), 1);
+        assertEquals(data.length, index.getUncompressedSize());
+        assertTrue(index.getCheckpointCount() > 5);
+        try (SeekableByteChannel channel = new SeekableInMemoryByteChannel(compressed)) {
+            for (int i = 0; i < index.getCheckpointCount(); i++) {
+                final long offset = index.getCheckpointOffset(i);
+                assertRange(index, channel, data, (int) offset, 1000);
+                if (offset > 0) {
+                    assertRange(index, channel, data, (int) offset - 1, 2);
+                }
+            }
+            try (InputStream in = index.openAt(channel, data.length / 2)) {
+                assertArrayEquals(Arrays.copyOfRange(data, data.length / 2, data.length), IOUtils.toByteArray(in));
+            }
+        }
+    }
+
+    @Test
+    public void indexCanBeWrittenAndRead() throws Exception {
+        final byte[] compressed = Files.readAllBytes(getFile("zip64support.tar.bz2").toPath());
+        final byte[] data;
+        try (InputStream in = new BZip2CompressorInputStream(new ByteArrayInputStream(compressed), true)) {
+            data = IOUtils.toByteArray(in);
+        }
+        final BZip2DecompressionIndex index =
+            BZip2DecompressionIndex.build(new ByteArrayInputStream(compressed), 100 * 1000);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        index.writeTo(bos);
+        final BZip2DecompressionIndex read =
+            BZip2DecompressionIndex.readFrom(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(data.length, read.getUncompressedSize());
+        assertEquals(index.getCheckpointCount(), read.getCheckpointCount());
+        final Random random = new Random(42);
+        try (SeekableByteChannel channel = new SeekableInMemoryByteChannel(compressed)) {
+            for (int i = 0; i < 20; i++) {
+                assertRange(read, channel, data, random.nextInt(data.length - 500), 500);
+            }
+        }
+    }
+
+    private static void assertRange(final BZip2DecompressionIndex index, final SeekableByteChannel channel,
+        final byte[] data, final int offset, final int length) throws IOException {
+        try (InputStream in = index.openAt(channel, offset)) {
+            final byte[] actual = new byte[length];
+            assertEquals(length, IOUtils.readFully(in, actual));
+            assertArrayEquals("at offset " + offset, Arrays.copyOfRange(data, offset, offset + length), actual);
+        }
+    }
+
+    private static byte[] createData(final int size) {
+        final Random random = new Random(size);
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : 'a' + i % 7);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.bzip2;
+
+import static org.apache.commons.compress.AbstractTestCase.getFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Test;
+
+public class ParallelBZip2CompressorInputStreamTest {
+
+    @Test
+    public void decodesBlocksOfConcatenatedStreams() throws Exception {
+        final byte[] data = createData(1200 * 1000);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (BZip2CompressorOutputStream out = new BZip2CompressorOutputStream(bos, 1)) {
+            out.write(data, 0, data.length / 2);
+        }
+        try (BZip2CompressorOutputStream out = new BZip2CompressorOutputStream(bos, 2)) {
+            out.write(data, data.length / 2, data.length - data.length / 2);
+        }
+        final byte[] compressed = bos.toByteArray();
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(3);
+        try {
+            for (final int maxBlocksInFlight : new int[] { 1, 5 }) {
+                try (InputStream in = new ParallelBZip2CompressorInputStream(new ByteArrayInputStream(compressed),
+                         true, executorService, maxBlocksInFlight)) {
+                    assertArrayEquals(data, IOUtils.toByteArray(in));
+                }
+                try (InputStream in = new ParallelBZip2CompressorInputStream(new ByteArrayInputStream(compressed),
+                         false, executorService, maxBlocksInFlight)) {
+                    assertArrayEquals(Arrays.copyOf(data, data.length / 2), IOUtils.toByteArray(in));
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void readsSameDataAsSequentialStream() throws Exception {
+        for (final String name : new String[] { "multiple.bz2", "lbzip2_32767.bz2", "bla.tar.bz2" }) {
+            final byte[] compressed = Files.readAllBytes(getFile(name).toPath());
+            for (final boolean decompressConcatenated : new boolean[] { false, true }) {
+                final byte[] expected;
+                try (InputStream in = new BZip2CompressorInputStream(new ByteArrayInputStream(compressed),
+                         decompressConcatenated)) {
+                    expected = IOUtils.toByteArray(in);
+                }
+                try (ParallelBZip2CompressorInputStream in = new ParallelBZip2CompressorInputStream(
+                         new ByteArrayInputStream(compressed), decompressConcatenated, 2)) {
+                    assertArrayEquals(name, expected, IOUtils.toByteArray(in));
+                    assertEquals(expected.length, in.getUncompressedCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void detectsCorruptedBlocks() throws Exception {
+        final byte[] data = createData(300 * 1000);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (BZip2CompressorOutputStream out = new BZip2CompressorOutputStream(bos, 1)) {
+            out.write(data);
+        }
+        final byte[] compressed = bos.toByteArray();
+
+        final byte[] corrupted = compressed.clone();
+        corrupted[corrupted.length / 2] ^= 0x10;
+        assertFails(corrupted);
+        assertFails(Arrays.copyOf(compressed, compressed.length - 100));
+        assertFails(Arrays.copyOf(compressed, compressed.length - 5));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsDataNotInBZip2Format() throws Exception {
+        try (InputStream in = Files.newInputStream(getFile("bla.zip").toPath())) {
+            new ParallelBZip2CompressorInputStream(in, false, 1).close();
+        }
+    }
+
+    @Test
+    public void readsEmptyStream() throws Exception {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new BZip2CompressorOutputStream(bos).close();
+        try (InputStream in = new ParallelBZip2CompressorInputStream(new ByteArrayInputStream(bos.toByteArray()),
+                 true, 1)) {
+            assertEquals(-1, in.read());
+        }
+    }
+
+    private static void assertFails(final byte[] compressed) throws IOException {
+        try (InputStream in = new ParallelBZip2CompressorInputStream(new ByteArrayInputStream(compressed), false, 2)) {
+            IOUtils.toByteArray(in);
+            fail("expected an exception");
+        } catch (final IOException expected) { // NOSONAR
+            // expected
+        }
+    }
+
+    private static byte[] createData(final int size) {
+        final Random random = new Random(size);
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : 'a' + i % 7);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.deflate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelDeflaterTest {
+
+    private ExecutorService executorService;
+
+    @Before
+    public void createExecutor() {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void roundTripOfSeveralBlocks() throws IOException {
+        final byte[] data = createData(10 * ParallelDeflater.DEFAULT_BLOCK_SIZE + 12345);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ParallelDeflater deflater = new ParallelDeflater(bos, executorService)) {
+            // odd write sizes so writes span block boundaries
+            for (int off = 0; off < data.length; off += 7777) {
+                deflater.write(data, off, Math.min(7777, data.length - off));
+            }
+            deflater.finish();
+            assertEquals(crc(data), deflater.getCrc32());
+            assertEquals(data.length, deflater.getBytesRead());
+            assertEquals(bos.size(), deflater.getBytesWritten());
+        }
+        assertArrayEquals(data, inflate(bos.toByteArray()));
+    }
+
+    @Test
+    public void roundTripOfExactMultipleOfBlockSize() throws IOException {
+        final byte[] data = createData(2 * 32 * 1024);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ParallelDeflater deflater = new ParallelDeflater(bos, executorService, Deflater.BEST_SPEED,
+                32 * 1024, 1)) {
+            deflater.write(data, 0, data.length);
+            deflater.finish();
+            assertEquals(crc(data), deflater.getCrc32());
+        }
+        assertArrayEquals(data, inflate(bos.toByteArray()));
+    }
+
+    @Test
+    public void emptyStream() throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ParallelDeflater deflater = new ParallelDeflater(bos, executorService)) {
+            deflater.finish();
+            assertEquals(0, deflater.getCrc32());
+        }
+        assertEquals(0, inflate(bos.toByteArray()).length);
+    }
+
+    @Test
+    public void resetStartsNewStream() throws IOException {
+        final byte[] first = createData(200000);
+        final byte[] second = createData(1000);
+        try (ParallelDeflater deflater = new ParallelDeflater(new ByteArrayOutputStream(), executorService)) {
+            deflater.write(first, 0, first.length);
+            deflater.finish();
+            deflater.reset();
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (ParallelDeflater other = new ParallelDeflater(bos, executorService)) {
+                other.write(second, 0, second.length);
+                other.finish();
+            }
+            deflater.write(second, 0, second.length);
+            deflater.finish();
+            assertEquals(crc(second), deflater.getCrc32());
+            assertEquals(bos.size(), deflater.getBytesWritten());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void cannotWriteAfterFinish() throws IOException {
+        try (ParallelDeflater deflater = new ParallelDeflater(new ByteArrayOutputStream(), executorService)) {
+            deflater.finish();
+            deflater.write(new byte[1], 0, 1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBlocksSmallerThanWindow() {
+        new ParallelDeflater(new ByteArrayOutputStream(), executorService, Deflater.DEFAULT_COMPRESSION, 1024, 1);
+    }
+
+    @Test
+    public void combinesCrc32() {
+        final byte[] data = createData(100000);
+        final CRC32 first = new CRC32();
+        first.update(data, 0, 40000);
+        final CRC32 second = new CRC32();
+        second.update(data, 40000, 60000);
+        assertEquals(crc(data), ParallelDeflater.combineCrc32(first.getValue(), second.getValue(), 60000));
+        assertEquals(first.getValue(), ParallelDeflater.combineCrc32(first.getValue(), 0, 0));
+    }
+
+    private static byte[] createData(final int length) {
+        // somewhat compressible data
+        final Random random = new Random(length);
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    private static long crc(final byte[] data) {
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static byte[] inflate(final byte[] compressed) throws IOException {
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed),
+                new Inflater(true))) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+}
@@ -20,8 +20,14 @@
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -60,6 +66,26 @@ public void decodeUncompressedBlockWithInvalidLenNLenValue() throws Exception {
         }
     }
 
+    @Test
+    public void decodeDynamicHuffmanBlockWithInvalidCode() throws Exception {
+        byte[] data = {
+                0b00000101, // final block + dynamic huffman + HLIT
+                0, // HLIT + HDIST + HCLEN
+                (byte) 0b10000000, // HCLEN + code lengths of the code length codes
+                (byte) 0b11100000, // only 18 has a code ('0') + first code '1' doesn't exist
+                -1, -1, -1, -1
+        };
+
+        HuffmanDecoder decoder = new HuffmanDecoder(new ByteArrayInputStream(data));
+        byte[] result = new byte[100];
+        try {
+            int len = decoder.decode(result);
+            fail("Should have failed but returned " + len + " entries: " + Arrays.toString(Arrays.copyOf(result, len)));
+        } catch (IOException e) {
+            assertEquals("Invalid Huffman code", e.getMessage());
+        }
+    }
+
     @Test
     public void decodeSimpleFixedHuffmanBlock() throws Exception {
         byte[] data = {
@@ -216,4 +242,47 @@ public void decodeFixedHuffmanBlockWithMemoryLookupInExactBuffer() throws Except
         len = decoder.decode(result);
         assertEquals(-1, len);
     }
+
+    @Test
+    public void decodesDynamicAndFixedBlocksCreatedByDeflater() throws Exception {
+        // Deflate64 only differs from Deflate in symbol 285 and the
+        // window size, repetitions of 258 bytes don't occur in this data
+        final Random random = new Random(42);
+        final StringBuilder text = new StringBuilder();
+        while (text.length() < 300 * 1000) {
+            final int wordLength = 1 + random.nextInt(10);
+            for (int i = 0; i < wordLength; i++) {
+                text.append((char) ('a' + (int) Math.abs(random.nextGaussian() * 6) % 26));
+            }
+            text.append(random.nextInt(10) == 0 ? ".\n" : " ");
+        }
+        final byte[] data = text.toString().getBytes(StandardCharsets.US_ASCII);
+
+        for (final int strategy : new int[] { Deflater.DEFAULT_STRATEGY, Deflater.FILTERED, Deflater.HUFFMAN_ONLY }) {
+            for (final int level : new int[] { 1, 9 }) {
+                final Deflater deflater = new Deflater(level, true);
+                deflater.setStrategy(strategy);
+                deflater.setInput(data);
+                deflater.finish();
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[4096];
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+                deflater.end();
+                final int compressedLength = compressed.size();
+                // data following the compressed data must not be consumed
+                compressed.write(new byte[] { 1, 2, 3, 4 });
+
+                final HuffmanDecoder decoder = new HuffmanDecoder(new ByteArrayInputStream(compressed.toByteArray()));
+                final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+                int len;
+                while ((len = decoder.decode(buffer)) != -1) {
+                    decoded.write(buffer, 0, len);
+                }
+                assertArrayEquals(data, decoded.toByteArray());
+                assertEquals(compressedLength, decoder.getBytesRead());
+            }
+        }
+    }
 }
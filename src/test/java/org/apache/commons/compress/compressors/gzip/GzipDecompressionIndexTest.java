@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.gzip;
+
+import static org.apache.commons.compress.AbstractTestCase.getFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarFile;
+import org.apache.commons.compress.compressors.xz.XZDecompressionIndex;
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.junit.Test;
+
+public class GzipDecompressionIndexTest {
+
+    @Test
+    public void decodesExistingFilesLikeGzipCompressorInputStream() throws Exception {
+        for (final String name : new String[] { "bla.tgz", "multiple.gz", "lorem-ipsum.txt.gz",
+                "COMPRESS-245.tar.gz" }) {
+            final byte[] compressed = Files.readAllBytes(getFile(name).toPath());
+            final byte[] expected;
+            try (InputStream in = new GzipCompressorInputStream(new ByteArrayInputStream(compressed), true)) {
+                expected = IOUtils.toByteArray(in);
+            }
+            final GzipDecompressionIndex index = GzipDecompressionIndex.build(new ByteArrayInputStream(compressed));
+            assertEquals(name, expected.length, index.getUncompressedSize());
+            try (InputStream in = index.openAt(new SeekableInMemoryByteChannel(compressed), 0)) {
+                assertArrayEquals(name, expected, IOUtils.toByteArray(in));
+            }
+        }
+    }
+
+    @Test
+    public void resumesAtEveryCheckpoint() throws Exception {
+        final byte[] data = createData(3 * 1024 * 1024);
+        final byte[] compressed = concat(gzip(data, 0, data.length / 2), gzip(data, data.length / 2, data.length));
+        final GzipDecompressionIndex index =
+            GzipDecompressionIndex.build(new ByteArrayInputStream(compressed), 64 * 1024);
+        assertEquals(data.length, index.getUncompressedSize());
+        assertTrue(index.getCheckpointCount() > 10);
+        try (SeekableByteChannel channel = new SeekableInMemoryByteChannel(compressed)) {
+            for (int i = 0; i < index.getCheckpointCount(); i++) {
+                final long offset = index.getCheckpointOffset(i);
+                assertRange(index, channel, data, (int) offset, 1000);
+                if (offset > 0) {
+                    assertRange(index, channel, data, (int) offset - 1, 2);
+                }
+            }
+            assertRange(index, channel, data, data.length - 100, 100);
+        }
+    }
+
+    @Test
+    public void indexCanBeWrittenAndRead() throws Exception {
+        final byte[] data = createData(1024 * 1024);
+        final byte[] compressed = gzip(data, 0, data.length);
+        final GzipDecompressionIndex index =
+            GzipDecompressionIndex.build(new ByteArrayInputStream(compressed), 100 * 1000);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        index.writeTo(bos);
+        final GzipDecompressionIndex read = GzipDecompressionIndex.readFrom(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(index.getUncompressedSize(), read.getUncompressedSize());
+        assertEquals(index.getCheckpointCount(), read.getCheckpointCount());
+        final Random random = new Random(42);
+        try (SeekableByteChannel channel = new SeekableInMemoryByteChannel(compressed)) {
+            for (int i = 0; i < 20; i++) {
+                assertRange(read, channel, data, random.nextInt(data.length - 500), 500);
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsIndexOfOtherFormat() throws Exception {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final byte[] compressed = Files.readAllBytes(getFile("bla.tar.xz").toPath());
+        XZDecompressionIndex.build(new SeekableInMemoryByteChannel(compressed)).writeTo(bos);
+        GzipDecompressionIndex.readFrom(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    @Test
+    public void tarFileCanReadCompressedArchiveViaIndex() throws Exception {
+        final Random random = new Random(7);
+        final byte[][] contents = new byte[20][];
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(new GzipCompressorOutputStream(bos))) {
+            for (int i = 0; i < contents.length; i++) {
+                contents[i] = createData(random.nextInt(200 * 1024));
+                final TarArchiveEntry entry = new TarArchiveEntry("entry-" + i);
+                entry.setSize(contents[i].length);
+                tos.putArchiveEntry(entry);
+                tos.write(contents[i]);
+                tos.closeArchiveEntry();
+            }
+        }
+        final byte[] compressed = bos.toByteArray();
+        final GzipDecompressionIndex index =
+            GzipDecompressionIndex.build(new ByteArrayInputStream(compressed), 256 * 1024);
+        try (TarFile tarFile = new TarFile(index.newChannel(new SeekableInMemoryByteChannel(compressed)))) {
+            for (int i = contents.length - 1; i >= 0; i--) {
+                final TarArchiveEntry entry = tarFile.getEntry("entry-" + i);
+                try (InputStream in = tarFile.getInputStream(entry)) {
+                    assertArrayEquals(contents[i], IOUtils.toByteArray(in));
+                }
+            }
+        }
+    }
+
+    private static void assertRange(final GzipDecompressionIndex index, final SeekableByteChannel channel,
+        final byte[] data, final int offset, final int length) throws IOException {
+        try (InputStream in = index.openAt(channel, offset)) {
+            final byte[] actual = new byte[length];
+            assertEquals(length, IOUtils.readFully(in, actual));
+            assertArrayEquals("at offset " + offset, Arrays.copyOfRange(data, offset, offset + length), actual);
+        }
+    }
+
+    /**
+     * Mixes compressible text with incompressible random bytes so the
+     * compressor creates fixed, dynamic and stored blocks.
+     */
+    static byte[] createData(final int size) {
+        final Random random = new Random(size);
+        final byte[] data = new byte[size];
+        final byte[] words = "Lorem ipsum dolor sit amet, consectetur adipiscing elit ".getBytes();
+        int i = 0;
+        while (i < size) {
+            final int run = Math.min(size - i, 1 + random.nextInt(64 * 1024));
+            if (random.nextBoolean()) {
+                final byte[] noise = new byte[run];
+                random.nextBytes(noise);
+                System.arraycopy(noise, 0, data, i, run);
+            } else {
+                for (int j = 0; j < run; j++) {
+                    data[i + j] = words[random.nextInt(8) == 0 ? random.nextInt(words.length) : (i + j) % words.length];
+                }
+            }
+            i += run;
+        }
+        return data;
+    }
+
+    private static byte[] gzip(final byte[] data, final int from, final int to) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bos)) {
+            out.write(data, from, to - from);
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        final byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
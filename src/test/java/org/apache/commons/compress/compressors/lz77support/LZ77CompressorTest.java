@@ -192,6 +192,45 @@ public void samIAmExampleWithFullArrayAvailableForCompression() throws IOExcepti
         assertLiteralBlock(".", blocks.get(19));
     }
 
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullCallback() {
+        new LZ77Compressor(newParameters(128), null);
+    }
+
+    @Test
+    public void blockCallbackReceivesSameBlocksAsCallback() throws IOException {
+        final List<LZ77Compressor.Block> expected = compress(newParameters(1024), stagger(SAM));
+        final List<LZ77Compressor.Block> blocks = new ArrayList<>();
+        LZ77Compressor c = LZ77Compressor.withBlockCallback(newParameters(1024), new LZ77Compressor.BlockCallback() {
+                @Override
+                public void onLiteral(byte[] window, int off, int len) {
+                    blocks.add(new LZ77Compressor.LiteralBlock(Arrays.copyOfRange(window, off, off + len), 0, len));
+                }
+                @Override
+                public void onBackReference(int offset, int length) {
+                    blocks.add(new LZ77Compressor.BackReference(offset, length));
+                }
+                @Override
+                public void onEndOfData() {
+                    blocks.add(new LZ77Compressor.EOD());
+                }
+            });
+        for (byte[] chunk : stagger(SAM)) {
+            c.compress(chunk);
+        }
+        c.finish();
+        assertSize(expected.size(), blocks);
+        for (int i = 0; i < expected.size(); i++) {
+            final LZ77Compressor.Block e = expected.get(i);
+            if (e instanceof LZ77Compressor.LiteralBlock) {
+                assertLiteralBlock(((LZ77Compressor.LiteralBlock) e).getData(), blocks.get(i));
+            } else if (e instanceof LZ77Compressor.BackReference) {
+                final LZ77Compressor.BackReference b = (LZ77Compressor.BackReference) e;
+                assertBackReference(b.getOffset(), b.getLength(), blocks.get(i));
+            }
+        }
+    }
+
     @Test
     public void blaExampleWithPrefill() throws IOException {
         final List<LZ77Compressor.Block> blocks = new ArrayList<>();
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.compressors.xz;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.junit.Test;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+public class XZDecompressionIndexTest {
+
+    @Test
+    public void usesBlocksOfXZFileAsCheckpoints() throws Exception {
+        final byte[] data = new byte[512 * 1024];
+        new Random(1).nextBytes(data);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XZOutputStream out = new XZOutputStream(bos, new LZMA2Options(1))) {
+            for (int i = 0; i < 4; i++) {
+                out.write(data, i * data.length / 4, data.length / 4);
+                out.endBlock();
+            }
+        }
+        final byte[] compressed = bos.toByteArray();
+        final XZDecompressionIndex index = XZDecompressionIndex.build(new SeekableInMemoryByteChannel(compressed));
+        assertEquals(data.length, index.getUncompressedSize());
+        assertEquals(4, index.getCheckpointCount());
+
+        final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        index.writeTo(serialized);
+        final XZDecompressionIndex read =
+            XZDecompressionIndex.readFrom(new ByteArrayInputStream(serialized.toByteArray()));
+        assertEquals(index.getCheckpointOffset(3), read.getCheckpointOffset(3));
+        try (InputStream in = read.openAt(new SeekableInMemoryByteChannel(compressed), 300 * 1000)) {
+            assertArrayEquals(Arrays.copyOfRange(data, 300 * 1000, data.length), IOUtils.toByteArray(in));
+        }
+        try (SeekableByteChannel channel = read.newChannel(new SeekableInMemoryByteChannel(compressed))) {
+            final ByteBuffer buffer = ByteBuffer.allocate(1000);
+            channel.position(400 * 1000);
+            IOUtils.readFully(channel, buffer);
+            assertArrayEquals(Arrays.copyOfRange(data, 400 * 1000, 401 * 1000), buffer.array());
+            buffer.clear();
+            channel.position(100 * 1000);
+            IOUtils.readFully(channel, buffer);
+            assertArrayEquals(Arrays.copyOfRange(data, 100 * 1000, 101 * 1000), buffer.array());
+        }
+    }
+}
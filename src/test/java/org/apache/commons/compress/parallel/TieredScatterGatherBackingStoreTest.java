@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.parallel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Test;
+
+public class TieredScatterGatherBackingStoreTest {
+
+    private static final byte[] DATA = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes();
+
+    @Test
+    public void byteBufferStoreSpansSeveralChunks() throws IOException {
+        for (final boolean direct : new boolean[] { false, true }) {
+            try (ByteBufferScatterGatherBackingStore store = new ByteBufferScatterGatherBackingStore(5, direct)) {
+                store.writeOut(DATA, 0, 3);
+                store.writeOut(DATA, 3, DATA.length - 3);
+                store.closeForWriting();
+                assertEquals(DATA.length, store.getSize());
+                assertEquals(40, store.getCapacity());
+                assertArrayEquals(DATA, read(store));
+                // can be read more than once
+                assertArrayEquals(DATA, read(store));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void byteBufferStoreRejectsWritesAfterClosingForWriting() throws IOException {
+        try (ByteBufferScatterGatherBackingStore store = new ByteBufferScatterGatherBackingStore()) {
+            store.closeForWriting();
+            store.writeOut(DATA, 0, 1);
+        }
+    }
+
+    @Test
+    public void tieredStoreMovesPayloadOnceThresholdIsExceeded() throws IOException {
+        final InMemoryOverflow overflow = new InMemoryOverflow();
+        try (TieredScatterGatherBackingStore store = new TieredScatterGatherBackingStore(20, overflow, 8, false)) {
+            store.writeOut(DATA, 0, 20);
+            assertTrue(store.isInMemory());
+            store.writeOut(DATA, 20, DATA.length - 20);
+            assertFalse(store.isInMemory());
+            store.closeForWriting();
+            assertArrayEquals(DATA, read(store));
+        }
+        assertEquals(1, overflow.created);
+        assertTrue(overflow.closed);
+    }
+
+    @Test
+    public void suppliedStoresShareMemoryBudget() throws IOException {
+        final InMemoryOverflow overflow = new InMemoryOverflow();
+        final TieredScatterGatherBackingStoreSupplier supplier =
+            new TieredScatterGatherBackingStoreSupplier(64, 1000, overflow, 16, false);
+        try (ScatterGatherBackingStore first = supplier.get();
+             ScatterGatherBackingStore second = supplier.get()) {
+            first.writeOut(DATA, 0, DATA.length);
+            assertEquals(48, supplier.getMemoryInUse());
+            second.writeOut(DATA, 0, DATA.length);
+            assertTrue(((TieredScatterGatherBackingStore) first).isInMemory());
+            assertFalse(((TieredScatterGatherBackingStore) second).isInMemory());
+            assertEquals(48, supplier.getMemoryInUse());
+            assertEquals(1, supplier.getOverflows());
+            first.closeForWriting();
+            second.closeForWriting();
+            assertArrayEquals(DATA, read(first));
+            assertArrayEquals(DATA, read(second));
+        }
+        assertEquals(0, supplier.getMemoryInUse());
+    }
+
+    private static byte[] read(final ScatterGatherBackingStore store) throws IOException {
+        try (InputStream in = store.getInputStream()) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static class InMemoryOverflow implements ScatterGatherBackingStoreSupplier {
+        private int created;
+        private boolean closed;
+
+        @Override
+        public ScatterGatherBackingStore get() {
+            created++;
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            return new ScatterGatherBackingStore() {
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream(out.toByteArray());
+                }
+
+                @Override
+                public void writeOut(final byte[] data, final int offset, final int length) {
+                    out.write(data, offset, length);
+                }
+
+                @Override
+                public void closeForWriting() {
+                }
+
+                @Override
+                public void close() {
+                    closed = true;
+                }
+            };
+        }
+    }
+}
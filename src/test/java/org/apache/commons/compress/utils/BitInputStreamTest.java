@@ -21,8 +21,11 @@
 import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteOrder;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -206,6 +209,87 @@ public void availableWithCache() throws Exception {
         }
     }
 
+    @Test
+    public void readAheadProvidesSameBitsAsReadingByteByByte() throws Exception {
+        final byte[] data = new byte[20000];
+        new Random(42).nextBytes(data);
+        for (final ByteOrder byteOrder : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN }) {
+            final Random counts = new Random(1);
+            try (final BitInputStream expected = new BitInputStream(new ByteArrayInputStream(data), byteOrder);
+                 final BitInputStream actual = new BitInputStream(new ByteArrayInputStream(data), byteOrder, true)) {
+                long bits;
+                do {
+                    final int count = counts.nextInt(64);
+                    assertEquals(expected.bitsAvailable(), actual.bitsAvailable());
+                    bits = expected.readBits(count);
+                    assertEquals(bits, actual.readBits(count));
+                } while (bits >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void peekBitsInLittleEndian() throws Exception {
+        for (final boolean readAhead : new boolean[] { false, true }) {
+            try (final BitInputStream bis = new BitInputStream(getStream(), ByteOrder.LITTLE_ENDIAN, readAhead)) {
+                assertEquals(0x0f8, bis.peekBits(12));
+                assertEquals(0x0f8, bis.readBits(12));
+                assertEquals(0x2f014, bis.peekBits(40));
+                assertEquals(0x2f014, bis.readBits(20));
+            }
+        }
+    }
+
+    @Test
+    public void peekBitsInBigEndian() throws Exception {
+        for (final boolean readAhead : new boolean[] { false, true }) {
+            try (final BitInputStream bis = new BitInputStream(getStream(), ByteOrder.BIG_ENDIAN, readAhead)) {
+                assertEquals(0xf84, bis.peekBits(12));
+                assertEquals(0xf84, bis.readBits(12));
+                assertEquals(0x0012fL << 20, bis.peekBits(40));
+                assertEquals(0x0012f, bis.readBits(20));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAllowPeekingAtMoreThan56Bits() throws IOException {
+        try (final BitInputStream bis = new BitInputStream(getStream(), ByteOrder.LITTLE_ENDIAN)) {
+            bis.peekBits(57);
+        }
+    }
+
+    @Test
+    public void releaseReadAheadRepositionsUnderlyingStream() throws Exception {
+        final byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final ByteArrayInputStream in = new ByteArrayInputStream(data);
+        final BitInputStream bis = new BitInputStream(in, ByteOrder.BIG_ENDIAN, true);
+        assertEquals(0x000, bis.readBits(12));
+        assertEquals(0x10, bis.readBits(8));
+        bis.releaseReadAhead();
+        assertEquals(3, bis.getBytesRead());
+        assertEquals(4, bis.bitsCached());
+        assertEquals(2, bis.readBits(4));
+        assertEquals(3, in.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void releaseReadAheadFailsIfUnderlyingStreamDoesntSupportMark() throws Exception {
+        final InputStream in = new FilterInputStream(getStream()) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+        try (final BitInputStream bis = new BitInputStream(in, ByteOrder.BIG_ENDIAN, true)) {
+            bis.readBits(4);
+            bis.releaseReadAhead();
+        }
+    }
+
     private ByteArrayInputStream getStream() {
         return new ByteArrayInputStream(new byte[] {
                 (byte) 0xF8,  // 11111000
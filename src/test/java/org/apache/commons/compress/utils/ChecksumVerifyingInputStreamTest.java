@@ -81,6 +81,16 @@ public void testSkip() throws IOException {
 
     }
 
+    @Test
+    public void testSkipZeroBytesDoesntConsumeInput() throws IOException {
+        final ByteArrayInputStream in = new ByteArrayInputStream(new byte[4]);
+        final ChecksumVerifyingInputStream checksumVerifyingInputStream =
+            new ChecksumVerifyingInputStream(new CRC32(), in, 4, 0);
+
+        assertEquals(0L, checksumVerifyingInputStream.skip(0));
+        assertEquals(4, in.available());
+    }
+
 
 
 }
\ No newline at end of file
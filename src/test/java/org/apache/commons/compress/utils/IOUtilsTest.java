@@ -107,6 +107,20 @@ public void copyThrowsOnZeroBufferSize() throws IOException {
         IOUtils.copy(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), 0);
     }
 
+    @Test
+    public void readAtPositionKeepsPositionOfPositionedReadableChannel() throws IOException {
+        final SeekableInMemoryByteChannel channel = new SeekableInMemoryByteChannel(new byte[] {
+                1, 2, 3, 4, 5
+            });
+        channel.position(1);
+        final ByteBuffer b = ByteBuffer.allocate(2);
+        Assert.assertEquals(2, IOUtils.read(channel, b, 3));
+        Assert.assertArrayEquals(new byte[] { 4, 5 }, b.array());
+        Assert.assertEquals(1, channel.position());
+        b.clear();
+        Assert.assertEquals(-1, IOUtils.read(channel, b, 5));
+    }
+
     private static void readFully(final byte[] source, ByteBuffer b) throws IOException {
         IOUtils.readFully(new ReadableByteChannel() {
                 private int idx;
@@ -143,6 +143,40 @@ public void cantPositionToANegativePosition() throws IOException {
         s.position(-1);
     }
 
+    @Test
+    public void positionedReadSpansChannelsWithoutChangingPosition() throws IOException {
+        final byte[] input = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+        final PositionedReadableChannel m = (PositionedReadableChannel) makeMulti(grouped(input, 3));
+        m.position(2);
+        for (int pos = 0; pos < input.length; pos++) {
+            final ByteBuffer buf = ByteBuffer.allocate(input.length - pos);
+            int total = 0;
+            while (buf.hasRemaining()) {
+                total += m.read(buf, pos + total);
+            }
+            Assert.assertArrayEquals(Arrays.copyOfRange(input, pos, input.length), buf.array());
+        }
+        Assert.assertEquals(-1, m.read(ByteBuffer.allocate(1), input.length));
+        Assert.assertEquals(2, m.position());
+    }
+
+    @Test
+    public void positionedReadFallsBackToPositioningForPlainChannels() throws IOException {
+        final byte[] input = "0123456789".getBytes(StandardCharsets.UTF_8);
+        final List<SeekableByteChannel> channels = new ArrayList<>();
+        channels.add(new PlainChannel(new SeekableInMemoryByteChannel(Arrays.copyOfRange(input, 0, 4))));
+        channels.add(new PlainChannel(new SeekableInMemoryByteChannel(Arrays.copyOfRange(input, 4, 10))));
+        final MultiReadOnlySeekableByteChannel m = new MultiReadOnlySeekableByteChannel(channels);
+        final ByteBuffer single = ByteBuffer.allocate(1);
+        m.read(single);
+        final ByteBuffer buf = ByteBuffer.allocate(5);
+        Assert.assertEquals(5, m.read(buf, 2));
+        Assert.assertArrayEquals("23456".getBytes(StandardCharsets.UTF_8), buf.array());
+        single.clear();
+        m.read(single);
+        Assert.assertEquals('1', single.get(0));
+    }
+
     private SeekableByteChannel makeEmpty() {
         return makeSingle(new byte[0]);
     }
@@ -256,6 +290,47 @@ private byte[][] grouped(final byte[] input, final int chunkSize) {
         return groups.toArray(new byte[0][]);
     }
 
+    private static class PlainChannel implements SeekableByteChannel {
+        private final SeekableByteChannel delegate;
+        PlainChannel(final SeekableByteChannel delegate) {
+            this.delegate = delegate;
+        }
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+    }
+
     private static class ThrowingSeekableByteChannel implements SeekableByteChannel {
         private boolean closed = false;
         @Override
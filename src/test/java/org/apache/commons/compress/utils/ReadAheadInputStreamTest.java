@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.commons.compress.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Test;
+
+public class ReadAheadInputStreamTest {
+
+    @Test
+    public void providesDataOfWrappedStream() throws Exception {
+        final byte[] data = new byte[100 * 1000 + 7];
+        new Random(1).nextBytes(data);
+        try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 1000, 3)) {
+            assertEquals(data[0] & 0xff, in.read());
+            assertEquals(500, in.skip(500));
+            final byte[] rest = IOUtils.toByteArray(in);
+            assertArrayEquals(Arrays.copyOfRange(data, 501, data.length), rest);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void reportsExceptionOfWrappedStream() throws Exception {
+        final InputStream failing = new InputStream() {
+            private int count;
+
+            @Override
+            public int read() throws IOException {
+                if (++count > 5000) {
+                    throw new IOException("failed");
+                }
+                return 1;
+            }
+        };
+        try (InputStream in = new ReadAheadInputStream(failing, 1000, 2)) {
+            IOUtils.toByteArray(in);
+            fail("expected an exception");
+        } catch (final IOException ex) {
+            assertEquals("failed", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void closeStopsBackgroundThreadAndClosesWrappedStream() throws Exception {
+        final AtomicBoolean closed = new AtomicBoolean();
+        final InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 0;
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        final InputStream in = new ReadAheadInputStream(endless, 100, 2);
+        assertEquals(0, in.read());
+        in.close();
+        assertTrue(closed.get());
+        try {
+            in.read();
+            fail("expected an exception");
+        } catch (final IOException ex) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void closeUnblocksReadThatIgnoresInterrupts() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final InputStream blocking = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                boolean done = false;
+                while (!done) {
+                    try {
+                        closed.await();
+                        done = true;
+                    } catch (final InterruptedException ex) { // NOSONAR
+                        // ignored like a read blocked on a socket would do
+                    }
+                }
+                throw new IOException("Stream closed");
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        final InputStream in = new ReadAheadInputStream(blocking, 100, 2);
+        in.close();
+        assertEquals(0, closed.getCount());
+    }
+
+    @Test
+    public void pipelinesDecompressionAndTarParsing() throws Exception {
+        final Random random = new Random(2);
+        final byte[][] contents = new byte[50][];
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(new GzipCompressorOutputStream(bos))) {
+            for (int i = 0; i < contents.length; i++) {
+                contents[i] = new byte[random.nextInt(50 * 1024)];
+                random.nextBytes(contents[i]);
+                final TarArchiveEntry entry = new TarArchiveEntry("entry" + i);
+                entry.setSize(contents[i].length);
+                tos.putArchiveEntry(entry);
+                tos.write(contents[i]);
+                tos.closeArchiveEntry();
+            }
+        }
+        final InputStream compressed = new BufferedInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(new ReadAheadInputStream(
+                new CompressorStreamFactory().createCompressorInputStream(compressed), 8192, 8))) {
+            for (int i = 0; i < contents.length; i++) {
+                assertEquals("entry" + i, tar.getNextTarEntry().getName());
+                if (i % 2 == 0) {
+                    assertArrayEquals(contents[i], IOUtils.toByteArray(tar));
+                }
+            }
+        }
+    }
+}
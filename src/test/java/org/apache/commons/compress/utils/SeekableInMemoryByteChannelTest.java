@@ -94,6 +94,21 @@ public void shouldSignalEOFWhenPositionAtTheEnd() throws IOException {
         c.close();
     }
 
+    @Test
+    public void shouldReadFromGivenPositionWithoutChangingPosition() throws IOException {
+        //given
+        SeekableInMemoryByteChannel c = new SeekableInMemoryByteChannel(testData);
+        ByteBuffer readBuffer = ByteBuffer.allocate(testData.length);
+        //when
+        int readCount = c.read(readBuffer, 5L);
+        //then
+        assertEquals(4L, readCount);
+        assertEquals("data", new String(readBuffer.array(), 0, readCount, StandardCharsets.UTF_8));
+        assertEquals(0L, c.position());
+        assertEquals(-1, c.read(ByteBuffer.allocate(1), testData.length));
+        c.close();
+    }
+
     @Test(expected = ClosedChannelException.class)
     public void shouldThrowExceptionOnReadingClosedChannel() throws IOException {
         //given